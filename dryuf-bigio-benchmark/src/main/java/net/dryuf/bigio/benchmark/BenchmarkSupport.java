@@ -0,0 +1,115 @@
+/*
+ * Copyright 2017 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio.benchmark;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+
+/**
+ * Shared helpers for benchmarks - temporary sparse files and pregenerated access patterns.
+ */
+public class BenchmarkSupport
+{
+	/** Number of operations executed within single benchmark invocation. */
+	public static final int OPS = 1024;
+
+	/** Size of block used for bulk operations. */
+	public static final int BLOCK_SIZE = 4096;
+
+	/** Size of key used for comparison operations. */
+	public static final int KEY_SIZE = 32;
+
+	/** Maximum size of window walked by sequential benchmarks. */
+	public static final long SEQUENTIAL_WINDOW = 64L*1024*1024;
+
+	/**
+	 * Creates temporary sparse file of requested size. The file is deleted once the channel is closed.
+	 *
+	 * @param size
+	 * 	size of file.
+	 *
+	 * @return
+	 * 	read-write channel to created file.
+	 */
+	public static FileChannel createFile(long size) throws IOException
+	{
+		Path path = Files.createTempFile(Paths.get(System.getProperty("java.io.tmpdir")), "dryuf-bigio-benchmark-", ".dat");
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+		channel.write(ByteBuffer.wrap(new byte[]{ 0 }), size-1);
+		return channel;
+	}
+
+	/**
+	 * Generates random positions within area, aligned to alignment.
+	 *
+	 * @param size
+	 * 	size of the area.
+	 * @param length
+	 * 	length of the accessed item.
+	 * @param alignment
+	 * 	alignment of positions, must be power of two.
+	 *
+	 * @return
+	 * 	array of OPS random positions.
+	 */
+	public static long[] randomPositions(long size, int length, int alignment)
+	{
+		Random random = new Random(0);
+		long[] positions = new long[OPS];
+		long limit = size-length;
+		for (int i = 0; i < positions.length; ++i) {
+			positions[i] = ((random.nextLong()&Long.MAX_VALUE)%limit)&-alignment;
+		}
+		return positions;
+	}
+
+	/**
+	 * Computes start of sequential window. The window is placed at the end of the area so the buffers exceeding 2 GB
+	 * are accessed above 31-bit boundary.
+	 *
+	 * @param size
+	 * 	size of the area.
+	 *
+	 * @return
+	 * 	start of sequential window.
+	 */
+	public static long sequentialStart(long size)
+	{
+		return size-sequentialWindow(size);
+	}
+
+	/**
+	 * Computes size of sequential window, always power of two.
+	 *
+	 * @param size
+	 * 	size of the area.
+	 *
+	 * @return
+	 * 	size of sequential window.
+	 */
+	public static long sequentialWindow(long size)
+	{
+		return Long.highestOneBit(Math.min(size, SEQUENTIAL_WINDOW));
+	}
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2017 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+
+import static net.dryuf.bigio.benchmark.BenchmarkSupport.BLOCK_SIZE;
+import static net.dryuf.bigio.benchmark.BenchmarkSupport.KEY_SIZE;
+import static net.dryuf.bigio.benchmark.BenchmarkSupport.OPS;
+
+
+/**
+ * Baseline benchmarks of JDK {@link ByteBuffer}, running the same access patterns as {@link FlatBufferBenchmark}.
+ * ByteBuffer is limited to 2 GB so only the smaller size is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class ByteBufferBenchmark
+{
+	@Param({ "Heap", "Direct", "Mapped" })
+	public String implementation;
+
+	@Param({ "16777216" })
+	public int size;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException
+	{
+		switch (implementation) {
+		case "Heap":
+			buffer = ByteBuffer.allocate(size);
+			break;
+
+		case "Direct":
+			buffer = ByteBuffer.allocateDirect(size);
+			break;
+
+		case "Mapped":
+			channel = BenchmarkSupport.createFile(size);
+			buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			break;
+
+		default:
+			throw new IllegalArgumentException("Unknown implementation: "+implementation);
+		}
+		buffer.order(ByteOrder.nativeOrder());
+
+		sequentialStart = (int)BenchmarkSupport.sequentialStart(size);
+		sequentialMask = (int)BenchmarkSupport.sequentialWindow(size)-1;
+		longPositions = toIntPositions(BenchmarkSupport.randomPositions(size, 8, 8));
+		blockPositions = toIntPositions(BenchmarkSupport.randomPositions(size, BLOCK_SIZE, 1));
+		keyPositions = toIntPositions(BenchmarkSupport.randomPositions(size, KEY_SIZE, 1));
+		block = new byte[BLOCK_SIZE];
+		key = ByteBuffer.allocate(KEY_SIZE);
+	}
+
+	@TearDown(Level.Trial)
+	public void teardown() throws IOException
+	{
+		if (channel != null) {
+			channel.close();
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPS)
+	public long sequentialGetLong()
+	{
+		long sum = 0;
+		int cursor = this.cursor;
+		for (int i = 0; i < OPS; ++i, cursor += 8) {
+			sum += buffer.getLong(sequentialStart+(cursor&sequentialMask));
+		}
+		this.cursor = cursor;
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPS)
+	public void sequentialPutLong()
+	{
+		int cursor = this.cursor;
+		for (int i = 0; i < OPS; ++i, cursor += 8) {
+			buffer.putLong(sequentialStart+(cursor&sequentialMask), cursor);
+		}
+		this.cursor = cursor;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPS)
+	public long randomGetLong()
+	{
+		long sum = 0;
+		for (int pos: longPositions) {
+			sum += buffer.getLong(pos);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPS)
+	public void randomPutLong()
+	{
+		for (int pos: longPositions) {
+			buffer.putLong(pos, pos);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPS)
+	public void getBytes(Blackhole blackhole)
+	{
+		for (int pos: blockPositions) {
+			buffer.position(pos);
+			buffer.get(block);
+			blackhole.consume(block);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPS)
+	public void putBytes()
+	{
+		for (int pos: blockPositions) {
+			buffer.position(pos);
+			buffer.put(block);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPS)
+	public int equalsBytes()
+	{
+		int count = 0;
+		for (int pos: keyPositions) {
+			buffer.limit(pos+KEY_SIZE).position(pos);
+			if (buffer.equals(key))
+				++count;
+			buffer.clear();
+		}
+		return count;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPS)
+	public int compareTo()
+	{
+		int sum = 0;
+		for (int i = 1; i < OPS; ++i) {
+			ByteBuffer left = buffer.duplicate();
+			left.limit(keyPositions[i-1]+KEY_SIZE).position(keyPositions[i-1]);
+			ByteBuffer right = buffer.duplicate();
+			right.limit(keyPositions[i]+KEY_SIZE).position(keyPositions[i]);
+			sum += left.compareTo(right);
+		}
+		return sum;
+	}
+
+	private static int[] toIntPositions(long[] positions)
+	{
+		int[] result = new int[positions.length];
+		for (int i = 0; i < positions.length; ++i) {
+			result[i] = (int)positions[i];
+		}
+		return result;
+	}
+
+	private FileChannel channel;
+
+	private ByteBuffer buffer;
+
+	private int sequentialStart;
+
+	private int sequentialMask;
+
+	private int cursor;
+
+	private int[] longPositions;
+
+	private int[] blockPositions;
+
+	private int[] keyPositions;
+
+	private byte[] block;
+
+	private ByteBuffer key;
+}
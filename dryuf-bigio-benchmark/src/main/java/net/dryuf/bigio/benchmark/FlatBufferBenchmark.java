@@ -0,0 +1,275 @@
+/*
+ * Copyright 2017 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio.benchmark;
+
+import net.dryuf.bigio.FlatBuffer;
+import net.dryuf.bigio.MappedFlatBuffer;
+import net.dryuf.bigio.NioMappedFlatBuffer;
+import net.dryuf.bigio.OffHeapFlatBuffer;
+import net.dryuf.bigio.SubFlatBuffer;
+import net.dryuf.bigio.SwappedBytesFlatBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+
+import static net.dryuf.bigio.benchmark.BenchmarkSupport.BLOCK_SIZE;
+import static net.dryuf.bigio.benchmark.BenchmarkSupport.KEY_SIZE;
+import static net.dryuf.bigio.benchmark.BenchmarkSupport.OPS;
+
+
+/**
+ * Benchmarks of {@link FlatBuffer} implementations over mapped file, including the delegating chains.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class FlatBufferBenchmark
+{
+	@Param({ "Mapped", "Sub", "Swapped", "SubSub", "SwappedSub", "SubSubChained", "SwappedSubChained", "OffHeap", "NioMapped" })
+	public String implementation;
+
+	@Param({ "16777216", "3221225472" })
+	public long size;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException
+	{
+		channel = BenchmarkSupport.createFile(size);
+		mapped = new MappedFlatBuffer(channel, FileChannel.MapMode.READ_WRITE, size);
+		if (implementation.equals("OffHeap")) {
+			offHeap = new OffHeapFlatBuffer(size);
+			buffer = offHeap;
+		}
+		else if (implementation.equals("NioMapped")) {
+			offHeap = new NioMappedFlatBuffer(channel, FileChannel.MapMode.READ_WRITE, size);
+			buffer = offHeap;
+		}
+		else {
+			buffer = createImplementation(mapped, implementation);
+		}
+
+		sequentialStart = BenchmarkSupport.sequentialStart(size);
+		sequentialMask = BenchmarkSupport.sequentialWindow(size)-1;
+		longPositions = BenchmarkSupport.randomPositions(size, 8, 8);
+		blockPositions = BenchmarkSupport.randomPositions(size, BLOCK_SIZE, 1);
+		keyPositions = BenchmarkSupport.randomPositions(size, KEY_SIZE, 1);
+		block = new byte[BLOCK_SIZE];
+		key = new byte[KEY_SIZE];
+	}
+
+	@TearDown(Level.Trial)
+	public void teardown() throws IOException
+	{
+		if (offHeap != null) {
+			offHeap.close();
+		}
+		mapped.close();
+		channel.close();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPS)
+	public long sequentialGetLong()
+	{
+		long sum = 0;
+		long cursor = this.cursor;
+		for (int i = 0; i < OPS; ++i, cursor += 8) {
+			sum += buffer.getLong(sequentialStart+(cursor&sequentialMask));
+		}
+		this.cursor = cursor;
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPS)
+	public void sequentialPutLong()
+	{
+		long cursor = this.cursor;
+		for (int i = 0; i < OPS; ++i, cursor += 8) {
+			buffer.putLong(sequentialStart+(cursor&sequentialMask), cursor);
+		}
+		this.cursor = cursor;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPS)
+	public long randomGetLong()
+	{
+		long sum = 0;
+		for (long pos: longPositions) {
+			sum += buffer.getLong(pos);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPS)
+	public long sliceGetLong()
+	{
+		long sum = 0;
+		for (long pos: longPositions) {
+			sum += buffer.subBuffer(pos, 8).getLong(0);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPS)
+	public void randomPutLong()
+	{
+		for (long pos: longPositions) {
+			buffer.putLong(pos, pos);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPS)
+	public void getBytes(Blackhole blackhole)
+	{
+		for (long pos: blockPositions) {
+			buffer.getBytes(pos, block);
+			blackhole.consume(block);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPS)
+	public void putBytes()
+	{
+		for (long pos: blockPositions) {
+			buffer.putBytes(pos, block);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPS)
+	public void copyTo()
+	{
+		for (int i = 1; i < OPS; ++i) {
+			buffer.copyTo(blockPositions[i-1], buffer, blockPositions[i], BLOCK_SIZE);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPS)
+	public int equalsBytes()
+	{
+		int count = 0;
+		for (long pos: keyPositions) {
+			if (buffer.equalsBytes(pos, key, 0, KEY_SIZE))
+				++count;
+		}
+		return count;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPS)
+	public int compareTo()
+	{
+		int sum = 0;
+		for (int i = 1; i < OPS; ++i) {
+			sum += buffer.subBuffer(keyPositions[i-1], KEY_SIZE).compareTo(buffer.subBuffer(keyPositions[i], KEY_SIZE));
+		}
+		return sum;
+	}
+
+	/**
+	 * Creates benchmarked implementation on top of mapped buffer.
+	 *
+	 * @param mapped
+	 * 	underlying mapped buffer.
+	 * @param implementation
+	 * 	name of implementation.
+	 *
+	 * @return
+	 * 	buffer covering the same area as mapped.
+	 */
+	public static FlatBuffer createImplementation(FlatBuffer mapped, String implementation)
+	{
+		ByteOrder swapped = mapped.getByteOrder() == ByteOrder.LITTLE_ENDIAN ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+		switch (implementation) {
+		case "Mapped":
+			return mapped;
+
+		case "Sub":
+			return mapped.subBuffer(0, mapped.size());
+
+		case "Swapped":
+			return mapped.withByteOrder(swapped);
+
+		case "SubSub":
+			return mapped.subBuffer(0, mapped.size()).subBuffer(0, mapped.size());
+
+		case "SwappedSub":
+			return mapped.subBuffer(0, mapped.size()).withByteOrder(swapped);
+
+		case "SubSubChained":
+			return new SubFlatBuffer(new SubFlatBuffer(mapped, 0, mapped.size()), 0, mapped.size());
+
+		case "SwappedSubChained":
+			return new SwappedBytesFlatBuffer(new SubFlatBuffer(mapped, 0, mapped.size()));
+
+		default:
+			throw new IllegalArgumentException("Unknown implementation: "+implementation);
+		}
+	}
+
+	private FileChannel channel;
+
+	private FlatBuffer mapped;
+
+	/** Alternative buffer, not based on the mapped one. */
+	private FlatBuffer offHeap;
+
+	private FlatBuffer buffer;
+
+	private long sequentialStart;
+
+	private long sequentialMask;
+
+	private long cursor;
+
+	private long[] longPositions;
+
+	private long[] blockPositions;
+
+	private long[] keyPositions;
+
+	private byte[] block;
+
+	private byte[] key;
+}
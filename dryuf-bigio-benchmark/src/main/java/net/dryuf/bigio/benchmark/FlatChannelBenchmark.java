@@ -0,0 +1,176 @@
+/*
+ * Copyright 2017 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio.benchmark;
+
+import net.dryuf.bigio.FlatChannel;
+import net.dryuf.bigio.FlatChannels;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+import static net.dryuf.bigio.benchmark.BenchmarkSupport.BLOCK_SIZE;
+import static net.dryuf.bigio.benchmark.BenchmarkSupport.OPS;
+
+
+/**
+ * Baseline benchmarks of positional reads and writes through {@link FileChannel} and {@link FlatChannel} wrappers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class FlatChannelBenchmark
+{
+	@Param({ "FileChannel", "FlatChannel", "SeekableFlatChannel" })
+	public String implementation;
+
+	@Param({ "16777216", "3221225472" })
+	public long size;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException
+	{
+		channel = BenchmarkSupport.createFile(size);
+		switch (implementation) {
+		case "FileChannel":
+			flatChannel = null;
+			break;
+
+		case "FlatChannel":
+			flatChannel = FlatChannels.from(channel);
+			break;
+
+		case "SeekableFlatChannel":
+			flatChannel = FlatChannels.from((SeekableByteChannel)channel);
+			break;
+
+		default:
+			throw new IllegalArgumentException("Unknown implementation: "+implementation);
+		}
+
+		sequentialStart = BenchmarkSupport.sequentialStart(size);
+		sequentialMask = BenchmarkSupport.sequentialWindow(size)-1;
+		longPositions = BenchmarkSupport.randomPositions(size, 8, 8);
+		blockPositions = BenchmarkSupport.randomPositions(size, BLOCK_SIZE, 1);
+		longBuffer = ByteBuffer.allocateDirect(8).order(ByteOrder.nativeOrder());
+		blockBuffer = ByteBuffer.allocateDirect(BLOCK_SIZE);
+	}
+
+	@TearDown(Level.Trial)
+	public void teardown() throws IOException
+	{
+		channel.close();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPS)
+	public long randomReadLong() throws IOException
+	{
+		long sum = 0;
+		for (long pos: longPositions) {
+			longBuffer.clear();
+			read(longBuffer, pos);
+			sum += longBuffer.getLong(0);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPS)
+	public void randomWriteLong() throws IOException
+	{
+		for (long pos: longPositions) {
+			longBuffer.clear();
+			longBuffer.putLong(0, pos);
+			write(longBuffer, pos);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPS)
+	public int randomReadBlock() throws IOException
+	{
+		int sum = 0;
+		for (long pos: blockPositions) {
+			blockBuffer.clear();
+			sum += read(blockBuffer, pos);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPS)
+	public int sequentialReadBlock() throws IOException
+	{
+		int sum = 0;
+		long cursor = this.cursor;
+		for (int i = 0; i < OPS; ++i, cursor += BLOCK_SIZE) {
+			blockBuffer.clear();
+			sum += read(blockBuffer, sequentialStart+(cursor&sequentialMask));
+		}
+		this.cursor = cursor;
+		return sum;
+	}
+
+	private int read(ByteBuffer buffer, long pos) throws IOException
+	{
+		return flatChannel == null ? channel.read(buffer, pos) : flatChannel.read(buffer, pos);
+	}
+
+	private int write(ByteBuffer buffer, long pos) throws IOException
+	{
+		return flatChannel == null ? channel.write(buffer, pos) : flatChannel.write(buffer, pos);
+	}
+
+	private FileChannel channel;
+
+	private FlatChannel flatChannel;
+
+	private long sequentialStart;
+
+	private long sequentialMask;
+
+	private long cursor;
+
+	private long[] longPositions;
+
+	private long[] blockPositions;
+
+	private ByteBuffer longBuffer;
+
+	private ByteBuffer blockBuffer;
+}
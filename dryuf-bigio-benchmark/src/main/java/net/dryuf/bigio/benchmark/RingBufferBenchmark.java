@@ -0,0 +1,224 @@
+/*
+ * Copyright 2015 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio.benchmark;
+
+import net.dryuf.bigio.FlatBuffer;
+import net.dryuf.bigio.FlatRingBuffer;
+import net.dryuf.bigio.MappedFlatBuffer;
+import net.dryuf.bigio.WaitStrategy;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks of {@link FlatRingBuffer} over mapped file. The throughput group runs producer and consumer threads
+ * concurrently, the message throughput is reported by {@link MessageCounters} as failed offers on full ring and
+ * empty reads would inflate the primary score. The latency benchmark measures round trip of message echoed back by
+ * another thread through second ring.
+ */
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class RingBufferBenchmark
+{
+	@State(Scope.Group)
+	public static class ThroughputState
+	{
+		@Param({ "SingleProducer", "MultiProducer" })
+		public String producer;
+
+		@Param({ "32" })
+		public int messageSize;
+
+		@Setup(Level.Trial)
+		public void setup() throws IOException
+		{
+			channel = BenchmarkSupport.createFile(FlatRingBuffer.HEADER_SIZE+RING_SIZE);
+			buffer = new MappedFlatBuffer(channel, FileChannel.MapMode.READ_WRITE, -1);
+			ring = createRing(buffer, producer, WaitStrategy.BUSY_SPIN);
+			message = new byte[messageSize];
+		}
+
+		@TearDown(Level.Trial)
+		public void teardown() throws IOException
+		{
+			buffer.close();
+			channel.close();
+		}
+
+		FileChannel channel;
+
+		FlatBuffer buffer;
+
+		FlatRingBuffer ring;
+
+		byte[] message;
+	}
+
+	/**
+	 * Counters of successfully offered and consumed messages.
+	 */
+	@AuxCounters
+	@State(Scope.Thread)
+	public static class MessageCounters
+	{
+		@Setup(Level.Iteration)
+		public void reset()
+		{
+			offered = 0;
+			consumed = 0;
+		}
+
+		public long offered;
+
+		public long consumed;
+	}
+
+	@State(Scope.Benchmark)
+	public static class LatencyState
+	{
+		@Param({ "SingleProducer", "MultiProducer" })
+		public String producer;
+
+		/** Busy spinning needs a core per thread, yielding is meaningful on machines with fewer cores. */
+		@Param({ "BUSY_SPIN", "YIELDING" })
+		public WaitStrategy waitStrategy;
+
+		@Setup(Level.Trial)
+		public void setup() throws IOException
+		{
+			requestChannel = BenchmarkSupport.createFile(FlatRingBuffer.HEADER_SIZE+RING_SIZE);
+			responseChannel = BenchmarkSupport.createFile(FlatRingBuffer.HEADER_SIZE+RING_SIZE);
+			requestBuffer = new MappedFlatBuffer(requestChannel, FileChannel.MapMode.READ_WRITE, -1);
+			responseBuffer = new MappedFlatBuffer(responseChannel, FileChannel.MapMode.READ_WRITE, -1);
+			requests = createRing(requestBuffer, producer, waitStrategy);
+			responses = createRing(responseBuffer, producer, waitStrategy);
+			echo = new Thread(() -> {
+				byte[] data = new byte[8];
+				for (int iteration = 0; !Thread.currentThread().isInterrupted(); ++iteration) {
+					int count = requests.read((FlatBuffer b, long position, int length) -> {
+						b.getBytes(position, data, 0, length);
+						responses.put(data, 0, length);
+					}, Integer.MAX_VALUE);
+					if (count != 0) {
+						iteration = -1;
+					}
+					else {
+						waitStrategy.idle(iteration);
+					}
+				}
+			});
+			echo.setDaemon(true);
+			echo.start();
+		}
+
+		@TearDown(Level.Trial)
+		public void teardown() throws Exception
+		{
+			echo.interrupt();
+			echo.join();
+			requestBuffer.close();
+			responseBuffer.close();
+			requestChannel.close();
+			responseChannel.close();
+		}
+
+		FileChannel requestChannel;
+
+		FileChannel responseChannel;
+
+		FlatBuffer requestBuffer;
+
+		FlatBuffer responseBuffer;
+
+		FlatRingBuffer requests;
+
+		FlatRingBuffer responses;
+
+		Thread echo;
+
+		final byte[] message = new byte[8];
+
+		long received;
+	}
+
+	@Benchmark
+	@Group("throughput")
+	@GroupThreads(1)
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public void offer(ThroughputState state, MessageCounters counters)
+	{
+		if (state.ring.offer(state.message, 0, state.message.length)) {
+			++counters.offered;
+		}
+	}
+
+	@Benchmark
+	@Group("throughput")
+	@GroupThreads(1)
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public void read(ThroughputState state, MessageCounters counters)
+	{
+		counters.consumed += state.ring.read((FlatBuffer b, long position, int length) -> {}, 1);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public long roundTrip(LatencyState state)
+	{
+		state.requests.put(state.message, 0, state.message.length);
+		state.responses.take((FlatBuffer b, long position, int length) -> state.received = b.getLong(position), 1);
+		return state.received;
+	}
+
+	private static FlatRingBuffer createRing(FlatBuffer buffer, String producer, WaitStrategy waitStrategy)
+	{
+		switch (producer) {
+		case "SingleProducer":
+			return FlatRingBuffer.singleProducer(buffer, waitStrategy);
+
+		case "MultiProducer":
+			return FlatRingBuffer.multiProducer(buffer, waitStrategy);
+
+		default:
+			throw new IllegalArgumentException("Unknown producer: "+producer);
+		}
+	}
+
+	private static final int RING_SIZE = 1024*1024;
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio.benchmark;
+
+import net.dryuf.bigio.FlatBuffer;
+import net.dryuf.bigio.MappedFlatBuffer;
+import net.dryuf.bigio.ParallelScanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks of {@link ParallelScanner} over mapped file, compared to byte by byte loop. The parallelism parameter
+ * shows the scaling with number of cores.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class ScanBenchmark
+{
+	@Param({ "1", "2", "4", "8" })
+	public int parallelism;
+
+	@Param({ "268435456" })
+	public long size;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException
+	{
+		channel = BenchmarkSupport.createFile(size);
+		buffer = new MappedFlatBuffer(channel, FileChannel.MapMode.READ_WRITE, size);
+		for (long pos = 0; pos < size; pos += 64) {
+			buffer.putByte(pos, (byte) '\n');
+		}
+		pool = new ForkJoinPool(parallelism);
+		scanner = new ParallelScanner(pool, ParallelScanner.DEFAULT_CHUNK_SIZE);
+	}
+
+	@TearDown(Level.Trial)
+	public void teardown() throws IOException
+	{
+		pool.shutdown();
+		buffer.close();
+		channel.close();
+	}
+
+	@Benchmark
+	public long countBytewise()
+	{
+		long count = 0;
+		for (long pos = 0; pos < size; ++pos) {
+			if (buffer.getByte(pos) == '\n')
+				++count;
+		}
+		return count;
+	}
+
+	@Benchmark
+	public long count()
+	{
+		return scanner.count(buffer, 0, size, (byte) '\n');
+	}
+
+	@Benchmark
+	public long indexOfMissing()
+	{
+		return scanner.indexOf(buffer, 0, size, PATTERN);
+	}
+
+	private static final byte[] PATTERN = "\n\n".getBytes();
+
+	private FileChannel channel;
+
+	private FlatBuffer buffer;
+
+	private ForkJoinPool pool;
+
+	private ParallelScanner scanner;
+}
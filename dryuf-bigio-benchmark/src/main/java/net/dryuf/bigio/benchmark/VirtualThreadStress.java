@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio.benchmark;
+
+import net.dryuf.bigio.FlatChannel;
+import net.dryuf.bigio.FlatChannels;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Stress test of {@link FlatChannel} adapters under massive number of concurrent readers on single file. Each reader
+ * runs in its own virtual thread when running on Java 21+, otherwise on fixed pool of platform threads. Reports the
+ * throughput of each adapter.
+ *
+ * <p/>Usage: {@code java -cp target/benchmarks.jar net.dryuf.bigio.benchmark.VirtualThreadStress [readers [readsPerReader]]}
+ */
+public class VirtualThreadStress
+{
+	public static void main(String[] args) throws Exception
+	{
+		int readers = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+		int reads = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		long size = 256L*1024*1024;
+		ExecutorService ioExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()*2);
+		try (FileChannel channel = BenchmarkSupport.createFile(size)) {
+			run("synchronized", FlatChannels.from((SeekableByteChannel) channel), readers, reads, size);
+			run("locking", FlatChannels.fromLocking(channel), readers, reads, size);
+			run("file", FlatChannels.from(channel), readers, reads, size);
+			run("offloading", FlatChannels.offloading(FlatChannels.from(channel), ioExecutor), readers, reads, size);
+		}
+		finally {
+			ioExecutor.shutdown();
+		}
+	}
+
+	private static void run(String name, FlatChannel channel, int readers, int reads, long size) throws Exception
+	{
+		ExecutorService executor = newReaderExecutor();
+		AtomicLong bytes = new AtomicLong();
+		long start = System.nanoTime();
+		try {
+			List<Future<?>> futures = new ArrayList<>(readers);
+			for (int i = 0; i < readers; ++i) {
+				futures.add(executor.submit(() -> {
+					ByteBuffer buffer = ByteBuffer.allocate(BenchmarkSupport.BLOCK_SIZE);
+					ThreadLocalRandom random = ThreadLocalRandom.current();
+					long sum = 0;
+					for (int r = 0; r < reads; ++r) {
+						buffer.clear();
+						sum += channel.read(buffer, random.nextLong(size-BenchmarkSupport.BLOCK_SIZE));
+					}
+					bytes.addAndGet(sum);
+					return null;
+				}));
+			}
+			for (Future<?> future: futures) {
+				future.get();
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+		long duration = System.nanoTime()-start;
+		System.out.printf("%-16s readers=%d reads=%d time=%.3fs throughput=%.0f reads/s %.1f MB/s\n",
+				name, readers, (long) readers*reads, duration/1e9,
+				(double) readers*reads*1e9/duration, bytes.get()*1e3/duration);
+	}
+
+	/**
+	 * Creates executor running each task in new virtual thread, if supported by runtime.
+	 */
+	private static ExecutorService newReaderExecutor() throws Exception
+	{
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch (NoSuchMethodException e) {
+			return Executors.newFixedThreadPool(PLATFORM_READERS);
+		}
+	}
+
+	/** Number of platform threads used when virtual threads are not available. */
+	private static final int PLATFORM_READERS = 1000;
+}
@@ -16,6 +16,8 @@
 
 package net.dryuf.bigio;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
 
@@ -107,5 +109,61 @@ public class AbstractDelegatingFlatBuffer extends AbstractFlatBuffer
 		underlying.putBytes(pos, data, offset, length);
 	}
 
+	@Override
+	public void copyTo(long pos, FlatBuffer target, long targetPos, long length)
+	{
+		underlying.copyTo(pos, target, targetPos, length);
+	}
+
+	@Override
+	public long transferTo(long pos, long length, FlatChannel channel, long channelPos) throws IOException
+	{
+		return underlying.transferTo(pos, length, channel, channelPos);
+	}
+
+	@Override
+	public void force(long pos, long length)
+	{
+		underlying.force(pos, length);
+	}
+
+	@Override
+	public boolean advise(long pos, long length, AccessHint hint)
+	{
+		return underlying.advise(pos, length, hint);
+	}
+
+	@Override
+	public boolean equalsBytes(long pos, byte[] bytes, int offset, int length)
+	{
+		return underlying.equalsBytes(pos, bytes, offset, length);
+	}
+
+	@Override
+	public boolean equalsByteBuffer(long pos, ByteBuffer buffer)
+	{
+		return underlying.equalsByteBuffer(pos, buffer);
+	}
+
+	@Override
+	public long mismatch(long pos, FlatBuffer other, long otherPos, long length)
+	{
+		return underlying.mismatch(pos, other, otherPos, length);
+	}
+
+	@Override
+	protected long getMemoryAddress(long pos, long length)
+	{
+		return memoryAddressOf(underlying, pos, length);
+	}
+
+	/**
+	 * Translates position in this buffer to position in the underlying buffer.
+	 */
+	long underlyingPosition(long pos)
+	{
+		return pos;
+	}
+
 	protected final FlatBuffer underlying;
 }
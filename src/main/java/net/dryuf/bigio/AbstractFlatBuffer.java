@@ -16,8 +16,11 @@
 
 package net.dryuf.bigio;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /**
  * Partial implementation of {@link FlatBuffer}.
@@ -49,60 +52,560 @@ public abstract class AbstractFlatBuffer extends FlatBuffer
 		putBytes(pos, data, 0, data.length);
 	}
 
+	@Override
+	public float getFloat(long pos)
+	{
+		return Float.intBitsToFloat(getInt(pos));
+	}
+
+	@Override
+	public double getDouble(long pos)
+	{
+		return Double.longBitsToDouble(getLong(pos));
+	}
+
+	@Override
+	public int getUnsignedByte(long pos)
+	{
+		return getByte(pos)&0xff;
+	}
+
+	@Override
+	public int getUnsignedShort(long pos)
+	{
+		return getShort(pos)&0xffff;
+	}
+
+	@Override
+	public long getUnsignedInt(long pos)
+	{
+		return getInt(pos)&0xffffffffL;
+	}
+
+	@Override
+	public void putFloat(long pos, float val)
+	{
+		putInt(pos, Float.floatToRawIntBits(val));
+	}
+
+	@Override
+	public void putDouble(long pos, double val)
+	{
+		putLong(pos, Double.doubleToRawLongBits(val));
+	}
+
+	@Override
+	public int getIntVolatile(long pos)
+	{
+		return fromNativeOrder(UnsafeMemory.unsafe.getIntVolatile(null, atomicAddress(pos, 4)));
+	}
+
+	@Override
+	public long getLongVolatile(long pos)
+	{
+		return fromNativeOrder(UnsafeMemory.unsafe.getLongVolatile(null, atomicAddress(pos, 8)));
+	}
+
+	@Override
+	public void putIntVolatile(long pos, int val)
+	{
+		UnsafeMemory.unsafe.putIntVolatile(null, atomicAddress(pos, 4), fromNativeOrder(val));
+	}
+
+	@Override
+	public void putLongVolatile(long pos, long val)
+	{
+		UnsafeMemory.unsafe.putLongVolatile(null, atomicAddress(pos, 8), fromNativeOrder(val));
+	}
+
+	@Override
+	public int getIntAcquire(long pos)
+	{
+		int val = UnsafeMemory.unsafe.getInt(atomicAddress(pos, 4));
+		UnsafeMemory.unsafe.loadFence();
+		return fromNativeOrder(val);
+	}
+
+	@Override
+	public long getLongAcquire(long pos)
+	{
+		long val = UnsafeMemory.unsafe.getLong(atomicAddress(pos, 8));
+		UnsafeMemory.unsafe.loadFence();
+		return fromNativeOrder(val);
+	}
+
+	@Override
+	public void putIntRelease(long pos, int val)
+	{
+		UnsafeMemory.unsafe.putOrderedInt(null, atomicAddress(pos, 4), fromNativeOrder(val));
+	}
+
+	@Override
+	public void putLongRelease(long pos, long val)
+	{
+		UnsafeMemory.unsafe.putOrderedLong(null, atomicAddress(pos, 8), fromNativeOrder(val));
+	}
+
+	@Override
+	public boolean compareAndSetInt(long pos, int expected, int val)
+	{
+		return UnsafeMemory.unsafe.compareAndSwapInt(null, atomicAddress(pos, 4), fromNativeOrder(expected), fromNativeOrder(val));
+	}
+
+	@Override
+	public boolean compareAndSetLong(long pos, long expected, long val)
+	{
+		return UnsafeMemory.unsafe.compareAndSwapLong(null, atomicAddress(pos, 8), fromNativeOrder(expected), fromNativeOrder(val));
+	}
+
+	@Override
+	public int getAndAddInt(long pos, int delta)
+	{
+		long address = atomicAddress(pos, 4);
+		if (getByteOrder() == UnsafeMemory.NATIVE_ORDER) {
+			return UnsafeMemory.unsafe.getAndAddInt(null, address, delta);
+		}
+		for (;;) {
+			int current = UnsafeMemory.unsafe.getIntVolatile(null, address);
+			int swapped = Integer.reverseBytes(current);
+			if (UnsafeMemory.unsafe.compareAndSwapInt(null, address, current, Integer.reverseBytes(swapped+delta)))
+				return swapped;
+		}
+	}
+
+	@Override
+	public long getAndAddLong(long pos, long delta)
+	{
+		long address = atomicAddress(pos, 8);
+		if (getByteOrder() == UnsafeMemory.NATIVE_ORDER) {
+			return UnsafeMemory.unsafe.getAndAddLong(null, address, delta);
+		}
+		for (;;) {
+			long current = UnsafeMemory.unsafe.getLongVolatile(null, address);
+			long swapped = Long.reverseBytes(current);
+			if (UnsafeMemory.unsafe.compareAndSwapLong(null, address, current, Long.reverseBytes(swapped+delta)))
+				return swapped;
+		}
+	}
+
+	@Override
+	public boolean isAligned(long pos, int alignment)
+	{
+		long address = getMemoryAddress(pos, 0);
+		return ((address != 0 ? address : pos)&(alignment-1)) == 0;
+	}
+
+	/**
+	 * Reads LEB128 variable length integer. Buffers backed by native memory decode up to eight bytes by single word
+	 * read.
+	 */
+	@Override
+	public long getVarLong(long pos)
+	{
+		return decodeVarLong(pos, null);
+	}
+
+	@Override
+	public long getVarLong(long pos, FlatCursor cursor)
+	{
+		return decodeVarLong(pos, cursor);
+	}
+
+	@Override
+	public int getVarLongLength(long pos)
+	{
+		long address = varLongAddress(pos);
+		int i = 0;
+		if (address != 0) {
+			long stop = ~UnsafeMemory.getLongLittleEndian(address)&0x8080808080808080L;
+			if (stop != 0) {
+				return (Long.numberOfTrailingZeros(stop)+1)>>>3;
+			}
+			i = 8;
+		}
+		for (; i < MAX_VAR_LONG_SIZE; ++i) {
+			if (getByte(pos+i) >= 0)
+				return i+1;
+		}
+		throw new IllegalArgumentException("Malformed variable length integer at: "+pos);
+	}
+
+	@Override
+	public int putVarLong(long pos, long val)
+	{
+		int i = 0;
+		for (; (val&~0x7fL) != 0; ++i, val >>>= 7) {
+			putByte(pos+i, (byte)(val|0x80));
+		}
+		putByte(pos+i, (byte)val);
+		return i+1;
+	}
+
 	@Override
 	public FlatBuffer subBuffer(long pos, long length)
 	{
 		return new SubFlatBuffer(this, pos, length);
 	}
 
+	@Override
+	public void copyTo(long pos, FlatBuffer target, long targetPos, long length)
+	{
+		long address = getMemoryAddress(pos, length);
+		long targetAddress = memoryAddressOf(target, targetPos, length);
+		if (address != 0 && targetAddress != 0) {
+			UnsafeMemory.unsafe.copyMemory(address, targetAddress, length);
+			return;
+		}
+		// resolve delegating views of this buffer, so the overlap is detected for them too
+		FlatBuffer resolved = target;
+		long resolvedPos = targetPos;
+		while (resolved instanceof AbstractDelegatingFlatBuffer) {
+			AbstractDelegatingFlatBuffer delegating = (AbstractDelegatingFlatBuffer)resolved;
+			resolvedPos = delegating.underlyingPosition(resolvedPos);
+			resolved = delegating.underlying;
+		}
+		byte[] chunk = new byte[(int)Math.min(length, COPY_CHUNK_SIZE)];
+		if (resolved == this && resolvedPos > pos && resolvedPos-pos < length) {
+			for (long done = length; done > 0; ) {
+				int current = (int)Math.min(done, chunk.length);
+				done -= current;
+				this.getBytes(pos+done, chunk, 0, current);
+				target.putBytes(targetPos+done, chunk, 0, current);
+			}
+		}
+		else {
+			for (long done = 0; done < length; ) {
+				int current = (int)Math.min(length-done, chunk.length);
+				this.getBytes(pos+done, chunk, 0, current);
+				target.putBytes(targetPos+done, chunk, 0, current);
+				done += current;
+			}
+		}
+	}
+
+	@Override
+	public long transferTo(long pos, long length, FlatChannel channel, long channelPos) throws IOException
+	{
+		ByteBuffer chunk = null;
+		for (long done = 0; done < length; ) {
+			int current = (int)Math.min(length-done, UnsafeMemory.MAX_BYTE_BUFFER_LENGTH);
+			long address = UnsafeMemory.canCreateDirectByteBuffer() ? getMemoryAddress(pos+done, current) : 0;
+			ByteBuffer view;
+			if (address != 0) {
+				view = UnsafeMemory.newDirectByteBuffer(address, current);
+			}
+			else {
+				if (chunk == null) {
+					chunk = ByteBuffer.allocate((int)Math.min(length, COPY_CHUNK_SIZE));
+				}
+				current = Math.min(current, chunk.capacity());
+				this.getBytes(pos+done, chunk.array(), 0, current);
+				view = (ByteBuffer)chunk.clear().limit(current);
+			}
+			while (view.hasRemaining()) {
+				channel.write(view, channelPos+done+view.position());
+			}
+			done += current;
+		}
+		return length;
+	}
+
+	@Override
+	public void force(long pos, long length)
+	{
+	}
+
+	@Override
+	public void force()
+	{
+		force(0, size());
+	}
+
+	/**
+	 * Advises the access pattern. The default implementation passes {@link AccessHint#WILLNEED} for native memory
+	 * to the system, other hints are not accessible from Java and are ignored.
+	 */
+	@Override
+	public boolean advise(long pos, long length, AccessHint hint)
+	{
+		long address = getMemoryAddress(pos, length);
+		if (address == 0 || length == 0) {
+			return false;
+		}
+		switch (hint) {
+		case WILLNEED:
+			return UnsafeMemory.willNeed(address, length);
+
+		default:
+			return false;
+		}
+	}
+
 	@Override
 	public ByteBuffer getByteBuffer(long pos, long length)
 	{
-		throw new UnsupportedOperationException("TODO");
+		if (length > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("ByteBuffer view is limited to 2 GB, requested: "+length);
+		}
+		long address = getMemoryAddress(pos, length);
+		if (address == 0) {
+			throw new UnsupportedOperationException("Buffer is not backed by directly addressable memory: "+getClass().getName());
+		}
+		return UnsafeMemory.newDirectByteBuffer(address, (int)length).order(getByteOrder());
+	}
+
+	@Override
+	public Iterable<ByteBuffer> getByteBuffers(final long pos, final long length, final int chunkSize)
+	{
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("chunkSize must be positive: "+chunkSize);
+		}
+		if (getMemoryAddress(pos, length) == 0) {
+			throw new UnsupportedOperationException("Buffer is not backed by directly addressable memory: "+getClass().getName());
+		}
+		return () -> new Iterator<ByteBuffer>()
+		{
+			@Override
+			public boolean hasNext()
+			{
+				return done < length;
+			}
+
+			@Override
+			public ByteBuffer next()
+			{
+				if (done >= length) {
+					throw new NoSuchElementException();
+				}
+				long current = Math.min(length-done, chunkSize);
+				ByteBuffer view = getByteBuffer(pos+done, current);
+				done += current;
+				return view;
+			}
+
+			private long done = 0;
+		};
 	}
 
 	@Override
 	public boolean equalsBytes(long pos, byte[] bytes, int offset, int length)
 	{
-		for (int i = 0; i < length; ++i) {
-			byte bl = this.getByte(pos+i), br = bytes[offset+i];
-			if (bl != br)
-				return false;
+		if ((offset|length|(offset+length)|(bytes.length-length-offset)) < 0) {
+			throw new IndexOutOfBoundsException("Range out of array bounds: offset="+offset+" length="+length);
 		}
-		return true;
+		return mismatchMemory(pos, bytes, UnsafeMemory.BYTE_ARRAY_OFFSET+offset, length) < 0;
 	}
 
 	@Override
 	public boolean equalsBuffer(long pos, FlatBuffer buffer, long offset, long length)
 	{
-		for (long i = 0; i < length; ++i) {
-			byte bl = this.getByte(pos+i), br = buffer.getByte(offset+i);
-			if (bl != br)
-				return false;
-		}
-		return true;
+		return mismatch(pos, buffer, offset, length) < 0;
 	}
 
 	@Override
 	public boolean equalsByteBuffer(long pos, ByteBuffer buffer)
 	{
-		for (int i = 0, offset = buffer.position(), length = buffer.remaining(); i < length; ++i) {
-			byte bl = this.getByte(pos+i), br = buffer.get(offset+i);
+		int position = buffer.position(), length = buffer.remaining();
+		if (buffer.hasArray()) {
+			return equalsBytes(pos, buffer.array(), buffer.arrayOffset()+position, length);
+		}
+		else if (buffer.isDirect()) {
+			return mismatchMemory(pos, null, UnsafeMemory.getByteBufferAddress(buffer)+position, length) < 0;
+		}
+		for (int i = 0; i < length; ++i) {
+			byte bl = this.getByte(pos+i), br = buffer.get(position+i);
 			if (bl != br)
 				return false;
 		}
 		return true;
 	}
 
+	@Override
+	public long mismatch(long pos, FlatBuffer other, long otherPos, long length)
+	{
+		long otherAddress = memoryAddressOf(other, otherPos, length);
+		if (otherAddress != 0) {
+			return mismatchMemory(pos, null, otherAddress, length);
+		}
+		ByteOrder order = getByteOrder();
+		boolean swap = other.getByteOrder() != order;
+		long i = 0;
+		for (long end = length-7; i < end; i += 8) {
+			long l = this.getLong(pos+i), r = other.getLong(otherPos+i);
+			if (swap)
+				r = Long.reverseBytes(r);
+			if (l != r)
+				return i+UnsafeMemory.firstDifferentByte(l^r, order);
+		}
+		for (; i < length; ++i) {
+			if (this.getByte(pos+i) != other.getByte(otherPos+i))
+				return i;
+		}
+		return -1;
+	}
+
 	@Override
 	public int compareTo(FlatBuffer right)
 	{
 		long sl = this.size(), sr = right.size();
-		for (long i = 0, size = Math.max(sl, sr); i < size; ++i) {
-			byte bl = this.getByte(i), br = right.getByte(i);
-			if (bl != br)
-				return (bl&0xff)-(br&0xff);
+		long i = mismatch(0, right, 0, Math.min(sl, sr));
+		if (i >= 0) {
+			return (this.getByte(i)&0xff)-(right.getByte(i)&0xff);
+		}
+		return Long.compare(sl, sr);
+	}
+
+	/**
+	 * Gets native memory address of the area, checking the bounds. Implementations backed by directly addressable
+	 * memory override this to let the bulk operations work on raw memory.
+	 *
+	 * @param pos
+	 * 	position in this buffer.
+	 * @param length
+	 * 	length of the area.
+	 *
+	 * @return
+	 * 	address of the area or 0 if not backed by directly addressable memory.
+	 */
+	protected long getMemoryAddress(long pos, long length)
+	{
+		return 0;
+	}
+
+	/**
+	 * Finds first mismatching byte between this buffer and memory area.
+	 *
+	 * @param pos
+	 * 	position in this buffer.
+	 * @param base
+	 * 	base object of memory area or null for absolute address.
+	 * @param offset
+	 * 	offset within base object or absolute address.
+	 * @param length
+	 * 	length of compared area.
+	 *
+	 * @return
+	 * 	index of first mismatching byte or -1 if the areas are equal.
+	 */
+	protected long mismatchMemory(long pos, Object base, long offset, long length)
+	{
+		long address = getMemoryAddress(pos, length);
+		if (address != 0) {
+			return UnsafeMemory.mismatch(null, address, base, offset, length);
+		}
+		ByteOrder order = getByteOrder();
+		boolean swap = order != UnsafeMemory.NATIVE_ORDER;
+		long i = 0;
+		for (long end = length-7; i < end; i += 8) {
+			long l = this.getLong(pos+i), r = UnsafeMemory.unsafe.getLong(base, offset+i);
+			if (swap)
+				r = Long.reverseBytes(r);
+			if (l != r)
+				return i+UnsafeMemory.firstDifferentByte(l^r, order);
+		}
+		for (; i < length; ++i) {
+			if (this.getByte(pos+i) != UnsafeMemory.unsafe.getByte(base, offset+i))
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Gets address of value for atomic access, checking the buffer is backed by native memory and the address is
+	 * aligned to the size of value.
+	 */
+	private long atomicAddress(long pos, int length)
+	{
+		long address = getMemoryAddress(pos, length);
+		if (address == 0) {
+			throw new UnsupportedOperationException("Atomic access requires buffer backed by native memory: "+getClass().getName());
+		}
+		if ((address&(length-1)) != 0) {
+			throw new IllegalArgumentException("Atomic access requires aligned address: pos="+pos+" length="+length);
+		}
+		return address;
+	}
+
+	private int fromNativeOrder(int val)
+	{
+		return getByteOrder() == UnsafeMemory.NATIVE_ORDER ? val : Integer.reverseBytes(val);
+	}
+
+	private long fromNativeOrder(long val)
+	{
+		return getByteOrder() == UnsafeMemory.NATIVE_ORDER ? val : Long.reverseBytes(val);
+	}
+
+	/**
+	 * Gets address of eight bytes at position, if the buffer is backed by native memory and the bytes are within the
+	 * buffer.
+	 */
+	private long varLongAddress(long pos)
+	{
+		return pos >= 0 && pos <= size()-8 ? getMemoryAddress(pos, 8) : 0;
+	}
+
+	/**
+	 * Decodes LEB128 variable length integer, moving the cursor, if any, right after it.
+	 */
+	private long decodeVarLong(long pos, FlatCursor cursor)
+	{
+		long address = varLongAddress(pos);
+		int i = 0;
+		long value = 0;
+		if (address != 0) {
+			long word = UnsafeMemory.getLongLittleEndian(address);
+			long stop = ~word&0x8080808080808080L;
+			if (stop != 0) {
+				int bits = Long.numberOfTrailingZeros(stop)+1;
+				if (cursor != null)
+					cursor.position(pos+(bits>>>3));
+				return compactVarLong(bits == 64 ? word : word&((1L<<bits)-1));
+			}
+			i = 8;
+			value = compactVarLong(word);
+		}
+		for (; i < MAX_VAR_LONG_SIZE; ++i) {
+			byte b = getByte(pos+i);
+			value |= (long)(b&0x7f)<<(i*7);
+			if (b >= 0) {
+				if (cursor != null)
+					cursor.position(pos+i+1);
+				return value;
+			}
 		}
-		return sl < sr ? -1 : sr > 0 ? 1 : 0;
+		throw new IllegalArgumentException("Malformed variable length integer at: "+pos);
+	}
+
+	/**
+	 * Compacts 7-bit groups of little endian word into continuous value.
+	 */
+	private static long compactVarLong(long word)
+	{
+		word &= 0x7f7f7f7f7f7f7f7fL;
+		word = (word&0x007f007f007f007fL)|((word&0x7f007f007f007f00L)>>>1);
+		word = (word&0x00003fff00003fffL)|((word&0x3fff00003fff0000L)>>>2);
+		return (word&0x000000000fffffffL)|((word&0x0fffffff00000000L)>>>4);
+	}
+
+	/**
+	 * Gets native memory address of the buffer area.
+	 *
+	 * @param buffer
+	 * 	buffer to query.
+	 * @param pos
+	 * 	position in buffer.
+	 * @param length
+	 * 	length of the area.
+	 *
+	 * @return
+	 * 	address of the area or 0 if not backed by directly addressable memory.
+	 */
+	static long memoryAddressOf(FlatBuffer buffer, long pos, long length)
+	{
+		return buffer instanceof AbstractFlatBuffer ? ((AbstractFlatBuffer)buffer).getMemoryAddress(pos, length) : 0;
 	}
+
+	/** Size of heap chunk used when copying between buffers not backed by native memory. */
+	private static final int COPY_CHUNK_SIZE = 64*1024;
 }
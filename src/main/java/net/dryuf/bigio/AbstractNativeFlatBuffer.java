@@ -0,0 +1,211 @@
+/*
+ * Copyright 2015 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import java.nio.ByteOrder;
+
+import sun.misc.Unsafe;
+
+
+/**
+ * Partial implementation of {@link FlatBuffer} backed by native memory, in native byte order.
+ */
+@SuppressWarnings("restriction")
+public abstract class AbstractNativeFlatBuffer extends AbstractFlatBuffer
+{
+	@Override
+	public long size()
+	{
+		return this.size;
+	}
+
+	@Override
+	public ByteOrder getByteOrder()
+	{
+		return ByteOrder.nativeOrder();
+	}
+
+	/**
+	 * Creates flat view of the area, sharing the memory with this buffer. Closing the view does not close this buffer.
+	 */
+	@Override
+	public FlatBuffer subBuffer(long pos, long length)
+	{
+		checkBounds(pos, length);
+		return new NativeViewFlatBuffer(owner(), pos +address, length, getByteOrder(), false);
+	}
+
+	/**
+	 * Creates flat view with requested byte order, sharing the memory with this buffer. Closing the view closes this
+	 * buffer, unless this is a sub-range view.
+	 */
+	@Override
+	public FlatBuffer withByteOrder(ByteOrder byteOrder)
+	{
+		if (getByteOrder() == byteOrder)
+			return this;
+		return new NativeViewFlatBuffer(owner(), address, size, byteOrder, isOwning());
+	}
+
+	@Override
+	public byte getByte(long pos)
+	{
+		checkBounds(pos, 1);
+		return unsafe.getByte(pos +address);
+	}
+
+	@Override
+	public short getShort(long pos)
+	{
+		checkBounds(pos, 2);
+		return unsafe.getShort(pos +address);
+	}
+
+	@Override
+	public int getInt(long pos)
+	{
+		checkBounds(pos, 4);
+		return unsafe.getInt(pos +address);
+	}
+
+	@Override
+	public long getLong(long pos)
+	{
+		checkBounds(pos, 8);
+		return unsafe.getLong(pos +address);
+	}
+
+	@Override
+	public void putByte(long pos, byte val)
+	{
+		checkBounds(pos, 1);
+		unsafe.putByte(pos +address, val);
+	}
+
+	@Override
+	public void putShort(long pos, short val)
+	{
+		checkBounds(pos, 2);
+		unsafe.putShort(pos +address, val);
+	}
+
+	@Override
+	public void putInt(long pos, int val)
+	{
+		checkBounds(pos, 4);
+		unsafe.putInt(pos +address, val);
+	}
+
+	@Override
+	public void putLong(long pos, long val)
+	{
+		checkBounds(pos, 8);
+		unsafe.putLong(pos +address, val);
+	}
+
+	@Override
+	public long mismatch(long pos, FlatBuffer other, long otherPos, long length)
+	{
+		checkBounds(pos, length);
+		long otherAddress = memoryAddressOf(other, otherPos, length);
+		if (otherAddress != 0) {
+			return UnsafeMemory.mismatch(null, pos +address, null, otherAddress, length);
+		}
+		return super.mismatch(pos, other, otherPos, length);
+	}
+
+	@Override
+	protected long getMemoryAddress(long pos, long length)
+	{
+		checkBounds(pos, length);
+		return pos +address;
+	}
+
+	@Override
+	public void getBytes(long pos, byte[] data, int offset, int length)
+	{
+		if ((offset|length|(offset+length)|(data.length-length-offset)) < 0) {
+			if (offset < 0) {
+				throw new IndexOutOfBoundsException("offset out of bounds: "+offset);
+			}
+			if (length < 0 || offset+length < 0 || offset+length > data.length) {
+				throw new IndexOutOfBoundsException("length out of bounds: "+length);
+			}
+		}
+		checkBounds(pos, length);
+		unsafe.copyMemory(null, pos +address, data, BYTE_ARRAY_OFFSET+offset, length);
+	}
+
+	@Override
+	public void putBytes(long pos, byte[] data, int offset, int length)
+	{
+		if ((offset|length|(offset+length)|(data.length-length-offset)) < 0) {
+			if (offset < 0) {
+				throw new IndexOutOfBoundsException("offset out of bounds: "+offset);
+			}
+			if (length < 0 || offset+length < 0 || offset+length > data.length) {
+				throw new IndexOutOfBoundsException("length out of bounds: "+length);
+			}
+		}
+		checkBounds(pos, length);
+		unsafe.copyMemory(data, BYTE_ARRAY_OFFSET+offset, null, pos +address, length);
+	}
+
+	/**
+	 * Gets the buffer owning the memory, which the views delegate the lifecycle operations to.
+	 *
+	 * @return
+	 * 	owning buffer.
+	 */
+	protected AbstractNativeFlatBuffer owner()
+	{
+		return this;
+	}
+
+	/**
+	 * Checks whether closing this buffer closes the owner.
+	 *
+	 * @return
+	 * 	true if this buffer owns the memory or is full view of the owner.
+	 */
+	protected boolean isOwning()
+	{
+		return true;
+	}
+
+	protected final void checkBounds(long pos, long length)
+	{
+		if ((pos|length|(pos+length)|(this.size-length-pos)) < 0) {
+			if (pos < 0) {
+				throw new IndexOutOfBoundsException("position out of bounds: "+pos);
+			}
+			if (length < 0 || pos+length < 0 || pos+length > this.size) {
+				throw new IndexOutOfBoundsException("length out of bounds: "+length);
+			}
+		}
+	}
+
+	/** Address of the memory, set by the subclass. */
+	protected long address;
+
+	/** Size of the memory, set by the subclass. */
+	protected long size;
+
+	protected static final Unsafe unsafe = UnsafeMemory.unsafe;
+
+	private static final long BYTE_ARRAY_OFFSET = UnsafeMemory.BYTE_ARRAY_OFFSET;
+}
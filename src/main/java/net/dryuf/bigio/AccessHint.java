@@ -0,0 +1,35 @@
+/*
+ * Copyright 2015 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+
+/**
+ * Access pattern hints for {@link FlatBuffer#advise(long, long, AccessHint)}, corresponding to madvise advices.
+ */
+public enum AccessHint
+{
+	/** The area will be accessed sequentially, aggressive readahead is beneficial. */
+	SEQUENTIAL,
+	/** The area will be accessed randomly, readahead is useless. */
+	RANDOM,
+	/** The area will be needed soon, start loading it. */
+	WILLNEED,
+	/** The area will not be needed soon, the pages can be dropped. */
+	DONTNEED,
+	/** The area should be backed by huge pages. */
+	HUGEPAGE,
+}
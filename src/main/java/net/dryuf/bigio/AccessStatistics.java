@@ -0,0 +1,387 @@
+/*
+ * Copyright 2015 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Access statistics collected by {@link InstrumentedFlatBuffer} and
+ * {@link FlatChannels#instrumented(FlatChannel, AccessStatistics)}.
+ *
+ * <p/>Counters are striped ({@link LongAdder} and per-stripe histogram rows selected by thread id), so concurrent
+ * users do not contend on single cache line. Latencies are recorded into log-linear histogram with 16 sub-buckets
+ * per power of two (relative error about 6%), recording does not allocate. Locality is sampled: each access
+ * updates the last position of its stripe, but only every {@link #getSampleInterval()}-th access on average is
+ * classified as sequential (starting where the previous access of the same stripe ended), near (within a page) or
+ * random.
+ *
+ * <p/>The statistics can be exposed via JMX by registering the instance, it implements
+ * {@link AccessStatisticsMXBean}, or pushed to any metrics system via {@link #publish(MetricsSink)}.
+ */
+public class AccessStatistics implements AccessStatisticsMXBean
+{
+	/**
+	 * Receiver of published metrics.
+	 */
+	@FunctionalInterface
+	public interface MetricsSink
+	{
+		/**
+		 * Receives single metric.
+		 *
+		 * @param name
+		 * 	name of metric.
+		 * @param value
+		 * 	value of metric.
+		 */
+		void metric(String name, long value);
+	}
+
+	/**
+	 * Creates statistics with default sample interval.
+	 */
+	public AccessStatistics()
+	{
+		this(DEFAULT_SAMPLE_INTERVAL);
+	}
+
+	/**
+	 * Creates statistics.
+	 *
+	 * @param sampleInterval
+	 * 	average number of accesses per one locality sample, 1 to classify every access.
+	 */
+	public AccessStatistics(int sampleInterval)
+	{
+		if (sampleInterval <= 0)
+			throw new IllegalArgumentException("sampleInterval must be positive: "+sampleInterval);
+		this.sampleInterval = sampleInterval;
+	}
+
+	/**
+	 * Records read access.
+	 *
+	 * @param pos
+	 * 	position of access.
+	 * @param length
+	 * 	number of bytes read.
+	 */
+	public void recordRead(long pos, long length)
+	{
+		readCount.increment();
+		readBytes.add(length);
+		recordLocality(pos, length);
+	}
+
+	/**
+	 * Records write access.
+	 *
+	 * @param pos
+	 * 	position of access.
+	 * @param length
+	 * 	number of bytes written.
+	 */
+	public void recordWrite(long pos, long length)
+	{
+		writeCount.increment();
+		writeBytes.add(length);
+		recordLocality(pos, length);
+	}
+
+	/**
+	 * Records read latency.
+	 *
+	 * @param nanos
+	 * 	duration of read in nanoseconds.
+	 */
+	public void recordReadLatency(long nanos)
+	{
+		recordLatency(readLatency, nanos);
+	}
+
+	/**
+	 * Records write latency.
+	 *
+	 * @param nanos
+	 * 	duration of write in nanoseconds.
+	 */
+	public void recordWriteLatency(long nanos)
+	{
+		recordLatency(writeLatency, nanos);
+	}
+
+	/**
+	 * Gets average number of accesses per locality sample.
+	 *
+	 * @return
+	 * 	sample interval.
+	 */
+	public int getSampleInterval()
+	{
+		return sampleInterval;
+	}
+
+	@Override
+	public long getReadCount()
+	{
+		return readCount.sum();
+	}
+
+	@Override
+	public long getReadBytes()
+	{
+		return readBytes.sum();
+	}
+
+	@Override
+	public long getWriteCount()
+	{
+		return writeCount.sum();
+	}
+
+	@Override
+	public long getWriteBytes()
+	{
+		return writeBytes.sum();
+	}
+
+	@Override
+	public long getSequentialCount()
+	{
+		return sequentialCount.sum();
+	}
+
+	@Override
+	public long getNearCount()
+	{
+		return nearCount.sum();
+	}
+
+	@Override
+	public long getRandomCount()
+	{
+		return randomCount.sum();
+	}
+
+	@Override
+	public long getReadLatencyMedianNanos()
+	{
+		return getReadLatencyPercentile(50);
+	}
+
+	@Override
+	public long getReadLatency99Nanos()
+	{
+		return getReadLatencyPercentile(99);
+	}
+
+	@Override
+	public long getReadLatencyMaxNanos()
+	{
+		return getReadLatencyPercentile(100);
+	}
+
+	@Override
+	public long getWriteLatencyMedianNanos()
+	{
+		return getWriteLatencyPercentile(50);
+	}
+
+	@Override
+	public long getWriteLatency99Nanos()
+	{
+		return getWriteLatencyPercentile(99);
+	}
+
+	@Override
+	public long getWriteLatencyMaxNanos()
+	{
+		return getWriteLatencyPercentile(100);
+	}
+
+	/**
+	 * Gets read latency percentile.
+	 *
+	 * @param percentile
+	 * 	percentile, between 0 and 100.
+	 *
+	 * @return
+	 * 	upper bound of bucket containing the percentile, in nanoseconds, 0 if nothing was recorded.
+	 */
+	public long getReadLatencyPercentile(double percentile)
+	{
+		return latencyPercentile(readLatency, percentile);
+	}
+
+	/**
+	 * Gets write latency percentile.
+	 *
+	 * @param percentile
+	 * 	percentile, between 0 and 100.
+	 *
+	 * @return
+	 * 	upper bound of bucket containing the percentile, in nanoseconds, 0 if nothing was recorded.
+	 */
+	public long getWriteLatencyPercentile(double percentile)
+	{
+		return latencyPercentile(writeLatency, percentile);
+	}
+
+	/**
+	 * Resets all counters. Concurrently recorded values may or may not be included.
+	 */
+	@Override
+	public void reset()
+	{
+		readCount.reset();
+		readBytes.reset();
+		writeCount.reset();
+		writeBytes.reset();
+		sequentialCount.reset();
+		nearCount.reset();
+		randomCount.reset();
+		for (int i = 0; i < readLatency.length(); ++i) {
+			readLatency.set(i, 0);
+			writeLatency.set(i, 0);
+		}
+	}
+
+	/**
+	 * Publishes current values to sink.
+	 *
+	 * @param sink
+	 * 	receiver of metrics.
+	 */
+	public void publish(MetricsSink sink)
+	{
+		sink.metric("read.count", getReadCount());
+		sink.metric("read.bytes", getReadBytes());
+		sink.metric("write.count", getWriteCount());
+		sink.metric("write.bytes", getWriteBytes());
+		sink.metric("locality.sequential", getSequentialCount());
+		sink.metric("locality.near", getNearCount());
+		sink.metric("locality.random", getRandomCount());
+		sink.metric("read.latency.p50", getReadLatencyMedianNanos());
+		sink.metric("read.latency.p99", getReadLatency99Nanos());
+		sink.metric("read.latency.max", getReadLatencyMaxNanos());
+		sink.metric("write.latency.p50", getWriteLatencyMedianNanos());
+		sink.metric("write.latency.p99", getWriteLatency99Nanos());
+		sink.metric("write.latency.max", getWriteLatencyMaxNanos());
+	}
+
+	private void recordLocality(long pos, long length)
+	{
+		int slot = stripe()*POSITION_STRIDE;
+		long previousEnd = lastEnd[slot];
+		lastEnd[slot] = pos+length;
+		if (sampleInterval != 1 && ThreadLocalRandom.current().nextInt(sampleInterval) != 0)
+			return;
+		if (pos == previousEnd)
+			sequentialCount.increment();
+		else if (Math.abs(pos-previousEnd) <= UnsafeMemory.PAGE_SIZE)
+			nearCount.increment();
+		else
+			randomCount.increment();
+	}
+
+	private static void recordLatency(AtomicLongArray histogram, long nanos)
+	{
+		histogram.getAndIncrement(stripe()*BUCKET_COUNT+bucketIndex(Math.max(0, nanos)));
+	}
+
+	private static long latencyPercentile(AtomicLongArray histogram, double percentile)
+	{
+		long[] counts = new long[BUCKET_COUNT];
+		long total = 0;
+		for (int i = 0; i < histogram.length(); ++i) {
+			long count = histogram.get(i);
+			counts[i%BUCKET_COUNT] += count;
+			total += count;
+		}
+		if (total == 0)
+			return 0;
+		long threshold = Math.max(1, (long) Math.ceil(total*percentile/100));
+		long cumulative = 0;
+		for (int i = 0; i < BUCKET_COUNT; ++i) {
+			cumulative += counts[i];
+			if (cumulative >= threshold)
+				return bucketUpperBound(i);
+		}
+		return bucketUpperBound(BUCKET_COUNT-1);
+	}
+
+	static int bucketIndex(long value)
+	{
+		if (value < 2*SUB_BUCKETS)
+			return (int) value;
+		int magnitude = 64-Long.numberOfLeadingZeros(value)-SUB_BUCKET_BITS-1;
+		return magnitude*SUB_BUCKETS+(int) (value>>>magnitude);
+	}
+
+	static long bucketUpperBound(int index)
+	{
+		if (index < 2*SUB_BUCKETS)
+			return index;
+		int magnitude = index/SUB_BUCKETS-1;
+		long top = index%SUB_BUCKETS+SUB_BUCKETS;
+		return ((top+1)<<magnitude)-1;
+	}
+
+	private static int stripe()
+	{
+		return (int) Thread.currentThread().getId()&(STRIPES-1);
+	}
+
+	private final int sampleInterval;
+
+	private final LongAdder readCount = new LongAdder();
+
+	private final LongAdder readBytes = new LongAdder();
+
+	private final LongAdder writeCount = new LongAdder();
+
+	private final LongAdder writeBytes = new LongAdder();
+
+	private final LongAdder sequentialCount = new LongAdder();
+
+	private final LongAdder nearCount = new LongAdder();
+
+	private final LongAdder randomCount = new LongAdder();
+
+	/** End of last access per stripe, padded to separate cache lines, updated racily. */
+	private final long[] lastEnd = new long[STRIPES*POSITION_STRIDE];
+
+	private final AtomicLongArray readLatency = new AtomicLongArray(STRIPES*BUCKET_COUNT);
+
+	private final AtomicLongArray writeLatency = new AtomicLongArray(STRIPES*BUCKET_COUNT);
+
+	/** Default average number of accesses per locality sample. */
+	public static final int DEFAULT_SAMPLE_INTERVAL = 64;
+
+	private static final int SUB_BUCKET_BITS = 4;
+
+	private static final int SUB_BUCKETS = 1<<SUB_BUCKET_BITS;
+
+	private static final int BUCKET_COUNT = bucketIndex(Long.MAX_VALUE)+1;
+
+	private static final int STRIPES = Math.min(64, Integer.highestOneBit(Runtime.getRuntime().availableProcessors()*2-1));
+
+	private static final int POSITION_STRIDE = 16;
+}
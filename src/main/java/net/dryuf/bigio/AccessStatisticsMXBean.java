@@ -0,0 +1,52 @@
+/*
+ * Copyright 2015 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+
+/**
+ * JMX view of {@link AccessStatistics}.
+ */
+public interface AccessStatisticsMXBean
+{
+	long getReadCount();
+
+	long getReadBytes();
+
+	long getWriteCount();
+
+	long getWriteBytes();
+
+	long getSequentialCount();
+
+	long getNearCount();
+
+	long getRandomCount();
+
+	long getReadLatencyMedianNanos();
+
+	long getReadLatency99Nanos();
+
+	long getReadLatencyMaxNanos();
+
+	long getWriteLatencyMedianNanos();
+
+	long getWriteLatency99Nanos();
+
+	long getWriteLatencyMaxNanos();
+
+	void reset();
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import lombok.Value;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+
+/**
+ * Asynchronous variant of {@link FlatChannel}. Operations are executed in background and report result via
+ * {@link CompletableFuture}. Unlike {@link FlatChannel}, the operations transfer the whole remaining content of the
+ * buffer unless end of channel is reached.
+ */
+public interface AsyncFlatChannel extends AutoCloseable
+{
+	/**
+	 * Reads the content of channel into the buffer, starting at the given position.
+	 *
+	 * @param buffer
+	 * 	buffer to write data into.
+	 * @param position
+	 * 	channel offset to read from.
+	 *
+	 * @return
+	 * 	future with number of bytes read, -1 on end of channel.
+	 */
+	CompletableFuture<Integer> read(ByteBuffer buffer, long position);
+
+	/**
+	 * Writes the content of buffer into channel, starting at the given position.
+	 *
+	 * @param buffer
+	 * 	buffer to read data from.
+	 * @param position
+	 * 	channel offset to write to.
+	 *
+	 * @return
+	 * 	future with number of bytes written.
+	 */
+	CompletableFuture<Integer> write(ByteBuffer buffer, long position);
+
+	/**
+	 * Reads batch of requests. Adjacent and overlapping requests may be coalesced into single read.
+	 *
+	 * @param requests
+	 * 	list of read requests.
+	 *
+	 * @return
+	 * 	list of futures, in the order of requests, with number of bytes read, -1 on end of channel.
+	 */
+	List<CompletableFuture<Integer>> readBatch(List<Request> requests);
+
+	/**
+	 * Writes batch of requests. The requests are applied in the given order, adjacent consecutive requests may be
+	 * coalesced into single write.
+	 *
+	 * @param requests
+	 * 	list of write requests.
+	 *
+	 * @return
+	 * 	list of futures, in the order of requests, with number of bytes written.
+	 */
+	List<CompletableFuture<Integer>> writeBatch(List<Request> requests);
+
+	/**
+	 * Waits for pending operations and releases the background resources. Does not close the underlying channel.
+	 */
+	@Override
+	void close();
+
+	/**
+	 * Positional I/O request.
+	 */
+	@Value
+	class Request
+	{
+		/** Channel offset. */
+		long position;
+
+		/** Buffer to transfer, between its position and limit. */
+		ByteBuffer buffer;
+	}
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2015 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Asynchronous flusher of {@link FlatBuffer} changes. Collects the dirty ranges and forces them on background
+ * thread, so many writes are made durable by single sync (group commit).
+ *
+ * <p/>The first request of a batch waits at most maxDelay for other requests to join the batch. The overlapping and
+ * adjacent ranges are merged before being forced.
+ */
+public class AsyncFlusher implements AutoCloseable
+{
+	/**
+	 * Creates flusher and starts its background thread.
+	 *
+	 * @param buffer
+	 * 	buffer to flush.
+	 * @param maxDelay
+	 * 	maximum time the request waits for other requests before the batch is flushed.
+	 * @param unit
+	 * 	unit of maxDelay.
+	 */
+	public AsyncFlusher(FlatBuffer buffer, long maxDelay, TimeUnit unit)
+	{
+		this.buffer = buffer;
+		this.maxDelayNanos = unit.toNanos(maxDelay);
+		this.thread = new Thread(this::run, "AsyncFlusher-"+Integer.toHexString(System.identityHashCode(this)));
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/**
+	 * Requests the area to be flushed.
+	 *
+	 * @param pos
+	 * 	position of area.
+	 * @param length
+	 * 	length of area.
+	 *
+	 * @return
+	 * 	future completed once the area is written to the underlying storage.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 * 	if the area exceeds the buffer, checked here so invalid request cannot fail the others in its batch.
+	 */
+	public CompletableFuture<Void> flush(long pos, long length)
+	{
+		if ((pos|length|(pos+length)|(buffer.size()-length-pos)) < 0) {
+			throw new IndexOutOfBoundsException("Invalid range: pos="+pos+" length="+length+" size="+buffer.size());
+		}
+		Request request = new Request(pos, length, System.nanoTime());
+		synchronized (lock) {
+			if (closed) {
+				throw new IllegalStateException("Flusher already closed");
+			}
+			pending.add(request);
+			if (pending.size() == 1) {
+				lock.notifyAll();
+			}
+		}
+		return request.future;
+	}
+
+	/**
+	 * Gets number of executed force operations, after merging the ranges.
+	 *
+	 * @return
+	 * 	number of force operations.
+	 */
+	public long getForceCount()
+	{
+		return forceCount.get();
+	}
+
+	/**
+	 * Gets number of completed flush requests.
+	 *
+	 * @return
+	 * 	number of completed requests.
+	 */
+	public long getCompletedCount()
+	{
+		return completedCount.get();
+	}
+
+	/**
+	 * Gets number of bytes forced, after merging the ranges.
+	 *
+	 * @return
+	 * 	number of forced bytes.
+	 */
+	public long getForcedBytes()
+	{
+		return forcedBytes.get();
+	}
+
+	/**
+	 * Flushes pending requests and stops the background thread. Does not close the buffer.
+	 */
+	@Override
+	public void close()
+	{
+		synchronized (lock) {
+			closed = true;
+			lock.notifyAll();
+		}
+		try {
+			thread.join();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void run()
+	{
+		for (;;) {
+			List<Request> batch;
+			synchronized (lock) {
+				try {
+					while (pending.isEmpty()) {
+						if (closed) {
+							return;
+						}
+						lock.wait();
+					}
+					long deadline = pending.get(0).time+maxDelayNanos;
+					for (long remaining; !closed && (remaining = deadline-System.nanoTime()) > 0; ) {
+						TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+					}
+				}
+				catch (InterruptedException e) {
+					closed = true;
+				}
+				batch = pending;
+				pending = new ArrayList<>();
+			}
+			process(batch);
+		}
+	}
+
+	private void process(List<Request> batch)
+	{
+		try {
+			List<Request> sorted = new ArrayList<>(batch);
+			sorted.sort(Comparator.comparingLong((Request r) -> r.pos));
+			long start = sorted.get(0).pos, end = start;
+			for (Request request: sorted) {
+				if (request.pos > end) {
+					force(start, end);
+					start = request.pos;
+				}
+				end = Math.max(end, request.pos+request.length);
+			}
+			force(start, end);
+		}
+		catch (Throwable ex) {
+			for (Request request: batch) {
+				request.future.completeExceptionally(ex);
+			}
+			return;
+		}
+		completedCount.addAndGet(batch.size());
+		for (Request request: batch) {
+			request.future.complete(null);
+		}
+	}
+
+	private void force(long start, long end)
+	{
+		if (end > start) {
+			buffer.force(start, end-start);
+			forceCount.incrementAndGet();
+			forcedBytes.addAndGet(end-start);
+		}
+	}
+
+	private static class Request
+	{
+		public Request(long pos, long length, long time)
+		{
+			this.pos = pos;
+			this.length = length;
+			this.time = time;
+		}
+
+		final long pos;
+
+		final long length;
+
+		final long time;
+
+		final CompletableFuture<Void> future = new CompletableFuture<>();
+	}
+
+	private final FlatBuffer buffer;
+
+	private final long maxDelayNanos;
+
+	private final Thread thread;
+
+	private final Object lock = new Object();
+
+	private List<Request> pending = new ArrayList<>();
+
+	private boolean closed;
+
+	private final AtomicLong forceCount = new AtomicLong();
+
+	private final AtomicLong completedCount = new AtomicLong();
+
+	private final AtomicLong forcedBytes = new AtomicLong();
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2015 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * {@link AsyncFlatChannel} executing the operations of underlying {@link FlatChannel} on bounded thread pool.
+ *
+ * <p/>Read batches are sorted by position and adjacent or overlapping requests are coalesced into single read of up
+ * to maxCoalesceLength bytes, each coalesced range is read by separate task. Write batches are executed by single
+ * task in the given order, consecutive adjacent requests are gathered into single write.
+ */
+public class BatchingFlatChannel implements AsyncFlatChannel
+{
+	/**
+	 * Creates channel with own thread pool.
+	 *
+	 * @param channel
+	 * 	underlying channel.
+	 * @param threads
+	 * 	number of I/O threads.
+	 * @param maxCoalesceLength
+	 * 	maximum length of coalesced read or write.
+	 */
+	public BatchingFlatChannel(FlatChannel channel, int threads, int maxCoalesceLength)
+	{
+		if (threads <= 0)
+			throw new IllegalArgumentException("threads must be positive: "+threads);
+		this.channel = channel;
+		this.maxCoalesceLength = maxCoalesceLength;
+		AtomicInteger counter = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(threads, (Runnable r) -> {
+			Thread thread = new Thread(r, "BatchingFlatChannel-"+Integer.toHexString(System.identityHashCode(this))+"-"+counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@Override
+	public CompletableFuture<Integer> read(ByteBuffer buffer, long position)
+	{
+		return readBatch(Collections.singletonList(new Request(position, buffer))).get(0);
+	}
+
+	@Override
+	public CompletableFuture<Integer> write(ByteBuffer buffer, long position)
+	{
+		return writeBatch(Collections.singletonList(new Request(position, buffer))).get(0);
+	}
+
+	@Override
+	public List<CompletableFuture<Integer>> readBatch(List<Request> requests)
+	{
+		List<Pending> pending = new ArrayList<>(requests.size());
+		for (Request request: requests) {
+			pending.add(new Pending(request));
+		}
+		requestCount.addAndGet(requests.size());
+		List<Pending> sorted = new ArrayList<>(pending);
+		sorted.sort(Comparator.comparingLong((Pending p) -> p.position));
+		for (int i = 0; i < sorted.size(); ) {
+			Pending first = sorted.get(i);
+			long start = first.position, end = start+first.length;
+			int j = i+1;
+			for (; j < sorted.size(); ++j) {
+				Pending next = sorted.get(j);
+				long nextEnd = Math.max(end, next.position+next.length);
+				if (next.position > end || nextEnd-start > maxCoalesceLength)
+					break;
+				end = nextEnd;
+			}
+			List<Pending> group = sorted.subList(i, j);
+			long groupStart = start, groupEnd = end;
+			executor.execute(() -> readGroup(group, groupStart, groupEnd));
+			i = j;
+		}
+		return futures(pending);
+	}
+
+	@Override
+	public List<CompletableFuture<Integer>> writeBatch(List<Request> requests)
+	{
+		List<Pending> pending = new ArrayList<>(requests.size());
+		for (Request request: requests) {
+			pending.add(new Pending(request));
+		}
+		requestCount.addAndGet(requests.size());
+		executor.execute(() -> {
+			for (int i = 0; i < pending.size(); ) {
+				long start = pending.get(i).position, end = start+pending.get(i).length;
+				int j = i+1;
+				for (; j < pending.size(); ++j) {
+					Pending next = pending.get(j);
+					if (next.position != end || end+next.length-start > maxCoalesceLength)
+						break;
+					end += next.length;
+				}
+				writeGroup(pending.subList(i, j), start, end);
+				i = j;
+			}
+		});
+		return futures(pending);
+	}
+
+	/**
+	 * Gets number of submitted requests.
+	 *
+	 * @return
+	 * 	number of requests.
+	 */
+	public long getRequestCount()
+	{
+		return requestCount.get();
+	}
+
+	/**
+	 * Gets number of operations executed on the underlying channel, after coalescing.
+	 *
+	 * @return
+	 * 	number of underlying operations.
+	 */
+	public long getOperationCount()
+	{
+		return operationCount.get();
+	}
+
+	@Override
+	public void close()
+	{
+		executor.shutdown();
+		try {
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void readGroup(List<Pending> group, long start, long end)
+	{
+		try {
+			if (group.size() == 1) {
+				Pending single = group.get(0);
+				single.future.complete(readFully(single.buffer, single.position));
+				return;
+			}
+			ByteBuffer data = ByteBuffer.allocate((int) (end-start));
+			int read = Math.max(readFully(data, start), 0);
+			for (Pending request: group) {
+				int offset = (int) (request.position-start);
+				int count = Math.min(request.length, read-offset);
+				if (count <= 0) {
+					request.future.complete(request.length == 0 ? 0 : -1);
+					continue;
+				}
+				ByteBuffer slice = data.duplicate();
+				slice.limit(offset+count);
+				slice.position(offset);
+				request.buffer.put(slice);
+				request.future.complete(count);
+			}
+		}
+		catch (Throwable ex) {
+			for (Pending request: group) {
+				request.future.completeExceptionally(ex);
+			}
+		}
+	}
+
+	private void writeGroup(List<Pending> group, long start, long end)
+	{
+		try {
+			if (group.size() == 1) {
+				Pending single = group.get(0);
+				single.future.complete(writeFully(single.buffer, single.position));
+				return;
+			}
+			ByteBuffer data = ByteBuffer.allocate((int) (end-start));
+			for (Pending request: group) {
+				data.put(request.buffer);
+			}
+			data.flip();
+			writeFully(data, start);
+			for (Pending request: group) {
+				request.future.complete(request.length);
+			}
+		}
+		catch (Throwable ex) {
+			for (Pending request: group) {
+				request.future.completeExceptionally(ex);
+			}
+		}
+	}
+
+	private int readFully(ByteBuffer buffer, long position) throws IOException
+	{
+		int total = 0;
+		while (buffer.hasRemaining()) {
+			operationCount.incrementAndGet();
+			int read = channel.read(buffer, position+total);
+			if (read < 0)
+				return total == 0 ? -1 : total;
+			total += read;
+		}
+		return total;
+	}
+
+	private int writeFully(ByteBuffer buffer, long position) throws IOException
+	{
+		int total = 0;
+		while (buffer.hasRemaining()) {
+			operationCount.incrementAndGet();
+			total += channel.write(buffer, position+total);
+		}
+		return total;
+	}
+
+	private static List<CompletableFuture<Integer>> futures(List<Pending> pending)
+	{
+		List<CompletableFuture<Integer>> futures = new ArrayList<>(pending.size());
+		for (Pending request: pending) {
+			futures.add(request.future);
+		}
+		return futures;
+	}
+
+	private static class Pending
+	{
+		Pending(Request request)
+		{
+			this.position = request.getPosition();
+			this.buffer = request.getBuffer();
+			this.length = buffer.remaining();
+		}
+
+		final long position;
+
+		final ByteBuffer buffer;
+
+		final int length;
+
+		final CompletableFuture<Integer> future = new CompletableFuture<>();
+	}
+
+	private final FlatChannel channel;
+
+	private final int maxCoalesceLength;
+
+	private final ExecutorService executor;
+
+	private final AtomicLong requestCount = new AtomicLong();
+
+	private final AtomicLong operationCount = new AtomicLong();
+}
@@ -0,0 +1,441 @@
+/*
+ * Copyright 2015 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Implementation of {@link FlatBuffer} concatenating ordered list of segment buffers into single address space.
+ *
+ * <p/>The segment is resolved by division when all segments but the last have the same size, by binary search
+ * otherwise. Primitive values straddling the boundary of segments are assembled byte by byte, bulk operations are
+ * split per segment.
+ *
+ * <p/>Segments can be added and removed at the tail without rebuilding the existing structure. The readers see
+ * consistent snapshot of segments, modifications are serialized. The segments must not change their size while
+ * being part of the composite. Closing the composite closes all its segments.
+ */
+public class CompositeFlatBuffer extends AbstractFlatBuffer
+{
+	/**
+	 * Creates empty composite buffer.
+	 *
+	 * @param byteOrder
+	 * 	byte order of the buffer, all segments must have the same.
+	 */
+	public CompositeFlatBuffer(ByteOrder byteOrder)
+	{
+		this.byteOrder = byteOrder;
+		this.state = new State(new FlatBuffer[INITIAL_CAPACITY], new long[INITIAL_CAPACITY+1], 0, NONE);
+	}
+
+	/**
+	 * Creates composite buffer from segments.
+	 *
+	 * @param segments
+	 * 	ordered list of segments, byte order is taken from the first segment.
+	 */
+	public CompositeFlatBuffer(List<? extends FlatBuffer> segments)
+	{
+		this(segments.isEmpty() ? ByteOrder.nativeOrder() : segments.get(0).getByteOrder());
+		for (FlatBuffer segment: segments) {
+			addSegment(segment);
+		}
+	}
+
+	/**
+	 * Appends segment to the end of buffer.
+	 *
+	 * @param segment
+	 * 	segment to append, must not be empty and must have the same byte order as this buffer.
+	 */
+	public synchronized void addSegment(FlatBuffer segment)
+	{
+		long length = segment.size();
+		if (length <= 0) {
+			throw new IllegalArgumentException("Segment must not be empty");
+		}
+		if (segment.getByteOrder() != byteOrder) {
+			throw new IllegalArgumentException("Segment byte order "+segment.getByteOrder()+" differs from "+byteOrder);
+		}
+		State current = state;
+		int count = current.count;
+		FlatBuffer[] segments = current.segments;
+		long[] starts = current.starts;
+		if (count == segments.length || count < highWater) {
+			// never overwrite slots possibly still visible to readers of older state
+			segments = Arrays.copyOf(segments, Math.max(segments.length, count*2));
+			starts = Arrays.copyOf(starts, segments.length+1);
+		}
+		segments[count] = segment;
+		starts[count+1] = starts[count]+length;
+		int firstIrregular = current.firstIrregular;
+		if (firstIrregular == NONE && count > 0 && length != starts[1]) {
+			firstIrregular = count;
+		}
+		state = new State(segments, starts, count+1, firstIrregular);
+		highWater = count+1;
+	}
+
+	/**
+	 * Removes the last segment. The segment is not closed.
+	 *
+	 * @return
+	 * 	removed segment.
+	 */
+	public synchronized FlatBuffer removeLastSegment()
+	{
+		State current = state;
+		int count = current.count;
+		if (count == 0) {
+			throw new IllegalStateException("No segment to remove");
+		}
+		FlatBuffer removed = current.segments[count-1];
+		state = new State(current.segments, current.starts, count-1,
+				current.firstIrregular == count-1 ? NONE : current.firstIrregular);
+		return removed;
+	}
+
+	/**
+	 * Gets number of segments.
+	 *
+	 * @return
+	 * 	number of segments.
+	 */
+	public int getSegmentCount()
+	{
+		return state.count;
+	}
+
+	@Override
+	public void close()
+	{
+		State current = state;
+		for (int i = 0; i < current.count; ++i) {
+			current.segments[i].close();
+		}
+	}
+
+	@Override
+	public ByteOrder getByteOrder()
+	{
+		return byteOrder;
+	}
+
+	@Override
+	public long size()
+	{
+		State current = state;
+		return current.starts[current.count];
+	}
+
+	@Override
+	public byte getByte(long pos)
+	{
+		State current = state;
+		int i = current.find(pos, 1);
+		return current.segments[i].getByte(pos-current.starts[i]);
+	}
+
+	@Override
+	public short getShort(long pos)
+	{
+		State current = state;
+		int i = current.find(pos, 2);
+		if (pos+2 <= current.starts[i+1])
+			return current.segments[i].getShort(pos-current.starts[i]);
+		return (short) getStraddling(pos, 2);
+	}
+
+	@Override
+	public int getInt(long pos)
+	{
+		State current = state;
+		int i = current.find(pos, 4);
+		if (pos+4 <= current.starts[i+1])
+			return current.segments[i].getInt(pos-current.starts[i]);
+		return (int) getStraddling(pos, 4);
+	}
+
+	@Override
+	public long getLong(long pos)
+	{
+		State current = state;
+		int i = current.find(pos, 8);
+		if (pos+8 <= current.starts[i+1])
+			return current.segments[i].getLong(pos-current.starts[i]);
+		return getStraddling(pos, 8);
+	}
+
+	@Override
+	public void putByte(long pos, byte val)
+	{
+		State current = state;
+		int i = current.find(pos, 1);
+		current.segments[i].putByte(pos-current.starts[i], val);
+	}
+
+	@Override
+	public void putShort(long pos, short val)
+	{
+		State current = state;
+		int i = current.find(pos, 2);
+		if (pos+2 <= current.starts[i+1])
+			current.segments[i].putShort(pos-current.starts[i], val);
+		else
+			putStraddling(pos, 2, val);
+	}
+
+	@Override
+	public void putInt(long pos, int val)
+	{
+		State current = state;
+		int i = current.find(pos, 4);
+		if (pos+4 <= current.starts[i+1])
+			current.segments[i].putInt(pos-current.starts[i], val);
+		else
+			putStraddling(pos, 4, val);
+	}
+
+	@Override
+	public void putLong(long pos, long val)
+	{
+		State current = state;
+		int i = current.find(pos, 8);
+		if (pos+8 <= current.starts[i+1])
+			current.segments[i].putLong(pos-current.starts[i], val);
+		else
+			putStraddling(pos, 8, val);
+	}
+
+	@Override
+	public void getBytes(long pos, byte[] data, int offset, int length)
+	{
+		checkArrayBounds(data, offset, length);
+		State current = state;
+		for (int i = current.find(pos, length), done = 0; done < length; ++i) {
+			int part = (int) Math.min(length-done, current.starts[i+1]-pos-done);
+			current.segments[i].getBytes(pos+done-current.starts[i], data, offset+done, part);
+			done += part;
+		}
+	}
+
+	@Override
+	public void putBytes(long pos, byte[] data, int offset, int length)
+	{
+		checkArrayBounds(data, offset, length);
+		State current = state;
+		for (int i = current.find(pos, length), done = 0; done < length; ++i) {
+			int part = (int) Math.min(length-done, current.starts[i+1]-pos-done);
+			current.segments[i].putBytes(pos+done-current.starts[i], data, offset+done, part);
+			done += part;
+		}
+	}
+
+	@Override
+	public void copyTo(long pos, FlatBuffer target, long targetPos, long length)
+	{
+		if (target == this) {
+			super.copyTo(pos, target, targetPos, length);
+			return;
+		}
+		State current = state;
+		long done = 0;
+		for (int i = current.find(pos, length); done < length; ++i) {
+			long part = Math.min(length-done, current.starts[i+1]-pos-done);
+			current.segments[i].copyTo(pos+done-current.starts[i], target, targetPos+done, part);
+			done += part;
+		}
+	}
+
+	@Override
+	public long transferTo(long pos, long length, FlatChannel channel, long channelPos) throws IOException
+	{
+		State current = state;
+		long done = 0;
+		for (int i = current.find(pos, length); done < length; ++i) {
+			long part = Math.min(length-done, current.starts[i+1]-pos-done);
+			current.segments[i].transferTo(pos+done-current.starts[i], part, channel, channelPos+done);
+			done += part;
+		}
+		return length;
+	}
+
+	@Override
+	public void force(long pos, long length)
+	{
+		State current = state;
+		long done = 0;
+		for (int i = current.find(pos, length); done < length; ++i) {
+			long part = Math.min(length-done, current.starts[i+1]-pos-done);
+			current.segments[i].force(pos+done-current.starts[i], part);
+			done += part;
+		}
+	}
+
+	@Override
+	public boolean advise(long pos, long length, AccessHint hint)
+	{
+		State current = state;
+		boolean applied = false;
+		long done = 0;
+		for (int i = current.find(pos, length); done < length; ++i) {
+			long part = Math.min(length-done, current.starts[i+1]-pos-done);
+			applied |= current.segments[i].advise(pos+done-current.starts[i], part, hint);
+			done += part;
+		}
+		return applied;
+	}
+
+	@Override
+	public long mismatch(long pos, FlatBuffer other, long otherPos, long length)
+	{
+		State current = state;
+		long done = 0;
+		for (int i = current.find(pos, length); done < length; ++i) {
+			long part = Math.min(length-done, current.starts[i+1]-pos-done);
+			long result = current.segments[i].mismatch(pos+done-current.starts[i], other, otherPos+done, part);
+			if (result >= 0)
+				return done+result;
+			done += part;
+		}
+		return -1;
+	}
+
+	@Override
+	protected long mismatchMemory(long pos, Object base, long offset, long length)
+	{
+		State current = state;
+		long done = 0;
+		for (int i = current.find(pos, length); done < length; ++i) {
+			long part = Math.min(length-done, current.starts[i+1]-pos-done);
+			long address = memoryAddressOf(current.segments[i], pos+done-current.starts[i], part);
+			long result = address != 0 ?
+					UnsafeMemory.mismatch(null, address, base, offset+done, part) :
+					super.mismatchMemory(pos+done, base, offset+done, part);
+			if (result >= 0)
+				return done+result;
+			done += part;
+		}
+		return -1;
+	}
+
+	/**
+	 * Gets memory address of the area, if it fits into single segment backed by native memory.
+	 */
+	@Override
+	protected long getMemoryAddress(long pos, long length)
+	{
+		State current = state;
+		int i = current.find(pos, length);
+		if (i < 0 || pos+length > current.starts[i+1])
+			return 0;
+		return memoryAddressOf(current.segments[i], pos-current.starts[i], length);
+	}
+
+	private long getStraddling(long pos, int length)
+	{
+		long value = 0;
+		if (byteOrder == ByteOrder.BIG_ENDIAN) {
+			for (int i = 0; i < length; ++i)
+				value = (value<<8)|(getByte(pos+i)&0xff);
+		}
+		else {
+			for (int i = 0; i < length; ++i)
+				value |= (long) (getByte(pos+i)&0xff)<<(i*8);
+		}
+		return value;
+	}
+
+	private void putStraddling(long pos, int length, long value)
+	{
+		for (int i = 0; i < length; ++i) {
+			int shift = byteOrder == ByteOrder.BIG_ENDIAN ? (length-1-i)*8 : i*8;
+			putByte(pos+i, (byte) (value>>>shift));
+		}
+	}
+
+	private static void checkArrayBounds(byte[] data, int offset, int length)
+	{
+		if ((offset|length|(offset+length)|(data.length-length-offset)) < 0) {
+			throw new IndexOutOfBoundsException("Range out of array bounds: offset="+offset+" length="+length);
+		}
+	}
+
+	/**
+	 * Immutable snapshot of segments. The arrays may be shared with newer snapshots which only append beyond count.
+	 */
+	private static final class State
+	{
+		State(FlatBuffer[] segments, long[] starts, int count, int firstIrregular)
+		{
+			this.segments = segments;
+			this.starts = starts;
+			this.count = count;
+			this.firstIrregular = firstIrregular;
+			this.fixedSize = count > 0 && firstIrregular >= count-1 ? starts[1] : 0;
+		}
+
+		/**
+		 * Finds segment containing position, checking the bounds of the area.
+		 */
+		int find(long pos, long length)
+		{
+			long size = starts[count];
+			if ((pos|length|(pos+length)|(size-length-pos)) < 0) {
+				throw new IndexOutOfBoundsException("Range out of bounds: pos="+pos+" length="+length+" size="+size);
+			}
+			if (pos == size) {
+				// empty area at the end
+				return count-1;
+			}
+			if (fixedSize != 0) {
+				return (int) Math.min(pos/fixedSize, count-1);
+			}
+			int i = Arrays.binarySearch(starts, 0, count, pos);
+			return i >= 0 ? i : -i-2;
+		}
+
+		final FlatBuffer[] segments;
+
+		/** Start positions of segments, the entry at count is the total size. */
+		final long[] starts;
+
+		final int count;
+
+		/** Index of first segment with size different from the first segment, {@link #NONE} if there is none. */
+		final int firstIrregular;
+
+		/** Size of all segments but the last, 0 if they differ. */
+		final long fixedSize;
+	}
+
+	private final ByteOrder byteOrder;
+
+	private volatile State state;
+
+	/** Highest number of segments ever published in current arrays. */
+	private int highWater;
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private static final int NONE = Integer.MAX_VALUE;
+}
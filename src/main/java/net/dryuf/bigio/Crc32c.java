@@ -0,0 +1,366 @@
+/*
+ * Copyright 2015 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.Checksum;
+
+
+/**
+ * CRC32C (Castagnoli) checksum, computed directly over {@link FlatBuffer} areas.
+ *
+ * <p/>On Java 9+ the computation is delegated to {@code java.util.zip.CRC32C}, which is intrinsified, passing
+ * direct {@link ByteBuffer} views of native memory so no data are copied. On Java 8 the checksum is computed by
+ * slicing-by-8 table algorithm, still reading the native memory directly.
+ *
+ * <p/>The checksums of adjacent areas can be combined by {@link #combine(long, long, long)}, which allows computing
+ * large areas in parallel, see {@link #compute(ParallelScanner, FlatBuffer, long, long)}.
+ */
+public class Crc32c implements Checksum
+{
+	/**
+	 * Creates checksum.
+	 */
+	public Crc32c()
+	{
+		this(newIntrinsic(), UnsafeMemory.canCreateDirectByteBuffer());
+	}
+
+	/**
+	 * Creates checksum with explicit engine.
+	 *
+	 * @param intrinsic
+	 * 	JDK implementation to delegate to, null to compute by slicing-by-8.
+	 * @param directViews
+	 * 	whether native memory can be passed to intrinsic as direct {@link ByteBuffer} views.
+	 */
+	Crc32c(Checksum intrinsic, boolean directViews)
+	{
+		this.intrinsic = intrinsic;
+		this.directViews = directViews;
+		reset();
+	}
+
+	/**
+	 * Computes checksum of area.
+	 *
+	 * @param buffer
+	 * 	buffer containing the area.
+	 * @param pos
+	 * 	position of area.
+	 * @param length
+	 * 	length of area.
+	 *
+	 * @return
+	 * 	checksum of area.
+	 */
+	public static long compute(FlatBuffer buffer, long pos, long length)
+	{
+		Crc32c crc = new Crc32c();
+		crc.update(buffer, pos, length);
+		return crc.getValue();
+	}
+
+	/**
+	 * Computes checksum of area in parallel, combining the checksums of chunks.
+	 *
+	 * @param scanner
+	 * 	scanner executing the chunks.
+	 * @param buffer
+	 * 	buffer containing the area.
+	 * @param pos
+	 * 	position of area.
+	 * @param length
+	 * 	length of area.
+	 *
+	 * @return
+	 * 	checksum of area.
+	 */
+	public static long compute(ParallelScanner scanner, FlatBuffer buffer, long pos, long length)
+	{
+		return scanner.scan(buffer, pos, length,
+				(FlatBuffer b, long chunkPos, long chunkLength) -> new long[]{ compute(b, chunkPos, chunkLength), chunkLength },
+				(long[] left, long[] right) -> new long[]{ combine(left[0], right[0], right[1]), left[1]+right[1] }
+		)[0];
+	}
+
+	/**
+	 * Combines checksums of two adjacent areas.
+	 *
+	 * @param crc1
+	 * 	checksum of the first area.
+	 * @param crc2
+	 * 	checksum of the second area.
+	 * @param length2
+	 * 	length of the second area.
+	 *
+	 * @return
+	 * 	checksum of concatenated areas.
+	 */
+	public static long combine(long crc1, long crc2, long length2)
+	{
+		if (length2 <= 0) {
+			return crc1;
+		}
+		int[] even = new int[32];
+		int[] odd = new int[32];
+		// operator for one zero bit
+		odd[0] = POLY;
+		for (int n = 1, row = 1; n < 32; ++n, row <<= 1) {
+			odd[n] = row;
+		}
+		// operators for two and four zero bits
+		gf2MatrixSquare(even, odd);
+		gf2MatrixSquare(odd, even);
+		int crc = (int) crc1;
+		for (;;) {
+			gf2MatrixSquare(even, odd);
+			if ((length2&1) != 0) {
+				crc = gf2MatrixTimes(even, crc);
+			}
+			if ((length2 >>>= 1) == 0) {
+				break;
+			}
+			gf2MatrixSquare(odd, even);
+			if ((length2&1) != 0) {
+				crc = gf2MatrixTimes(odd, crc);
+			}
+			if ((length2 >>>= 1) == 0) {
+				break;
+			}
+		}
+		return (crc^(int) crc2)&0xffffffffL;
+	}
+
+	/**
+	 * Updates checksum with area of buffer, reading the native memory directly if possible. When the JDK
+	 * implementation is used but direct views cannot be created, the data are passed to it in heap chunks.
+	 *
+	 * @param buffer
+	 * 	buffer containing the area.
+	 * @param pos
+	 * 	position of area.
+	 * @param length
+	 * 	length of area.
+	 */
+	public void update(FlatBuffer buffer, long pos, long length)
+	{
+		byte[] chunk = null;
+		for (long done = 0; done < length; ) {
+			int current = (int) Math.min(length-done, UnsafeMemory.MAX_BYTE_BUFFER_LENGTH);
+			long address = AbstractFlatBuffer.memoryAddressOf(buffer, pos+done, current);
+			if (address != 0 && intrinsic == null) {
+				crc = updateMemory(crc, null, address, current);
+			}
+			else if (address != 0 && directViews) {
+				update(UnsafeMemory.newDirectByteBuffer(address, current));
+			}
+			else {
+				if (chunk == null) {
+					chunk = new byte[(int) Math.min(length, COPY_CHUNK_SIZE)];
+				}
+				current = Math.min(current, chunk.length);
+				buffer.getBytes(pos+done, chunk, 0, current);
+				update(chunk, 0, current);
+			}
+			done += current;
+		}
+	}
+
+	/**
+	 * Updates checksum with remaining content of buffer, moving its position to limit.
+	 *
+	 * @param buffer
+	 * 	buffer to process.
+	 */
+	public void update(ByteBuffer buffer)
+	{
+		if (intrinsic != null) {
+			try {
+				UPDATE_BYTE_BUFFER.invokeExact(intrinsic, buffer);
+			}
+			catch (RuntimeException|Error ex) {
+				throw ex;
+			}
+			catch (Throwable ex) {
+				throw new RuntimeException(ex);
+			}
+		}
+		else if (buffer.hasArray()) {
+			update(buffer.array(), buffer.arrayOffset()+buffer.position(), buffer.remaining());
+			buffer.position(buffer.limit());
+		}
+		else if (buffer.isDirect()) {
+			crc = updateMemory(crc, null, UnsafeMemory.getByteBufferAddress(buffer)+buffer.position(), buffer.remaining());
+			buffer.position(buffer.limit());
+		}
+		else {
+			while (buffer.hasRemaining()) {
+				update(buffer.get());
+			}
+		}
+	}
+
+	@Override
+	public void update(int b)
+	{
+		if (intrinsic != null) {
+			intrinsic.update(b);
+		}
+		else {
+			crc = (crc>>>8)^TABLES[0][(crc^b)&0xff];
+		}
+	}
+
+	@Override
+	public void update(byte[] data, int offset, int length)
+	{
+		if ((offset|length|(offset+length)|(data.length-length-offset)) < 0) {
+			throw new IndexOutOfBoundsException("Range out of array bounds: offset="+offset+" length="+length);
+		}
+		if (intrinsic != null) {
+			intrinsic.update(data, offset, length);
+		}
+		else {
+			crc = updateMemory(crc, data, UnsafeMemory.BYTE_ARRAY_OFFSET+offset, length);
+		}
+	}
+
+	@Override
+	public long getValue()
+	{
+		return intrinsic != null ? intrinsic.getValue() : ~crc&0xffffffffL;
+	}
+
+	@Override
+	public void reset()
+	{
+		if (intrinsic != null) {
+			intrinsic.reset();
+		}
+		crc = -1;
+	}
+
+	/**
+	 * Updates checksum register by slicing-by-8 algorithm.
+	 */
+	private static int updateMemory(int crc, Object base, long offset, long length)
+	{
+		int[] t0 = TABLES[0], t1 = TABLES[1], t2 = TABLES[2], t3 = TABLES[3];
+		int[] t4 = TABLES[4], t5 = TABLES[5], t6 = TABLES[6], t7 = TABLES[7];
+		long i = 0;
+		for (long end = length-7; i < end; i += 8) {
+			long word = UnsafeMemory.unsafe.getLong(base, offset+i);
+			if (UnsafeMemory.NATIVE_ORDER != ByteOrder.LITTLE_ENDIAN) {
+				word = Long.reverseBytes(word);
+			}
+			int lo = crc^(int) word, hi = (int) (word>>>32);
+			crc = t7[lo&0xff]^t6[(lo>>>8)&0xff]^t5[(lo>>>16)&0xff]^t4[lo>>>24]^
+					t3[hi&0xff]^t2[(hi>>>8)&0xff]^t1[(hi>>>16)&0xff]^t0[hi>>>24];
+		}
+		for (; i < length; ++i) {
+			crc = (crc>>>8)^t0[(crc^UnsafeMemory.unsafe.getByte(base, offset+i))&0xff];
+		}
+		return crc;
+	}
+
+	private static int gf2MatrixTimes(int[] matrix, int vector)
+	{
+		int sum = 0;
+		for (int i = 0; vector != 0; ++i, vector >>>= 1) {
+			if ((vector&1) != 0) {
+				sum ^= matrix[i];
+			}
+		}
+		return sum;
+	}
+
+	private static void gf2MatrixSquare(int[] square, int[] matrix)
+	{
+		for (int n = 0; n < 32; ++n) {
+			square[n] = gf2MatrixTimes(matrix, matrix[n]);
+		}
+	}
+
+	private static Checksum newIntrinsic()
+	{
+		if (INTRINSIC_CLASS == null) {
+			return null;
+		}
+		try {
+			return (Checksum) INTRINSIC_CLASS.newInstance();
+		}
+		catch (ReflectiveOperationException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/** JDK implementation, null on Java 8. */
+	private final Checksum intrinsic;
+
+	/** Whether native memory can be passed to intrinsic as direct views. */
+	private final boolean directViews;
+
+	/** Checksum register, used when the JDK implementation is not available. */
+	private int crc;
+
+	/** Reversed Castagnoli polynomial. */
+	private static final int POLY = 0x82f63b78;
+
+	private static final int COPY_CHUNK_SIZE = 64*1024;
+
+	private static final int[][] TABLES = new int[8][256];
+
+	private static final Class<?> INTRINSIC_CLASS;
+
+	private static final MethodHandle UPDATE_BYTE_BUFFER;
+
+	static
+	{
+		for (int n = 0; n < 256; ++n) {
+			int c = n;
+			for (int k = 0; k < 8; ++k) {
+				c = (c&1) != 0 ? (c>>>1)^POLY : c>>>1;
+			}
+			TABLES[0][n] = c;
+		}
+		for (int n = 0; n < 256; ++n) {
+			for (int k = 1; k < 8; ++k) {
+				TABLES[k][n] = (TABLES[k-1][n]>>>8)^TABLES[0][TABLES[k-1][n]&0xff];
+			}
+		}
+
+		Class<?> intrinsicClass;
+		MethodHandle updateByteBuffer;
+		try {
+			intrinsicClass = Class.forName("java.util.zip.CRC32C");
+			updateByteBuffer = MethodHandles.publicLookup()
+					.findVirtual(intrinsicClass, "update", MethodType.methodType(void.class, ByteBuffer.class))
+					.asType(MethodType.methodType(void.class, Checksum.class, ByteBuffer.class));
+		}
+		catch (ReflectiveOperationException e) {
+			intrinsicClass = null;
+			updateByteBuffer = null;
+		}
+		INTRINSIC_CLASS = intrinsicClass;
+		UPDATE_BYTE_BUFFER = updateByteBuffer;
+	}
+}
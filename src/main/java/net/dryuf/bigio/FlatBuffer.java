@@ -16,6 +16,7 @@
 
 package net.dryuf.bigio;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
@@ -42,6 +43,16 @@ public abstract class FlatBuffer implements AutoCloseable, Comparable<FlatBuffer
 
 	public abstract long getLong(long pos);
 
+	public abstract float getFloat(long pos);
+
+	public abstract double getDouble(long pos);
+
+	public abstract int getUnsignedByte(long pos);
+
+	public abstract int getUnsignedShort(long pos);
+
+	public abstract long getUnsignedInt(long pos);
+
 	public abstract void getBytes(long pos, byte[] data);
 
 	public abstract void getBytes(long pos, byte[] data, int offset, int length);
@@ -54,12 +65,267 @@ public abstract class FlatBuffer implements AutoCloseable, Comparable<FlatBuffer
 
 	public abstract void putLong(long pos, long val);
 
+	public abstract void putFloat(long pos, float val);
+
+	public abstract void putDouble(long pos, double val);
+
 	public abstract void putBytes(long pos, byte[] data);
 
 	public abstract void putBytes(long pos, byte[] data, int offset, int length);
 
+	/**
+	 * Reads int value with volatile semantics. The atomic and ordered operations require the buffer to be backed by
+	 * native memory and the position to be aligned to the size of value.
+	 *
+	 * @param pos
+	 * 	position of value.
+	 *
+	 * @return
+	 * 	value read.
+	 *
+	 * @throws UnsupportedOperationException
+	 * 	if the buffer is not backed by native memory.
+	 * @throws IllegalArgumentException
+	 * 	if the address is not aligned.
+	 */
+	public abstract int getIntVolatile(long pos);
+
+	public abstract long getLongVolatile(long pos);
+
+	public abstract void putIntVolatile(long pos, int val);
+
+	public abstract void putLongVolatile(long pos, long val);
+
+	/**
+	 * Reads int value with acquire semantics, subsequent memory accesses are not reordered before this read.
+	 *
+	 * @param pos
+	 * 	position of value.
+	 *
+	 * @return
+	 * 	value read.
+	 */
+	public abstract int getIntAcquire(long pos);
+
+	public abstract long getLongAcquire(long pos);
+
+	/**
+	 * Writes int value with release semantics, preceding memory accesses are not reordered after this write.
+	 *
+	 * @param pos
+	 * 	position of value.
+	 * @param val
+	 * 	value to write.
+	 */
+	public abstract void putIntRelease(long pos, int val);
+
+	public abstract void putLongRelease(long pos, long val);
+
+	/**
+	 * Atomically sets int value if it equals to expected value.
+	 *
+	 * @param pos
+	 * 	position of value.
+	 * @param expected
+	 * 	expected current value.
+	 * @param val
+	 * 	new value.
+	 *
+	 * @return
+	 * 	true if the value was updated.
+	 */
+	public abstract boolean compareAndSetInt(long pos, int expected, int val);
+
+	public abstract boolean compareAndSetLong(long pos, long expected, long val);
+
+	/**
+	 * Atomically adds delta to int value.
+	 *
+	 * @param pos
+	 * 	position of value.
+	 * @param delta
+	 * 	value to add.
+	 *
+	 * @return
+	 * 	previous value.
+	 */
+	public abstract int getAndAddInt(long pos, int delta);
+
+	public abstract long getAndAddLong(long pos, long delta);
+
+	/**
+	 * Checks whether the position is aligned in memory. For buffers backed by native memory the actual address is
+	 * checked, for others the position itself.
+	 *
+	 * @param pos
+	 * 	position in buffer.
+	 * @param alignment
+	 * 	required alignment, power of two.
+	 *
+	 * @return
+	 * 	true if the position is aligned.
+	 */
+	public abstract boolean isAligned(long pos, int alignment);
+
+	/**
+	 * Reads unsigned LEB128 variable length integer.
+	 *
+	 * @param pos
+	 * 	position of encoded value.
+	 *
+	 * @return
+	 * 	decoded value.
+	 *
+	 * @throws IllegalArgumentException
+	 * 	if the encoding exceeds {@link #MAX_VAR_LONG_SIZE} bytes.
+	 */
+	public abstract long getVarLong(long pos);
+
+	/**
+	 * Reads unsigned LEB128 variable length integer and moves the cursor right after it, so the value and its length
+	 * are obtained by single decode without allocation.
+	 *
+	 * @param pos
+	 * 	position of encoded value.
+	 * @param cursor
+	 * 	cursor, its position is set to the end of encoded value.
+	 *
+	 * @return
+	 * 	decoded value.
+	 *
+	 * @throws IllegalArgumentException
+	 * 	if the encoding exceeds {@link #MAX_VAR_LONG_SIZE} bytes.
+	 */
+	public abstract long getVarLong(long pos, FlatCursor cursor);
+
+	/**
+	 * Gets length of LEB128 variable length integer.
+	 *
+	 * @param pos
+	 * 	position of encoded value.
+	 *
+	 * @return
+	 * 	number of bytes occupied by the encoded value.
+	 *
+	 * @throws IllegalArgumentException
+	 * 	if the encoding exceeds {@link #MAX_VAR_LONG_SIZE} bytes.
+	 */
+	public abstract int getVarLongLength(long pos);
+
+	/**
+	 * Writes unsigned LEB128 variable length integer.
+	 *
+	 * @param pos
+	 * 	position to write to.
+	 * @param val
+	 * 	value to encode.
+	 *
+	 * @return
+	 * 	number of bytes written.
+	 */
+	public abstract int putVarLong(long pos, long val);
+
+	/**
+	 * Copies area of this buffer into target buffer. The areas may overlap if the target is the same buffer or its
+	 * sub-buffer, or if both areas are backed by directly addressable memory. Otherwise the source and target must not
+	 * share memory.
+	 *
+	 * @param pos
+	 * 	position in this buffer.
+	 * @param target
+	 * 	target buffer.
+	 * @param targetPos
+	 * 	position in target buffer.
+	 * @param length
+	 * 	length of copied area.
+	 */
+	public abstract void copyTo(long pos, FlatBuffer target, long targetPos, long length);
+
+	/**
+	 * Writes area of this buffer into channel.
+	 *
+	 * @param pos
+	 * 	position in this buffer.
+	 * @param length
+	 * 	length of written area.
+	 * @param channel
+	 * 	target channel.
+	 * @param channelPos
+	 * 	position in target channel.
+	 *
+	 * @return
+	 * 	number of bytes written, always length.
+	 */
+	public abstract long transferTo(long pos, long length, FlatChannel channel, long channelPos) throws IOException;
+
+	/**
+	 * Forces the changes of the area to be written to the underlying storage. Buffers not backed by persistent
+	 * storage do nothing.
+	 *
+	 * @param pos
+	 * 	position of area.
+	 * @param length
+	 * 	length of area.
+	 */
+	public abstract void force(long pos, long length);
+
+	/**
+	 * Forces all the changes to be written to the underlying storage.
+	 */
+	public abstract void force();
+
+	/**
+	 * Advises the expected access pattern of the area. The hints are best effort, depending on implementation and
+	 * on what the platform exposes to Java.
+	 *
+	 * @param pos
+	 * 	position of area.
+	 * @param length
+	 * 	length of area.
+	 * @param hint
+	 * 	access pattern hint.
+	 *
+	 * @return
+	 * 	true if the hint was passed to the system, false if it was ignored.
+	 */
+	public abstract boolean advise(long pos, long length, AccessHint hint);
+
+	/**
+	 * Gets {@link ByteBuffer} view of the area. The view shares the content with this buffer, is in the same byte
+	 * order and becomes invalid once this buffer is closed.
+	 *
+	 * @param pos
+	 * 	position in this buffer.
+	 * @param length
+	 * 	length of the area, up to 2 GB.
+	 *
+	 * @return
+	 * 	view of the area.
+	 *
+	 * @throws UnsupportedOperationException
+	 * 	if the buffer is not backed by directly addressable memory.
+	 */
 	public abstract ByteBuffer getByteBuffer(long pos, long length);
 
+	/**
+	 * Gets {@link ByteBuffer} views of the area, split into chunks of at most chunkSize bytes. The views follow the
+	 * rules of {@link #getByteBuffer(long, long)}.
+	 *
+	 * @param pos
+	 * 	position in this buffer.
+	 * @param length
+	 * 	length of the area.
+	 * @param chunkSize
+	 * 	maximum length of single view.
+	 *
+	 * @return
+	 * 	iterable of subsequent views, covering the whole area.
+	 *
+	 * @throws UnsupportedOperationException
+	 * 	if the buffer is not backed by directly addressable memory.
+	 */
+	public abstract Iterable<ByteBuffer> getByteBuffers(long pos, long length, int chunkSize);
+
 	public abstract FlatBuffer subBuffer(long pos, long length);
 
 	public abstract boolean equalsBytes(long pos, byte[] data, int offset, int length);
@@ -68,6 +334,68 @@ public abstract class FlatBuffer implements AutoCloseable, Comparable<FlatBuffer
 
 	public abstract boolean equalsByteBuffer(long pos, ByteBuffer buffer);
 
+	/**
+	 * Finds first mismatching byte between this and other buffer.
+	 *
+	 * @param pos
+	 * 	position in this buffer.
+	 * @param other
+	 * 	buffer to compare with.
+	 * @param otherPos
+	 * 	position in other buffer.
+	 * @param length
+	 * 	length of compared area.
+	 *
+	 * @return
+	 * 	index of first mismatching byte, relative to pos and otherPos, or -1 if the areas are equal.
+	 */
+	public abstract long mismatch(long pos, FlatBuffer other, long otherPos, long length);
+
 	@Override
 	public abstract int compareTo(FlatBuffer right);
+
+	/**
+	 * Computes size of value encoded as LEB128 variable length integer.
+	 *
+	 * @param val
+	 * 	value to encode.
+	 *
+	 * @return
+	 * 	number of bytes of the encoded value.
+	 */
+	public static int varLongSize(long val)
+	{
+		return (63-Long.numberOfLeadingZeros(val|1))/7+1;
+	}
+
+	/**
+	 * Maps signed value to unsigned, so small negative numbers have short variable length encoding.
+	 *
+	 * @param val
+	 * 	signed value.
+	 *
+	 * @return
+	 * 	zigzag encoded value.
+	 */
+	public static long encodeZigZag(long val)
+	{
+		return (val<<1)^(val>>63);
+	}
+
+	/**
+	 * Maps zigzag encoded value back to signed.
+	 *
+	 * @param val
+	 * 	zigzag encoded value.
+	 *
+	 * @return
+	 * 	signed value.
+	 */
+	public static long decodeZigZag(long val)
+	{
+		return (val>>>1)^-(val&1);
+	}
+
+	/** Maximum length of LEB128 encoded long value. */
+	public static final int MAX_VAR_LONG_SIZE = 10;
 }
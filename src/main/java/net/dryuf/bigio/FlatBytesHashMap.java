@@ -0,0 +1,296 @@
+/*
+ * Copyright 2015 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+
+/**
+ * Open addressing hash map from byte sequence keys to offsets of records in data {@link FlatBuffer}, stored entirely
+ * in {@link FlatBuffer} backed by native memory, so it can index billions of variable length keys without GC cost
+ * and can be reopened from file without rebuilding.
+ *
+ * <p/>The keys are not copied into the table, each record in data buffer starts with the key, stored as variable
+ * length integer length followed by the key bytes (see {@link #putKey(FlatBuffer, long, byte[], int, int)}). The
+ * table is {@link FlatLongHashMap} slot format keyed by XXH64 hash of the key, with the record offset as value.
+ * Entries with colliding hashes are told apart by comparing the keys in data buffer.
+ *
+ * <p/>Resizing, persistence and concurrency follow {@link FlatLongHashMap}. The records of removed entries must stay
+ * unchanged until concurrent readers are finished.
+ */
+public class FlatBytesHashMap implements AutoCloseable
+{
+	/**
+	 * Computes size of buffer for given capacity.
+	 *
+	 * @param capacity
+	 * 	number of slots, power of two.
+	 *
+	 * @return
+	 * 	size of buffer.
+	 */
+	public static long bufferSize(long capacity)
+	{
+		return FlatLongHashMap.bufferSize(capacity);
+	}
+
+	/**
+	 * Writes key at the beginning of record.
+	 *
+	 * @param data
+	 * 	data buffer.
+	 * @param pos
+	 * 	position of record.
+	 * @param key
+	 * 	array containing the key.
+	 * @param offset
+	 * 	offset of key within array.
+	 * @param length
+	 * 	length of key.
+	 *
+	 * @return
+	 * 	number of bytes written.
+	 */
+	public static int putKey(FlatBuffer data, long pos, byte[] key, int offset, int length)
+	{
+		int lengthSize = data.putVarLong(pos, length);
+		data.putBytes(pos+lengthSize, key, offset, length);
+		return lengthSize+length;
+	}
+
+	/**
+	 * Creates new empty map in buffer, using the largest power of two capacity fitting in it.
+	 *
+	 * @param buffer
+	 * 	buffer backed by native memory, the map takes ownership.
+	 * @param data
+	 * 	buffer containing the records, stays owned by caller.
+	 * @param allocator
+	 * 	allocator of resized tables, null if the map cannot grow.
+	 *
+	 * @return
+	 * 	new map.
+	 */
+	public static FlatBytesHashMap create(FlatBuffer buffer, FlatBuffer data, FlatLongHashMap.TableAllocator allocator)
+	{
+		return new FlatBytesHashMap(FlatLongHashMap.Table.initialize(buffer, MAGIC), data, allocator);
+	}
+
+	/**
+	 * Opens map previously stored in buffer.
+	 *
+	 * @param buffer
+	 * 	buffer backed by native memory, the map takes ownership.
+	 * @param data
+	 * 	buffer containing the records, stays owned by caller.
+	 * @param allocator
+	 * 	allocator of resized tables, null if the map cannot grow.
+	 *
+	 * @return
+	 * 	opened map.
+	 *
+	 * @throws IllegalArgumentException
+	 * 	if the buffer does not contain valid map.
+	 */
+	public static FlatBytesHashMap open(FlatBuffer buffer, FlatBuffer data, FlatLongHashMap.TableAllocator allocator)
+	{
+		return new FlatBytesHashMap(FlatLongHashMap.Table.open(buffer, MAGIC), data, allocator);
+	}
+
+	private FlatBytesHashMap(FlatLongHashMap.Table table, FlatBuffer data, FlatLongHashMap.TableAllocator allocator)
+	{
+		this.data = data;
+		this.table = new FlatLongHashMap(table, allocator, MAGIC, this::keysEqual);
+	}
+
+	/**
+	 * Gets offset of record for key.
+	 *
+	 * @param key
+	 * 	searched key.
+	 * @param defaultValue
+	 * 	value returned if the key is missing.
+	 *
+	 * @return
+	 * 	offset of record or defaultValue.
+	 */
+	public long get(byte[] key, long defaultValue)
+	{
+		return get(key, 0, key.length, defaultValue);
+	}
+
+	/**
+	 * Gets offset of record for key.
+	 *
+	 * @param key
+	 * 	array containing the searched key.
+	 * @param offset
+	 * 	offset of key within array.
+	 * @param length
+	 * 	length of key.
+	 * @param defaultValue
+	 * 	value returned if the key is missing.
+	 *
+	 * @return
+	 * 	offset of record or defaultValue.
+	 */
+	public long get(byte[] key, int offset, int length, long defaultValue)
+	{
+		return table.get(hash(key, offset, length), record -> keyEquals(record, key, offset, length), defaultValue);
+	}
+
+	/**
+	 * Checks whether the key is present.
+	 *
+	 * @param key
+	 * 	array containing the searched key.
+	 * @param offset
+	 * 	offset of key within array.
+	 * @param length
+	 * 	length of key.
+	 *
+	 * @return
+	 * 	true if the key is present.
+	 */
+	public boolean containsKey(byte[] key, int offset, int length)
+	{
+		return table.containsKey(hash(key, offset, length), record -> keyEquals(record, key, offset, length));
+	}
+
+	/**
+	 * Puts record, keyed by the key stored at its beginning.
+	 *
+	 * @param record
+	 * 	offset of record in data buffer.
+	 *
+	 * @return
+	 * 	true if the key was inserted, false if the offset of existing key was replaced.
+	 */
+	public boolean put(long record)
+	{
+		long length = data.getVarLong(record);
+		long hash = hash(XxHash64.hash(data, record+data.getVarLongLength(record), length, 0));
+		return table.put(hash, record, other -> keysEqual(record, other));
+	}
+
+	/**
+	 * Removes key.
+	 *
+	 * @param key
+	 * 	array containing the removed key.
+	 * @param offset
+	 * 	offset of key within array.
+	 * @param length
+	 * 	length of key.
+	 *
+	 * @return
+	 * 	true if the key was present.
+	 */
+	public boolean remove(byte[] key, int offset, int length)
+	{
+		return table.remove(hash(key, offset, length), record -> keyEquals(record, key, offset, length));
+	}
+
+	/**
+	 * Gets number of entries.
+	 *
+	 * @return
+	 * 	number of entries.
+	 */
+	public long size()
+	{
+		return table.size();
+	}
+
+	/**
+	 * Gets capacity of current table.
+	 *
+	 * @return
+	 * 	number of slots.
+	 */
+	public long capacity()
+	{
+		return table.capacity();
+	}
+
+	/**
+	 * Finishes pending resize, if any.
+	 */
+	public void finishResize()
+	{
+		table.finishResize();
+	}
+
+	/**
+	 * Finishes pending resize and gets the buffer holding the table, see {@link FlatLongHashMap#getBuffer()}.
+	 *
+	 * @return
+	 * 	buffer of current table.
+	 */
+	public FlatBuffer getBuffer()
+	{
+		return table.getBuffer();
+	}
+
+	/**
+	 * Finishes pending resize and flushes the table to storage. Does not flush the data buffer.
+	 */
+	public void flush()
+	{
+		table.flush();
+	}
+
+	/**
+	 * Finishes pending resize and closes the table buffer. Does not close the data buffer.
+	 */
+	@Override
+	public void close()
+	{
+		table.close();
+	}
+
+	private boolean keyEquals(long record, byte[] key, int offset, int length)
+	{
+		return data.getVarLong(record) == length && data.equalsBytes(record+data.getVarLongLength(record), key, offset, length);
+	}
+
+	private boolean keysEqual(long record, long other)
+	{
+		if (record == other) {
+			return true;
+		}
+		long length = data.getVarLong(record);
+		return data.getVarLong(other) == length && data.equalsBuffer(record+data.getVarLongLength(record), data, other+data.getVarLongLength(other), length);
+	}
+
+	private static long hash(byte[] key, int offset, int length)
+	{
+		return hash(XxHash64.hash(key, offset, length, 0));
+	}
+
+	/**
+	 * Maps the hash to table key, 0 is reserved by the table for special entry.
+	 */
+	private static long hash(long hash)
+	{
+		return hash != 0 ? hash : 1;
+	}
+
+	private final FlatBuffer data;
+
+	private final FlatLongHashMap table;
+
+	private static final long MAGIC = 0x3170614d68734246L;
+}
@@ -20,9 +20,16 @@ import lombok.AllArgsConstructor;
 import lombok.experimental.Delegate;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * {@link FlatChannel} factory.
@@ -46,7 +53,8 @@ public class FlatChannels
 	/**
 	 * Wraps {@link SeekableByteChannel} to {@link FlatChannel}. Note that this uses synchronized lock on the
 	 * underlying channel to achieve atomicity of seek and read/write. In case there is another piece of code which
-	 * does not follow this strategy, this wrapper will not work.
+	 * does not follow this strategy, this wrapper will not work. For virtual threads, prefer
+	 * {@link #fromLocking(SeekableByteChannel)} as monitor pins the carrier thread.
 	 *
 	 * @param seekableByteChannel
 	 * 	underlying channel.
@@ -59,9 +67,127 @@ public class FlatChannels
 		return new SeekableChannelFlatChannel(seekableByteChannel);
 	}
 
+	/**
+	 * Wraps {@link SeekableByteChannel} to {@link FlatChannel}, using {@link ReentrantLock} owned by the wrapper to
+	 * achieve atomicity of seek and read/write. Unlike {@link #from(SeekableByteChannel)}, waiting for the lock or
+	 * blocking inside it does not pin the carrier of virtual thread. All access to the channel must go through this
+	 * wrapper.
+	 *
+	 * @param seekableByteChannel
+	 * 	underlying channel.
+	 *
+	 * @return
+	 * 	wrapping {@link FlatChannel}.
+	 */
+	public static FlatChannel fromLocking(SeekableByteChannel seekableByteChannel)
+	{
+		return new LockingSeekableFlatChannel(seekableByteChannel);
+	}
+
+	/**
+	 * Wraps {@link FlatChannel} so the blocking operations are executed by the executor while the caller parks
+	 * waiting for the result. This prevents virtual threads from occupying their carriers during blocking file I/O,
+	 * the executor should be pool of platform threads sized for the I/O parallelism.
+	 *
+	 * @param channel
+	 * 	underlying channel.
+	 * @param executor
+	 * 	executor running the blocking operations.
+	 *
+	 * @return
+	 * 	wrapping {@link FlatChannel}.
+	 */
+	public static FlatChannel offloading(FlatChannel channel, Executor executor)
+	{
+		return new OffloadingFlatChannel(channel, executor);
+	}
+
+	/**
+	 * Creates {@link FlatChannel} over pool of independent {@link SeekableByteChannel} instances, each opened by
+	 * the opener. Unlike {@link #from(SeekableByteChannel)}, positional operations do not serialize on single
+	 * lock and run in parallel up to {@code maxChannels}.
+	 *
+	 * @param opener
+	 * 	factory opening new channel on the same source.
+	 * @param maxChannels
+	 * 	maximum number of open channels.
+	 * @param idleTimeout
+	 * 	time after which idle channel is closed.
+	 * @param unit
+	 * 	unit of idleTimeout.
+	 *
+	 * @return
+	 * 	pooled {@link FlatChannel}, to be closed by caller.
+	 */
+	public static PooledFlatChannel pooled(Callable<? extends SeekableByteChannel> opener, int maxChannels, long idleTimeout, TimeUnit unit)
+	{
+		return new PooledFlatChannel(opener, maxChannels, idleTimeout, unit);
+	}
+
+	/**
+	 * Wraps {@link FileChannel} to {@link AsyncFlatChannel} executing on bounded thread pool.
+	 *
+	 * @param fileChannel
+	 * 	underlying channel.
+	 * @param threads
+	 * 	number of I/O threads.
+	 *
+	 * @return
+	 * 	asynchronous channel, to be closed by caller.
+	 */
+	public static BatchingFlatChannel async(FileChannel fileChannel, int threads)
+	{
+		return new BatchingFlatChannel(from(fileChannel), threads, DEFAULT_COALESCE_LENGTH);
+	}
+
+	/**
+	 * Wraps {@link SeekableByteChannel} to {@link AsyncFlatChannel} executing on bounded thread pool. As the
+	 * operations on the channel are serialized, coalescing is the main benefit and single thread is usually
+	 * sufficient.
+	 *
+	 * @param seekableByteChannel
+	 * 	underlying channel.
+	 * @param threads
+	 * 	number of I/O threads.
+	 *
+	 * @return
+	 * 	asynchronous channel, to be closed by caller.
+	 */
+	public static BatchingFlatChannel async(SeekableByteChannel seekableByteChannel, int threads)
+	{
+		return new BatchingFlatChannel(from(seekableByteChannel), threads, DEFAULT_COALESCE_LENGTH);
+	}
+
+	/**
+	 * Wraps {@link FlatChannel} to record operations, transferred bytes, latencies and access locality.
+	 *
+	 * @param channel
+	 * 	underlying channel.
+	 * @param statistics
+	 * 	statistics to record to, null to disable instrumentation.
+	 *
+	 * @return
+	 * 	instrumented channel or the original channel if statistics is null.
+	 */
+	public static FlatChannel instrumented(FlatChannel channel, AccessStatistics statistics)
+	{
+		return statistics == null ? channel : new InstrumentedFlatChannel(channel, statistics);
+	}
+
 	@AllArgsConstructor
 	public static class FileChannelFlatChannel implements FlatChannel
 	{
+		/**
+		 * Gets underlying channel, allowing direct use of {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}.
+		 *
+		 * @return
+		 * 	underlying file channel.
+		 */
+		public FileChannel getFileChannel()
+		{
+			return fileChannel;
+		}
+
 		@Delegate
 		private FileChannel fileChannel;
 	}
@@ -89,4 +215,134 @@ public class FlatChannels
 
 		private SeekableByteChannel seekableChannel;
 	}
+
+	public static class LockingSeekableFlatChannel implements FlatChannel
+	{
+		public LockingSeekableFlatChannel(SeekableByteChannel seekableChannel)
+		{
+			this.seekableChannel = seekableChannel;
+		}
+
+		@Override
+		public int read(ByteBuffer buffer, long position) throws IOException
+		{
+			lock.lock();
+			try {
+				seekableChannel.position(position);
+				return seekableChannel.read(buffer);
+			}
+			finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public int write(ByteBuffer buffer, long position) throws IOException
+		{
+			lock.lock();
+			try {
+				seekableChannel.position(position);
+				return seekableChannel.write(buffer);
+			}
+			finally {
+				lock.unlock();
+			}
+		}
+
+		private final SeekableByteChannel seekableChannel;
+
+		private final ReentrantLock lock = new ReentrantLock();
+	}
+
+	@AllArgsConstructor
+	public static class OffloadingFlatChannel implements FlatChannel
+	{
+		@Override
+		public int read(ByteBuffer buffer, long position) throws IOException
+		{
+			return execute(new FutureTask<>(() -> channel.read(buffer, position)));
+		}
+
+		@Override
+		public int write(ByteBuffer buffer, long position) throws IOException
+		{
+			return execute(new FutureTask<>(() -> channel.write(buffer, position)));
+		}
+
+		/**
+		 * Executes the task and waits for its result. Interruption does not stop waiting, as the task still
+		 * accesses the caller's buffer, it is reported by {@link InterruptedIOException} once the task finishes.
+		 */
+		private int execute(FutureTask<Integer> task) throws IOException
+		{
+			executor.execute(task);
+			boolean interrupted = false;
+			try {
+				for (;;) {
+					try {
+						int result = task.get();
+						if (interrupted) {
+							InterruptedIOException ex = new InterruptedIOException("Interrupted while waiting for I/O");
+							ex.bytesTransferred = result;
+							throw ex;
+						}
+						return result;
+					}
+					catch (InterruptedException e) {
+						interrupted = true;
+					}
+					catch (ExecutionException e) {
+						Throwable cause = e.getCause();
+						if (cause instanceof IOException)
+							throw (IOException) cause;
+						if (cause instanceof RuntimeException)
+							throw (RuntimeException) cause;
+						if (cause instanceof Error)
+							throw (Error) cause;
+						throw new IOException(cause);
+					}
+				}
+			}
+			finally {
+				if (interrupted) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+
+		private FlatChannel channel;
+
+		private Executor executor;
+	}
+
+	@AllArgsConstructor
+	public static class InstrumentedFlatChannel implements FlatChannel
+	{
+		@Override
+		public int read(ByteBuffer buffer, long position) throws IOException
+		{
+			long start = System.nanoTime();
+			int result = channel.read(buffer, position);
+			statistics.recordReadLatency(System.nanoTime()-start);
+			statistics.recordRead(position, Math.max(0, result));
+			return result;
+		}
+
+		@Override
+		public int write(ByteBuffer buffer, long position) throws IOException
+		{
+			long start = System.nanoTime();
+			int result = channel.write(buffer, position);
+			statistics.recordWriteLatency(System.nanoTime()-start);
+			statistics.recordWrite(position, result);
+			return result;
+		}
+
+		private final FlatChannel channel;
+
+		private final AccessStatistics statistics;
+	}
+
+	/** Default maximum length of coalesced operation. */
+	public static final int DEFAULT_COALESCE_LENGTH = 1024*1024;
 }
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2015 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+
+/**
+ * Reusable relative cursor over {@link FlatBuffer}. The cursor keeps current position and advances it by every read
+ * or write, so the records can be decoded sequentially without tracking the lengths of variable size fields.
+ *
+ * <p/>The cursor is not thread safe. It can be reset to another buffer or position to avoid allocation per record.
+ */
+public class FlatCursor
+{
+	/**
+	 * Creates cursor not attached to any buffer.
+	 */
+	public FlatCursor()
+	{
+	}
+
+	/**
+	 * Creates cursor at the start of buffer.
+	 *
+	 * @param buffer
+	 * 	buffer to iterate.
+	 */
+	public FlatCursor(FlatBuffer buffer)
+	{
+		reset(buffer, 0);
+	}
+
+	/**
+	 * Attaches the cursor to buffer and position.
+	 *
+	 * @param buffer
+	 * 	buffer to iterate.
+	 * @param position
+	 * 	initial position.
+	 *
+	 * @return
+	 * 	this cursor.
+	 */
+	public FlatCursor reset(FlatBuffer buffer, long position)
+	{
+		this.buffer = buffer;
+		this.position = position;
+		return this;
+	}
+
+	public FlatBuffer buffer()
+	{
+		return buffer;
+	}
+
+	public long position()
+	{
+		return position;
+	}
+
+	public FlatCursor position(long position)
+	{
+		this.position = position;
+		return this;
+	}
+
+	public long remaining()
+	{
+		return buffer.size()-position;
+	}
+
+	public boolean hasRemaining()
+	{
+		return position < buffer.size();
+	}
+
+	public FlatCursor skip(long length)
+	{
+		position += length;
+		return this;
+	}
+
+	public byte getByte()
+	{
+		byte val = buffer.getByte(position);
+		position += 1;
+		return val;
+	}
+
+	public int getUnsignedByte()
+	{
+		int val = buffer.getUnsignedByte(position);
+		position += 1;
+		return val;
+	}
+
+	public short getShort()
+	{
+		short val = buffer.getShort(position);
+		position += 2;
+		return val;
+	}
+
+	public int getUnsignedShort()
+	{
+		int val = buffer.getUnsignedShort(position);
+		position += 2;
+		return val;
+	}
+
+	public int getInt()
+	{
+		int val = buffer.getInt(position);
+		position += 4;
+		return val;
+	}
+
+	public long getUnsignedInt()
+	{
+		long val = buffer.getUnsignedInt(position);
+		position += 4;
+		return val;
+	}
+
+	public long getLong()
+	{
+		long val = buffer.getLong(position);
+		position += 8;
+		return val;
+	}
+
+	public float getFloat()
+	{
+		float val = buffer.getFloat(position);
+		position += 4;
+		return val;
+	}
+
+	public double getDouble()
+	{
+		double val = buffer.getDouble(position);
+		position += 8;
+		return val;
+	}
+
+	public void getBytes(byte[] data)
+	{
+		getBytes(data, 0, data.length);
+	}
+
+	public void getBytes(byte[] data, int offset, int length)
+	{
+		buffer.getBytes(position, data, offset, length);
+		position += length;
+	}
+
+	/**
+	 * Reads unsigned LEB128 variable length integer, see {@link FlatBuffer#getVarLong(long, FlatCursor)}.
+	 *
+	 * @return
+	 * 	decoded value.
+	 */
+	public long getVarLong()
+	{
+		return buffer.getVarLong(position, this);
+	}
+
+	/**
+	 * Reads zigzag encoded signed LEB128 variable length integer.
+	 *
+	 * @return
+	 * 	decoded value.
+	 */
+	public long getZigZagLong()
+	{
+		return FlatBuffer.decodeZigZag(getVarLong());
+	}
+
+	public FlatCursor putByte(byte val)
+	{
+		buffer.putByte(position, val);
+		position += 1;
+		return this;
+	}
+
+	public FlatCursor putShort(short val)
+	{
+		buffer.putShort(position, val);
+		position += 2;
+		return this;
+	}
+
+	public FlatCursor putInt(int val)
+	{
+		buffer.putInt(position, val);
+		position += 4;
+		return this;
+	}
+
+	public FlatCursor putLong(long val)
+	{
+		buffer.putLong(position, val);
+		position += 8;
+		return this;
+	}
+
+	public FlatCursor putFloat(float val)
+	{
+		buffer.putFloat(position, val);
+		position += 4;
+		return this;
+	}
+
+	public FlatCursor putDouble(double val)
+	{
+		buffer.putDouble(position, val);
+		position += 8;
+		return this;
+	}
+
+	public FlatCursor putBytes(byte[] data)
+	{
+		return putBytes(data, 0, data.length);
+	}
+
+	public FlatCursor putBytes(byte[] data, int offset, int length)
+	{
+		buffer.putBytes(position, data, offset, length);
+		position += length;
+		return this;
+	}
+
+	/**
+	 * Writes unsigned LEB128 variable length integer.
+	 *
+	 * @param val
+	 * 	value to encode.
+	 *
+	 * @return
+	 * 	this cursor.
+	 */
+	public FlatCursor putVarLong(long val)
+	{
+		position += buffer.putVarLong(position, val);
+		return this;
+	}
+
+	/**
+	 * Writes signed value as zigzag encoded LEB128 variable length integer.
+	 *
+	 * @param val
+	 * 	value to encode.
+	 *
+	 * @return
+	 * 	this cursor.
+	 */
+	public FlatCursor putZigZagLong(long val)
+	{
+		return putVarLong(FlatBuffer.encodeZigZag(val));
+	}
+
+	private FlatBuffer buffer;
+
+	private long position;
+}
@@ -0,0 +1,631 @@
+/*
+ * Copyright 2015 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+
+/**
+ * Open addressing long to long hash map stored entirely in {@link FlatBuffer} backed by native memory, typically
+ * {@link MappedFlatBuffer}, so it can hold billions of entries without GC cost and can be reopened from file without
+ * rebuilding.
+ *
+ * <p/>The buffer starts with header of {@link #HEADER_SIZE} bytes (magic, capacity, size and the entry for key 0),
+ * followed by power of two number of 16 byte slots {@code [key][value]} probed linearly, key 0 marks empty slot.
+ * Removal uses backward shift, so there are no tombstones.
+ *
+ * <p/>When the load exceeds 3/4, the writer allocates new twice as large buffer from {@link TableAllocator} and
+ * migrates the entries incrementally, {@link #MIGRATION_STEP} slots on each update, so no single update pays for
+ * the whole rehash. Reads consult both tables while migrating. The old buffer is returned to allocator once the
+ * migration finishes, {@link #flush()} and {@link #close()} finish the pending migration, so the persisted buffer is
+ * always complete.
+ *
+ * <p/>Single writer can run concurrently with any number of readers ({@link #get(long, long)},
+ * {@link #containsKey(long)}, {@link #size()}). Inserts publish the value before the key, structural changes
+ * (removal and table switches) are guarded by sequence lock, readers retry when they overlap. The allocator must
+ * defer unmapping of released buffers until concurrent readers are finished.
+ *
+ * <p/>{@link FlatBytesHashMap} builds byte sequence keys on top of the same table.
+ */
+public class FlatLongHashMap implements AutoCloseable
+{
+	/**
+	 * Provider of buffers for resized tables.
+	 */
+	public interface TableAllocator
+	{
+		/**
+		 * Allocates new buffer.
+		 *
+		 * @param size
+		 * 	required size of buffer.
+		 *
+		 * @return
+		 * 	new buffer backed by native memory, of at least the requested size.
+		 *
+		 * @throws IOException
+		 * 	when allocation fails.
+		 */
+		FlatBuffer allocate(long size) throws IOException;
+
+		/**
+		 * Releases buffer no longer used by table.
+		 *
+		 * @param buffer
+		 * 	released buffer.
+		 *
+		 * @throws IOException
+		 * 	when releasing fails.
+		 */
+		void release(FlatBuffer buffer) throws IOException;
+	}
+
+	/**
+	 * Matcher of stored values, distinguishing entries sharing the same key.
+	 */
+	interface ValueMatcher
+	{
+		boolean matches(long value);
+	}
+
+	/**
+	 * Equivalence of values stored under the same key, deciding which migrated entries are already present in the
+	 * resized table.
+	 */
+	interface EntryEquivalence
+	{
+		boolean equivalent(long value, long other);
+	}
+
+	/**
+	 * Computes size of buffer for given capacity.
+	 *
+	 * @param capacity
+	 * 	number of slots, power of two.
+	 *
+	 * @return
+	 * 	size of buffer.
+	 */
+	public static long bufferSize(long capacity)
+	{
+		return HEADER_SIZE+capacity*SLOT_SIZE;
+	}
+
+	/**
+	 * Creates new empty map in buffer, using the largest power of two capacity fitting in it.
+	 *
+	 * @param buffer
+	 * 	buffer backed by native memory, the map takes ownership.
+	 * @param allocator
+	 * 	allocator of resized tables, null if the map cannot grow.
+	 *
+	 * @return
+	 * 	new map.
+	 */
+	public static FlatLongHashMap create(FlatBuffer buffer, TableAllocator allocator)
+	{
+		return new FlatLongHashMap(Table.initialize(buffer, MAGIC), allocator, MAGIC, null);
+	}
+
+	/**
+	 * Opens map previously stored in buffer.
+	 *
+	 * @param buffer
+	 * 	buffer backed by native memory, the map takes ownership.
+	 * @param allocator
+	 * 	allocator of resized tables, null if the map cannot grow.
+	 *
+	 * @return
+	 * 	opened map.
+	 *
+	 * @throws IllegalArgumentException
+	 * 	if the buffer does not contain valid map.
+	 */
+	public static FlatLongHashMap open(FlatBuffer buffer, TableAllocator allocator)
+	{
+		return new FlatLongHashMap(Table.open(buffer, MAGIC), allocator, MAGIC, null);
+	}
+
+	/**
+	 * Creates map over table.
+	 *
+	 * @param table
+	 * 	initial table.
+	 * @param allocator
+	 * 	allocator of resized tables, null if the map cannot grow.
+	 * @param magic
+	 * 	magic identifying the format of resized tables.
+	 * @param equivalence
+	 * 	equivalence of values stored under the same key, null if the keys are unique.
+	 */
+	FlatLongHashMap(Table table, TableAllocator allocator, long magic, EntryEquivalence equivalence)
+	{
+		this.current = table;
+		this.allocator = allocator;
+		this.magic = magic;
+		this.equivalence = equivalence;
+	}
+
+	/**
+	 * Gets value for key.
+	 *
+	 * @param key
+	 * 	searched key.
+	 * @param defaultValue
+	 * 	value returned if the key is missing.
+	 *
+	 * @return
+	 * 	value of key or defaultValue.
+	 */
+	public long get(long key, long defaultValue)
+	{
+		return get(key, MATCH_ANY, defaultValue);
+	}
+
+	/**
+	 * Gets value of entry with key and value accepted by matcher.
+	 */
+	long get(long key, ValueMatcher matcher, long defaultValue)
+	{
+		for (;;) {
+			long version = readBegin();
+			Table current = this.current, previous = this.previous;
+			long slot = current.find(key, matcher);
+			long result = slot != -1 ? current.getValue(slot) : defaultValue;
+			if (slot == -1 && previous != null) {
+				slot = previous.find(key, matcher);
+				if (slot != -1)
+					result = previous.getValue(slot);
+			}
+			if (readValidate(version))
+				return result;
+		}
+	}
+
+	/**
+	 * Checks whether the key is present.
+	 *
+	 * @param key
+	 * 	searched key.
+	 *
+	 * @return
+	 * 	true if the key is present.
+	 */
+	public boolean containsKey(long key)
+	{
+		return containsKey(key, MATCH_ANY);
+	}
+
+	/**
+	 * Checks whether entry with key and value accepted by matcher is present.
+	 */
+	boolean containsKey(long key, ValueMatcher matcher)
+	{
+		for (;;) {
+			long version = readBegin();
+			Table current = this.current, previous = this.previous;
+			boolean result = current.find(key, matcher) != -1 || previous != null && previous.find(key, matcher) != -1;
+			if (readValidate(version))
+				return result;
+		}
+	}
+
+	/**
+	 * Gets number of entries.
+	 *
+	 * @return
+	 * 	number of entries.
+	 */
+	public long size()
+	{
+		return current.getSize();
+	}
+
+	/**
+	 * Gets capacity of current table.
+	 *
+	 * @return
+	 * 	number of slots.
+	 */
+	public long capacity()
+	{
+		return current.capacity;
+	}
+
+	/**
+	 * Puts value for key.
+	 *
+	 * @param key
+	 * 	key.
+	 * @param value
+	 * 	value.
+	 *
+	 * @return
+	 * 	true if the key was inserted, false if existing value was replaced.
+	 */
+	public boolean put(long key, long value)
+	{
+		return put(key, value, MATCH_ANY);
+	}
+
+	/**
+	 * Puts value for key, replacing the value of entry with the same key accepted by matcher.
+	 */
+	boolean put(long key, long value, ValueMatcher matcher)
+	{
+		migrateStep();
+		long slot = current.find(key, matcher);
+		if (slot != -1) {
+			current.setValue(slot, value);
+			return false;
+		}
+		boolean existed = previous != null && previous.find(key, matcher) != -1;
+		if (!existed && current.getSize() >= current.capacity/4*3) {
+			startResize();
+		}
+		current.insert(key, value);
+		if (!existed)
+			current.setSize(current.getSize()+1);
+		return !existed;
+	}
+
+	/**
+	 * Removes key.
+	 *
+	 * @param key
+	 * 	removed key.
+	 *
+	 * @return
+	 * 	true if the key was present.
+	 */
+	public boolean remove(long key)
+	{
+		return remove(key, MATCH_ANY);
+	}
+
+	/**
+	 * Removes entry with key and value accepted by matcher.
+	 */
+	boolean remove(long key, ValueMatcher matcher)
+	{
+		finishResize();
+		long slot = current.find(key, matcher);
+		if (slot == -1)
+			return false;
+		writeBegin();
+		try {
+			current.delete(slot);
+			current.setSize(current.getSize()-1);
+		}
+		finally {
+			writeEnd();
+		}
+		return true;
+	}
+
+	/**
+	 * Finishes pending resize, if any.
+	 */
+	public void finishResize()
+	{
+		while (previous != null) {
+			migrateStep();
+		}
+	}
+
+	/**
+	 * Finishes pending resize and gets the buffer holding the table. After resize this is the buffer from
+	 * allocator, which has to be passed to {@link #open(FlatBuffer, TableAllocator)} when reopening the map.
+	 *
+	 * @return
+	 * 	buffer of current table.
+	 */
+	public FlatBuffer getBuffer()
+	{
+		finishResize();
+		return current.buffer;
+	}
+
+	/**
+	 * Finishes pending resize and flushes the table to storage.
+	 */
+	public void flush()
+	{
+		finishResize();
+		current.buffer.force();
+	}
+
+	/**
+	 * Finishes pending resize and closes the underlying buffer.
+	 */
+	@Override
+	public void close()
+	{
+		finishResize();
+		current.buffer.close();
+	}
+
+	private void startResize()
+	{
+		if (allocator == null) {
+			throw new IllegalStateException("Hash table is full and cannot grow: capacity="+current.capacity);
+		}
+		finishResize();
+		FlatBuffer buffer;
+		try {
+			buffer = allocator.allocate(bufferSize(current.capacity*2));
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		Table resized = Table.initialize(buffer, magic);
+		resized.setSize(current.getSize());
+		if (current.buffer.getLong(ZERO_PRESENT_OFFSET) != 0) {
+			resized.insert(0, current.getValue(ZERO_SLOT));
+		}
+		writeBegin();
+		try {
+			previous = current;
+			migrated = 0;
+			current = resized;
+		}
+		finally {
+			writeEnd();
+		}
+	}
+
+	private void migrateStep()
+	{
+		Table previous = this.previous;
+		if (previous == null)
+			return;
+		long end = Math.min(previous.capacity, migrated+MIGRATION_STEP);
+		for (long slot = migrated; slot < end; ++slot) {
+			long slotPos = previous.slotPosition(slot);
+			long key = previous.buffer.getLong(slotPos);
+			if (key != 0) {
+				long value = previous.buffer.getLong(slotPos+8);
+				if (current.find(key, equivalence == null ? MATCH_ANY : other -> equivalence.equivalent(value, other)) == -1) {
+					current.insert(key, value);
+				}
+			}
+		}
+		migrated = end;
+		if (end == previous.capacity) {
+			writeBegin();
+			try {
+				this.previous = null;
+			}
+			finally {
+				writeEnd();
+			}
+			try {
+				allocator.release(previous.buffer);
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	private long readBegin()
+	{
+		for (;;) {
+			long version = this.version;
+			if ((version&1) == 0)
+				return version;
+			Thread.yield();
+		}
+	}
+
+	private boolean readValidate(long version)
+	{
+		UnsafeMemory.unsafe.loadFence();
+		return this.version == version;
+	}
+
+	private void writeBegin()
+	{
+		version = version+1;
+		UnsafeMemory.unsafe.storeFence();
+	}
+
+	private void writeEnd()
+	{
+		version = version+1;
+	}
+
+	/**
+	 * Single table within buffer.
+	 */
+	static class Table
+	{
+		Table(FlatBuffer buffer, long capacity)
+		{
+			this.buffer = buffer;
+			this.capacity = capacity;
+			this.mask = capacity-1;
+		}
+
+		static Table initialize(FlatBuffer buffer, long magic)
+		{
+			long slots = (buffer.size()-HEADER_SIZE)/SLOT_SIZE;
+			if (slots < MIN_CAPACITY) {
+				throw new IllegalArgumentException("Buffer too small for hash table: "+buffer.size());
+			}
+			Table table = new Table(buffer, Long.highestOneBit(slots));
+			for (long pos = 0; pos < bufferSize(table.capacity); pos += 8) {
+				buffer.putLong(pos, 0);
+			}
+			buffer.putLong(CAPACITY_OFFSET, table.capacity);
+			buffer.putLongRelease(MAGIC_OFFSET, magic);
+			return table;
+		}
+
+		static Table open(FlatBuffer buffer, long magic)
+		{
+			if (buffer.size() < HEADER_SIZE || buffer.getLong(MAGIC_OFFSET) != magic) {
+				throw new IllegalArgumentException("Buffer does not contain hash table");
+			}
+			long capacity = buffer.getLong(CAPACITY_OFFSET);
+			if (capacity < MIN_CAPACITY || Long.bitCount(capacity) != 1 || bufferSize(capacity) > buffer.size()) {
+				throw new IllegalArgumentException("Invalid hash table capacity: "+capacity);
+			}
+			return new Table(buffer, capacity);
+		}
+
+		/**
+		 * Finds slot of key, with value accepted by matcher.
+		 *
+		 * @return
+		 * 	slot index, {@link #ZERO_SLOT} for key 0, -1 if not found.
+		 */
+		long find(long key, ValueMatcher matcher)
+		{
+			if (key == 0)
+				return buffer.getLongAcquire(ZERO_PRESENT_OFFSET) != 0 && matcher.matches(getValue(ZERO_SLOT)) ? ZERO_SLOT : -1;
+			for (long slot = hash(key)&mask; ; slot = (slot+1)&mask) {
+				long stored = buffer.getLongAcquire(slotPosition(slot));
+				if (stored == key && matcher.matches(getValue(slot)))
+					return slot;
+				if (stored == 0)
+					return -1;
+			}
+		}
+
+		void insert(long key, long value)
+		{
+			if (key == 0) {
+				buffer.putLongRelease(ZERO_VALUE_OFFSET, value);
+				buffer.putLongRelease(ZERO_PRESENT_OFFSET, 1);
+				return;
+			}
+			long slot = hash(key)&mask;
+			while (buffer.getLong(slotPosition(slot)) != 0)
+				slot = (slot+1)&mask;
+			long pos = slotPosition(slot);
+			buffer.putLongRelease(pos+8, value);
+			buffer.putLongRelease(pos, key);
+		}
+
+		void delete(long slot)
+		{
+			if (slot == ZERO_SLOT) {
+				buffer.putLongRelease(ZERO_PRESENT_OFFSET, 0);
+				return;
+			}
+			// backward shift deletion, moves following entries of the cluster to fill the gap
+			long hole = slot;
+			for (long next = (hole+1)&mask; ; next = (next+1)&mask) {
+				long key = buffer.getLong(slotPosition(next));
+				if (key == 0)
+					break;
+				long home = hash(key)&mask;
+				if (((next-home)&mask) >= ((next-hole)&mask)) {
+					buffer.putLong(slotPosition(hole)+8, buffer.getLong(slotPosition(next)+8));
+					buffer.putLong(slotPosition(hole), key);
+					hole = next;
+				}
+			}
+			buffer.putLongRelease(slotPosition(hole), 0);
+		}
+
+		long getValue(long slot)
+		{
+			return buffer.getLongAcquire(slot == ZERO_SLOT ? ZERO_VALUE_OFFSET : slotPosition(slot)+8);
+		}
+
+		void setValue(long slot, long value)
+		{
+			buffer.putLongRelease(slot == ZERO_SLOT ? ZERO_VALUE_OFFSET : slotPosition(slot)+8, value);
+		}
+
+		long getSize()
+		{
+			return buffer.getLongAcquire(SIZE_OFFSET);
+		}
+
+		void setSize(long size)
+		{
+			buffer.putLongRelease(SIZE_OFFSET, size);
+		}
+
+		long slotPosition(long slot)
+		{
+			return HEADER_SIZE+slot*SLOT_SIZE;
+		}
+
+		private static long hash(long key)
+		{
+			key ^= key>>>33;
+			key *= 0xff51afd7ed558ccdL;
+			key ^= key>>>33;
+			key *= 0xc4ceb9fe1a85ec53L;
+			key ^= key>>>33;
+			return key;
+		}
+
+		final FlatBuffer buffer;
+
+		final long capacity;
+
+		final long mask;
+	}
+
+	private final TableAllocator allocator;
+
+	private final long magic;
+
+	private final EntryEquivalence equivalence;
+
+	private volatile Table current;
+
+	private volatile Table previous;
+
+	/** Number of slots of previous table already migrated. */
+	private long migrated;
+
+	private volatile long version;
+
+	/** Size of header. */
+	public static final int HEADER_SIZE = 64;
+
+	/** Size of single slot. */
+	public static final int SLOT_SIZE = 16;
+
+	/** Number of slots migrated on each update during resize. */
+	public static final int MIGRATION_STEP = 64;
+
+	private static final long MAGIC = 0x3170614d68734c46L;
+
+	private static final ValueMatcher MATCH_ANY = value -> true;
+
+	private static final long MAGIC_OFFSET = 0;
+
+	private static final long CAPACITY_OFFSET = 8;
+
+	private static final long SIZE_OFFSET = 16;
+
+	private static final long ZERO_PRESENT_OFFSET = 24;
+
+	private static final long ZERO_VALUE_OFFSET = 32;
+
+	private static final long ZERO_SLOT = -2;
+
+	private static final long MIN_CAPACITY = 8;
+}
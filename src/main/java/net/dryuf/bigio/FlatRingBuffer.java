@@ -0,0 +1,475 @@
+/*
+ * Copyright 2015 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+
+/**
+ * Ring buffer queue of length prefixed records over {@link FlatBuffer} backed by native memory. When the buffer is
+ * shared file mapping (for example on /dev/shm), the queue connects processes on the same host.
+ *
+ * <p/>Layout: the header contains the producer and consumer counters, each in its own pair of cache lines, followed
+ * by data area of power of two size. Each record starts with 8 bytes header, int size of the whole record and int
+ * length of the content (negative for padding), and is aligned to 8 bytes. The size is written with release
+ * semantics once the record is complete, the consumer zeroes the consumed area before moving the head so the
+ * producers always find zero size in free space. The record not fitting to the end of data area is preceded by
+ * padding record.
+ *
+ * <p/>There is single consumer. The producer side is either single or multi threaded, see
+ * {@link #singleProducer(FlatBuffer, WaitStrategy)} and {@link #multiProducer(FlatBuffer, WaitStrategy)}. New
+ * buffer must be zeroed, which is the case for newly created files.
+ */
+public abstract class FlatRingBuffer
+{
+	/**
+	 * Handler of consumed messages.
+	 */
+	@FunctionalInterface
+	public interface MessageHandler
+	{
+		/**
+		 * Processes message. The content is valid only during the call.
+		 *
+		 * @param buffer
+		 * 	buffer containing the message.
+		 * @param position
+		 * 	position of message content.
+		 * @param length
+		 * 	length of message content.
+		 */
+		void onMessage(FlatBuffer buffer, long position, int length);
+	}
+
+	/**
+	 * Creates ring buffer accessed by single producer thread.
+	 *
+	 * @param buffer
+	 * 	underlying buffer, its size must be {@link #HEADER_SIZE} plus power of two.
+	 * @param waitStrategy
+	 * 	strategy of waiting in blocking operations.
+	 *
+	 * @return
+	 * 	ring buffer.
+	 */
+	public static FlatRingBuffer singleProducer(FlatBuffer buffer, WaitStrategy waitStrategy)
+	{
+		return new SingleProducer(buffer, waitStrategy);
+	}
+
+	/**
+	 * Creates ring buffer accessed by multiple producer threads or processes.
+	 *
+	 * @param buffer
+	 * 	underlying buffer, its size must be {@link #HEADER_SIZE} plus power of two.
+	 * @param waitStrategy
+	 * 	strategy of waiting in blocking operations.
+	 *
+	 * @return
+	 * 	ring buffer.
+	 */
+	public static FlatRingBuffer multiProducer(FlatBuffer buffer, WaitStrategy waitStrategy)
+	{
+		return new MultiProducer(buffer, waitStrategy);
+	}
+
+	protected FlatRingBuffer(FlatBuffer buffer, WaitStrategy waitStrategy)
+	{
+		long capacity = buffer.size()-HEADER_SIZE;
+		if (capacity < RECORD_ALIGNMENT*2 || Long.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Buffer size must be HEADER_SIZE plus power of two: "+buffer.size());
+		}
+		if (!buffer.isAligned(0, CACHE_LINE_SIZE)) {
+			throw new IllegalArgumentException("Buffer must be aligned to cache line");
+		}
+		this.buffer = buffer;
+		this.waitStrategy = waitStrategy;
+		this.capacity = capacity;
+		this.mask = capacity-1;
+		this.head = buffer.getLongVolatile(HEAD_OFFSET);
+	}
+
+	/**
+	 * Gets the underlying buffer, for writing the content of claimed records.
+	 *
+	 * @return
+	 * 	underlying buffer.
+	 */
+	public FlatBuffer buffer()
+	{
+		return buffer;
+	}
+
+	/**
+	 * Gets capacity of data area.
+	 *
+	 * @return
+	 * 	capacity of data area.
+	 */
+	public long capacity()
+	{
+		return capacity;
+	}
+
+	/**
+	 * Gets maximum length of message.
+	 *
+	 * @return
+	 * 	maximum length of message content.
+	 */
+	public int maxMessageLength()
+	{
+		return (int) Math.min(capacity/2, 1<<30)-RECORD_HEADER_SIZE;
+	}
+
+	/**
+	 * Claims space for message. The content is written into {@link #buffer()} at returned position and published by
+	 * {@link #commit(long)}.
+	 *
+	 * @param length
+	 * 	length of message content.
+	 *
+	 * @return
+	 * 	position of message content in the buffer or -1 if there is not enough space.
+	 */
+	public long tryClaim(int length)
+	{
+		checkLength(length);
+		long sequence = claim(recordSize(length));
+		if (sequence < 0) {
+			return -1;
+		}
+		long offset = HEADER_SIZE+(sequence&mask);
+		buffer.putInt(offset+4, length);
+		return offset+RECORD_HEADER_SIZE;
+	}
+
+	/**
+	 * Claims contiguous space for batch of messages by single operation. The content of i-th message is written into
+	 * {@link #buffer()} at position returned in positions[i], the batch is published by
+	 * {@link #commitBatch(long[], int)}.
+	 *
+	 * @param lengths
+	 * 	lengths of messages.
+	 * @param positions
+	 * 	output array receiving positions of message contents.
+	 *
+	 * @return
+	 * 	true if the space was claimed, false if there is not enough space.
+	 */
+	public boolean tryClaimBatch(int[] lengths, long[] positions)
+	{
+		long total = 0;
+		for (int length: lengths) {
+			checkLength(length);
+			total += recordSize(length);
+		}
+		if (total > capacity/2) {
+			throw new IllegalArgumentException("Batch exceeds maximum size: "+total);
+		}
+		long sequence = claim((int) total);
+		if (sequence < 0) {
+			return false;
+		}
+		long offset = HEADER_SIZE+(sequence&mask);
+		for (int i = 0; i < lengths.length; ++i) {
+			buffer.putInt(offset+4, lengths[i]);
+			positions[i] = offset+RECORD_HEADER_SIZE;
+			offset += recordSize(lengths[i]);
+		}
+		return true;
+	}
+
+	/**
+	 * Publishes claimed message.
+	 *
+	 * @param position
+	 * 	position returned by {@link #tryClaim(int)}.
+	 */
+	public void commit(long position)
+	{
+		long offset = position-RECORD_HEADER_SIZE;
+		buffer.putIntRelease(offset, recordSize(buffer.getInt(offset+4)));
+	}
+
+	/**
+	 * Publishes claimed batch of messages. The messages are published in reverse order, so the consumer sees the
+	 * batch once the first one is published.
+	 *
+	 * @param positions
+	 * 	positions filled by {@link #tryClaimBatch(int[], long[])}.
+	 * @param count
+	 * 	number of messages in batch.
+	 */
+	public void commitBatch(long[] positions, int count)
+	{
+		for (int i = count; --i >= 0; ) {
+			commit(positions[i]);
+		}
+	}
+
+	/**
+	 * Tries to write message.
+	 *
+	 * @param data
+	 * 	message content.
+	 * @param offset
+	 * 	offset within data.
+	 * @param length
+	 * 	length of message.
+	 *
+	 * @return
+	 * 	true if written, false if there is not enough space.
+	 */
+	public boolean offer(byte[] data, int offset, int length)
+	{
+		long position = tryClaim(length);
+		if (position < 0) {
+			return false;
+		}
+		buffer.putBytes(position, data, offset, length);
+		commit(position);
+		return true;
+	}
+
+	/**
+	 * Writes message, waiting for space according to wait strategy.
+	 *
+	 * @param data
+	 * 	message content.
+	 * @param offset
+	 * 	offset within data.
+	 * @param length
+	 * 	length of message.
+	 */
+	public void put(byte[] data, int offset, int length)
+	{
+		for (int iteration = 0; !offer(data, offset, length); ++iteration) {
+			waitStrategy.idle(iteration);
+		}
+	}
+
+	/**
+	 * Consumes available messages. Must be called by single consumer thread.
+	 *
+	 * @param handler
+	 * 	handler of messages.
+	 * @param limit
+	 * 	maximum number of messages to consume.
+	 *
+	 * @return
+	 * 	number of consumed messages.
+	 */
+	public int read(MessageHandler handler, int limit)
+	{
+		long head = this.head;
+		long consumed = 0;
+		int count = 0;
+		while (count < limit && consumed < capacity) {
+			long offset = HEADER_SIZE+((head+consumed)&mask);
+			int size = buffer.getIntAcquire(offset);
+			if (size == 0) {
+				break;
+			}
+			int length = buffer.getInt(offset+4);
+			if (length >= 0) {
+				handler.onMessage(buffer, offset+RECORD_HEADER_SIZE, length);
+				++count;
+			}
+			consumed += size;
+		}
+		if (consumed != 0) {
+			zero(head, consumed);
+			this.head = head+consumed;
+			buffer.putLongRelease(HEAD_OFFSET, head+consumed);
+		}
+		return count;
+	}
+
+	/**
+	 * Consumes available messages, waiting according to wait strategy until at least one is available.
+	 *
+	 * @param handler
+	 * 	handler of messages.
+	 * @param limit
+	 * 	maximum number of messages to consume.
+	 *
+	 * @return
+	 * 	number of consumed messages.
+	 */
+	public int take(MessageHandler handler, int limit)
+	{
+		for (int iteration = 0; ; ++iteration) {
+			int count = read(handler, limit);
+			if (count != 0) {
+				return count;
+			}
+			waitStrategy.idle(iteration);
+		}
+	}
+
+	/**
+	 * Claims contiguous area of data, writing padding record if the area would cross the end of data area.
+	 *
+	 * @param size
+	 * 	aligned size of area.
+	 *
+	 * @return
+	 * 	sequence of area start, -1 if there is not enough space.
+	 */
+	protected abstract long claim(int size);
+
+	/**
+	 * Computes the total size needed for area at tail, including padding.
+	 */
+	protected final long requiredSize(long tail, int size)
+	{
+		long toEnd = capacity-(tail&mask);
+		return toEnd < size ? toEnd+size : size;
+	}
+
+	/**
+	 * Checks the area fits into free space, refreshing cached consumer position if needed.
+	 */
+	protected final boolean hasSpace(long tail, long required)
+	{
+		if (tail+required-cachedHead <= capacity) {
+			return true;
+		}
+		cachedHead = buffer.getLongVolatile(HEAD_OFFSET);
+		return tail+required-cachedHead <= capacity;
+	}
+
+	/**
+	 * Writes padding record if the claimed area had to skip the end of data area.
+	 *
+	 * @return
+	 * 	sequence of area start.
+	 */
+	protected final long pad(long tail, long required, int size)
+	{
+		if (required == size) {
+			return tail;
+		}
+		long padding = required-size;
+		long offset = HEADER_SIZE+(tail&mask);
+		buffer.putInt(offset+4, PADDING_TYPE);
+		buffer.putIntRelease(offset, (int) padding);
+		return tail+padding;
+	}
+
+	private void zero(long head, long length)
+	{
+		for (long done = 0; done < length; ) {
+			long offset = (head+done)&mask;
+			int current = (int) Math.min(Math.min(length-done, capacity-offset), ZEROS.length);
+			buffer.putBytes(HEADER_SIZE+offset, ZEROS, 0, current);
+			done += current;
+		}
+	}
+
+	private void checkLength(int length)
+	{
+		if (length < 0 || length > maxMessageLength()) {
+			throw new IllegalArgumentException("Invalid message length: "+length);
+		}
+	}
+
+	private static int recordSize(int length)
+	{
+		return (RECORD_HEADER_SIZE+length+RECORD_ALIGNMENT-1)&-RECORD_ALIGNMENT;
+	}
+
+	private static class SingleProducer extends FlatRingBuffer
+	{
+		SingleProducer(FlatBuffer buffer, WaitStrategy waitStrategy)
+		{
+			super(buffer, waitStrategy);
+			this.tail = buffer.getLongVolatile(TAIL_OFFSET);
+		}
+
+		@Override
+		protected long claim(int size)
+		{
+			long tail = this.tail;
+			long required = requiredSize(tail, size);
+			if (!hasSpace(tail, required)) {
+				return -1;
+			}
+			this.tail = tail+required;
+			buffer.putLongRelease(TAIL_OFFSET, tail+required);
+			return pad(tail, required, size);
+		}
+
+		private long tail;
+	}
+
+	private static class MultiProducer extends FlatRingBuffer
+	{
+		MultiProducer(FlatBuffer buffer, WaitStrategy waitStrategy)
+		{
+			super(buffer, waitStrategy);
+		}
+
+		@Override
+		protected long claim(int size)
+		{
+			for (;;) {
+				long tail = buffer.getLongVolatile(TAIL_OFFSET);
+				long required = requiredSize(tail, size);
+				if (!hasSpace(tail, required)) {
+					return -1;
+				}
+				if (buffer.compareAndSetLong(TAIL_OFFSET, tail, tail+required)) {
+					return pad(tail, required, size);
+				}
+			}
+		}
+	}
+
+	protected final FlatBuffer buffer;
+
+	private final WaitStrategy waitStrategy;
+
+	private final long capacity;
+
+	private final long mask;
+
+	/** Consumer position, owned by the consumer thread. */
+	private long head;
+
+	/** Last known consumer position, refreshed by producers when the buffer looks full. */
+	private volatile long cachedHead;
+
+	/** Assumed size of cache line. */
+	public static final int CACHE_LINE_SIZE = 64;
+
+	/** Producer position, padded by two cache lines against adjacent line prefetch. */
+	public static final int TAIL_OFFSET = 0;
+
+	/** Consumer position, padded by two cache lines against adjacent line prefetch. */
+	public static final int HEAD_OFFSET = 2*CACHE_LINE_SIZE;
+
+	/** Size of header preceding the data area. */
+	public static final int HEADER_SIZE = 4*CACHE_LINE_SIZE;
+
+	private static final int RECORD_HEADER_SIZE = 8;
+
+	private static final int RECORD_ALIGNMENT = 8;
+
+	private static final int PADDING_TYPE = -1;
+
+	private static final byte[] ZEROS = new byte[4096];
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright 2015 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import java.nio.ByteOrder;
+
+
+/**
+ * Search primitives over sorted fixed stride records in {@link FlatBuffer}. Records are addressed by index, record
+ * {@code i} starts at {@code pos+i*stride} and its key at {@code keyOffset} within the record. Numeric keys are
+ * signed longs in buffer byte order, byte string keys are compared in unsigned lexicographic order.
+ *
+ * <p/>All searches return lower bound: index of the first record with key equal to searched key, or
+ * {@code -(insertionPoint)-1} if there is no such record, consistently with
+ * {@link java.util.Arrays#binarySearch(long[], long)}.
+ *
+ * <p/>For large cold indexes, the records can be rearranged into Eytzinger (breadth first) order by
+ * {@link #buildEytzinger(FlatBuffer, long, long, int, FlatBuffer, long)}. The top levels of the implicit tree are
+ * then stored contiguously at the beginning, so the first probes of every lookup hit the same few pages, which can
+ * be preloaded by {@link #adviseEytzingerTop(FlatBuffer, long, long, int, int)}, and each lookup touches at most one
+ * new page per level below.
+ */
+public class FlatSearch
+{
+	/**
+	 * Searches records sorted by numeric key using binary search.
+	 *
+	 * @param buffer
+	 * 	buffer containing the records.
+	 * @param pos
+	 * 	position of first record.
+	 * @param count
+	 * 	number of records.
+	 * @param stride
+	 * 	size of record.
+	 * @param keyOffset
+	 * 	offset of key within record.
+	 * @param key
+	 * 	searched key.
+	 *
+	 * @return
+	 * 	index of first matching record or {@code -(insertionPoint)-1}.
+	 */
+	public static long binarySearch(FlatBuffer buffer, long pos, long count, int stride, int keyOffset, long key)
+	{
+		long keyPos = pos+keyOffset;
+		long lo = 0, hi = count;
+		while (lo < hi) {
+			long mid = (lo+hi)>>>1;
+			if (buffer.getLong(keyPos+mid*stride) < key)
+				lo = mid+1;
+			else
+				hi = mid;
+		}
+		return lo < count && buffer.getLong(keyPos+lo*stride) == key ? lo : -lo-1;
+	}
+
+	/**
+	 * Searches records sorted by byte string key using binary search.
+	 *
+	 * @param buffer
+	 * 	buffer containing the records.
+	 * @param pos
+	 * 	position of first record.
+	 * @param count
+	 * 	number of records.
+	 * @param stride
+	 * 	size of record.
+	 * @param keyOffset
+	 * 	offset of key within record.
+	 * @param key
+	 * 	searched key, its length defines the length of keys.
+	 *
+	 * @return
+	 * 	index of first matching record or {@code -(insertionPoint)-1}.
+	 */
+	public static long binarySearch(FlatBuffer buffer, long pos, long count, int stride, int keyOffset, byte[] key)
+	{
+		long keyPos = pos+keyOffset;
+		long lo = 0, hi = count;
+		while (lo < hi) {
+			long mid = (lo+hi)>>>1;
+			if (compareKey(buffer, keyPos+mid*stride, key) < 0)
+				lo = mid+1;
+			else
+				hi = mid;
+		}
+		return lo < count && compareKey(buffer, keyPos+lo*stride, key) == 0 ? lo : -lo-1;
+	}
+
+	/**
+	 * Searches records sorted by numeric key using interpolation search. For uniformly distributed keys this needs
+	 * O(log log n) probes, for skewed distributions it falls back to binary search after log n probes, so the worst
+	 * case stays logarithmic.
+	 *
+	 * @param buffer
+	 * 	buffer containing the records.
+	 * @param pos
+	 * 	position of first record.
+	 * @param count
+	 * 	number of records.
+	 * @param stride
+	 * 	size of record.
+	 * @param keyOffset
+	 * 	offset of key within record.
+	 * @param key
+	 * 	searched key.
+	 *
+	 * @return
+	 * 	index of first matching record or {@code -(insertionPoint)-1}.
+	 */
+	public static long interpolationSearch(FlatBuffer buffer, long pos, long count, int stride, int keyOffset, long key)
+	{
+		long keyPos = pos+keyOffset;
+		// invariant: all records before lo are lower than key, all records from hi are greater or equal
+		long lo = 0, hi = count;
+		for (int steps = 64-Long.numberOfLeadingZeros(count); hi-lo > INTERPOLATION_MIN && steps > 0; --steps) {
+			long loKey = buffer.getLong(keyPos+lo*stride);
+			long hiKey = buffer.getLong(keyPos+(hi-1)*stride);
+			if (key <= loKey) {
+				hi = lo;
+				break;
+			}
+			if (key > hiKey) {
+				lo = hi;
+				break;
+			}
+			long mid = lo+(long) (((double) key-loKey)/((double) hiKey-loKey)*(hi-1-lo));
+			mid = Math.max(lo, Math.min(hi-1, mid));
+			if (buffer.getLong(keyPos+mid*stride) < key)
+				lo = mid+1;
+			else
+				hi = mid;
+		}
+		while (lo < hi) {
+			long mid = (lo+hi)>>>1;
+			if (buffer.getLong(keyPos+mid*stride) < key)
+				lo = mid+1;
+			else
+				hi = mid;
+		}
+		return lo < count && buffer.getLong(keyPos+lo*stride) == key ? lo : -lo-1;
+	}
+
+	/**
+	 * Copies sorted records into Eytzinger order: record at index {@code k-1} has children at {@code 2k-1} and
+	 * {@code 2k}.
+	 *
+	 * @param source
+	 * 	buffer containing sorted records.
+	 * @param pos
+	 * 	position of first source record.
+	 * @param count
+	 * 	number of records.
+	 * @param stride
+	 * 	size of record.
+	 * @param target
+	 * 	target buffer, must not overlap with source.
+	 * @param targetPos
+	 * 	position of first target record.
+	 */
+	public static void buildEytzinger(FlatBuffer source, long pos, long count, int stride, FlatBuffer target, long targetPos)
+	{
+		// iterative in-order traversal of the implicit tree, assigning sorted records sequentially
+		long k = 1;
+		long sourceIndex = 0;
+		while (sourceIndex < count) {
+			while (k <= count)
+				k <<= 1;
+			k >>>= Long.numberOfTrailingZeros(~k)+1;
+			source.copyTo(pos+sourceIndex*stride, target, targetPos+(k-1)*stride, stride);
+			++sourceIndex;
+			k = 2*k+1;
+		}
+	}
+
+	/**
+	 * Searches records in Eytzinger order by numeric key.
+	 *
+	 * @param buffer
+	 * 	buffer containing the records in Eytzinger order.
+	 * @param pos
+	 * 	position of first record.
+	 * @param count
+	 * 	number of records.
+	 * @param stride
+	 * 	size of record.
+	 * @param keyOffset
+	 * 	offset of key within record.
+	 * @param key
+	 * 	searched key.
+	 *
+	 * @return
+	 * 	Eytzinger index of first matching record, or {@code -(index)-1} where index is Eytzinger index of first
+	 * 	greater record, or count if there is no greater record.
+	 */
+	public static long eytzingerSearch(FlatBuffer buffer, long pos, long count, int stride, int keyOffset, long key)
+	{
+		long keyPos = pos+keyOffset-stride;
+		long k = 1;
+		while (k <= count) {
+			k = 2*k+(buffer.getLong(keyPos+k*stride) < key ? 1 : 0);
+		}
+		k >>>= Long.numberOfTrailingZeros(~k)+1;
+		if (k == 0)
+			return -count-1;
+		return buffer.getLong(keyPos+k*stride) == key ? k-1 : -k;
+	}
+
+	/**
+	 * Searches records in Eytzinger order by byte string key.
+	 *
+	 * @param buffer
+	 * 	buffer containing the records in Eytzinger order.
+	 * @param pos
+	 * 	position of first record.
+	 * @param count
+	 * 	number of records.
+	 * @param stride
+	 * 	size of record.
+	 * @param keyOffset
+	 * 	offset of key within record.
+	 * @param key
+	 * 	searched key, its length defines the length of keys.
+	 *
+	 * @return
+	 * 	Eytzinger index of first matching record, or {@code -(index)-1} where index is Eytzinger index of first
+	 * 	greater record, or count if there is no greater record.
+	 */
+	public static long eytzingerSearch(FlatBuffer buffer, long pos, long count, int stride, int keyOffset, byte[] key)
+	{
+		long keyPos = pos+keyOffset-stride;
+		long k = 1;
+		while (k <= count) {
+			k = 2*k+(compareKey(buffer, keyPos+k*stride, key) < 0 ? 1 : 0);
+		}
+		k >>>= Long.numberOfTrailingZeros(~k)+1;
+		if (k == 0)
+			return -count-1;
+		return compareKey(buffer, keyPos+k*stride, key) == 0 ? k-1 : -k;
+	}
+
+	/**
+	 * Advises the operating system to preload top levels of Eytzinger tree, which are visited by every lookup.
+	 *
+	 * @param buffer
+	 * 	buffer containing the records in Eytzinger order.
+	 * @param pos
+	 * 	position of first record.
+	 * @param count
+	 * 	number of records.
+	 * @param stride
+	 * 	size of record.
+	 * @param levels
+	 * 	number of levels to preload.
+	 *
+	 * @return
+	 * 	true if the advice was applied.
+	 */
+	public static boolean adviseEytzingerTop(FlatBuffer buffer, long pos, long count, int stride, int levels)
+	{
+		long records = Math.min(count, (1L<<Math.min(levels, 62))-1);
+		return buffer.advise(pos, records*stride, AccessHint.WILLNEED);
+	}
+
+	/**
+	 * Compares key stored in buffer with byte string, in unsigned lexicographic order, eight bytes at a time.
+	 *
+	 * @param buffer
+	 * 	buffer containing the key.
+	 * @param pos
+	 * 	position of key.
+	 * @param key
+	 * 	compared key.
+	 *
+	 * @return
+	 * 	negative, zero or positive if the stored key is lower, equal or greater than key.
+	 */
+	public static int compareKey(FlatBuffer buffer, long pos, byte[] key)
+	{
+		boolean swap = buffer.getByteOrder() != ByteOrder.BIG_ENDIAN;
+		int i = 0;
+		for (; i+8 <= key.length; i += 8) {
+			long stored = buffer.getLong(pos+i);
+			if (swap)
+				stored = Long.reverseBytes(stored);
+			long searched = UnsafeMemory.unsafe.getLong(key, UnsafeMemory.BYTE_ARRAY_OFFSET+i);
+			if (UnsafeMemory.NATIVE_ORDER != ByteOrder.BIG_ENDIAN)
+				searched = Long.reverseBytes(searched);
+			if (stored != searched)
+				return Long.compareUnsigned(stored, searched);
+		}
+		for (; i < key.length; ++i) {
+			int result = (buffer.getByte(pos+i)&0xff)-(key[i]&0xff);
+			if (result != 0)
+				return result;
+		}
+		return 0;
+	}
+
+	/** Range below which interpolation search switches to binary search. */
+	private static final long INTERPOLATION_MIN = 16;
+}
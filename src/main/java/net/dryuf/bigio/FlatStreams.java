@@ -0,0 +1,764 @@
+/*
+ * Copyright 2015 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+
+/**
+ * Factory of stream and sequential channel views over areas of {@link FlatBuffer} and {@link FlatChannel}.
+ *
+ * <p/>Each view keeps its own position and uses only positional access to the underlying object, so any number of
+ * views can read the same buffer or channel concurrently. Buffer views copy directly between the buffer and caller's
+ * array or {@link ByteBuffer}, channel streams read and write large requests directly and buffer only small ones.
+ * Skipping and seeking are O(1).
+ */
+public class FlatStreams
+{
+	/**
+	 * Creates {@link InputStream} reading area of buffer.
+	 *
+	 * @param buffer
+	 * 	source buffer.
+	 * @param pos
+	 * 	position of area.
+	 * @param length
+	 * 	length of area.
+	 *
+	 * @return
+	 * 	input stream.
+	 */
+	public static InputStream inputStream(FlatBuffer buffer, long pos, long length)
+	{
+		checkBounds(buffer, pos, length);
+		return new BufferInputStream(buffer, pos, pos+length);
+	}
+
+	/**
+	 * Creates {@link OutputStream} writing area of buffer. Writing beyond the end of area fails.
+	 *
+	 * @param buffer
+	 * 	target buffer.
+	 * @param pos
+	 * 	position of area.
+	 * @param length
+	 * 	length of area.
+	 *
+	 * @return
+	 * 	output stream.
+	 */
+	public static OutputStream outputStream(FlatBuffer buffer, long pos, long length)
+	{
+		checkBounds(buffer, pos, length);
+		return new BufferOutputStream(buffer, pos, pos+length);
+	}
+
+	/**
+	 * Creates {@link SeekableByteChannel} over area of buffer. The channel cannot grow, writing beyond the end of
+	 * area fails and truncating only shrinks the view.
+	 *
+	 * @param buffer
+	 * 	underlying buffer.
+	 * @param pos
+	 * 	position of area.
+	 * @param length
+	 * 	length of area.
+	 *
+	 * @return
+	 * 	seekable channel.
+	 */
+	public static SeekableByteChannel channel(FlatBuffer buffer, long pos, long length)
+	{
+		return channel(buffer, pos, length, UnsafeMemory.canCreateDirectByteBuffer());
+	}
+
+	/**
+	 * Creates {@link SeekableByteChannel} over area of buffer.
+	 *
+	 * @param directViews
+	 * 	whether native memory can be accessed through direct {@link ByteBuffer} views.
+	 */
+	static SeekableByteChannel channel(FlatBuffer buffer, long pos, long length, boolean directViews)
+	{
+		checkBounds(buffer, pos, length);
+		return new BufferSeekableChannel(buffer, pos, length, directViews);
+	}
+
+	/**
+	 * Creates {@link InputStream} reading area of channel. The stream ends at the end of area or at the end of
+	 * channel, whichever comes first.
+	 *
+	 * @param channel
+	 * 	source channel.
+	 * @param pos
+	 * 	position of area.
+	 * @param length
+	 * 	length of area, {@link Long#MAX_VALUE} to read until end of channel.
+	 *
+	 * @return
+	 * 	input stream.
+	 */
+	public static InputStream inputStream(FlatChannel channel, long pos, long length)
+	{
+		return new ChannelInputStream(channel, pos, length > Long.MAX_VALUE-pos ? Long.MAX_VALUE : pos+length, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Creates {@link OutputStream} writing to channel from position. Small writes are buffered until
+	 * {@link OutputStream#flush()} or {@link OutputStream#close()}.
+	 *
+	 * @param channel
+	 * 	target channel.
+	 * @param pos
+	 * 	starting position.
+	 *
+	 * @return
+	 * 	output stream.
+	 */
+	public static OutputStream outputStream(FlatChannel channel, long pos)
+	{
+		return new ChannelOutputStream(channel, pos, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Creates {@link SeekableByteChannel} over area of channel. The view cannot grow, writing beyond the end of area
+	 * fails and truncating only shrinks the view.
+	 *
+	 * @param channel
+	 * 	underlying channel.
+	 * @param pos
+	 * 	position of area.
+	 * @param length
+	 * 	length of area.
+	 *
+	 * @return
+	 * 	seekable channel.
+	 */
+	public static SeekableByteChannel channel(FlatChannel channel, long pos, long length)
+	{
+		return new ChannelSeekableChannel(channel, pos, length);
+	}
+
+	/**
+	 * Writes area of buffer to channel, typically socket. Buffers backed by native memory are written through direct
+	 * views without copying to heap when the JDK allows creating them, otherwise through heap chunks.
+	 *
+	 * @param buffer
+	 * 	source buffer.
+	 * @param pos
+	 * 	position of area.
+	 * @param length
+	 * 	length of area.
+	 * @param target
+	 * 	target channel, in blocking mode.
+	 *
+	 * @return
+	 * 	number of bytes written.
+	 *
+	 * @throws IOException
+	 * 	when writing fails.
+	 */
+	public static long transferTo(FlatBuffer buffer, long pos, long length, WritableByteChannel target) throws IOException
+	{
+		return transferTo(buffer, pos, length, target, UnsafeMemory.canCreateDirectByteBuffer());
+	}
+
+	/**
+	 * Writes area of buffer to channel.
+	 *
+	 * @param directViews
+	 * 	whether native memory can be accessed through direct {@link ByteBuffer} views.
+	 */
+	static long transferTo(FlatBuffer buffer, long pos, long length, WritableByteChannel target, boolean directViews) throws IOException
+	{
+		checkBounds(buffer, pos, length);
+		if (length == 0)
+			return 0;
+		if (directViews && AbstractFlatBuffer.memoryAddressOf(buffer, pos, length) != 0) {
+			for (ByteBuffer view: buffer.getByteBuffers(pos, length, TRANSFER_CHUNK_SIZE)) {
+				writeFully(target, view);
+			}
+		}
+		else {
+			byte[] chunk = new byte[(int) Math.min(length, DEFAULT_CHUNK_SIZE)];
+			for (long done = 0; done < length; ) {
+				int current = (int) Math.min(chunk.length, length-done);
+				buffer.getBytes(pos+done, chunk, 0, current);
+				writeFully(target, ByteBuffer.wrap(chunk, 0, current));
+				done += current;
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Writes area of channel to another channel, typically socket. Channels created by
+	 * {@link FlatChannels#from(FileChannel)} use
+	 * {@link FileChannel#transferTo(long, long, WritableByteChannel)}, which avoids copying through
+	 * user space, other channels are copied via direct buffer.
+	 *
+	 * @param channel
+	 * 	source channel.
+	 * @param pos
+	 * 	position of area.
+	 * @param length
+	 * 	length of area.
+	 * @param target
+	 * 	target channel, in blocking mode.
+	 *
+	 * @return
+	 * 	number of bytes written, lower than length if the source channel ends earlier.
+	 *
+	 * @throws IOException
+	 * 	when reading or writing fails.
+	 */
+	public static long transferTo(FlatChannel channel, long pos, long length, WritableByteChannel target) throws IOException
+	{
+		long done = 0;
+		if (channel instanceof FlatChannels.FileChannelFlatChannel) {
+			FileChannel fileChannel = ((FlatChannels.FileChannelFlatChannel) channel).getFileChannel();
+			while (done < length) {
+				long current = fileChannel.transferTo(pos+done, length-done, target);
+				if (current <= 0)
+					break;
+				done += current;
+			}
+			return done;
+		}
+		ByteBuffer chunk = ByteBuffer.allocateDirect((int) Math.min(length, TRANSFER_CHUNK_SIZE));
+		while (done < length) {
+			chunk.clear();
+			chunk.limit((int) Math.min(chunk.capacity(), length-done));
+			int current = channel.read(chunk, pos+done);
+			if (current < 0)
+				break;
+			chunk.flip();
+			writeFully(target, chunk);
+			done += current;
+		}
+		return done;
+	}
+
+	private static void writeFully(WritableByteChannel target, ByteBuffer data) throws IOException
+	{
+		while (data.hasRemaining()) {
+			target.write(data);
+		}
+	}
+
+	/**
+	 * Copies from buffer to ByteBuffer, advancing its position.
+	 */
+	private static void copyOut(FlatBuffer buffer, long pos, ByteBuffer target, int length, boolean directViews)
+	{
+		if (target.hasArray()) {
+			buffer.getBytes(pos, target.array(), target.arrayOffset()+target.position(), length);
+			target.position(target.position()+length);
+		}
+		else if (directViews && AbstractFlatBuffer.memoryAddressOf(buffer, pos, length) != 0) {
+			target.put(buffer.getByteBuffer(pos, length));
+		}
+		else {
+			byte[] chunk = new byte[Math.min(length, DEFAULT_CHUNK_SIZE)];
+			for (int done = 0; done < length; ) {
+				int current = Math.min(chunk.length, length-done);
+				buffer.getBytes(pos+done, chunk, 0, current);
+				target.put(chunk, 0, current);
+				done += current;
+			}
+		}
+	}
+
+	/**
+	 * Copies from ByteBuffer to buffer, advancing its position.
+	 */
+	private static void copyIn(ByteBuffer source, FlatBuffer buffer, long pos, int length, boolean directViews)
+	{
+		if (source.hasArray()) {
+			buffer.putBytes(pos, source.array(), source.arrayOffset()+source.position(), length);
+			source.position(source.position()+length);
+		}
+		else if (directViews && AbstractFlatBuffer.memoryAddressOf(buffer, pos, length) != 0) {
+			ByteBuffer part = source.duplicate();
+			part.limit(part.position()+length);
+			buffer.getByteBuffer(pos, length).put(part);
+			source.position(part.position());
+		}
+		else {
+			byte[] chunk = new byte[Math.min(length, DEFAULT_CHUNK_SIZE)];
+			for (int done = 0; done < length; ) {
+				int current = Math.min(chunk.length, length-done);
+				source.get(chunk, 0, current);
+				buffer.putBytes(pos+done, chunk, 0, current);
+				done += current;
+			}
+		}
+	}
+
+	private static void checkBounds(FlatBuffer buffer, long pos, long length)
+	{
+		if ((pos|length|(pos+length)|(buffer.size()-length-pos)) < 0) {
+			throw new IndexOutOfBoundsException("Range out of bounds: pos="+pos+" length="+length+" size="+buffer.size());
+		}
+	}
+
+	private static void checkArray(byte[] data, int offset, int length)
+	{
+		if ((offset|length|(offset+length)|(data.length-length-offset)) < 0) {
+			throw new IndexOutOfBoundsException("Range out of array bounds: offset="+offset+" length="+length);
+		}
+	}
+
+	private static class BufferInputStream extends InputStream
+	{
+		BufferInputStream(FlatBuffer buffer, long position, long end)
+		{
+			this.buffer = buffer;
+			this.position = position;
+			this.mark = position;
+			this.end = end;
+		}
+
+		@Override
+		public int read()
+		{
+			return position < end ? buffer.getByte(position++)&0xff : -1;
+		}
+
+		@Override
+		public int read(byte[] data, int offset, int length)
+		{
+			checkArray(data, offset, length);
+			if (length == 0)
+				return 0;
+			if (position >= end)
+				return -1;
+			int current = (int) Math.min(length, end-position);
+			buffer.getBytes(position, data, offset, current);
+			position += current;
+			return current;
+		}
+
+		@Override
+		public long skip(long n)
+		{
+			long skipped = Math.max(0, Math.min(n, end-position));
+			position += skipped;
+			return skipped;
+		}
+
+		@Override
+		public int available()
+		{
+			return (int) Math.min(Integer.MAX_VALUE, end-position);
+		}
+
+		@Override
+		public boolean markSupported()
+		{
+			return true;
+		}
+
+		@Override
+		public void mark(int readLimit)
+		{
+			mark = position;
+		}
+
+		@Override
+		public void reset()
+		{
+			position = mark;
+		}
+
+		private final FlatBuffer buffer;
+
+		private long position;
+
+		private long mark;
+
+		private final long end;
+	}
+
+	private static class BufferOutputStream extends OutputStream
+	{
+		BufferOutputStream(FlatBuffer buffer, long position, long end)
+		{
+			this.buffer = buffer;
+			this.position = position;
+			this.end = end;
+		}
+
+		@Override
+		public void write(int b) throws IOException
+		{
+			if (position >= end)
+				throw new IOException("Write beyond end of area: position="+position);
+			buffer.putByte(position++, (byte) b);
+		}
+
+		@Override
+		public void write(byte[] data, int offset, int length) throws IOException
+		{
+			checkArray(data, offset, length);
+			if (length > end-position)
+				throw new IOException("Write beyond end of area: position="+position+" length="+length);
+			buffer.putBytes(position, data, offset, length);
+			position += length;
+		}
+
+		private final FlatBuffer buffer;
+
+		private long position;
+
+		private final long end;
+	}
+
+	private static abstract class AbstractSeekableChannel implements SeekableByteChannel
+	{
+		AbstractSeekableChannel(long start, long size)
+		{
+			this.start = start;
+			this.size = size;
+		}
+
+		@Override
+		public int read(ByteBuffer target) throws IOException
+		{
+			checkOpen();
+			if (position >= size)
+				return target.hasRemaining() ? -1 : 0;
+			int current = (int) Math.min(target.remaining(), size-position);
+			int read = readAt(target, start+position, current);
+			if (read > 0)
+				position += read;
+			return read;
+		}
+
+		@Override
+		public int write(ByteBuffer source) throws IOException
+		{
+			checkOpen();
+			if (source.remaining() > size-position)
+				throw new IOException("Write beyond end of area: position="+position+" length="+source.remaining());
+			int written = writeAt(source, start+position, source.remaining());
+			position += written;
+			return written;
+		}
+
+		@Override
+		public long position() throws IOException
+		{
+			checkOpen();
+			return position;
+		}
+
+		@Override
+		public SeekableByteChannel position(long newPosition) throws IOException
+		{
+			checkOpen();
+			if (newPosition < 0)
+				throw new IllegalArgumentException("Negative position: "+newPosition);
+			position = newPosition;
+			return this;
+		}
+
+		@Override
+		public long size() throws IOException
+		{
+			checkOpen();
+			return size;
+		}
+
+		@Override
+		public SeekableByteChannel truncate(long newSize) throws IOException
+		{
+			checkOpen();
+			if (newSize < 0)
+				throw new IllegalArgumentException("Negative size: "+newSize);
+			size = Math.min(size, newSize);
+			position = Math.min(position, size);
+			return this;
+		}
+
+		@Override
+		public boolean isOpen()
+		{
+			return open;
+		}
+
+		@Override
+		public void close()
+		{
+			open = false;
+		}
+
+		protected abstract int readAt(ByteBuffer target, long pos, int length) throws IOException;
+
+		protected abstract int writeAt(ByteBuffer source, long pos, int length) throws IOException;
+
+		private void checkOpen() throws ClosedChannelException
+		{
+			if (!open)
+				throw new ClosedChannelException();
+		}
+
+		private final long start;
+
+		private long size;
+
+		private long position;
+
+		private volatile boolean open = true;
+	}
+
+	private static class BufferSeekableChannel extends AbstractSeekableChannel
+	{
+		BufferSeekableChannel(FlatBuffer buffer, long start, long size, boolean directViews)
+		{
+			super(start, size);
+			this.buffer = buffer;
+			this.directViews = directViews;
+		}
+
+		@Override
+		protected int readAt(ByteBuffer target, long pos, int length)
+		{
+			copyOut(buffer, pos, target, length, directViews);
+			return length;
+		}
+
+		@Override
+		protected int writeAt(ByteBuffer source, long pos, int length)
+		{
+			copyIn(source, buffer, pos, length, directViews);
+			return length;
+		}
+
+		private final FlatBuffer buffer;
+
+		private final boolean directViews;
+	}
+
+	private static class ChannelSeekableChannel extends AbstractSeekableChannel
+	{
+		ChannelSeekableChannel(FlatChannel channel, long start, long size)
+		{
+			super(start, size);
+			this.channel = channel;
+		}
+
+		@Override
+		protected int readAt(ByteBuffer target, long pos, int length) throws IOException
+		{
+			if (target.remaining() == length)
+				return channel.read(target, pos);
+			ByteBuffer part = target.duplicate();
+			part.limit(part.position()+length);
+			int read = channel.read(part, pos);
+			target.position(part.position());
+			return read;
+		}
+
+		@Override
+		protected int writeAt(ByteBuffer source, long pos, int length) throws IOException
+		{
+			return channel.write(source, pos);
+		}
+
+		private final FlatChannel channel;
+	}
+
+	private static class ChannelInputStream extends InputStream
+	{
+		ChannelInputStream(FlatChannel channel, long position, long end, int chunkSize)
+		{
+			this.channel = channel;
+			this.position = position;
+			this.end = end;
+			this.chunkSize = chunkSize;
+		}
+
+		@Override
+		public int read() throws IOException
+		{
+			if (bufferPosition == bufferLimit && !fill())
+				return -1;
+			return chunk[bufferPosition++]&0xff;
+		}
+
+		@Override
+		public int read(byte[] data, int offset, int length) throws IOException
+		{
+			checkArray(data, offset, length);
+			if (length == 0)
+				return 0;
+			if (bufferPosition == bufferLimit) {
+				if (length >= chunkSize) {
+					// large reads go directly to caller's array
+					if (position >= end)
+						return -1;
+					int read = channel.read(ByteBuffer.wrap(data, offset, (int) Math.min(length, end-position)), position);
+					if (read > 0)
+						position += read;
+					return read;
+				}
+				if (!fill())
+					return -1;
+			}
+			int current = Math.min(length, bufferLimit-bufferPosition);
+			System.arraycopy(chunk, bufferPosition, data, offset, current);
+			bufferPosition += current;
+			return current;
+		}
+
+		@Override
+		public long skip(long n)
+		{
+			if (n <= 0)
+				return 0;
+			int buffered = bufferLimit-bufferPosition;
+			if (n <= buffered) {
+				bufferPosition += n;
+				return n;
+			}
+			long skipped = buffered+Math.min(n-buffered, end-position);
+			position += skipped-buffered;
+			bufferPosition = bufferLimit = 0;
+			return skipped;
+		}
+
+		@Override
+		public int available()
+		{
+			return bufferLimit-bufferPosition;
+		}
+
+		private boolean fill() throws IOException
+		{
+			if (position >= end)
+				return false;
+			if (chunk == null)
+				chunk = new byte[chunkSize];
+			int read = channel.read(ByteBuffer.wrap(chunk, 0, (int) Math.min(chunkSize, end-position)), position);
+			if (read <= 0)
+				return false;
+			position += read;
+			bufferPosition = 0;
+			bufferLimit = read;
+			return true;
+		}
+
+		private final FlatChannel channel;
+
+		/** Channel position following the buffered data. */
+		private long position;
+
+		private final long end;
+
+		private final int chunkSize;
+
+		private byte[] chunk;
+
+		private int bufferPosition;
+
+		private int bufferLimit;
+	}
+
+	private static class ChannelOutputStream extends OutputStream
+	{
+		ChannelOutputStream(FlatChannel channel, long position, int chunkSize)
+		{
+			this.channel = channel;
+			this.position = position;
+			this.chunk = new byte[chunkSize];
+		}
+
+		@Override
+		public void write(int b) throws IOException
+		{
+			if (count == chunk.length)
+				flushBuffer();
+			chunk[count++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] data, int offset, int length) throws IOException
+		{
+			checkArray(data, offset, length);
+			if (length >= chunk.length) {
+				// large writes go directly from caller's array
+				flushBuffer();
+				writeAll(ByteBuffer.wrap(data, offset, length));
+				return;
+			}
+			if (length > chunk.length-count)
+				flushBuffer();
+			System.arraycopy(data, offset, chunk, count, length);
+			count += length;
+		}
+
+		@Override
+		public void flush() throws IOException
+		{
+			flushBuffer();
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			flushBuffer();
+		}
+
+		private void flushBuffer() throws IOException
+		{
+			if (count > 0) {
+				writeAll(ByteBuffer.wrap(chunk, 0, count));
+				count = 0;
+			}
+		}
+
+		private void writeAll(ByteBuffer data) throws IOException
+		{
+			while (data.hasRemaining()) {
+				position += channel.write(data, position);
+			}
+		}
+
+		private final FlatChannel channel;
+
+		/** Channel position following the written data. */
+		private long position;
+
+		private final byte[] chunk;
+
+		private int count;
+	}
+
+	/** Size of heap chunk used for buffering small channel operations. */
+	public static final int DEFAULT_CHUNK_SIZE = 64*1024;
+
+	/** Maximum size of single direct view or buffer when transferring to another channel. */
+	public static final int TRANSFER_CHUNK_SIZE = 1024*1024;
+}
@@ -0,0 +1,451 @@
+/*
+ * Copyright 2015 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import sun.misc.Unsafe;
+
+
+/**
+ * Growable mapped file implementation of {@link FlatBuffer}, suitable for append-only logs.
+ *
+ * <p/>The file is mapped in chunks of fixed size. Once a write goes beyond the current capacity, the file is
+ * extended and another chunk is mapped. Existing chunks are never remapped so the readers stay valid while the
+ * buffer grows. The chunks overlap by few bytes so primitive values never straddle two mappings.
+ *
+ * <p/>The {@link #size()} is the end of written or reserved data. The file is extended beyond it while open and
+ * truncated back to the size on {@link #close()}.
+ */
+@SuppressWarnings("restriction")
+public class GrowableMappedFlatBuffer extends AbstractFlatBuffer
+{
+	/**
+	 * Opens growable buffer on file, with size being the current file size.
+	 *
+	 * @param channel
+	 * 	read-write file channel.
+	 * @param chunkSize
+	 * 	size of mapping increment, must be power of two and multiple of page size.
+	 */
+	public GrowableMappedFlatBuffer(FileChannel channel, long chunkSize) throws IOException
+	{
+		this(channel, chunkSize, -1);
+	}
+
+	/**
+	 * Opens growable buffer on file.
+	 *
+	 * @param channel
+	 * 	read-write file channel.
+	 * @param chunkSize
+	 * 	size of mapping increment, must be power of two and multiple of page size.
+	 * @param size
+	 * 	initial size, negative to use the current file size.
+	 */
+	public GrowableMappedFlatBuffer(FileChannel channel, long chunkSize, long size) throws IOException
+	{
+		if (chunkSize < MIN_CHUNK_SIZE || Long.bitCount(chunkSize) != 1) {
+			throw new IllegalArgumentException("chunkSize must be power of two, at least "+MIN_CHUNK_SIZE+": "+chunkSize);
+		}
+		this.channel = channel;
+		this.fd = MappedFlatBuffer.fileDescriptorOf(channel);
+		this.chunkShift = Long.numberOfTrailingZeros(chunkSize);
+		this.chunkMask = chunkSize-1;
+		this.end = new AtomicLong(size < 0 ? channel.size() : size);
+		try {
+			ensureCapacity(this.end.get());
+		}
+		catch (UncheckedIOException ex) {
+			unmap();
+			throw ex.getCause();
+		}
+	}
+
+	@Override
+	public void close()
+	{
+		synchronized (chunks) {
+			if (unmap()) {
+				try {
+					channel.truncate(end.get());
+				}
+				catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		}
+	}
+
+	@Override
+	public ByteOrder getByteOrder()
+	{
+		return ByteOrder.nativeOrder();
+	}
+
+	@Override
+	public long size()
+	{
+		return end.get();
+	}
+
+	/**
+	 * Gets the currently mapped capacity.
+	 *
+	 * @return
+	 * 	number of bytes accessible without growing the mapping.
+	 */
+	public long capacity()
+	{
+		long[] addresses = this.addresses;
+		return addresses == null ? 0 : (long)addresses.length<<chunkShift;
+	}
+
+	/**
+	 * Atomically reserves area at the end of buffer. Safe to be called from multiple threads concurrently.
+	 *
+	 * @param length
+	 * 	length of area to reserve.
+	 *
+	 * @return
+	 * 	position of reserved area.
+	 */
+	public long reserve(long length)
+	{
+		if (length < 0) {
+			throw new IllegalArgumentException("length must not be negative: "+length);
+		}
+		long pos = end.getAndAdd(length);
+		ensureCapacity(pos+length);
+		return pos;
+	}
+
+	/**
+	 * Atomically appends data to the end of buffer. Safe to be called from multiple threads concurrently.
+	 *
+	 * @param data
+	 * 	data to append.
+	 *
+	 * @return
+	 * 	position where the data were written.
+	 */
+	public long append(byte[] data)
+	{
+		return append(data, 0, data.length);
+	}
+
+	/**
+	 * Atomically appends data to the end of buffer. Safe to be called from multiple threads concurrently.
+	 *
+	 * @param data
+	 * 	data to append.
+	 * @param offset
+	 * 	offset within data.
+	 * @param length
+	 * 	length of appended data.
+	 *
+	 * @return
+	 * 	position where the data were written.
+	 */
+	public long append(byte[] data, int offset, int length)
+	{
+		checkArrayBounds(data, offset, length);
+		long pos = reserve(length);
+		putBytes(pos, data, offset, length);
+		return pos;
+	}
+
+	@Override
+	public byte getByte(long pos)
+	{
+		return unsafe.getByte(readAddress(pos, 1));
+	}
+
+	@Override
+	public short getShort(long pos)
+	{
+		return unsafe.getShort(readAddress(pos, 2));
+	}
+
+	@Override
+	public int getInt(long pos)
+	{
+		return unsafe.getInt(readAddress(pos, 4));
+	}
+
+	@Override
+	public long getLong(long pos)
+	{
+		return unsafe.getLong(readAddress(pos, 8));
+	}
+
+	@Override
+	public void putByte(long pos, byte val)
+	{
+		unsafe.putByte(writeAddress(pos, 1), val);
+	}
+
+	@Override
+	public void putShort(long pos, short val)
+	{
+		unsafe.putShort(writeAddress(pos, 2), val);
+	}
+
+	@Override
+	public void putInt(long pos, int val)
+	{
+		unsafe.putInt(writeAddress(pos, 4), val);
+	}
+
+	@Override
+	public void putLong(long pos, long val)
+	{
+		unsafe.putLong(writeAddress(pos, 8), val);
+	}
+
+	@Override
+	public void getBytes(long pos, byte[] data, int offset, int length)
+	{
+		checkArrayBounds(data, offset, length);
+		checkBounds(pos, length, end.get());
+		long[] addresses = mappedAddresses(pos+length);
+		for (int done = 0; done < length; ) {
+			long chunkOffset = pos&chunkMask;
+			int current = (int)Math.min(length-done, chunkMask+1-chunkOffset);
+			unsafe.copyMemory(null, addresses[(int)(pos>>>chunkShift)]+chunkOffset, data, UnsafeMemory.BYTE_ARRAY_OFFSET+offset+done, current);
+			done += current;
+			pos += current;
+		}
+	}
+
+	@Override
+	public void putBytes(long pos, byte[] data, int offset, int length)
+	{
+		checkArrayBounds(data, offset, length);
+		long[] addresses = prepareWrite(pos, length);
+		for (int done = 0; done < length; ) {
+			long chunkOffset = pos&chunkMask;
+			int current = (int)Math.min(length-done, chunkMask+1-chunkOffset);
+			unsafe.copyMemory(data, UnsafeMemory.BYTE_ARRAY_OFFSET+offset+done, null, addresses[(int)(pos>>>chunkShift)]+chunkOffset, current);
+			done += current;
+			pos += current;
+		}
+	}
+
+	@Override
+	public void force(long pos, long length)
+	{
+		checkBounds(pos, length, end.get());
+		long[] addresses = mappedAddresses(pos+length);
+		for (long done = 0; done < length; ) {
+			long chunkOffset = (pos+done)&chunkMask;
+			long current = Math.min(length-done, chunkMask+1-chunkOffset);
+			UnsafeMemory.force(fd, addresses[(int)((pos+done)>>>chunkShift)]+chunkOffset, current);
+			done += current;
+		}
+	}
+
+	@Override
+	public boolean advise(long pos, long length, AccessHint hint)
+	{
+		checkBounds(pos, length, end.get());
+		boolean applied = false;
+		for (long done = 0; done < length; ) {
+			long current = Math.min(length-done, chunkMask+1-((pos+done)&chunkMask));
+			applied |= super.advise(pos+done, current, hint);
+			done += current;
+		}
+		return applied;
+	}
+
+	@Override
+	public void copyTo(long pos, FlatBuffer target, long targetPos, long length)
+	{
+		if (target == this) {
+			super.copyTo(pos, target, targetPos, length);
+			return;
+		}
+		checkBounds(pos, length, end.get());
+		for (long done = 0; done < length; ) {
+			long current = Math.min(length-done, chunkMask+1-((pos+done)&chunkMask));
+			super.copyTo(pos+done, target, targetPos+done, current);
+			done += current;
+		}
+	}
+
+	@Override
+	public long transferTo(long pos, long length, FlatChannel channel, long channelPos) throws IOException
+	{
+		checkBounds(pos, length, end.get());
+		for (long done = 0; done < length; ) {
+			long current = Math.min(length-done, chunkMask+1-((pos+done)&chunkMask));
+			super.transferTo(pos+done, current, channel, channelPos+done);
+			done += current;
+		}
+		return length;
+	}
+
+	/**
+	 * Gets memory address of the area, if it fits into single chunk.
+	 */
+	@Override
+	protected long getMemoryAddress(long pos, long length)
+	{
+		checkBounds(pos, length, end.get());
+		long chunkOffset = pos&chunkMask;
+		if (chunkOffset+length > chunkMask+1+CHUNK_OVERLAP) {
+			return 0;
+		}
+		return mappedAddresses(pos+length)[(int)(pos>>>chunkShift)]+chunkOffset;
+	}
+
+	private long readAddress(long pos, int length)
+	{
+		checkBounds(pos, length, end.get());
+		return mappedAddresses(pos+length)[(int)(pos>>>chunkShift)]+(pos&chunkMask);
+	}
+
+	private long writeAddress(long pos, int length)
+	{
+		return prepareWrite(pos, length)[(int)(pos>>>chunkShift)]+(pos&chunkMask);
+	}
+
+	private long[] prepareWrite(long pos, long length)
+	{
+		long current = end.get();
+		if ((pos|length|(current-length-pos)) < 0) {
+			checkBounds(pos, length, Long.MAX_VALUE);
+			ensureCapacity(pos+length);
+			while (current < pos+length && !end.compareAndSet(current, pos+length)) {
+				current = end.get();
+			}
+		}
+		return mappedAddresses(pos+length);
+	}
+
+	/**
+	 * Gets chunk addresses, waiting for mapping if the area was reserved by other thread but not yet mapped.
+	 */
+	private long[] mappedAddresses(long requiredEnd)
+	{
+		long[] addresses = this.addresses;
+		if (addresses == null) {
+			throw new IllegalStateException("Buffer already closed");
+		}
+		if (requiredEnd > (long)addresses.length<<chunkShift) {
+			ensureCapacity(requiredEnd);
+			addresses = this.addresses;
+		}
+		return addresses;
+	}
+
+	private void ensureCapacity(long capacity)
+	{
+		long[] current = this.addresses;
+		if (current != null && capacity <= (long)current.length<<chunkShift) {
+			return;
+		}
+		synchronized (chunks) {
+			if (addresses == null) {
+				throw new IllegalStateException("Buffer already closed");
+			}
+			long[] addresses = this.addresses;
+			int count = (int)((capacity+chunkMask)>>>chunkShift);
+			if (count <= addresses.length) {
+				return;
+			}
+			try {
+				long fileSize = ((long)count<<chunkShift)+CHUNK_OVERLAP;
+				if (channel.size() < fileSize) {
+					channel.write(ByteBuffer.wrap(new byte[1]), fileSize-1);
+				}
+				long[] newAddresses = Arrays.copyOf(addresses, count);
+				for (int i = addresses.length; i < count; ++i) {
+					MappedFlatBuffer chunk = new MappedFlatBuffer(channel, FileChannel.MapMode.READ_WRITE, (long)i<<chunkShift, chunkMask+1+CHUNK_OVERLAP);
+					chunks.add(chunk);
+					newAddresses[i] = chunk.getMemoryAddress(0, 0);
+				}
+				this.addresses = newAddresses;
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	private boolean unmap()
+	{
+		synchronized (chunks) {
+			if (addresses == null) {
+				return false;
+			}
+			addresses = null;
+			for (MappedFlatBuffer chunk: chunks) {
+				chunk.close();
+			}
+			chunks.clear();
+			return true;
+		}
+	}
+
+	private static void checkBounds(long pos, long length, long size)
+	{
+		if ((pos|length|(pos+length)|(size-length-pos)) < 0) {
+			if (pos < 0) {
+				throw new IndexOutOfBoundsException("position out of bounds: "+pos);
+			}
+			throw new IndexOutOfBoundsException("length out of bounds: pos="+pos+" length="+length+" size="+size);
+		}
+	}
+
+	private static void checkArrayBounds(byte[] data, int offset, int length)
+	{
+		if ((offset|length|(offset+length)|(data.length-length-offset)) < 0) {
+			throw new IndexOutOfBoundsException("Range out of array bounds: offset="+offset+" length="+length);
+		}
+	}
+
+	private final FileChannel channel;
+
+	private final FileDescriptor fd;
+
+	private final int chunkShift;
+
+	private final long chunkMask;
+
+	private final AtomicLong end;
+
+	private final List<MappedFlatBuffer> chunks = new ArrayList<>();
+
+	private volatile long[] addresses = new long[0];
+
+	/** Overlap of subsequent chunks, ensuring primitive values never straddle two mappings. */
+	private static final long CHUNK_OVERLAP = 8;
+
+	private static final long MIN_CHUNK_SIZE = 64*1024;
+
+	private static final Unsafe unsafe = UnsafeMemory.unsafe;
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2015 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+
+/**
+ * {@link FlatBuffer} recording accesses to {@link AccessStatistics}. Primitive and bulk reads and writes, comparisons
+ * and variable length integers are counted, {@link #transferTo(long, long, FlatChannel, long) transfers}
+ * additionally record their latency. {@link #getByteBuffer(long, long) ByteBuffer views} are recorded as read of
+ * the whole area when created. Operations working directly on raw memory of underlying buffer (volatile, acquire and
+ * release accessors, atomics, checksums, scanners) are not recorded.
+ *
+ * <p/>The instrumentation is opt-in: {@link #wrap(FlatBuffer, AccessStatistics)} returns the original buffer when
+ * no statistics are provided, so disabled instrumentation costs nothing.
+ */
+public class InstrumentedFlatBuffer extends AbstractDelegatingFlatBuffer
+{
+	public InstrumentedFlatBuffer(FlatBuffer underlying, AccessStatistics statistics)
+	{
+		super(underlying);
+		this.statistics = statistics;
+	}
+
+	/**
+	 * Wraps buffer with instrumentation.
+	 *
+	 * @param buffer
+	 * 	underlying buffer.
+	 * @param statistics
+	 * 	statistics to record to, null to disable instrumentation.
+	 *
+	 * @return
+	 * 	instrumented buffer or the original buffer if statistics is null.
+	 */
+	public static FlatBuffer wrap(FlatBuffer buffer, AccessStatistics statistics)
+	{
+		return statistics == null ? buffer : new InstrumentedFlatBuffer(buffer, statistics);
+	}
+
+	/**
+	 * Gets statistics this buffer records to.
+	 *
+	 * @return
+	 * 	statistics.
+	 */
+	public AccessStatistics getStatistics()
+	{
+		return statistics;
+	}
+
+	@Override
+	public byte getByte(long pos)
+	{
+		statistics.recordRead(pos, 1);
+		return underlying.getByte(pos);
+	}
+
+	@Override
+	public short getShort(long pos)
+	{
+		statistics.recordRead(pos, 2);
+		return underlying.getShort(pos);
+	}
+
+	@Override
+	public int getInt(long pos)
+	{
+		statistics.recordRead(pos, 4);
+		return underlying.getInt(pos);
+	}
+
+	@Override
+	public long getLong(long pos)
+	{
+		statistics.recordRead(pos, 8);
+		return underlying.getLong(pos);
+	}
+
+	@Override
+	public void putByte(long pos, byte val)
+	{
+		statistics.recordWrite(pos, 1);
+		underlying.putByte(pos, val);
+	}
+
+	@Override
+	public void putShort(long pos, short val)
+	{
+		statistics.recordWrite(pos, 2);
+		underlying.putShort(pos, val);
+	}
+
+	@Override
+	public void putInt(long pos, int val)
+	{
+		statistics.recordWrite(pos, 4);
+		underlying.putInt(pos, val);
+	}
+
+	@Override
+	public void putLong(long pos, long val)
+	{
+		statistics.recordWrite(pos, 8);
+		underlying.putLong(pos, val);
+	}
+
+	@Override
+	public void getBytes(long pos, byte[] data, int offset, int length)
+	{
+		statistics.recordRead(pos, length);
+		underlying.getBytes(pos, data, offset, length);
+	}
+
+	@Override
+	public void putBytes(long pos, byte[] data, int offset, int length)
+	{
+		statistics.recordWrite(pos, length);
+		underlying.putBytes(pos, data, offset, length);
+	}
+
+	@Override
+	public boolean equalsBytes(long pos, byte[] bytes, int offset, int length)
+	{
+		statistics.recordRead(pos, length);
+		return underlying.equalsBytes(pos, bytes, offset, length);
+	}
+
+	@Override
+	public boolean equalsByteBuffer(long pos, ByteBuffer buffer)
+	{
+		statistics.recordRead(pos, buffer.remaining());
+		return underlying.equalsByteBuffer(pos, buffer);
+	}
+
+	@Override
+	public long mismatch(long pos, FlatBuffer other, long otherPos, long length)
+	{
+		statistics.recordRead(pos, length);
+		return underlying.mismatch(pos, other, otherPos, length);
+	}
+
+	@Override
+	public long getVarLong(long pos)
+	{
+		long val = underlying.getVarLong(pos);
+		statistics.recordRead(pos, FlatBuffer.varLongSize(val));
+		return val;
+	}
+
+	@Override
+	public long getVarLong(long pos, FlatCursor cursor)
+	{
+		long val = underlying.getVarLong(pos, cursor);
+		statistics.recordRead(pos, cursor.position()-pos);
+		return val;
+	}
+
+	@Override
+	public int getVarLongLength(long pos)
+	{
+		int length = underlying.getVarLongLength(pos);
+		statistics.recordRead(pos, length);
+		return length;
+	}
+
+	@Override
+	public ByteBuffer getByteBuffer(long pos, long length)
+	{
+		statistics.recordRead(pos, length);
+		return underlying.getByteBuffer(pos, length);
+	}
+
+	@Override
+	public void copyTo(long pos, FlatBuffer target, long targetPos, long length)
+	{
+		statistics.recordRead(pos, length);
+		underlying.copyTo(pos, target, targetPos, length);
+	}
+
+	@Override
+	public long transferTo(long pos, long length, FlatChannel channel, long channelPos) throws IOException
+	{
+		long start = System.nanoTime();
+		long transferred = underlying.transferTo(pos, length, channel, channelPos);
+		statistics.recordReadLatency(System.nanoTime()-start);
+		statistics.recordRead(pos, transferred);
+		return transferred;
+	}
+
+	private final AccessStatistics statistics;
+}
@@ -16,21 +16,20 @@
 
 package net.dryuf.bigio;
 
+import java.io.FileDescriptor;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 
 import sun.nio.ch.FileChannelImpl;
-import sun.misc.Unsafe;
 
 
 /**
  * Mapped file implementation of {@link FlatBuffer}.
  */
 @SuppressWarnings("restriction")
-public class MappedFlatBuffer extends AbstractFlatBuffer
+public class MappedFlatBuffer extends AbstractNativeFlatBuffer
 {
 	private static Method getClassMethod(Class<?> cls, String name, Class<?>... params) throws Exception
 	{
@@ -40,20 +39,38 @@ public class MappedFlatBuffer extends AbstractFlatBuffer
 	}
 
 	public MappedFlatBuffer(FileChannel channel, FileChannel.MapMode mode, long len) throws IOException
+	{
+		this(channel, mode, 0, len);
+	}
+
+	/**
+	 * Maps part of file.
+	 *
+	 * @param channel
+	 * 	file channel to map.
+	 * @param mode
+	 * 	mapping mode, read-only or read-write.
+	 * @param position
+	 * 	position in file, must be aligned to page size.
+	 * @param len
+	 * 	length of mapping, negative to map until end of file.
+	 */
+	public MappedFlatBuffer(FileChannel channel, FileChannel.MapMode mode, long position, long len) throws IOException
 	{
 		if (len < 0) {
-			len = channel.size();
+			len = channel.size()-position;
 		}
 		this.size = len;
+		this.fd = fileDescriptorOf(channel);
 		long sizeArg = this.size;
-		if (System.getProperty("os.name").toLowerCase().contains("windows")) {
+		if (position == 0 && System.getProperty("os.name").toLowerCase().contains("windows")) {
 			// windows implementation has a bug as the last parameter is truncated, therefore we always map
 			// whole file
 			sizeArg = 0;
 			this.size = channel.size();
 		}
 		try {
-			this.address = (long) mmap.invoke(channel, translateMode(mode), 0L, sizeArg);
+			this.address = (long) mmap.invoke(channel, translateMode(mode), position, sizeArg);
 		}
 		catch (Exception e) {
 			throw new IOException(e);
@@ -72,112 +89,28 @@ public class MappedFlatBuffer extends AbstractFlatBuffer
 	}
 
 	@Override
-	public long size()
-	{
-		return this.size;
-	}
-
-	@Override
-	public ByteOrder getByteOrder()
-	{
-		return ByteOrder.nativeOrder();
-	}
-
-	@Override
-	public byte getByte(long pos)
-	{
-		checkBounds(pos, 1);
-		return unsafe.getByte(pos +address);
-	}
-
-	@Override
-	public short getShort(long pos)
-	{
-		checkBounds(pos, 2);
-		return unsafe.getShort(pos +address);
-	}
-
-	@Override
-	public int getInt(long pos)
-	{
-		checkBounds(pos, 4);
-		return unsafe.getInt(pos +address);
-	}
-
-	@Override
-	public long getLong(long pos)
-	{
-		checkBounds(pos, 8);
-		return unsafe.getLong(pos +address);
-	}
-
-	@Override
-	public void putByte(long pos, byte val)
-	{
-		checkBounds(pos, 1);
-		unsafe.putShort(pos +address, val);
-	}
-
-	@Override
-	public void putShort(long pos, short val)
-	{
-		checkBounds(pos, 2);
-		unsafe.putShort(pos +address, val);
-	}
-
-	@Override
-	public void putInt(long pos, int val)
-	{
-		checkBounds(pos, 4);
-		unsafe.putInt(pos +address, val);
-	}
-
-	@Override
-	public void putLong(long pos, long val)
-	{
-		checkBounds(pos, 8);
-		unsafe.putLong(pos +address, val);
-	}
-
-	@Override
-	public void getBytes(long pos, byte[] data, int offset, int length)
+	public void force(long pos, long length)
 	{
-		if ((offset|length|(offset+length)|(data.length-length-offset)) < 0) {
-			if (offset < 0) {
-				throw new IndexOutOfBoundsException("offset out of bounds: "+offset);
-			}
-			if (length < 0 || offset+length < 0 || offset+length > data.length) {
-				throw new IndexOutOfBoundsException("length out of bounds: "+length);
-			}
-		}
 		checkBounds(pos, length);
-		unsafe.copyMemory(null, pos +address, data, BYTE_ARRAY_OFFSET+offset, length);
+		UnsafeMemory.force(fd, pos +address, length);
 	}
 
-	@Override
-	public void putBytes(long pos, byte[] data, int offset, int length)
+	/**
+	 * Gets file descriptor of file channel.
+	 *
+	 * @param channel
+	 * 	file channel.
+	 *
+	 * @return
+	 * 	file descriptor.
+	 */
+	static FileDescriptor fileDescriptorOf(FileChannel channel)
 	{
-		if ((offset|length|(offset+length)|(data.length-length-offset)) < 0) {
-			if (offset < 0) {
-				throw new IndexOutOfBoundsException("offset out of bounds: "+offset);
-			}
-			if (length < 0 || offset+length < 0 || offset+length >= data.length) {
-				throw new IndexOutOfBoundsException("length out of bounds: "+length);
-			}
+		try {
+			return (FileDescriptor)channelFd.get(channel);
 		}
-		checkBounds(pos, length);
-		unsafe.copyMemory(data, BYTE_ARRAY_OFFSET, null, pos +address, data.length);
-	}
-
-	private final void checkBounds(long pos, int length)
-	{
-		if ((pos|length|(pos+length)|(this.size-length-pos)) < 0) {
-			if (pos < 0) {
-				throw new IndexOutOfBoundsException("position out of bounds: "+pos);
-			}
-			if (length < 0 || pos+length < 0 || pos+length > this.size) {
-				throw new IndexOutOfBoundsException("length out of bounds: "+length);
-			}
+		catch (Exception e) {
+			throw new IllegalArgumentException("Cannot get file descriptor of channel: "+channel.getClass().getName(), e);
 		}
 	}
 
@@ -192,28 +125,19 @@ public class MappedFlatBuffer extends AbstractFlatBuffer
 		throw new IllegalArgumentException("Unsupported memory map mode: "+mode);
 	}
 
-	private long address;
-
-	private long size;
-
-	private static final Unsafe unsafe;
+	private final FileDescriptor fd;
 
 	private static final Method mmap;
 	private static final Method unmmap;
-
-	private static final int BYTE_ARRAY_OFFSET;
+	private static final Field channelFd;
 
 	static
 	{
 		try {
-			Field theUnsafeField = Unsafe.class.getDeclaredField("theUnsafe");
-			theUnsafeField.setAccessible(true);
-			unsafe = (Unsafe)theUnsafeField.get(null);
-
 			mmap = getClassMethod(FileChannelImpl.class, "map0", int.class, long.class, long.class);
 			unmmap = getClassMethod(FileChannelImpl.class, "unmap0", long.class, long.class);
-
-			BYTE_ARRAY_OFFSET = unsafe.arrayBaseOffset(byte[].class);
+			channelFd = FileChannelImpl.class.getDeclaredField("fd");
+			channelFd.setAccessible(true);
 		}
 		catch (Exception e) {
 			throw new RuntimeException(e);
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import java.nio.ByteOrder;
+
+
+/**
+ * Flat view of {@link AbstractNativeFlatBuffer} area, holding the address, size and byte order directly. Slicing or
+ * swapping the view creates another view of the same owner, so any nesting costs single bounds check and no
+ * delegation.
+ *
+ * Full buffer views created by {@link #withByteOrder(ByteOrder)} own the buffer and close the owner, sub-range views
+ * do not.
+ */
+public class NativeViewFlatBuffer extends AbstractNativeFlatBuffer
+{
+	/**
+	 * Creates view.
+	 *
+	 * @param owner
+	 * 	buffer owning the memory.
+	 * @param address
+	 * 	address of the view area.
+	 * @param size
+	 * 	size of the view area.
+	 * @param byteOrder
+	 * 	byte order of the view.
+	 * @param owning
+	 * 	whether closing the view closes the owner.
+	 */
+	NativeViewFlatBuffer(AbstractNativeFlatBuffer owner, long address, long size, ByteOrder byteOrder, boolean owning)
+	{
+		this.owner = owner;
+		this.owning = owning;
+		this.address = address;
+		this.size = size;
+		this.byteOrder = byteOrder;
+		this.swapped = byteOrder != ByteOrder.nativeOrder();
+	}
+
+	/**
+	 * Closes the owner if this is full buffer view, otherwise does nothing.
+	 */
+	@Override
+	public void close()
+	{
+		if (owning) {
+			owner.close();
+		}
+	}
+
+	@Override
+	public ByteOrder getByteOrder()
+	{
+		return byteOrder;
+	}
+
+	@Override
+	public short getShort(long pos)
+	{
+		short val = super.getShort(pos);
+		return swapped ? Short.reverseBytes(val) : val;
+	}
+
+	@Override
+	public int getInt(long pos)
+	{
+		int val = super.getInt(pos);
+		return swapped ? Integer.reverseBytes(val) : val;
+	}
+
+	@Override
+	public long getLong(long pos)
+	{
+		long val = super.getLong(pos);
+		return swapped ? Long.reverseBytes(val) : val;
+	}
+
+	@Override
+	public void putShort(long pos, short val)
+	{
+		super.putShort(pos, swapped ? Short.reverseBytes(val) : val);
+	}
+
+	@Override
+	public void putInt(long pos, int val)
+	{
+		super.putInt(pos, swapped ? Integer.reverseBytes(val) : val);
+	}
+
+	@Override
+	public void putLong(long pos, long val)
+	{
+		super.putLong(pos, swapped ? Long.reverseBytes(val) : val);
+	}
+
+	@Override
+	public void force(long pos, long length)
+	{
+		checkBounds(pos, length);
+		owner.force(address-owner.address+pos, length);
+	}
+
+	@Override
+	protected AbstractNativeFlatBuffer owner()
+	{
+		return owner;
+	}
+
+	@Override
+	protected boolean isOwning()
+	{
+		return owning;
+	}
+
+	private final AbstractNativeFlatBuffer owner;
+
+	private final boolean owning;
+
+	private final ByteOrder byteOrder;
+
+	private final boolean swapped;
+}
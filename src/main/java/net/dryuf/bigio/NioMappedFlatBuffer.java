@@ -0,0 +1,349 @@
+/*
+ * Copyright 2015 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+
+/**
+ * Mapped file implementation of {@link FlatBuffer}, built on public NIO API only. Unlike {@link MappedFlatBuffer},
+ * it does not depend on JDK internals so it runs on recent JDKs without --add-opens, and the accesses go through
+ * {@link ByteBuffer} absolute accessors which are JIT intrinsics.
+ *
+ * <p/>The file is mapped in chunks of up to 1 GB, overlapping by few bytes so primitive values never straddle two
+ * mappings. The byte order is chosen at construction and {@link #withByteOrder(ByteOrder)} returns a view
+ * accessing the same mappings in other order, without extra indirection. The mappings are released
+ * deterministically on {@link #close()}, the views must not be used afterwards.
+ */
+public class NioMappedFlatBuffer extends AbstractFlatBuffer
+{
+	/**
+	 * Maps file in native byte order.
+	 *
+	 * @param channel
+	 * 	file channel to map.
+	 * @param mode
+	 * 	mapping mode.
+	 * @param len
+	 * 	length of mapping, negative to map whole file.
+	 */
+	public NioMappedFlatBuffer(FileChannel channel, FileChannel.MapMode mode, long len) throws IOException
+	{
+		this(channel, mode, len, ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Maps file.
+	 *
+	 * @param channel
+	 * 	file channel to map.
+	 * @param mode
+	 * 	mapping mode.
+	 * @param len
+	 * 	length of mapping, negative to map whole file.
+	 * @param byteOrder
+	 * 	byte order of primitive accessors.
+	 */
+	public NioMappedFlatBuffer(FileChannel channel, FileChannel.MapMode mode, long len, ByteOrder byteOrder) throws IOException
+	{
+		this(channel, mode, len, byteOrder, DEFAULT_CHUNK_SHIFT);
+	}
+
+	NioMappedFlatBuffer(FileChannel channel, FileChannel.MapMode mode, long len, ByteOrder byteOrder, int chunkShift) throws IOException
+	{
+		if (len < 0) {
+			len = channel.size();
+		}
+		this.size = len;
+		this.byteOrder = byteOrder;
+		this.chunkShift = chunkShift;
+		this.chunkMask = (1L<<chunkShift)-1;
+		this.owner = null;
+		this.chunks = new ByteBuffer[(int)((len+chunkMask)>>>chunkShift)];
+		try {
+			for (int i = 0; i < chunks.length; ++i) {
+				long position = (long)i<<chunkShift;
+				chunks[i] = channel.map(mode, position, Math.min(len-position, chunkMask+1+CHUNK_OVERLAP)).order(byteOrder);
+			}
+		}
+		catch (IOException|RuntimeException ex) {
+			releaseChunks();
+			throw ex;
+		}
+	}
+
+	private NioMappedFlatBuffer(NioMappedFlatBuffer owner, ByteOrder byteOrder)
+	{
+		this.size = owner.size;
+		this.byteOrder = byteOrder;
+		this.chunkShift = owner.chunkShift;
+		this.chunkMask = owner.chunkMask;
+		this.owner = owner;
+		this.chunks = new ByteBuffer[owner.chunks.length];
+		for (int i = 0; i < chunks.length; ++i) {
+			chunks[i] = owner.chunks[i].duplicate().order(byteOrder);
+		}
+	}
+
+	/**
+	 * Unmaps the file, unless this is a view created by {@link #withByteOrder(ByteOrder)}.
+	 */
+	@Override
+	public void close()
+	{
+		if (owner == null) {
+			releaseChunks();
+		}
+	}
+
+	@Override
+	public ByteOrder getByteOrder()
+	{
+		return byteOrder;
+	}
+
+	@Override
+	public FlatBuffer withByteOrder(ByteOrder byteOrder)
+	{
+		if (byteOrder == this.byteOrder) {
+			return this;
+		}
+		return new NioMappedFlatBuffer(owner == null ? this : owner, byteOrder);
+	}
+
+	@Override
+	public long size()
+	{
+		return size;
+	}
+
+	@Override
+	public byte getByte(long pos)
+	{
+		checkBounds(pos, 1);
+		return chunks[(int)(pos>>>chunkShift)].get((int)(pos&chunkMask));
+	}
+
+	@Override
+	public short getShort(long pos)
+	{
+		checkBounds(pos, 2);
+		return chunks[(int)(pos>>>chunkShift)].getShort((int)(pos&chunkMask));
+	}
+
+	@Override
+	public int getInt(long pos)
+	{
+		checkBounds(pos, 4);
+		return chunks[(int)(pos>>>chunkShift)].getInt((int)(pos&chunkMask));
+	}
+
+	@Override
+	public long getLong(long pos)
+	{
+		checkBounds(pos, 8);
+		return chunks[(int)(pos>>>chunkShift)].getLong((int)(pos&chunkMask));
+	}
+
+	@Override
+	public void putByte(long pos, byte val)
+	{
+		checkBounds(pos, 1);
+		chunks[(int)(pos>>>chunkShift)].put((int)(pos&chunkMask), val);
+	}
+
+	@Override
+	public void putShort(long pos, short val)
+	{
+		checkBounds(pos, 2);
+		chunks[(int)(pos>>>chunkShift)].putShort((int)(pos&chunkMask), val);
+	}
+
+	@Override
+	public void putInt(long pos, int val)
+	{
+		checkBounds(pos, 4);
+		chunks[(int)(pos>>>chunkShift)].putInt((int)(pos&chunkMask), val);
+	}
+
+	@Override
+	public void putLong(long pos, long val)
+	{
+		checkBounds(pos, 8);
+		chunks[(int)(pos>>>chunkShift)].putLong((int)(pos&chunkMask), val);
+	}
+
+	@Override
+	public void getBytes(long pos, byte[] data, int offset, int length)
+	{
+		checkBounds(pos, length);
+		for (int done = 0; done < length; ) {
+			ByteBuffer view = chunkView(pos+done, length-done);
+			int current = view.remaining();
+			view.get(data, offset+done, current);
+			done += current;
+		}
+	}
+
+	@Override
+	public void putBytes(long pos, byte[] data, int offset, int length)
+	{
+		checkBounds(pos, length);
+		for (int done = 0; done < length; ) {
+			ByteBuffer view = chunkView(pos+done, length-done);
+			int current = view.remaining();
+			view.put(data, offset+done, current);
+			done += current;
+		}
+	}
+
+	@Override
+	public long transferTo(long pos, long length, FlatChannel channel, long channelPos) throws IOException
+	{
+		checkBounds(pos, length);
+		for (long done = 0; done < length; ) {
+			ByteBuffer view = chunkView(pos+done, length-done);
+			int start = view.position(), current = view.remaining();
+			while (view.hasRemaining()) {
+				channel.write(view, channelPos+done+view.position()-start);
+			}
+			done += current;
+		}
+		return length;
+	}
+
+	/**
+	 * Forces the area to the file, through the original mappings as their duplicates cannot be forced on older
+	 * JDKs. Forces whole chunks when range forcing is not accessible on this JDK.
+	 */
+	@Override
+	public void force(long pos, long length)
+	{
+		checkBounds(pos, length);
+		ByteBuffer[] mapped = (owner == null ? this : owner).chunks;
+		for (long done = 0; done < length; ) {
+			long chunkOffset = (pos+done)&chunkMask;
+			int current = (int)Math.min(length-done, chunkMask+1-chunkOffset);
+			UnsafeMemory.force((MappedByteBuffer)mapped[(int)((pos+done)>>>chunkShift)], (int)chunkOffset, current);
+			done += current;
+		}
+	}
+
+	@Override
+	public boolean advise(long pos, long length, AccessHint hint)
+	{
+		checkBounds(pos, length);
+		boolean applied = false;
+		for (long done = 0; done < length; ) {
+			long current = Math.min(length-done, chunkMask+1-((pos+done)&chunkMask));
+			applied |= super.advise(pos+done, current, hint);
+			done += current;
+		}
+		return applied;
+	}
+
+	@Override
+	public ByteBuffer getByteBuffer(long pos, long length)
+	{
+		checkBounds(pos, length);
+		if (length == 0) {
+			return ByteBuffer.allocateDirect(0).order(byteOrder);
+		}
+		long chunkOffset = pos&chunkMask;
+		ByteBuffer chunk = chunks[(int)(pos>>>chunkShift)];
+		if (chunkOffset+length > chunk.capacity()) {
+			return super.getByteBuffer(pos, length);
+		}
+		ByteBuffer view = chunk.duplicate();
+		view.limit((int)(chunkOffset+length)).position((int)chunkOffset);
+		return view.slice().order(byteOrder);
+	}
+
+	@Override
+	protected long getMemoryAddress(long pos, long length)
+	{
+		checkBounds(pos, length);
+		int index = (int)(pos>>>chunkShift);
+		if (index == chunks.length) {
+			// empty area at the end of buffer ending at chunk boundary, addressed by the end of the last chunk
+			return index == 0 ? 0 : UnsafeMemory.getByteBufferAddress(chunks[index-1])+chunks[index-1].capacity();
+		}
+		long chunkOffset = pos&chunkMask;
+		ByteBuffer chunk = chunks[index];
+		if (chunkOffset+length > chunk.capacity()) {
+			return 0;
+		}
+		return UnsafeMemory.getByteBufferAddress(chunk)+chunkOffset;
+	}
+
+	/**
+	 * Gets view of the area, limited to the single chunk.
+	 */
+	private ByteBuffer chunkView(long pos, long length)
+	{
+		long chunkOffset = pos&chunkMask;
+		ByteBuffer view = chunks[(int)(pos>>>chunkShift)].duplicate();
+		view.limit((int)Math.min(chunkOffset+length, chunkMask+1)).position((int)chunkOffset);
+		return view;
+	}
+
+	private void releaseChunks()
+	{
+		ByteBuffer[] chunks = this.chunks;
+		this.chunks = null;
+		if (chunks == null) {
+			return;
+		}
+		for (ByteBuffer chunk: chunks) {
+			if (chunk != null) {
+				UnsafeMemory.releaseByteBuffer(chunk);
+			}
+		}
+	}
+
+	private void checkBounds(long pos, long length)
+	{
+		if ((pos|length|(pos+length)|(this.size-length-pos)) < 0) {
+			if (pos < 0) {
+				throw new IndexOutOfBoundsException("position out of bounds: "+pos);
+			}
+			throw new IndexOutOfBoundsException("length out of bounds: pos="+pos+" length="+length+" size="+size);
+		}
+	}
+
+	private final long size;
+
+	private final ByteOrder byteOrder;
+
+	private final int chunkShift;
+
+	private final long chunkMask;
+
+	/** Owner of the mappings, null if this is the owner. */
+	private final NioMappedFlatBuffer owner;
+
+	private ByteBuffer[] chunks;
+
+	/** Overlap of subsequent chunks, ensuring primitive values never straddle two mappings. */
+	private static final long CHUNK_OVERLAP = 8;
+
+	private static final int DEFAULT_CHUNK_SHIFT = 30;
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ * Off-heap anonymous memory implementation of {@link FlatBuffer}. The memory is not limited by direct memory limit
+ * and can exceed 2 GB. The memory is released explicitly by {@link #close()}, either to the system or back to the
+ * {@link OffHeapMemoryPool} it was allocated from.
+ */
+public class OffHeapFlatBuffer extends AbstractNativeFlatBuffer
+{
+	/**
+	 * Allocates new zeroed memory.
+	 *
+	 * @param size
+	 * 	size of memory.
+	 */
+	public OffHeapFlatBuffer(long size)
+	{
+		this(null, allocateZeroed(size), size, size);
+	}
+
+	OffHeapFlatBuffer(OffHeapMemoryPool pool, long address, long size, long blockSize)
+	{
+		this.pool = pool;
+		this.address = address;
+		this.size = size;
+		this.blockSize = blockSize;
+	}
+
+	@Override
+	public void close()
+	{
+		if (closed.compareAndSet(false, true)) {
+			if (pool != null) {
+				pool.release(address, blockSize);
+			}
+			else {
+				unsafe.freeMemory(address);
+			}
+		}
+	}
+
+	private static long allocateZeroed(long size)
+	{
+		if (size < 0) {
+			throw new IllegalArgumentException("size must not be negative: "+size);
+		}
+		long address = unsafe.allocateMemory(Math.max(size, 1));
+		unsafe.setMemory(address, size, (byte)0);
+		return address;
+	}
+
+	private final OffHeapMemoryPool pool;
+
+	private final long blockSize;
+
+	private final AtomicBoolean closed = new AtomicBoolean();
+}
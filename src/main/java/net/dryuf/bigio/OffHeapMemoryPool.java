@@ -0,0 +1,221 @@
+/*
+ * Copyright 2015 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import sun.misc.Unsafe;
+
+
+/**
+ * Pool of off-heap memory blocks, serving {@link OffHeapFlatBuffer} instances. The requests are rounded up to
+ * power-of-two size classes and closed buffers return their blocks into the pool, so the hot loops do not hit the
+ * system allocator. Requests larger than the maximum block size are allocated and released directly.
+ *
+ * <p/>The content of memory allocated from the pool is undefined.
+ */
+@SuppressWarnings("restriction")
+public class OffHeapMemoryPool implements AutoCloseable
+{
+	/**
+	 * Creates pool with blocks from 4 KB to 64 MB.
+	 *
+	 * @param maxPooledBytes
+	 * 	maximum number of bytes kept in the pool, the rest is released to the system.
+	 */
+	public OffHeapMemoryPool(long maxPooledBytes)
+	{
+		this(4096, 64L*1024*1024, maxPooledBytes);
+	}
+
+	/**
+	 * Creates pool.
+	 *
+	 * @param minBlockSize
+	 * 	minimal block size, rounded up to power of two.
+	 * @param maxBlockSize
+	 * 	maximum pooled block size, rounded up to power of two.
+	 * @param maxPooledBytes
+	 * 	maximum number of bytes kept in the pool, the rest is released to the system.
+	 */
+	public OffHeapMemoryPool(long minBlockSize, long maxBlockSize, long maxPooledBytes)
+	{
+		if (minBlockSize <= 0 || maxBlockSize < minBlockSize) {
+			throw new IllegalArgumentException("Invalid block sizes: min="+minBlockSize+" max="+maxBlockSize);
+		}
+		this.minShift = ceilShift(minBlockSize);
+		this.maxBlockSize = 1L<<ceilShift(maxBlockSize);
+		this.maxPooledBytes = maxPooledBytes;
+		this.classes = new SizeClass[ceilShift(maxBlockSize)-minShift+1];
+		for (int i = 0; i < classes.length; ++i) {
+			classes[i] = new SizeClass();
+		}
+	}
+
+	/**
+	 * Allocates buffer from the pool. The buffer must be closed to return the memory.
+	 *
+	 * @param size
+	 * 	size of buffer.
+	 *
+	 * @return
+	 * 	allocated buffer, with undefined content.
+	 */
+	public OffHeapFlatBuffer allocate(long size)
+	{
+		if (size < 0) {
+			throw new IllegalArgumentException("size must not be negative: "+size);
+		}
+		if (size > maxBlockSize) {
+			long address = unsafe.allocateMemory(size);
+			reservedBytes.addAndGet(size);
+			usedBytes.addAndGet(size);
+			return new OffHeapFlatBuffer(this, address, size, size);
+		}
+		int index = Math.max(ceilShift(size)-minShift, 0);
+		long blockSize = 1L<<(index+minShift);
+		long address = classes[index].pop();
+		if (address != 0) {
+			pooledBytes.addAndGet(-blockSize);
+		}
+		else {
+			address = unsafe.allocateMemory(blockSize);
+			reservedBytes.addAndGet(blockSize);
+		}
+		usedBytes.addAndGet(blockSize);
+		return new OffHeapFlatBuffer(this, address, size, blockSize);
+	}
+
+	/**
+	 * Gets number of bytes allocated from the system, both used and pooled.
+	 *
+	 * @return
+	 * 	number of reserved bytes.
+	 */
+	public long getReservedBytes()
+	{
+		return reservedBytes.get();
+	}
+
+	/**
+	 * Gets number of bytes held by live buffers, including the rounding to size class.
+	 *
+	 * @return
+	 * 	number of used bytes.
+	 */
+	public long getUsedBytes()
+	{
+		return usedBytes.get();
+	}
+
+	/**
+	 * Gets number of bytes kept in the pool for reuse.
+	 *
+	 * @return
+	 * 	number of pooled bytes.
+	 */
+	public long getPooledBytes()
+	{
+		return pooledBytes.get();
+	}
+
+	/**
+	 * Releases the pooled memory. The buffers still in use release their memory directly once closed.
+	 */
+	@Override
+	public void close()
+	{
+		closed = true;
+		for (int i = 0; i < classes.length; ++i) {
+			long blockSize = 1L<<(i+minShift);
+			for (long address; (address = classes[i].pop()) != 0; ) {
+				pooledBytes.addAndGet(-blockSize);
+				free(address, blockSize);
+			}
+		}
+	}
+
+	void release(long address, long blockSize)
+	{
+		usedBytes.addAndGet(-blockSize);
+		if (!closed && blockSize <= maxBlockSize) {
+			// reserve first, concurrent releases must not exceed the limit together
+			if (pooledBytes.addAndGet(blockSize) <= maxPooledBytes) {
+				classes[Long.numberOfTrailingZeros(blockSize)-minShift].push(address);
+				if (closed) {
+					close();
+				}
+				return;
+			}
+			pooledBytes.addAndGet(-blockSize);
+		}
+		free(address, blockSize);
+	}
+
+	private void free(long address, long blockSize)
+	{
+		unsafe.freeMemory(address);
+		reservedBytes.addAndGet(-blockSize);
+	}
+
+	private static int ceilShift(long size)
+	{
+		return size <= 1 ? 0 : 64-Long.numberOfLeadingZeros(size-1);
+	}
+
+	/**
+	 * Stack of free blocks of single size.
+	 */
+	private static class SizeClass
+	{
+		synchronized long pop()
+		{
+			return count == 0 ? 0 : addresses[--count];
+		}
+
+		synchronized void push(long address)
+		{
+			if (count == addresses.length) {
+				addresses = Arrays.copyOf(addresses, count*2);
+			}
+			addresses[count++] = address;
+		}
+
+		private long[] addresses = new long[16];
+
+		private int count;
+	}
+
+	private final int minShift;
+
+	private final long maxBlockSize;
+
+	private final long maxPooledBytes;
+
+	private final SizeClass[] classes;
+
+	private volatile boolean closed;
+
+	private final AtomicLong reservedBytes = new AtomicLong();
+
+	private final AtomicLong usedBytes = new AtomicLong();
+
+	private final AtomicLong pooledBytes = new AtomicLong();
+
+	private static final Unsafe unsafe = UnsafeMemory.unsafe;
+}
@@ -0,0 +1,501 @@
+/*
+ * Copyright 2015 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import sun.misc.Unsafe;
+
+
+/**
+ * {@link FlatBuffer} reading and writing {@link FlatChannel} through fixed-size cache of off-heap pages. Suitable
+ * for random access to storage which cannot be mapped.
+ *
+ * <p/>The pages are evicted using CLOCK algorithm, the dirty pages are written back on eviction, on
+ * {@link #force(long, long)} and on {@link #close()}. The instance is thread safe, the accesses are serialized by
+ * single lock. The buffer is in native byte order and has fixed size, it does not close the channel.
+ */
+@SuppressWarnings("restriction")
+public class PageCachedFlatBuffer extends AbstractFlatBuffer
+{
+	/**
+	 * Creates cached buffer.
+	 *
+	 * @param channel
+	 * 	underlying channel.
+	 * @param size
+	 * 	size of the buffer.
+	 * @param pageSize
+	 * 	size of page, must be power of two.
+	 * @param memoryBudget
+	 * 	maximum memory used by pages, at least two pages.
+	 */
+	public PageCachedFlatBuffer(FlatChannel channel, long size, int pageSize, long memoryBudget)
+	{
+		if (size < 0) {
+			throw new IllegalArgumentException("size must not be negative: "+size);
+		}
+		if (pageSize < 8 || Integer.bitCount(pageSize) != 1) {
+			throw new IllegalArgumentException("pageSize must be power of two, at least 8: "+pageSize);
+		}
+		long frameCount = memoryBudget/pageSize;
+		if (frameCount < 2 || frameCount > Integer.MAX_VALUE/4) {
+			throw new IllegalArgumentException("memoryBudget must allow at least two pages: "+memoryBudget);
+		}
+		this.channel = channel;
+		this.size = size;
+		this.pageShift = Integer.numberOfTrailingZeros(pageSize);
+		this.pageMask = pageSize-1;
+		this.frames = new ByteBuffer[(int)frameCount];
+		this.frameAddresses = new long[frames.length];
+		this.framePages = new long[frames.length];
+		Arrays.fill(framePages, -1);
+		this.referenced = new boolean[frames.length];
+		this.dirty = new boolean[frames.length];
+		this.table = new int[Integer.highestOneBit(frames.length*2-1)<<1];
+		this.tableMask = table.length-1;
+	}
+
+	/**
+	 * Writes back dirty pages and releases the frame memory. Does not close the channel.
+	 */
+	@Override
+	public synchronized void close()
+	{
+		if (frames == null) {
+			return;
+		}
+		try {
+			writeBack(0, Long.MAX_VALUE);
+		}
+		finally {
+			releaseFrames();
+		}
+	}
+
+	@Override
+	public ByteOrder getByteOrder()
+	{
+		return ByteOrder.nativeOrder();
+	}
+
+	@Override
+	public long size()
+	{
+		return size;
+	}
+
+	@Override
+	public synchronized byte getByte(long pos)
+	{
+		checkBounds(pos, 1);
+		return unsafe.getByte(frameAddress(pos, false)+(pos&pageMask));
+	}
+
+	@Override
+	public synchronized short getShort(long pos)
+	{
+		checkBounds(pos, 2);
+		if ((pos&pageMask) > pageMask+1-2) {
+			return (short)readStraddled(pos, 2);
+		}
+		return unsafe.getShort(frameAddress(pos, false)+(pos&pageMask));
+	}
+
+	@Override
+	public synchronized int getInt(long pos)
+	{
+		checkBounds(pos, 4);
+		if ((pos&pageMask) > pageMask+1-4) {
+			return (int)readStraddled(pos, 4);
+		}
+		return unsafe.getInt(frameAddress(pos, false)+(pos&pageMask));
+	}
+
+	@Override
+	public synchronized long getLong(long pos)
+	{
+		checkBounds(pos, 8);
+		if ((pos&pageMask) > pageMask+1-8) {
+			return readStraddled(pos, 8);
+		}
+		return unsafe.getLong(frameAddress(pos, false)+(pos&pageMask));
+	}
+
+	@Override
+	public synchronized void putByte(long pos, byte val)
+	{
+		checkBounds(pos, 1);
+		unsafe.putByte(frameAddress(pos, true)+(pos&pageMask), val);
+	}
+
+	@Override
+	public synchronized void putShort(long pos, short val)
+	{
+		checkBounds(pos, 2);
+		if ((pos&pageMask) > pageMask+1-2) {
+			writeStraddled(pos, 2, val);
+			return;
+		}
+		unsafe.putShort(frameAddress(pos, true)+(pos&pageMask), val);
+	}
+
+	@Override
+	public synchronized void putInt(long pos, int val)
+	{
+		checkBounds(pos, 4);
+		if ((pos&pageMask) > pageMask+1-4) {
+			writeStraddled(pos, 4, val);
+			return;
+		}
+		unsafe.putInt(frameAddress(pos, true)+(pos&pageMask), val);
+	}
+
+	@Override
+	public synchronized void putLong(long pos, long val)
+	{
+		checkBounds(pos, 8);
+		if ((pos&pageMask) > pageMask+1-8) {
+			writeStraddled(pos, 8, val);
+			return;
+		}
+		unsafe.putLong(frameAddress(pos, true)+(pos&pageMask), val);
+	}
+
+	@Override
+	public synchronized void getBytes(long pos, byte[] data, int offset, int length)
+	{
+		checkArrayBounds(data, offset, length);
+		checkBounds(pos, length);
+		for (int done = 0; done < length; ) {
+			long pageOffset = (pos+done)&pageMask;
+			int current = (int)Math.min(length-done, pageMask+1-pageOffset);
+			unsafe.copyMemory(null, frameAddress(pos+done, false)+pageOffset, data, UnsafeMemory.BYTE_ARRAY_OFFSET+offset+done, current);
+			done += current;
+		}
+	}
+
+	@Override
+	public synchronized void putBytes(long pos, byte[] data, int offset, int length)
+	{
+		checkArrayBounds(data, offset, length);
+		checkBounds(pos, length);
+		for (int done = 0; done < length; ) {
+			long pageOffset = (pos+done)&pageMask;
+			int current = (int)Math.min(length-done, pageMask+1-pageOffset);
+			unsafe.copyMemory(data, UnsafeMemory.BYTE_ARRAY_OFFSET+offset+done, null, frameAddress(pos+done, true)+pageOffset, current);
+			done += current;
+		}
+	}
+
+	/**
+	 * Writes back dirty pages of the area.
+	 */
+	@Override
+	public synchronized void force(long pos, long length)
+	{
+		checkBounds(pos, length);
+		writeBack(pos>>>pageShift, (pos+length+pageMask)>>>pageShift);
+	}
+
+	/**
+	 * Gets number of accesses served from cache.
+	 *
+	 * @return
+	 * 	number of hits.
+	 */
+	public synchronized long getHitCount()
+	{
+		return hitCount;
+	}
+
+	/**
+	 * Gets number of accesses which loaded the page from channel.
+	 *
+	 * @return
+	 * 	number of misses.
+	 */
+	public synchronized long getMissCount()
+	{
+		return missCount;
+	}
+
+	/**
+	 * Gets number of evicted pages.
+	 *
+	 * @return
+	 * 	number of evictions.
+	 */
+	public synchronized long getEvictionCount()
+	{
+		return evictionCount;
+	}
+
+	/**
+	 * Gets number of dirty pages written back to channel.
+	 *
+	 * @return
+	 * 	number of written pages.
+	 */
+	public synchronized long getWriteBackCount()
+	{
+		return writeBackCount;
+	}
+
+	private long readStraddled(long pos, int length)
+	{
+		long value = 0;
+		if (getByteOrder() == ByteOrder.LITTLE_ENDIAN) {
+			for (int i = length; --i >= 0; ) {
+				value = (value<<8)|(getByte(pos+i)&0xff);
+			}
+		}
+		else {
+			for (int i = 0; i < length; ++i) {
+				value = (value<<8)|(getByte(pos+i)&0xff);
+			}
+		}
+		return value;
+	}
+
+	private void writeStraddled(long pos, int length, long value)
+	{
+		if (getByteOrder() == ByteOrder.LITTLE_ENDIAN) {
+			for (int i = 0; i < length; ++i, value >>>= 8) {
+				putByte(pos+i, (byte)value);
+			}
+		}
+		else {
+			for (int i = length; --i >= 0; value >>>= 8) {
+				putByte(pos+i, (byte)value);
+			}
+		}
+	}
+
+	/**
+	 * Gets address of the frame holding the page of position, loading the page if needed.
+	 */
+	private long frameAddress(long pos, boolean write)
+	{
+		if (frames == null) {
+			throw new IllegalStateException("Buffer already closed");
+		}
+		long page = pos>>>pageShift;
+		int frame = lookup(page);
+		if (frame >= 0) {
+			++hitCount;
+		}
+		else {
+			++missCount;
+			frame = load(page);
+		}
+		referenced[frame] = true;
+		if (write) {
+			dirty[frame] = true;
+		}
+		return frameAddresses[frame];
+	}
+
+	private void releaseFrames()
+	{
+		ByteBuffer[] frames = this.frames;
+		this.frames = null;
+		for (ByteBuffer frame: frames) {
+			if (frame != null) {
+				UnsafeMemory.releaseByteBuffer(frame);
+			}
+		}
+	}
+
+	private int load(long page)
+	{
+		int frame = findVictim();
+		ByteBuffer buffer = frames[frame];
+		if (buffer == null) {
+			buffer = frames[frame] = ByteBuffer.allocateDirect((int)pageMask+1);
+			frameAddresses[frame] = UnsafeMemory.getByteBufferAddress(buffer);
+		}
+		else if (framePages[frame] >= 0) {
+			if (dirty[frame]) {
+				writeFrame(frame);
+			}
+			remove(framePages[frame]);
+			++evictionCount;
+		}
+		buffer.clear();
+		try {
+			long position = page<<pageShift;
+			while (buffer.hasRemaining()) {
+				int read = channel.read(buffer, position+buffer.position());
+				if (read < 0) {
+					break;
+				}
+			}
+		}
+		catch (IOException e) {
+			framePages[frame] = -1;
+			throw new UncheckedIOException(e);
+		}
+		if (buffer.hasRemaining()) {
+			unsafe.setMemory(frameAddresses[frame]+buffer.position(), buffer.remaining(), (byte)0);
+		}
+		framePages[frame] = page;
+		dirty[frame] = false;
+		insert(page, frame);
+		return frame;
+	}
+
+	private int findVictim()
+	{
+		for (;;) {
+			int frame = clockHand;
+			clockHand = frame+1 == frames.length ? 0 : frame+1;
+			if (!referenced[frame]) {
+				return frame;
+			}
+			referenced[frame] = false;
+		}
+	}
+
+	private void writeBack(long startPage, long endPage)
+	{
+		for (int frame = 0; frame < frames.length; ++frame) {
+			if (dirty[frame] && framePages[frame] >= startPage && framePages[frame] < endPage) {
+				writeFrame(frame);
+			}
+		}
+	}
+
+	private void writeFrame(int frame)
+	{
+		long position = framePages[frame]<<pageShift;
+		ByteBuffer buffer = frames[frame].duplicate();
+		buffer.clear().limit((int)Math.min(pageMask+1, size-position));
+		try {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer, position+buffer.position());
+			}
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		dirty[frame] = false;
+		++writeBackCount;
+	}
+
+	private int lookup(long page)
+	{
+		for (int slot = hash(page); ; slot = (slot+1)&tableMask) {
+			int entry = table[slot];
+			if (entry == 0) {
+				return -1;
+			}
+			if (framePages[entry-1] == page) {
+				return entry-1;
+			}
+		}
+	}
+
+	private void insert(long page, int frame)
+	{
+		int slot = hash(page);
+		while (table[slot] != 0) {
+			slot = (slot+1)&tableMask;
+		}
+		table[slot] = frame+1;
+	}
+
+	private void remove(long page)
+	{
+		int slot = hash(page);
+		while (framePages[table[slot]-1] != page) {
+			slot = (slot+1)&tableMask;
+		}
+		// backward shift deletion, keeps the probe sequences unbroken:
+		for (int next = (slot+1)&tableMask; table[next] != 0; next = (next+1)&tableMask) {
+			int home = hash(framePages[table[next]-1]);
+			if (((next-home)&tableMask) >= ((next-slot)&tableMask)) {
+				table[slot] = table[next];
+				slot = next;
+			}
+		}
+		table[slot] = 0;
+	}
+
+	private int hash(long page)
+	{
+		long h = page*0x9E3779B97F4A7C15L;
+		return (int)(h^(h>>>32))&tableMask;
+	}
+
+	private void checkBounds(long pos, long length)
+	{
+		if ((pos|length|(pos+length)|(this.size-length-pos)) < 0) {
+			if (pos < 0) {
+				throw new IndexOutOfBoundsException("position out of bounds: "+pos);
+			}
+			throw new IndexOutOfBoundsException("length out of bounds: pos="+pos+" length="+length+" size="+size);
+		}
+	}
+
+	private static void checkArrayBounds(byte[] data, int offset, int length)
+	{
+		if ((offset|length|(offset+length)|(data.length-length-offset)) < 0) {
+			throw new IndexOutOfBoundsException("Range out of array bounds: offset="+offset+" length="+length);
+		}
+	}
+
+	private final FlatChannel channel;
+
+	private final long size;
+
+	private final int pageShift;
+
+	private final long pageMask;
+
+	private ByteBuffer[] frames;
+
+	private final long[] frameAddresses;
+
+	/** Page held by each frame, -1 if empty. */
+	private final long[] framePages;
+
+	private final boolean[] referenced;
+
+	private final boolean[] dirty;
+
+	/** Open addressing page to frame index, contains frame+1, 0 for empty slot. */
+	private final int[] table;
+
+	private final int tableMask;
+
+	private int clockHand;
+
+	private long hitCount;
+
+	private long missCount;
+
+	private long evictionCount;
+
+	private long writeBackCount;
+
+	private static final Unsafe unsafe = UnsafeMemory.unsafe;
+}
@@ -0,0 +1,409 @@
+/*
+ * Copyright 2015 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import java.nio.ByteOrder;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+
+
+/**
+ * Parallel scanner of {@link FlatBuffer}. The scanned area is split into chunks aligned to multiples of chunk size,
+ * which are processed by {@link ForkJoinPool} and the results merged.
+ *
+ * <p/>Besides the generic {@link #scan(FlatBuffer, long, long, ChunkVisitor, BinaryOperator)}, the scanner provides
+ * pattern search and delimiter counting, both processing eight bytes per step (SWAR), and {@link Spliterator} of
+ * delimited records for parallel streams.
+ */
+public class ParallelScanner
+{
+	/**
+	 * Visitor of single chunk.
+	 *
+	 * @param <R>
+	 * 	type of result
+	 */
+	@FunctionalInterface
+	public interface ChunkVisitor<R>
+	{
+		/**
+		 * Processes chunk.
+		 *
+		 * @param buffer
+		 * 	scanned buffer.
+		 * @param pos
+		 * 	position of chunk.
+		 * @param length
+		 * 	length of chunk.
+		 *
+		 * @return
+		 * 	result of chunk.
+		 */
+		R visit(FlatBuffer buffer, long pos, long length);
+	}
+
+	/**
+	 * Creates scanner running in common pool with {@link #DEFAULT_CHUNK_SIZE}.
+	 */
+	public ParallelScanner()
+	{
+		this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Creates scanner.
+	 *
+	 * @param pool
+	 * 	pool executing the chunks.
+	 * @param chunkSize
+	 * 	size of chunk, must be multiple of page size to keep the chunks page aligned.
+	 */
+	public ParallelScanner(ForkJoinPool pool, long chunkSize)
+	{
+		if (chunkSize <= 0 || chunkSize%UnsafeMemory.PAGE_SIZE != 0) {
+			throw new IllegalArgumentException("chunkSize must be positive multiple of page size: "+chunkSize);
+		}
+		this.pool = pool;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Runs visitor on all chunks of the area in parallel and merges the results.
+	 *
+	 * @param buffer
+	 * 	scanned buffer.
+	 * @param pos
+	 * 	position of area.
+	 * @param length
+	 * 	length of area.
+	 * @param visitor
+	 * 	visitor of chunks.
+	 * @param combiner
+	 * 	function merging results of adjacent areas, the left result is the first argument.
+	 * @param <R>
+	 * 	type of result
+	 *
+	 * @return
+	 * 	merged result, visitor result on empty area if length is 0.
+	 */
+	public <R> R scan(FlatBuffer buffer, long pos, long length, ChunkVisitor<R> visitor, BinaryOperator<R> combiner)
+	{
+		checkBounds(buffer, pos, length);
+		long first = pos/chunkSize, last = (pos+length-1)/chunkSize;
+		if (length == 0 || first == last) {
+			return visitor.visit(buffer, pos, length);
+		}
+		return pool.invoke(new ScanTask<>(buffer, pos, pos+length, first, last+1, visitor, combiner));
+	}
+
+	/**
+	 * Finds first occurrence of pattern.
+	 *
+	 * @param buffer
+	 * 	scanned buffer.
+	 * @param pos
+	 * 	position of searched area.
+	 * @param length
+	 * 	length of searched area.
+	 * @param pattern
+	 * 	searched pattern, not empty.
+	 *
+	 * @return
+	 * 	position of first occurrence fully within the area, -1 if not found.
+	 */
+	public long indexOf(FlatBuffer buffer, long pos, long length, byte[] pattern)
+	{
+		if (pattern.length == 0) {
+			throw new IllegalArgumentException("Pattern must not be empty");
+		}
+		long end = pos+length;
+		AtomicLong found = new AtomicLong(Long.MAX_VALUE);
+		scan(buffer, pos, length, (FlatBuffer b, long chunkPos, long chunkLength) -> {
+			if (chunkPos >= found.get()) {
+				// earlier occurrence already found
+				return null;
+			}
+			long result = indexOf(b, chunkPos, Math.min(chunkPos+chunkLength, end-pattern.length+1), end, pattern);
+			if (result >= 0) {
+				found.accumulateAndGet(result, Math::min);
+			}
+			return null;
+		}, (Object l, Object r) -> null);
+		long result = found.get();
+		return result == Long.MAX_VALUE ? -1 : result;
+	}
+
+	/**
+	 * Counts occurrences of byte.
+	 *
+	 * @param buffer
+	 * 	scanned buffer.
+	 * @param pos
+	 * 	position of area.
+	 * @param length
+	 * 	length of area.
+	 * @param delimiter
+	 * 	counted byte.
+	 *
+	 * @return
+	 * 	number of occurrences.
+	 */
+	public long count(FlatBuffer buffer, long pos, long length, byte delimiter)
+	{
+		return scan(buffer, pos, length, (FlatBuffer b, long chunkPos, long chunkLength) -> countByte(b, chunkPos, chunkPos+chunkLength, delimiter), Long::sum);
+	}
+
+	/**
+	 * Creates {@link Spliterator} of records separated by delimiter, the records are returned as sub buffers not
+	 * including the delimiter. The last record is returned only if not empty. The spliterator splits at record
+	 * boundaries nearest to the middle, areas smaller than chunk size are not split.
+	 *
+	 * @param buffer
+	 * 	scanned buffer.
+	 * @param pos
+	 * 	position of area.
+	 * @param length
+	 * 	length of area.
+	 * @param delimiter
+	 * 	record delimiter.
+	 *
+	 * @return
+	 * 	spliterator of records.
+	 */
+	public Spliterator<FlatBuffer> records(FlatBuffer buffer, long pos, long length, byte delimiter)
+	{
+		checkBounds(buffer, pos, length);
+		return new RecordSpliterator(buffer, pos, pos+length, delimiter, chunkSize);
+	}
+
+	/**
+	 * Finds first occurrence of pattern starting in area.
+	 *
+	 * @param buffer
+	 * 	scanned buffer.
+	 * @param start
+	 * 	start of area where the occurrence may start.
+	 * @param startEnd
+	 * 	end of area where the occurrence may start.
+	 * @param end
+	 * 	end of area where the occurrence must end.
+	 * @param pattern
+	 * 	searched pattern.
+	 *
+	 * @return
+	 * 	position of occurrence or -1 if not found.
+	 */
+	static long indexOf(FlatBuffer buffer, long start, long startEnd, long end, byte[] pattern)
+	{
+		for (long p = start; p < startEnd; ++p) {
+			p = indexOfByte(buffer, p, startEnd, pattern[0]);
+			if (p < 0) {
+				return -1;
+			}
+			if (p+pattern.length <= end && buffer.equalsBytes(p, pattern, 0, pattern.length)) {
+				return p;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Finds first occurrence of byte.
+	 *
+	 * @param buffer
+	 * 	scanned buffer.
+	 * @param start
+	 * 	start of area.
+	 * @param end
+	 * 	end of area.
+	 * @param value
+	 * 	searched byte.
+	 *
+	 * @return
+	 * 	position of byte or -1 if not found.
+	 */
+	static long indexOfByte(FlatBuffer buffer, long start, long end, byte value)
+	{
+		boolean little = buffer.getByteOrder() == ByteOrder.LITTLE_ENDIAN;
+		long pattern = (value&0xffL)*0x0101010101010101L;
+		long p = start;
+		for (; p+8 <= end; p += 8) {
+			long matches = zeroBytes(buffer.getLong(p)^pattern);
+			if (matches != 0) {
+				return p+((little ? Long.numberOfTrailingZeros(matches) : Long.numberOfLeadingZeros(matches))>>>3);
+			}
+		}
+		for (; p < end; ++p) {
+			if (buffer.getByte(p) == value) {
+				return p;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Counts occurrences of byte.
+	 */
+	static long countByte(FlatBuffer buffer, long start, long end, byte value)
+	{
+		long pattern = (value&0xffL)*0x0101010101010101L;
+		long count = 0;
+		long p = start;
+		for (; p+8 <= end; p += 8) {
+			count += Long.bitCount(zeroBytes(buffer.getLong(p)^pattern));
+		}
+		for (; p < end; ++p) {
+			if (buffer.getByte(p) == value) {
+				++count;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Computes mask having the highest bit set exactly in the zero bytes of word.
+	 */
+	private static long zeroBytes(long word)
+	{
+		long t = (word&0x7f7f7f7f7f7f7f7fL)+0x7f7f7f7f7f7f7f7fL;
+		return ~(t|word|0x7f7f7f7f7f7f7f7fL);
+	}
+
+	private static void checkBounds(FlatBuffer buffer, long pos, long length)
+	{
+		if ((pos|length|(pos+length)|(buffer.size()-length-pos)) < 0) {
+			throw new IndexOutOfBoundsException("Range out of bounds: pos="+pos+" length="+length+" size="+buffer.size());
+		}
+	}
+
+	private class ScanTask<R> extends RecursiveTask<R>
+	{
+		ScanTask(FlatBuffer buffer, long start, long end, long firstChunk, long endChunk, ChunkVisitor<R> visitor, BinaryOperator<R> combiner)
+		{
+			this.buffer = buffer;
+			this.start = start;
+			this.end = end;
+			this.firstChunk = firstChunk;
+			this.endChunk = endChunk;
+			this.visitor = visitor;
+			this.combiner = combiner;
+		}
+
+		@Override
+		protected R compute()
+		{
+			if (endChunk-firstChunk == 1) {
+				long chunkStart = Math.max(start, firstChunk*chunkSize);
+				long chunkEnd = Math.min(end, endChunk*chunkSize);
+				return visitor.visit(buffer, chunkStart, chunkEnd-chunkStart);
+			}
+			long middle = (firstChunk+endChunk)>>>1;
+			ScanTask<R> left = new ScanTask<>(buffer, start, end, firstChunk, middle, visitor, combiner);
+			ScanTask<R> right = new ScanTask<>(buffer, start, end, middle, endChunk, visitor, combiner);
+			left.fork();
+			R rightResult = right.compute();
+			return combiner.apply(left.join(), rightResult);
+		}
+
+		private final FlatBuffer buffer;
+
+		private final long start;
+
+		private final long end;
+
+		private final long firstChunk;
+
+		private final long endChunk;
+
+		private final ChunkVisitor<R> visitor;
+
+		private final BinaryOperator<R> combiner;
+	}
+
+	private static class RecordSpliterator implements Spliterator<FlatBuffer>
+	{
+		RecordSpliterator(FlatBuffer buffer, long start, long end, byte delimiter, long minSplit)
+		{
+			this.buffer = buffer;
+			this.start = start;
+			this.end = end;
+			this.delimiter = delimiter;
+			this.minSplit = minSplit;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super FlatBuffer> action)
+		{
+			if (start >= end) {
+				return false;
+			}
+			long next = indexOfByte(buffer, start, end, delimiter);
+			long recordEnd = next < 0 ? end : next;
+			action.accept(buffer.subBuffer(start, recordEnd-start));
+			start = next < 0 ? end : next+1;
+			return true;
+		}
+
+		@Override
+		public Spliterator<FlatBuffer> trySplit()
+		{
+			if (end-start < minSplit) {
+				return null;
+			}
+			long next = indexOfByte(buffer, start+(end-start)/2, end, delimiter);
+			if (next < 0) {
+				return null;
+			}
+			RecordSpliterator prefix = new RecordSpliterator(buffer, start, next+1, delimiter, minSplit);
+			start = next+1;
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize()
+		{
+			return end-start;
+		}
+
+		@Override
+		public int characteristics()
+		{
+			return ORDERED|NONNULL|IMMUTABLE;
+		}
+
+		private final FlatBuffer buffer;
+
+		private long start;
+
+		private final long end;
+
+		private final byte delimiter;
+
+		private final long minSplit;
+	}
+
+	private final ForkJoinPool pool;
+
+	private final long chunkSize;
+
+	/** Default size of chunk. */
+	public static final long DEFAULT_CHUNK_SIZE = 1024*1024;
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2015 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * {@link FlatChannel} over pool of independent {@link SeekableByteChannel} instances opened on the same source.
+ * Each operation borrows a channel exclusively, so positioning and reading does not need global lock and
+ * operations run in parallel up to the pool size.
+ *
+ * <p/>The number of open channels is bounded by {@code maxChannels}, the callers wait if all channels are in use.
+ * Channels idle longer than {@code idleTimeout} are closed lazily when channels are returned to the pool.
+ */
+public class PooledFlatChannel implements FlatChannel, AutoCloseable
+{
+	/**
+	 * Creates pool of channels.
+	 *
+	 * @param opener
+	 * 	factory opening new channel on the source.
+	 * @param maxChannels
+	 * 	maximum number of open channels.
+	 * @param idleTimeout
+	 * 	time after which idle channel is closed.
+	 * @param unit
+	 * 	unit of idleTimeout.
+	 */
+	public PooledFlatChannel(Callable<? extends SeekableByteChannel> opener, int maxChannels, long idleTimeout, TimeUnit unit)
+	{
+		if (maxChannels <= 0)
+			throw new IllegalArgumentException("maxChannels must be positive: "+maxChannels);
+		this.opener = opener;
+		this.permits = new Semaphore(maxChannels);
+		this.idleTimeoutNs = unit.toNanos(idleTimeout);
+	}
+
+	@Override
+	public int read(ByteBuffer buffer, long position) throws IOException
+	{
+		PooledChannel pooled = acquire();
+		int result;
+		try {
+			pooled.channel.position(position);
+			result = pooled.channel.read(buffer);
+		}
+		catch (IOException|RuntimeException|Error ex) {
+			release(pooled, ex);
+			throw ex;
+		}
+		release(pooled, null);
+		return result;
+	}
+
+	@Override
+	public int write(ByteBuffer buffer, long position) throws IOException
+	{
+		PooledChannel pooled = acquire();
+		int result;
+		try {
+			pooled.channel.position(position);
+			result = pooled.channel.write(buffer);
+		}
+		catch (IOException|RuntimeException|Error ex) {
+			release(pooled, ex);
+			throw ex;
+		}
+		release(pooled, null);
+		return result;
+	}
+
+	/**
+	 * Closes idle channels and marks the pool as closed. Channels currently in use are closed once returned.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		closed = true;
+		evict(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Gets number of currently open channels.
+	 *
+	 * @return
+	 * 	number of open channels.
+	 */
+	public int getOpenCount()
+	{
+		return openCount.get();
+	}
+
+	/**
+	 * Gets number of idle channels kept in the pool.
+	 *
+	 * @return
+	 * 	number of idle channels.
+	 */
+	public int getIdleCount()
+	{
+		return idle.size();
+	}
+
+	/**
+	 * Gets number of channel borrows.
+	 *
+	 * @return
+	 * 	number of borrows.
+	 */
+	public long getAcquireCount()
+	{
+		return acquireCount.get();
+	}
+
+	/**
+	 * Gets number of borrows which had to wait because all channels were in use.
+	 *
+	 * @return
+	 * 	number of contended borrows.
+	 */
+	public long getContendedCount()
+	{
+		return contendedCount.get();
+	}
+
+	/**
+	 * Gets total time spent waiting for channel in contended borrows.
+	 *
+	 * @return
+	 * 	wait time in nanoseconds.
+	 */
+	public long getWaitNanos()
+	{
+		return waitNanos.get();
+	}
+
+	/**
+	 * Gets number of channels closed because of idle timeout.
+	 *
+	 * @return
+	 * 	number of evicted channels.
+	 */
+	public long getEvictedCount()
+	{
+		return evictedCount.get();
+	}
+
+	private PooledChannel acquire() throws IOException
+	{
+		if (closed)
+			throw new ClosedChannelException();
+		acquireCount.incrementAndGet();
+		if (!permits.tryAcquire()) {
+			contendedCount.incrementAndGet();
+			long start = System.nanoTime();
+			try {
+				permits.acquire();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for channel");
+			}
+			finally {
+				waitNanos.addAndGet(System.nanoTime()-start);
+			}
+		}
+		try {
+			PooledChannel pooled = idle.pollFirst();
+			if (pooled != null)
+				return pooled;
+			SeekableByteChannel channel;
+			try {
+				channel = opener.call();
+			}
+			catch (IOException|RuntimeException e) {
+				throw e;
+			}
+			catch (Exception e) {
+				throw new IOException(e);
+			}
+			openCount.incrementAndGet();
+			return new PooledChannel(channel);
+		}
+		catch (Throwable ex) {
+			permits.release();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Returns channel to the pool and evicts expired idle channels. Failures of closing channels do not replace the
+	 * result of the operation, they are attached to the operation failure as suppressed or ignored.
+	 *
+	 * @param pooled
+	 * 	returned channel.
+	 * @param failure
+	 * 	failure of the operation, null if it succeeded and the channel can be reused.
+	 */
+	private void release(PooledChannel pooled, Throwable failure)
+	{
+		try {
+			if (failure == null && !closed) {
+				pooled.lastUsed = System.nanoTime();
+				idle.offerFirst(pooled);
+			}
+			else {
+				closeChannel(pooled);
+			}
+		}
+		catch (IOException ex) {
+			suppress(failure, ex);
+		}
+		finally {
+			permits.release();
+		}
+		try {
+			if (closed) {
+				evict(Long.MAX_VALUE);
+			}
+			else if (idleTimeoutNs >= 0) {
+				evict(System.nanoTime()-idleTimeoutNs);
+			}
+		}
+		catch (IOException ex) {
+			suppress(failure, ex);
+		}
+	}
+
+	private static void suppress(Throwable failure, IOException ex)
+	{
+		if (failure != null && failure != ex)
+			failure.addSuppressed(ex);
+	}
+
+	/**
+	 * Closes idle channels last used before the threshold. The oldest channels are at the tail of the deque.
+	 */
+	private void evict(long threshold) throws IOException
+	{
+		IOException error = null;
+		for (Iterator<PooledChannel> it = idle.descendingIterator(); it.hasNext(); ) {
+			PooledChannel pooled = it.next();
+			if (threshold != Long.MAX_VALUE && pooled.lastUsed-threshold > 0)
+				break;
+			if (!idle.removeLastOccurrence(pooled))
+				continue;
+			if (threshold != Long.MAX_VALUE)
+				evictedCount.incrementAndGet();
+			try {
+				closeChannel(pooled);
+			}
+			catch (IOException ex) {
+				if (error == null)
+					error = ex;
+				else
+					error.addSuppressed(ex);
+			}
+		}
+		if (error != null)
+			throw error;
+	}
+
+	private void closeChannel(PooledChannel pooled) throws IOException
+	{
+		openCount.decrementAndGet();
+		pooled.channel.close();
+	}
+
+	private static class PooledChannel
+	{
+		PooledChannel(SeekableByteChannel channel)
+		{
+			this.channel = channel;
+		}
+
+		final SeekableByteChannel channel;
+
+		volatile long lastUsed;
+	}
+
+	private final Callable<? extends SeekableByteChannel> opener;
+
+	private final Semaphore permits;
+
+	private final long idleTimeoutNs;
+
+	/** Idle channels, most recently used first. */
+	private final ConcurrentLinkedDeque<PooledChannel> idle = new ConcurrentLinkedDeque<>();
+
+	private final AtomicInteger openCount = new AtomicInteger();
+
+	private final AtomicLong acquireCount = new AtomicLong();
+
+	private final AtomicLong contendedCount = new AtomicLong();
+
+	private final AtomicLong waitNanos = new AtomicLong();
+
+	private final AtomicLong evictedCount = new AtomicLong();
+
+	private volatile boolean closed;
+}
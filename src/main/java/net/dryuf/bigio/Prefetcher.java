@@ -0,0 +1,140 @@
+/*
+ * Copyright 2015 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Background prefetcher of {@link FlatBuffer} areas. The area is advised as {@link AccessHint#WILLNEED}, buffers not
+ * supporting the advice are touched page by page on background thread instead, so the page faults are taken ahead
+ * of the consumer.
+ *
+ * <p/>For sequential scans, {@link #advance(long)} keeps the window ahead of the scan cursor prefetched.
+ */
+public class Prefetcher implements AutoCloseable
+{
+	/**
+	 * Creates prefetcher with own background thread.
+	 *
+	 * @param buffer
+	 * 	buffer to prefetch.
+	 * @param window
+	 * 	size of window prefetched ahead of scan cursor.
+	 */
+	public Prefetcher(FlatBuffer buffer, long window)
+	{
+		this.buffer = buffer;
+		this.window = window;
+		this.executor = Executors.newSingleThreadExecutor((Runnable r) -> {
+			Thread thread = new Thread(r, "Prefetcher-"+Integer.toHexString(System.identityHashCode(this)));
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Prefetches the area asynchronously.
+	 *
+	 * @param pos
+	 * 	position of area.
+	 * @param length
+	 * 	length of area.
+	 *
+	 * @return
+	 * 	future completed once the area is loaded.
+	 */
+	public CompletableFuture<Void> prefetch(long pos, long length)
+	{
+		long end = Math.min(pos+length, buffer.size());
+		return CompletableFuture.runAsync(() -> load(pos, end), executor);
+	}
+
+	/**
+	 * Notifies the scan cursor moved. Once the cursor passes half of the prefetched window, next window is
+	 * scheduled.
+	 *
+	 * @param cursor
+	 * 	current position of sequential scan.
+	 */
+	public void advance(long cursor)
+	{
+		if (cursor+window/2 < prefetchedEnd) {
+			return;
+		}
+		long start = Math.max(cursor, prefetchedEnd);
+		long end = Math.min(cursor+window, buffer.size());
+		if (start < end) {
+			prefetchedEnd = end;
+			prefetch(start, end-start);
+		}
+	}
+
+	/**
+	 * Stops the background thread, interrupting the running prefetch and waiting for it to finish, so the buffer
+	 * can be closed afterwards.
+	 */
+	@Override
+	public void close()
+	{
+		executor.shutdownNow();
+		boolean interrupted = false;
+		for (;;) {
+			try {
+				executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+				break;
+			}
+			catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void load(long pos, long end)
+	{
+		if (pos >= end) {
+			return;
+		}
+		if (buffer.advise(pos, end-pos, AccessHint.WILLNEED)) {
+			return;
+		}
+		// fold the loads into field, so the JIT cannot drop them
+		int x = 0;
+		for (long p = pos; p < end && !Thread.currentThread().isInterrupted(); p = (p|(UnsafeMemory.PAGE_SIZE-1))+1) {
+			x ^= buffer.getByte(p);
+		}
+		touched = x;
+	}
+
+	private final FlatBuffer buffer;
+
+	private final long window;
+
+	private final ExecutorService executor;
+
+	/** End of area scheduled by {@link #advance(long)}, accessed by the scanning thread only. */
+	private long prefetchedEnd;
+
+	/** Result of page touches, accessed by the background thread only. */
+	private int touched;
+}
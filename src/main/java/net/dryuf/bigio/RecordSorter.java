@@ -0,0 +1,502 @@
+/*
+ * Copyright 2015 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * Sorter of fixed size records stored in {@link FlatBuffer}. Records are sorted in place by unsigned key located at
+ * fixed offset within each record, the key is compared either as byte string ({@link ByteOrder#BIG_ENDIAN}) or as
+ * little endian unsigned number ({@link ByteOrder#LITTLE_ENDIAN}).
+ *
+ * <p/>The in-memory sort is introsort, the large partitions are sorted in parallel in {@link ForkJoinPool}. The
+ * first eight bytes of key are compared as single unsigned long and the pivot prefix is cached during
+ * partitioning, so most comparisons cost one memory read. Records are moved by swapping eight bytes at a time and
+ * are never copied to heap.
+ *
+ * <p/>The {@link #sortExternal(FlatBuffer, long, long, FlatBuffer, long, long, Path) external} mode sorts runs in
+ * temporary mapped files and k-way merges them into the target, so the source does not need to be writable and
+ * its size is limited only by disk space.
+ */
+public class RecordSorter
+{
+	/**
+	 * Creates sorter running in common pool.
+	 *
+	 * @param recordSize
+	 * 	size of record.
+	 * @param keyOffset
+	 * 	offset of key within record.
+	 * @param keyLength
+	 * 	length of key.
+	 * @param keyOrder
+	 * 	byte order of key, {@link ByteOrder#BIG_ENDIAN} for byte string comparison.
+	 */
+	public RecordSorter(int recordSize, int keyOffset, int keyLength, ByteOrder keyOrder)
+	{
+		this(ForkJoinPool.commonPool(), recordSize, keyOffset, keyLength, keyOrder);
+	}
+
+	/**
+	 * Creates sorter.
+	 *
+	 * @param pool
+	 * 	pool sorting the partitions in parallel.
+	 * @param recordSize
+	 * 	size of record.
+	 * @param keyOffset
+	 * 	offset of key within record.
+	 * @param keyLength
+	 * 	length of key.
+	 * @param keyOrder
+	 * 	byte order of key, {@link ByteOrder#BIG_ENDIAN} for byte string comparison.
+	 */
+	public RecordSorter(ForkJoinPool pool, int recordSize, int keyOffset, int keyLength, ByteOrder keyOrder)
+	{
+		if (recordSize <= 0 || keyOffset < 0 || keyLength <= 0 || keyOffset+keyLength > recordSize) {
+			throw new IllegalArgumentException("Key out of record: recordSize="+recordSize+" keyOffset="+keyOffset+" keyLength="+keyLength);
+		}
+		this.pool = pool;
+		this.recordSize = recordSize;
+		this.keyOffset = keyOffset;
+		this.keyLength = keyLength;
+		this.keyOrder = keyOrder;
+	}
+
+	/**
+	 * Sorts records in place.
+	 *
+	 * @param buffer
+	 * 	buffer containing the records.
+	 * @param pos
+	 * 	position of first record.
+	 * @param length
+	 * 	length of area, must be multiple of record size.
+	 */
+	public void sort(FlatBuffer buffer, long pos, long length)
+	{
+		checkArea(buffer, pos, length);
+		long count = length/recordSize;
+		int depth = 2*(64-Long.numberOfLeadingZeros(count));
+		if (count <= PARALLEL_THRESHOLD) {
+			introSort(buffer, pos, 0, count, depth);
+		}
+		else {
+			pool.invoke(new SortTask(buffer, pos, 0, count, depth));
+		}
+	}
+
+	/**
+	 * Sorts records from source into target, using temporary files. The source is split into runs of at most
+	 * runLength bytes, each is copied into temporary mapped file and sorted, and the runs are finally merged into
+	 * target.
+	 *
+	 * @param source
+	 * 	buffer containing the records.
+	 * @param pos
+	 * 	position of first record.
+	 * @param length
+	 * 	length of area, must be multiple of record size.
+	 * @param target
+	 * 	target buffer.
+	 * @param targetPos
+	 * 	position in target buffer.
+	 * @param runLength
+	 * 	maximum length of single run, rounded down to multiple of record size.
+	 * @param tempDirectory
+	 * 	directory for temporary files.
+	 *
+	 * @throws IOException
+	 * 	when creating temporary files fails.
+	 */
+	public void sortExternal(FlatBuffer source, long pos, long length, FlatBuffer target, long targetPos, long runLength, Path tempDirectory) throws IOException
+	{
+		checkArea(source, pos, length);
+		checkArea(target, targetPos, length);
+		runLength -= runLength%recordSize;
+		if (runLength <= 0) {
+			throw new IllegalArgumentException("runLength must be at least record size: "+runLength);
+		}
+		if (length <= runLength) {
+			source.copyTo(pos, target, targetPos, length);
+			sort(target, targetPos, length);
+			return;
+		}
+		List<Run> runs = new ArrayList<>();
+		try {
+			for (long done = 0; done < length; done += runLength) {
+				long current = Math.min(runLength, length-done);
+				Run run = new Run(tempDirectory, current);
+				runs.add(run);
+				source.copyTo(pos+done, run.buffer, 0, current);
+				sort(run.buffer, 0, current);
+			}
+			merge(runs, target, targetPos);
+		}
+		finally {
+			IOException error = null;
+			for (Run run: runs) {
+				try {
+					run.close();
+				}
+				catch (IOException ex) {
+					if (error == null)
+						error = ex;
+				}
+			}
+			if (error != null)
+				throw error;
+		}
+	}
+
+	/**
+	 * Compares keys of two records.
+	 *
+	 * @param left
+	 * 	buffer containing the left record.
+	 * @param leftPos
+	 * 	position of left record.
+	 * @param right
+	 * 	buffer containing the right record.
+	 * @param rightPos
+	 * 	position of right record.
+	 *
+	 * @return
+	 * 	negative, zero or positive if left key is lower, equal or greater than right key.
+	 */
+	public int compare(FlatBuffer left, long leftPos, FlatBuffer right, long rightPos)
+	{
+		return compare(left, leftPos, prefix(left, leftPos), right, rightPos, prefix(right, rightPos));
+	}
+
+	private void merge(List<Run> runs, FlatBuffer target, long targetPos)
+	{
+		int count = runs.size();
+		Run[] runArray = runs.toArray(new Run[0]);
+		long[] prefixes = new long[count];
+		int[] heap = new int[count];
+		for (int i = 0; i < count; ++i) {
+			prefixes[i] = prefix(runArray[i].buffer, 0);
+			heap[i] = i;
+		}
+		for (int i = count/2-1; i >= 0; --i) {
+			siftRun(runArray, prefixes, heap, count, i);
+		}
+		long out = targetPos;
+		while (count > 0) {
+			int top = heap[0];
+			Run run = runArray[top];
+			run.buffer.copyTo(run.position, target, out, recordSize);
+			out += recordSize;
+			run.position += recordSize;
+			if (run.position == run.length) {
+				heap[0] = heap[--count];
+			}
+			else {
+				prefixes[top] = prefix(run.buffer, run.position);
+			}
+			siftRun(runArray, prefixes, heap, count, 0);
+		}
+	}
+
+	private void siftRun(Run[] runs, long[] prefixes, int[] heap, int count, int index)
+	{
+		int value = heap[index];
+		for (;;) {
+			int child = 2*index+1;
+			if (child >= count)
+				break;
+			if (child+1 < count && compareRuns(runs, prefixes, heap[child+1], heap[child]) < 0)
+				++child;
+			if (compareRuns(runs, prefixes, heap[child], value) >= 0)
+				break;
+			heap[index] = heap[child];
+			index = child;
+		}
+		heap[index] = value;
+	}
+
+	private int compareRuns(Run[] runs, long[] prefixes, int left, int right)
+	{
+		return compare(runs[left].buffer, runs[left].position, prefixes[left], runs[right].buffer, runs[right].position, prefixes[right]);
+	}
+
+	private void introSort(FlatBuffer buffer, long base, long lo, long hi, int depth)
+	{
+		while (hi-lo > INSERTION_THRESHOLD) {
+			if (depth-- == 0) {
+				heapSort(buffer, base, lo, hi);
+				return;
+			}
+			long pivot = partition(buffer, base, lo, hi);
+			if (pivot-lo < hi-pivot) {
+				introSort(buffer, base, lo, pivot, depth);
+				lo = pivot+1;
+			}
+			else {
+				introSort(buffer, base, pivot+1, hi, depth);
+				hi = pivot;
+			}
+		}
+		insertionSort(buffer, base, lo, hi);
+	}
+
+	/**
+	 * Partitions the records around median of three, the pivot is kept at lo while partitioning, so its prefix can
+	 * be cached.
+	 */
+	private long partition(FlatBuffer buffer, long base, long lo, long hi)
+	{
+		long mid = lo+(hi-lo)/2;
+		sortPair(buffer, base, lo, mid);
+		sortPair(buffer, base, mid, hi-1);
+		sortPair(buffer, base, lo, mid);
+		swap(buffer, address(base, lo), address(base, mid));
+		long pivotPos = address(base, lo);
+		long pivotPrefix = prefix(buffer, pivotPos);
+		long i = lo, j = hi;
+		for (;;) {
+			do {
+				++i;
+			} while (i < hi && comparePivot(buffer, address(base, i), pivotPos, pivotPrefix) < 0);
+			do {
+				--j;
+			} while (comparePivot(buffer, address(base, j), pivotPos, pivotPrefix) > 0);
+			if (i >= j)
+				break;
+			swap(buffer, address(base, i), address(base, j));
+		}
+		swap(buffer, pivotPos, address(base, j));
+		return j;
+	}
+
+	private void insertionSort(FlatBuffer buffer, long base, long lo, long hi)
+	{
+		for (long i = lo+1; i < hi; ++i) {
+			for (long j = i; j > lo; --j) {
+				long current = address(base, j), previous = current-recordSize;
+				if (compare(buffer, previous, buffer, current) <= 0)
+					break;
+				swap(buffer, previous, current);
+			}
+		}
+	}
+
+	private void heapSort(FlatBuffer buffer, long base, long lo, long hi)
+	{
+		long count = hi-lo;
+		for (long i = count/2-1; i >= 0; --i) {
+			siftDown(buffer, address(base, lo), i, count);
+		}
+		for (long end = count-1; end > 0; --end) {
+			swap(buffer, address(base, lo), address(base, lo+end));
+			siftDown(buffer, address(base, lo), 0, end);
+		}
+	}
+
+	private void siftDown(FlatBuffer buffer, long base, long index, long count)
+	{
+		for (;;) {
+			long child = 2*index+1;
+			if (child >= count)
+				return;
+			if (child+1 < count && compare(buffer, address(base, child+1), buffer, address(base, child)) > 0)
+				++child;
+			if (compare(buffer, address(base, child), buffer, address(base, index)) <= 0)
+				return;
+			swap(buffer, address(base, index), address(base, child));
+			index = child;
+		}
+	}
+
+	private void sortPair(FlatBuffer buffer, long base, long first, long second)
+	{
+		long firstPos = address(base, first), secondPos = address(base, second);
+		if (compare(buffer, firstPos, buffer, secondPos) > 0)
+			swap(buffer, firstPos, secondPos);
+	}
+
+	private int comparePivot(FlatBuffer buffer, long pos, long pivotPos, long pivotPrefix)
+	{
+		return compare(buffer, pos, prefix(buffer, pos), buffer, pivotPos, pivotPrefix);
+	}
+
+	private int compare(FlatBuffer left, long leftPos, long leftPrefix, FlatBuffer right, long rightPos, long rightPrefix)
+	{
+		int result = Long.compareUnsigned(leftPrefix, rightPrefix);
+		if (result != 0 || keyLength <= 8)
+			return result;
+		for (int i = 8; i < keyLength; ++i) {
+			int l = left.getByte(leftPos+keyByteOffset(i))&0xff;
+			int r = right.getByte(rightPos+keyByteOffset(i))&0xff;
+			if (l != r)
+				return l-r;
+		}
+		return 0;
+	}
+
+	/**
+	 * Gets the first (most significant) eight bytes of key as unsigned long, shorter keys are padded with zeros.
+	 */
+	private long prefix(FlatBuffer buffer, long pos)
+	{
+		if (keyLength >= 8) {
+			long value = buffer.getLong(pos+(keyOrder == ByteOrder.BIG_ENDIAN ? keyOffset : keyOffset+keyLength-8));
+			return buffer.getByteOrder() == keyOrder ? value : Long.reverseBytes(value);
+		}
+		long value = 0;
+		for (int i = 0; i < keyLength; ++i) {
+			value = (value<<8)|(buffer.getByte(pos+keyByteOffset(i))&0xff);
+		}
+		return value<<(64-8*keyLength);
+	}
+
+	private int keyByteOffset(int significance)
+	{
+		return keyOrder == ByteOrder.BIG_ENDIAN ? keyOffset+significance : keyOffset+keyLength-1-significance;
+	}
+
+	private void swap(FlatBuffer buffer, long first, long second)
+	{
+		int i = 0;
+		for (; i+8 <= recordSize; i += 8) {
+			long a = buffer.getLong(first+i);
+			buffer.putLong(first+i, buffer.getLong(second+i));
+			buffer.putLong(second+i, a);
+		}
+		for (; i < recordSize; ++i) {
+			byte a = buffer.getByte(first+i);
+			buffer.putByte(first+i, buffer.getByte(second+i));
+			buffer.putByte(second+i, a);
+		}
+	}
+
+	private long address(long base, long index)
+	{
+		return base+index*recordSize;
+	}
+
+	private void checkArea(FlatBuffer buffer, long pos, long length)
+	{
+		if ((pos|length|(pos+length)|(buffer.size()-length-pos)) < 0) {
+			throw new IndexOutOfBoundsException("Range out of bounds: pos="+pos+" length="+length+" size="+buffer.size());
+		}
+		if (length%recordSize != 0) {
+			throw new IllegalArgumentException("Length is not multiple of record size: length="+length+" recordSize="+recordSize);
+		}
+	}
+
+	private class SortTask extends RecursiveAction
+	{
+		SortTask(FlatBuffer buffer, long base, long lo, long hi, int depth)
+		{
+			this.buffer = buffer;
+			this.base = base;
+			this.lo = lo;
+			this.hi = hi;
+			this.depth = depth;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (hi-lo <= PARALLEL_THRESHOLD || depth == 0) {
+				introSort(buffer, base, lo, hi, depth);
+				return;
+			}
+			long pivot = partition(buffer, base, lo, hi);
+			invokeAll(new SortTask(buffer, base, lo, pivot, depth-1), new SortTask(buffer, base, pivot+1, hi, depth-1));
+		}
+
+		private final FlatBuffer buffer;
+
+		private final long base;
+
+		private final long lo;
+
+		private final long hi;
+
+		private final int depth;
+	}
+
+	/**
+	 * Sorted run stored in temporary mapped file.
+	 */
+	private static class Run implements AutoCloseable
+	{
+		Run(Path directory, long length) throws IOException
+		{
+			Path path = Files.createTempFile(directory, "RecordSorter-", ".run");
+			this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+			try {
+				channel.write(ByteBuffer.wrap(new byte[1]), length-1);
+				this.buffer = new MappedFlatBuffer(channel, FileChannel.MapMode.READ_WRITE, length);
+			}
+			catch (IOException|RuntimeException ex) {
+				channel.close();
+				throw ex;
+			}
+			this.length = length;
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			try {
+				buffer.close();
+			}
+			finally {
+				channel.close();
+			}
+		}
+
+		private final FileChannel channel;
+
+		private final FlatBuffer buffer;
+
+		private final long length;
+
+		private long position;
+	}
+
+	private final ForkJoinPool pool;
+
+	private final int recordSize;
+
+	private final int keyOffset;
+
+	private final int keyLength;
+
+	private final ByteOrder keyOrder;
+
+	/** Number of records below which the partition is sorted sequentially. */
+	private static final long PARALLEL_THRESHOLD = 8192;
+
+	/** Number of records below which the partition is sorted by insertion sort. */
+	private static final long INSERTION_THRESHOLD = 16;
+}
@@ -16,6 +16,9 @@
 
 package net.dryuf.bigio;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
 
 /**
  * Implementation {@link FlatBuffer}, changing the byte order.
@@ -40,6 +43,16 @@ public class SubFlatBuffer extends AbstractDelegatingFlatBuffer
 		return this.length;
 	}
 
+	/**
+	 * Creates sub buffer of the underlying buffer directly, so the nesting does not add indirection.
+	 */
+	@Override
+	public FlatBuffer subBuffer(long pos, long length)
+	{
+		checkBounds(pos, length);
+		return underlying.subBuffer(offset+pos, length);
+	}
+
 	@Override
 	public byte getByte(long pos)
 	{
@@ -100,19 +113,81 @@ public class SubFlatBuffer extends AbstractDelegatingFlatBuffer
 	public void getBytes(long pos, byte[] data, int offset, int length)
 	{
 		checkBounds(pos, length);
-		underlying.getBytes(offset+pos, data, offset, length);
+		underlying.getBytes(this.offset+pos, data, offset, length);
 	}
 
 	@Override
 	public void putBytes(long pos, byte[] data, int offset, int length)
 	{
 		checkBounds(pos, length);
-		underlying.putBytes(offset+pos, data, offset, length);
+		underlying.putBytes(this.offset+pos, data, offset, length);
+	}
+
+	@Override
+	public void copyTo(long pos, FlatBuffer target, long targetPos, long length)
+	{
+		checkBounds(pos, length);
+		underlying.copyTo(offset+pos, target, targetPos, length);
+	}
+
+	@Override
+	public long transferTo(long pos, long length, FlatChannel channel, long channelPos) throws IOException
+	{
+		checkBounds(pos, length);
+		return underlying.transferTo(offset+pos, length, channel, channelPos);
+	}
+
+	@Override
+	public void force(long pos, long length)
+	{
+		checkBounds(pos, length);
+		underlying.force(offset+pos, length);
+	}
+
+	@Override
+	public boolean advise(long pos, long length, AccessHint hint)
+	{
+		checkBounds(pos, length);
+		return underlying.advise(offset+pos, length, hint);
+	}
+
+	@Override
+	public boolean equalsBytes(long pos, byte[] bytes, int offset, int length)
+	{
+		checkBounds(pos, length);
+		return underlying.equalsBytes(this.offset+pos, bytes, offset, length);
+	}
+
+	@Override
+	public boolean equalsByteBuffer(long pos, ByteBuffer buffer)
+	{
+		checkBounds(pos, buffer.remaining());
+		return underlying.equalsByteBuffer(offset+pos, buffer);
+	}
+
+	@Override
+	public long mismatch(long pos, FlatBuffer other, long otherPos, long length)
+	{
+		checkBounds(pos, length);
+		return underlying.mismatch(offset+pos, other, otherPos, length);
+	}
+
+	@Override
+	protected long getMemoryAddress(long pos, long length)
+	{
+		checkBounds(pos, length);
+		return memoryAddressOf(underlying, offset+pos, length);
+	}
+
+	@Override
+	long underlyingPosition(long pos)
+	{
+		return offset+pos;
 	}
 
 	private void checkBounds(long pos, long size)
 	{
-		if (pos > length || pos+size > length) {
+		if (pos < 0 || size < 0 || pos > length || pos+size > length) {
 			throw new ArrayIndexOutOfBoundsException("Reading beyond buffer end: "+(pos+size));
 		}
 	}
@@ -35,6 +35,23 @@ public class SwappedBytesFlatBuffer extends AbstractDelegatingFlatBuffer
 		return underlying.getByteOrder() == ByteOrder.LITTLE_ENDIAN ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
 	}
 
+	@Override
+	public FlatBuffer withByteOrder(ByteOrder byteOrder)
+	{
+		if (getByteOrder() == byteOrder)
+			return this;
+		return underlying;
+	}
+
+	/**
+	 * Creates swapped view of the underlying sub buffer, so the nesting does not add indirection.
+	 */
+	@Override
+	public FlatBuffer subBuffer(long pos, long length)
+	{
+		return underlying.subBuffer(pos, length).withByteOrder(getByteOrder());
+	}
+
 	@Override
 	public short getShort(long pos)
 	{
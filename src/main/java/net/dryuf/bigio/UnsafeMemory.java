@@ -0,0 +1,405 @@
+/*
+ * Copyright 2015 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+
+import sun.misc.Unsafe;
+
+
+/**
+ * Internal access to {@link Unsafe} and raw memory algorithms shared by native memory based implementations.
+ */
+@SuppressWarnings("restriction")
+final class UnsafeMemory
+{
+	private UnsafeMemory()
+	{
+	}
+
+	/**
+	 * Finds first mismatching byte of two memory areas. Each area is specified either as object and offset or as
+	 * null and absolute address.
+	 *
+	 * @param left
+	 * 	left object or null for absolute address.
+	 * @param leftOffset
+	 * 	left offset or address.
+	 * @param right
+	 * 	right object or null for absolute address.
+	 * @param rightOffset
+	 * 	right offset or address.
+	 * @param length
+	 * 	length of compared areas.
+	 *
+	 * @return
+	 * 	index of first mismatching byte or -1 if the areas are equal.
+	 */
+	static long mismatch(Object left, long leftOffset, Object right, long rightOffset, long length)
+	{
+		long i = 0;
+		for (long end = length-15; i < end; i += 16) {
+			long l = unsafe.getLong(left, leftOffset+i), r = unsafe.getLong(right, rightOffset+i);
+			if (l != r)
+				return i+firstDifferentByte(l^r, NATIVE_ORDER);
+			l = unsafe.getLong(left, leftOffset+i+8);
+			r = unsafe.getLong(right, rightOffset+i+8);
+			if (l != r)
+				return i+8+firstDifferentByte(l^r, NATIVE_ORDER);
+		}
+		if (i < length-7) {
+			long l = unsafe.getLong(left, leftOffset+i), r = unsafe.getLong(right, rightOffset+i);
+			if (l != r)
+				return i+firstDifferentByte(l^r, NATIVE_ORDER);
+			i += 8;
+		}
+		for (; i < length; ++i) {
+			if (unsafe.getByte(left, leftOffset+i) != unsafe.getByte(right, rightOffset+i))
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Reads long value at address in little endian order.
+	 *
+	 * @param address
+	 * 	memory address.
+	 *
+	 * @return
+	 * 	value read in little endian order.
+	 */
+	static long getLongLittleEndian(long address)
+	{
+		long value = unsafe.getLong(address);
+		return NATIVE_ORDER == ByteOrder.LITTLE_ENDIAN ? value : Long.reverseBytes(value);
+	}
+
+	/**
+	 * Finds index of first different byte in xor-ed longs.
+	 *
+	 * @param xor
+	 * 	xor of compared values, must not be 0.
+	 * @param byteOrder
+	 * 	byte order the values were read in.
+	 *
+	 * @return
+	 * 	index of first different byte, in range 0 to 7.
+	 */
+	static int firstDifferentByte(long xor, ByteOrder byteOrder)
+	{
+		return (byteOrder == ByteOrder.LITTLE_ENDIAN ? Long.numberOfTrailingZeros(xor) : Long.numberOfLeadingZeros(xor))>>>3;
+	}
+
+	/**
+	 * Gets native address of direct {@link ByteBuffer}.
+	 *
+	 * @param buffer
+	 * 	direct buffer.
+	 *
+	 * @return
+	 * 	address of buffer start, ignoring position.
+	 */
+	static long getByteBufferAddress(ByteBuffer buffer)
+	{
+		return unsafe.getLong(buffer, BUFFER_ADDRESS_OFFSET);
+	}
+
+	/**
+	 * Checks whether direct {@link ByteBuffer} views can be created by {@link #newDirectByteBuffer(long, int)}.
+	 *
+	 * @return
+	 * 	true if views are supported.
+	 */
+	static boolean canCreateDirectByteBuffer()
+	{
+		return DIRECT_BUFFER_CONSTRUCTOR != null;
+	}
+
+	/**
+	 * Creates direct {@link ByteBuffer} view over native memory. The view does not own the memory, it becomes
+	 * invalid once the memory is released.
+	 *
+	 * @param address
+	 * 	address of memory.
+	 * @param length
+	 * 	length of memory.
+	 *
+	 * @return
+	 * 	direct buffer, in big endian order as usual for new buffers.
+	 */
+	static ByteBuffer newDirectByteBuffer(long address, int length)
+	{
+		if (DIRECT_BUFFER_CONSTRUCTOR == null) {
+			throw new UnsupportedOperationException("Direct ByteBuffer views need access to java.nio internals, run with --add-opens java.base/java.nio=ALL-UNNAMED");
+		}
+		try {
+			return (ByteBuffer)DIRECT_BUFFER_CONSTRUCTOR.newInstance(address, length);
+		}
+		catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Forces the changes in mapped memory to be written to the file.
+	 *
+	 * @param fd
+	 * 	file descriptor of mapped file.
+	 * @param address
+	 * 	address of the area, does not need to be page aligned.
+	 * @param length
+	 * 	length of the area.
+	 */
+	static void force(FileDescriptor fd, long address, long length)
+	{
+		if (length == 0) {
+			return;
+		}
+		if (FORCE_METHOD == null) {
+			throw new UnsupportedOperationException("Forcing native memory needs access to java.nio internals, run with --add-opens java.base/java.nio=ALL-UNNAMED");
+		}
+		long aligned = address&-PAGE_SIZE;
+		try {
+			FORCE_METHOD.invoke(FORCE_RECEIVER, fd, aligned, length+(address-aligned));
+		}
+		catch (InvocationTargetException e) {
+			if (e.getCause() instanceof IOException) {
+				throw new UncheckedIOException((IOException)e.getCause());
+			}
+			throw new RuntimeException(e.getCause());
+		}
+		catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Forces the changes in area of mapped buffer to be written to the file. Forces the whole buffer if range
+	 * forcing is not accessible on this JDK.
+	 *
+	 * @param buffer
+	 * 	buffer created by {@link java.nio.channels.FileChannel#map}, not its duplicate.
+	 * @param index
+	 * 	index of the area within the buffer.
+	 * @param length
+	 * 	length of the area.
+	 */
+	static void force(MappedByteBuffer buffer, int index, int length)
+	{
+		if (length == 0) {
+			return;
+		}
+		try {
+			if (RANGE_FORCE_METHOD != null) {
+				RANGE_FORCE_METHOD.invoke(buffer, index, length);
+				return;
+			}
+			if (FORCE_METHOD != null && MAPPED_FD_FIELD != null) {
+				force((FileDescriptor)MAPPED_FD_FIELD.get(buffer), getByteBufferAddress(buffer)+index, length);
+				return;
+			}
+		}
+		catch (InvocationTargetException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException)e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+		catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+		buffer.force();
+	}
+
+	/**
+	 * Advises the system the memory will be needed soon (madvise MADV_WILLNEED), so it starts loading the pages
+	 * asynchronously.
+	 *
+	 * @param address
+	 * 	address of the area, does not need to be page aligned.
+	 * @param length
+	 * 	length of the area.
+	 *
+	 * @return
+	 * 	true if the advice was passed, false if not accessible on this JDK.
+	 */
+	static boolean willNeed(long address, long length)
+	{
+		if (LOAD_METHOD == null) {
+			return false;
+		}
+		long aligned = address&-PAGE_SIZE;
+		try {
+			LOAD_METHOD.invoke(FORCE_RECEIVER, aligned, length+(address-aligned));
+			return true;
+		}
+		catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Releases the memory of direct or mapped {@link ByteBuffer} immediately, without waiting for garbage
+	 * collector. The buffer and all its views must not be accessed anymore.
+	 *
+	 * @param buffer
+	 * 	direct buffer, not a slice or duplicate.
+	 */
+	static void releaseByteBuffer(ByteBuffer buffer)
+	{
+		try {
+			if (INVOKE_CLEANER_METHOD != null) {
+				INVOKE_CLEANER_METHOD.invoke(unsafe, buffer);
+			}
+			else {
+				Object cleaner = DIRECT_BUFFER_CLEANER_METHOD.invoke(buffer);
+				if (cleaner != null) {
+					cleaner.getClass().getMethod("clean").invoke(cleaner);
+				}
+			}
+		}
+		catch (Exception e) {
+			throw new RuntimeException("Cannot release ByteBuffer", e);
+		}
+	}
+
+	/** Maximum length of single direct {@link ByteBuffer} view, kept page aligned. */
+	static final int MAX_BYTE_BUFFER_LENGTH = 1<<30;
+
+	static final Unsafe unsafe;
+
+	static final long BYTE_ARRAY_OFFSET;
+
+	static final long BUFFER_ADDRESS_OFFSET;
+
+	static final ByteOrder NATIVE_ORDER = ByteOrder.nativeOrder();
+
+	static final long PAGE_SIZE;
+
+	private static final Constructor<?> DIRECT_BUFFER_CONSTRUCTOR;
+
+	private static final Method FORCE_METHOD;
+
+	private static final MappedByteBuffer FORCE_RECEIVER;
+
+	/** MappedByteBuffer.force(int, int), public since JDK 13. */
+	private static final Method RANGE_FORCE_METHOD;
+
+	private static final Field MAPPED_FD_FIELD;
+
+	private static final Method LOAD_METHOD;
+
+	private static final Method INVOKE_CLEANER_METHOD;
+
+	private static final Method DIRECT_BUFFER_CLEANER_METHOD;
+
+	static
+	{
+		try {
+			Field theUnsafeField = Unsafe.class.getDeclaredField("theUnsafe");
+			theUnsafeField.setAccessible(true);
+			unsafe = (Unsafe)theUnsafeField.get(null);
+
+			BYTE_ARRAY_OFFSET = unsafe.arrayBaseOffset(byte[].class);
+			BUFFER_ADDRESS_OFFSET = unsafe.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+			PAGE_SIZE = unsafe.pageSize();
+		}
+		catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+
+		// the following are optional, not accessible on recent JDKs without --add-opens:
+		Constructor<?> directBufferConstructor = null;
+		try {
+			directBufferConstructor = Class.forName("java.nio.DirectByteBuffer").getDeclaredConstructor(long.class, int.class);
+			directBufferConstructor.setAccessible(true);
+		}
+		catch (Exception e) {
+			directBufferConstructor = null;
+		}
+		DIRECT_BUFFER_CONSTRUCTOR = directBufferConstructor;
+
+		Method forceMethod = null;
+		try {
+			// the native force0 uses only the passed address, any instance serves as receiver:
+			forceMethod = MappedByteBuffer.class.getDeclaredMethod("force0", FileDescriptor.class, long.class, long.class);
+			forceMethod.setAccessible(true);
+		}
+		catch (Exception e) {
+			forceMethod = null;
+		}
+		FORCE_METHOD = forceMethod;
+		FORCE_RECEIVER = (MappedByteBuffer)ByteBuffer.allocateDirect(1);
+
+		Method rangeForceMethod = null;
+		try {
+			rangeForceMethod = MappedByteBuffer.class.getMethod("force", int.class, int.class);
+		}
+		catch (Exception e) {
+			rangeForceMethod = null;
+		}
+		RANGE_FORCE_METHOD = rangeForceMethod;
+
+		Field mappedFdField = null;
+		try {
+			mappedFdField = MappedByteBuffer.class.getDeclaredField("fd");
+			mappedFdField.setAccessible(true);
+		}
+		catch (Exception e) {
+			mappedFdField = null;
+		}
+		MAPPED_FD_FIELD = mappedFdField;
+
+		Method loadMethod = null;
+		try {
+			// the native load0 only calls madvise(MADV_WILLNEED) on the passed area:
+			loadMethod = MappedByteBuffer.class.getDeclaredMethod("load0", long.class, long.class);
+			loadMethod.setAccessible(true);
+		}
+		catch (Exception e) {
+			loadMethod = null;
+		}
+		LOAD_METHOD = loadMethod;
+
+		Method invokeCleanerMethod = null;
+		Method directBufferCleanerMethod = null;
+		try {
+			invokeCleanerMethod = Unsafe.class.getMethod("invokeCleaner", ByteBuffer.class);
+		}
+		catch (Exception e) {
+			try {
+				directBufferCleanerMethod = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+			}
+			catch (Exception e2) {
+				throw new RuntimeException(e2);
+			}
+		}
+		INVOKE_CLEANER_METHOD = invokeCleanerMethod;
+		DIRECT_BUFFER_CLEANER_METHOD = directBufferCleanerMethod;
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * Strategy of waiting for free space or available messages in {@link FlatRingBuffer}.
+ */
+public enum WaitStrategy
+{
+	/** Spins without releasing the CPU, lowest latency at the cost of burning the core. */
+	BUSY_SPIN
+	{
+		@Override
+		public void idle(int iteration)
+		{
+		}
+	},
+
+	/** Spins for a while and then yields the CPU to other threads. */
+	YIELDING
+	{
+		@Override
+		public void idle(int iteration)
+		{
+			if (iteration >= SPIN_ITERATIONS) {
+				Thread.yield();
+			}
+		}
+	},
+
+	/** Spins, yields and finally parks for increasing time, up to {@link #MAX_PARK_NANOS}. */
+	PARKING
+	{
+		@Override
+		public void idle(int iteration)
+		{
+			if (iteration >= SPIN_ITERATIONS+YIELD_ITERATIONS) {
+				int shift = Math.min(iteration-SPIN_ITERATIONS-YIELD_ITERATIONS, 20);
+				LockSupport.parkNanos(Math.min(MIN_PARK_NANOS<<shift, MAX_PARK_NANOS));
+			}
+			else if (iteration >= SPIN_ITERATIONS) {
+				Thread.yield();
+			}
+		}
+	};
+
+	/**
+	 * Waits before next attempt.
+	 *
+	 * @param iteration
+	 * 	number of unsuccessful attempts so far, starting from 0.
+	 */
+	public abstract void idle(int iteration);
+
+	private static final int SPIN_ITERATIONS = 100;
+
+	private static final int YIELD_ITERATIONS = 100;
+
+	private static final long MIN_PARK_NANOS = 1_000;
+
+	/** Maximum time of single park. */
+	public static final long MAX_PARK_NANOS = 1_000_000;
+}
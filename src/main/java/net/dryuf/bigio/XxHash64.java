@@ -0,0 +1,301 @@
+/*
+ * Copyright 2015 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import java.nio.ByteOrder;
+
+
+/**
+ * Streaming XXH64 hash, computed directly over {@link FlatBuffer} areas or byte arrays without copying. The
+ * stripes are read as little endian longs regardless of buffer byte order, so the result matches reference
+ * implementation.
+ */
+public class XxHash64
+{
+	/**
+	 * Creates hasher with seed 0.
+	 */
+	public XxHash64()
+	{
+		this(0);
+	}
+
+	/**
+	 * Creates hasher.
+	 *
+	 * @param seed
+	 * 	hash seed.
+	 */
+	public XxHash64(long seed)
+	{
+		this.seed = seed;
+		reset();
+	}
+
+	/**
+	 * Computes hash of area.
+	 *
+	 * @param buffer
+	 * 	buffer containing the area.
+	 * @param pos
+	 * 	position of area.
+	 * @param length
+	 * 	length of area.
+	 * @param seed
+	 * 	hash seed.
+	 *
+	 * @return
+	 * 	hash of area.
+	 */
+	public static long hash(FlatBuffer buffer, long pos, long length, long seed)
+	{
+		return new XxHash64(seed).update(buffer, pos, length).getValue();
+	}
+
+	/**
+	 * Computes hash of part of array.
+	 *
+	 * @param data
+	 * 	array containing the data.
+	 * @param offset
+	 * 	offset within data.
+	 * @param length
+	 * 	length of data.
+	 * @param seed
+	 * 	hash seed.
+	 *
+	 * @return
+	 * 	hash of data.
+	 */
+	public static long hash(byte[] data, int offset, int length, long seed)
+	{
+		return new XxHash64(seed).update(data, offset, length).getValue();
+	}
+
+	/**
+	 * Resets the hasher to initial state.
+	 *
+	 * @return
+	 * 	this hasher.
+	 */
+	public XxHash64 reset()
+	{
+		v1 = seed+P1+P2;
+		v2 = seed+P2;
+		v3 = seed;
+		v4 = seed-P1;
+		totalLength = 0;
+		pendingLength = 0;
+		return this;
+	}
+
+	/**
+	 * Updates hash with area of buffer.
+	 *
+	 * @param buffer
+	 * 	buffer containing the area.
+	 * @param pos
+	 * 	position of area.
+	 * @param length
+	 * 	length of area.
+	 *
+	 * @return
+	 * 	this hasher.
+	 */
+	public XxHash64 update(FlatBuffer buffer, long pos, long length)
+	{
+		totalLength += length;
+		long done = 0;
+		if (pendingLength != 0) {
+			int current = (int) Math.min(length, STRIPE_SIZE-pendingLength);
+			buffer.getBytes(pos, pending, pendingLength, current);
+			pendingLength += current;
+			done = current;
+			if (pendingLength < STRIPE_SIZE) {
+				return this;
+			}
+			processPending();
+		}
+		boolean swap = buffer.getByteOrder() != ByteOrder.LITTLE_ENDIAN;
+		long v1 = this.v1, v2 = this.v2, v3 = this.v3, v4 = this.v4;
+		for (; done+STRIPE_SIZE <= length; done += STRIPE_SIZE) {
+			long p = pos+done;
+			v1 = round(v1, littleEndian(buffer.getLong(p), swap));
+			v2 = round(v2, littleEndian(buffer.getLong(p+8), swap));
+			v3 = round(v3, littleEndian(buffer.getLong(p+16), swap));
+			v4 = round(v4, littleEndian(buffer.getLong(p+24), swap));
+		}
+		this.v1 = v1;
+		this.v2 = v2;
+		this.v3 = v3;
+		this.v4 = v4;
+		pendingLength = (int) (length-done);
+		buffer.getBytes(pos+done, pending, 0, pendingLength);
+		return this;
+	}
+
+	/**
+	 * Updates hash with part of array.
+	 *
+	 * @param data
+	 * 	array containing the data.
+	 * @param offset
+	 * 	offset within data.
+	 * @param length
+	 * 	length of data.
+	 *
+	 * @return
+	 * 	this hasher.
+	 */
+	public XxHash64 update(byte[] data, int offset, int length)
+	{
+		if ((offset|length|(offset+length)|(data.length-length-offset)) < 0) {
+			throw new IndexOutOfBoundsException("Range out of array bounds: offset="+offset+" length="+length);
+		}
+		totalLength += length;
+		int done = 0;
+		if (pendingLength != 0) {
+			int current = Math.min(length, STRIPE_SIZE-pendingLength);
+			System.arraycopy(data, offset, pending, pendingLength, current);
+			pendingLength += current;
+			done = current;
+			if (pendingLength < STRIPE_SIZE) {
+				return this;
+			}
+			processPending();
+		}
+		long v1 = this.v1, v2 = this.v2, v3 = this.v3, v4 = this.v4;
+		for (; done+STRIPE_SIZE <= length; done += STRIPE_SIZE) {
+			long p = UnsafeMemory.BYTE_ARRAY_OFFSET+offset+done;
+			v1 = round(v1, getLong(data, p));
+			v2 = round(v2, getLong(data, p+8));
+			v3 = round(v3, getLong(data, p+16));
+			v4 = round(v4, getLong(data, p+24));
+		}
+		this.v1 = v1;
+		this.v2 = v2;
+		this.v3 = v3;
+		this.v4 = v4;
+		pendingLength = length-done;
+		System.arraycopy(data, offset+done, pending, 0, pendingLength);
+		return this;
+	}
+
+	/**
+	 * Gets hash of data processed so far. The hasher can be further updated.
+	 *
+	 * @return
+	 * 	hash value.
+	 */
+	public long getValue()
+	{
+		long h;
+		if (totalLength >= STRIPE_SIZE) {
+			h = Long.rotateLeft(v1, 1)+Long.rotateLeft(v2, 7)+Long.rotateLeft(v3, 12)+Long.rotateLeft(v4, 18);
+			h = mergeRound(h, v1);
+			h = mergeRound(h, v2);
+			h = mergeRound(h, v3);
+			h = mergeRound(h, v4);
+		}
+		else {
+			h = seed+P5;
+		}
+		h += totalLength;
+		long p = UnsafeMemory.BYTE_ARRAY_OFFSET, end = p+pendingLength;
+		for (; p+8 <= end; p += 8) {
+			h ^= round(0, getLong(pending, p));
+			h = Long.rotateLeft(h, 27)*P1+P4;
+		}
+		if (p+4 <= end) {
+			h ^= (getInt(pending, p)&0xffffffffL)*P1;
+			h = Long.rotateLeft(h, 23)*P2+P3;
+			p += 4;
+		}
+		for (; p < end; ++p) {
+			h ^= (UnsafeMemory.unsafe.getByte(pending, p)&0xff)*P5;
+			h = Long.rotateLeft(h, 11)*P1;
+		}
+		h ^= h>>>33;
+		h *= P2;
+		h ^= h>>>29;
+		h *= P3;
+		h ^= h>>>32;
+		return h;
+	}
+
+	private void processPending()
+	{
+		long p = UnsafeMemory.BYTE_ARRAY_OFFSET;
+		v1 = round(v1, getLong(pending, p));
+		v2 = round(v2, getLong(pending, p+8));
+		v3 = round(v3, getLong(pending, p+16));
+		v4 = round(v4, getLong(pending, p+24));
+		pendingLength = 0;
+	}
+
+	private static long round(long acc, long input)
+	{
+		return Long.rotateLeft(acc+input*P2, 31)*P1;
+	}
+
+	private static long mergeRound(long acc, long val)
+	{
+		return (acc^round(0, val))*P1+P4;
+	}
+
+	private static long littleEndian(long value, boolean swap)
+	{
+		return swap ? Long.reverseBytes(value) : value;
+	}
+
+	private static long getLong(byte[] data, long offset)
+	{
+		long value = UnsafeMemory.unsafe.getLong(data, offset);
+		return UnsafeMemory.NATIVE_ORDER == ByteOrder.LITTLE_ENDIAN ? value : Long.reverseBytes(value);
+	}
+
+	private static int getInt(byte[] data, long offset)
+	{
+		int value = UnsafeMemory.unsafe.getInt(data, offset);
+		return UnsafeMemory.NATIVE_ORDER == ByteOrder.LITTLE_ENDIAN ? value : Integer.reverseBytes(value);
+	}
+
+	private final long seed;
+
+	private long v1;
+
+	private long v2;
+
+	private long v3;
+
+	private long v4;
+
+	private long totalLength;
+
+	/** Data not yet forming complete stripe. */
+	private final byte[] pending = new byte[STRIPE_SIZE];
+
+	private int pendingLength;
+
+	private static final int STRIPE_SIZE = 32;
+
+	private static final long P1 = 0x9E3779B185EBCA87L;
+	private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long P3 = 0x165667B19E3779F9L;
+	private static final long P4 = 0x85EBCA77C2B2AE63L;
+	private static final long P5 = 0x27D4EB2F165667C5L;
+}
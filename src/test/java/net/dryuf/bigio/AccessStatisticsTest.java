@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+
+public class AccessStatisticsTest
+{
+	@Test
+	public void testBuckets()
+	{
+		for (long value: new long[]{ 0, 1, 31, 32, 33, 63, 64, 1000, 123456789, Long.MAX_VALUE }) {
+			int index = AccessStatistics.bucketIndex(value);
+			AssertJUnit.assertTrue(AccessStatistics.bucketUpperBound(index) >= value);
+			AssertJUnit.assertTrue(index == 0 || AccessStatistics.bucketUpperBound(index-1) < value);
+		}
+	}
+
+	@Test
+	public void testInstrumentedBuffer()
+	{
+		AccessStatistics statistics = new AccessStatistics(1);
+		try (OffHeapFlatBuffer underlying = new OffHeapFlatBuffer(1<<20)) {
+			AssertJUnit.assertSame(underlying, InstrumentedFlatBuffer.wrap(underlying, null));
+			FlatBuffer buffer = InstrumentedFlatBuffer.wrap(underlying, statistics);
+			for (int i = 0; i < 100; ++i)
+				buffer.putLong(i*8, i);
+			long sum = 0;
+			for (int i = 0; i < 100; ++i)
+				sum += buffer.getLong(i*65544L%(1<<20));
+			AssertJUnit.assertTrue(sum >= 0);
+			buffer.getBytes(0, new byte[64]);
+			AssertJUnit.assertEquals(101, statistics.getReadCount());
+			AssertJUnit.assertEquals(864, statistics.getReadBytes());
+			AssertJUnit.assertEquals(100, statistics.getWriteCount());
+			AssertJUnit.assertEquals(800, statistics.getWriteBytes());
+			AssertJUnit.assertTrue(statistics.getSequentialCount() >= 99);
+			AssertJUnit.assertTrue(statistics.getRandomCount() >= 90);
+		}
+	}
+
+	@Test
+	public void testInstrumentedComparisons()
+	{
+		AccessStatistics statistics = new AccessStatistics(1);
+		try (OffHeapFlatBuffer underlying = new OffHeapFlatBuffer(1024)) {
+			FlatBuffer buffer = InstrumentedFlatBuffer.wrap(underlying, statistics);
+			underlying.putVarLong(0, 300);
+			AssertJUnit.assertTrue(buffer.equalsBytes(100, new byte[16], 0, 16));
+			AssertJUnit.assertTrue(buffer.equalsByteBuffer(100, ByteBuffer.allocate(8)));
+			AssertJUnit.assertEquals(-1, buffer.mismatch(200, underlying, 300, 32));
+			AssertJUnit.assertEquals(300, buffer.getVarLong(0));
+			AssertJUnit.assertEquals(300, buffer.getVarLong(0, new FlatCursor()));
+			AssertJUnit.assertEquals(2, buffer.getVarLongLength(0));
+			AssertJUnit.assertEquals(300, new FlatCursor(buffer).getVarLong());
+			AssertJUnit.assertEquals(7, statistics.getReadCount());
+			AssertJUnit.assertEquals(16+8+32+2+2+2+2, statistics.getReadBytes());
+		}
+	}
+
+	@Test
+	public void testInstrumentedChannel() throws Exception
+	{
+		AccessStatistics statistics = new AccessStatistics();
+		try (FileChannel file = MappedFlatBufferTest.openTemporary(1000)) {
+			FlatChannel channel = FlatChannels.instrumented(FlatChannels.from(file), statistics);
+			for (int i = 0; i < 10; ++i)
+				AssertJUnit.assertEquals(100, channel.write(ByteBuffer.allocate(100), i*100));
+			for (int i = 0; i < 10; ++i)
+				AssertJUnit.assertEquals(50, channel.read(ByteBuffer.allocate(50), i*100));
+		}
+		AssertJUnit.assertEquals(10, statistics.getReadCount());
+		AssertJUnit.assertEquals(500, statistics.getReadBytes());
+		AssertJUnit.assertEquals(1000, statistics.getWriteBytes());
+		AssertJUnit.assertTrue(statistics.getWriteLatencyMaxNanos() > 0);
+		AssertJUnit.assertTrue(statistics.getReadLatencyMedianNanos() <= statistics.getReadLatency99Nanos());
+
+		Map<String, Long> metrics = new HashMap<>();
+		statistics.publish(metrics::put);
+		AssertJUnit.assertEquals(10L, (long) metrics.get("write.count"));
+		statistics.reset();
+		AssertJUnit.assertEquals(0, statistics.getWriteCount());
+		AssertJUnit.assertEquals(0, statistics.getWriteLatencyMaxNanos());
+	}
+}
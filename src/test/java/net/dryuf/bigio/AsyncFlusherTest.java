@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+
+public class AsyncFlusherTest
+{
+	@Test(timeOut = 10000L)
+	public void testBatching() throws Exception
+	{
+		try (
+				FileChannel channel = MappedFlatBufferTest.openTemporary(64*1024);
+				MappedFlatBuffer mapped = new MappedFlatBuffer(channel, FileChannel.MapMode.READ_WRITE, -1)
+		) {
+			List<long[]> forced = Collections.synchronizedList(new ArrayList<>());
+			FlatBuffer buffer = new AbstractDelegatingFlatBuffer(mapped)
+			{
+				@Override
+				public void force(long pos, long length)
+				{
+					forced.add(new long[]{ pos, length });
+					super.force(pos, length);
+				}
+			};
+			CompletableFuture<Void> first, second, third;
+			try (AsyncFlusher flusher = new AsyncFlusher(buffer, 200, TimeUnit.MILLISECONDS)) {
+				first = flusher.flush(100, 100);
+				second = flusher.flush(0, 150);
+				third = flusher.flush(1000, 10);
+				CompletableFuture.allOf(first, second, third).get();
+				AssertJUnit.assertEquals(3, flusher.getCompletedCount());
+				AssertJUnit.assertEquals(2, flusher.getForceCount());
+				AssertJUnit.assertEquals(210, flusher.getForcedBytes());
+			}
+			AssertJUnit.assertEquals(2, forced.size());
+			AssertJUnit.assertEquals(0, forced.get(0)[0]);
+			AssertJUnit.assertEquals(200, forced.get(0)[1]);
+			AssertJUnit.assertEquals(1000, forced.get(1)[0]);
+		}
+	}
+
+	@Test(timeOut = 10000L)
+	public void testClose() throws IOException
+	{
+		try (
+				FileChannel channel = MappedFlatBufferTest.openTemporary(64*1024);
+				MappedFlatBuffer mapped = new MappedFlatBuffer(channel, FileChannel.MapMode.READ_WRITE, -1)
+		) {
+			CompletableFuture<Void> future;
+			try (AsyncFlusher flusher = new AsyncFlusher(mapped, 1, TimeUnit.HOURS)) {
+				future = flusher.flush(0, 4096);
+			}
+			AssertJUnit.assertTrue(future.isDone());
+			AssertJUnit.assertFalse(future.isCompletedExceptionally());
+		}
+	}
+
+	@Test(timeOut = 10000L)
+	public void testOutOfBounds() throws Exception
+	{
+		try (
+				FileChannel channel = MappedFlatBufferTest.openTemporary(4096);
+				MappedFlatBuffer mapped = new MappedFlatBuffer(channel, FileChannel.MapMode.READ_WRITE, -1);
+				AsyncFlusher flusher = new AsyncFlusher(mapped, 100, TimeUnit.MILLISECONDS)
+		) {
+			CompletableFuture<Void> valid = flusher.flush(0, 100);
+			try {
+				flusher.flush(4000, 1000);
+				AssertJUnit.fail("Expected IndexOutOfBoundsException");
+			}
+			catch (IndexOutOfBoundsException ex) {
+				// expected
+			}
+			valid.get();
+		}
+	}
+
+	@Test(timeOut = 10000L)
+	public void testFailure() throws Exception
+	{
+		try (
+				FileChannel channel = MappedFlatBufferTest.openTemporary(4096);
+				MappedFlatBuffer mapped = new MappedFlatBuffer(channel, FileChannel.MapMode.READ_WRITE, -1);
+				AsyncFlusher flusher = new AsyncFlusher(new AbstractDelegatingFlatBuffer(mapped)
+				{
+					@Override
+					public void force(long pos, long length)
+					{
+						throw new UncheckedIOException(new IOException("Failed to force"));
+					}
+				}, 0, TimeUnit.MILLISECONDS)
+		) {
+			CompletableFuture<Void> future = flusher.flush(0, 1000);
+			try {
+				future.get();
+				AssertJUnit.fail("Expected failure");
+			}
+			catch (ExecutionException ex) {
+				AssertJUnit.assertTrue(ex.getCause() instanceof UncheckedIOException);
+			}
+		}
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+
+public class BatchingFlatChannelTest
+{
+	@Test
+	public void testReadBatch() throws Exception
+	{
+		byte[] content = new byte[10000];
+		for (int i = 0; i < content.length; ++i)
+			content[i] = (byte) i;
+		try (FileChannel file = MappedFlatBufferTest.openTemporary(content.length)) {
+			file.write(ByteBuffer.wrap(content), 0);
+			try (BatchingFlatChannel channel = FlatChannels.async(file, 2)) {
+				List<AsyncFlatChannel.Request> requests = new ArrayList<>();
+				for (int pos: new int[]{ 500, 100, 200, 150, 5000, 9990 }) {
+					requests.add(new AsyncFlatChannel.Request(pos, ByteBuffer.allocate(100)));
+				}
+				requests.add(new AsyncFlatChannel.Request(10000, ByteBuffer.allocate(10)));
+				List<CompletableFuture<Integer>> futures = channel.readBatch(requests);
+				AssertJUnit.assertEquals(Arrays.asList(100, 100, 100, 100, 100, 10, -1), Arrays.asList(
+						futures.stream().map(CompletableFuture::join).toArray()));
+				for (int i = 0; i < 6; ++i) {
+					AsyncFlatChannel.Request request = requests.get(i);
+					AssertJUnit.assertEquals(content[(int) request.getPosition()+5], request.getBuffer().get(5));
+				}
+				AssertJUnit.assertEquals(7, channel.getRequestCount());
+				// 100..300 coalesced, 500, 5000, coalesced 9990..10100 reads twice to detect end of channel
+				AssertJUnit.assertEquals(5, channel.getOperationCount());
+			}
+		}
+	}
+
+	@Test
+	public void testWriteBatch() throws Exception
+	{
+		try (FileChannel file = MappedFlatBufferTest.openTemporary(1000)) {
+			try (BatchingFlatChannel channel = FlatChannels.async(file, 2)) {
+				List<AsyncFlatChannel.Request> requests = new ArrayList<>();
+				for (int i = 0; i < 10; ++i) {
+					requests.add(new AsyncFlatChannel.Request(i*10, ByteBuffer.wrap(new byte[]{ (byte) i, 1, 2, 3, 4, 5, 6, 7, 8, 9 })));
+				}
+				requests.add(new AsyncFlatChannel.Request(0, ByteBuffer.wrap(new byte[]{ 42 })));
+				CompletableFuture.allOf(channel.writeBatch(requests).toArray(new CompletableFuture[0])).get();
+				AssertJUnit.assertEquals(2, channel.getOperationCount());
+				ByteBuffer read = ByteBuffer.allocate(100);
+				AssertJUnit.assertEquals(100, (int) channel.read(read, 0).get());
+				AssertJUnit.assertEquals(42, read.get(0));
+				AssertJUnit.assertEquals(9, read.get(90));
+			}
+		}
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+
+
+public class ChecksumTest
+{
+	@Test
+	public void testCrc32c()
+	{
+		byte[] check = "123456789".getBytes(StandardCharsets.US_ASCII);
+		Crc32c crc = new Crc32c();
+		crc.update(check, 0, check.length);
+		AssertJUnit.assertEquals(0xe3069283L, crc.getValue());
+
+		byte[] content = new byte[300000];
+		new Random(0).nextBytes(content);
+		crc.reset();
+		crc.update(content, 0, content.length);
+		long expected = crc.getValue();
+		ForkJoinPool pool = new ForkJoinPool(3);
+		try (FlatBuffer buffer = new OffHeapFlatBuffer(content.length)) {
+			buffer.putBytes(0, content);
+			AssertJUnit.assertEquals(expected, Crc32c.compute(buffer, 0, content.length));
+			AssertJUnit.assertEquals(expected, Crc32c.compute(new MappedFlatBufferTest.GenericFlatBuffer(buffer), 0, content.length));
+			AssertJUnit.assertEquals(expected, Crc32c.compute(new ParallelScanner(pool, UnsafeMemory.PAGE_SIZE), buffer, 0, content.length));
+			AssertJUnit.assertEquals(expected, Crc32c.combine(Crc32c.compute(buffer, 0, 1000), Crc32c.compute(buffer, 1000, content.length-1000), content.length-1000));
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Native memory passed to JDK implementation when direct views are not available (Java 9+ without add-opens).
+	 */
+	@Test
+	public void testIntrinsicWithoutDirectViews()
+	{
+		byte[] content = new byte[200000];
+		new Random(1).nextBytes(content);
+		CRC32 reference = new CRC32();
+		reference.update(content, 0, content.length);
+		try (FlatBuffer buffer = new OffHeapFlatBuffer(content.length)) {
+			buffer.putBytes(0, content);
+			Crc32c crc = new Crc32c(new CRC32(), false);
+			crc.update(buffer, 0, content.length);
+			AssertJUnit.assertEquals(reference.getValue(), crc.getValue());
+		}
+	}
+
+	@Test
+	public void testXxHash64()
+	{
+		AssertJUnit.assertEquals(0xef46db3751d8e999L, new XxHash64().getValue());
+		AssertJUnit.assertEquals(0x44bc2cf5ad770999L, new XxHash64().update("abc".getBytes(StandardCharsets.US_ASCII), 0, 3).getValue());
+
+		byte[] content = new byte[1000];
+		new Random(0).nextBytes(content);
+		long expected = new XxHash64(7).update(content, 0, content.length).getValue();
+		try (FlatBuffer buffer = new OffHeapFlatBuffer(content.length)) {
+			buffer.putBytes(0, content);
+			AssertJUnit.assertEquals(expected, XxHash64.hash(buffer, 0, content.length, 7));
+			AssertJUnit.assertEquals(expected, XxHash64.hash(buffer.withByteOrder(ByteOrder.BIG_ENDIAN), 0, content.length, 7));
+			XxHash64 streaming = new XxHash64(7);
+			for (int pos = 0; pos < content.length; pos += 13) {
+				int length = Math.min(13, content.length-pos);
+				if (pos%2 == 0)
+					streaming.update(buffer, pos, length);
+				else
+					streaming.update(content, pos, length);
+			}
+			AssertJUnit.assertEquals(expected, streaming.getValue());
+		}
+	}
+}
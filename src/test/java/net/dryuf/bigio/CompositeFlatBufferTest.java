@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+
+public class CompositeFlatBufferTest
+{
+	@Test
+	public void testFixedSegments()
+	{
+		try (CompositeFlatBuffer buffer = new CompositeFlatBuffer(Arrays.asList(
+				new OffHeapFlatBuffer(100), new OffHeapFlatBuffer(100), new OffHeapFlatBuffer(50)))) {
+			verifyAccess(buffer, 250);
+		}
+	}
+
+	@Test
+	public void testVariableSegments()
+	{
+		try (CompositeFlatBuffer buffer = new CompositeFlatBuffer(Arrays.asList(
+				new OffHeapFlatBuffer(30), new OffHeapFlatBuffer(3), new OffHeapFlatBuffer(100), new OffHeapFlatBuffer(117)))) {
+			verifyAccess(buffer, 250);
+			verifyAccess(buffer.withByteOrder(ByteOrder.BIG_ENDIAN), 250);
+		}
+	}
+
+	@Test
+	public void testTailModification()
+	{
+		try (CompositeFlatBuffer buffer = new CompositeFlatBuffer(ByteOrder.nativeOrder())) {
+			AssertJUnit.assertEquals(0, buffer.size());
+			for (int i = 0; i < 40; ++i) {
+				buffer.addSegment(new OffHeapFlatBuffer(10));
+				buffer.putByte(i*10+9, (byte) i);
+			}
+			AssertJUnit.assertEquals(400, buffer.size());
+			buffer.removeLastSegment().close();
+			AssertJUnit.assertEquals(390, buffer.size());
+			buffer.addSegment(new OffHeapFlatBuffer(20));
+			AssertJUnit.assertEquals(410, buffer.size());
+			AssertJUnit.assertEquals(38, buffer.getByte(389));
+			AssertJUnit.assertEquals(40, buffer.getSegmentCount());
+		}
+	}
+
+	@Test(expectedExceptions = IndexOutOfBoundsException.class)
+	public void testBounds()
+	{
+		try (CompositeFlatBuffer buffer = new CompositeFlatBuffer(Arrays.asList(new OffHeapFlatBuffer(10), new OffHeapFlatBuffer(10)))) {
+			buffer.getLong(13);
+		}
+	}
+
+	private static void verifyAccess(FlatBuffer buffer, int size)
+	{
+		ByteBuffer reference = ByteBuffer.allocate(size).order(buffer.getByteOrder());
+		Random random = new Random(0);
+		buffer.putBytes(0, new byte[size]);
+		for (int i = 0; i < 2000; ++i) {
+			int pos = random.nextInt(size-8);
+			switch (random.nextInt(5)) {
+			case 0:
+				long value = random.nextLong();
+				reference.putLong(pos, value);
+				buffer.putLong(pos, value);
+				break;
+
+			case 1:
+				reference.putShort(pos, (short) i);
+				buffer.putShort(pos, (short) i);
+				break;
+
+			case 2:
+				AssertJUnit.assertEquals(reference.getLong(pos), buffer.getLong(pos));
+				AssertJUnit.assertEquals(reference.getInt(pos), buffer.getInt(pos));
+				AssertJUnit.assertEquals(reference.getShort(pos), buffer.getShort(pos));
+				break;
+
+			case 3:
+				byte[] data = new byte[random.nextInt(size-pos)];
+				random.nextBytes(data);
+				System.arraycopy(data, 0, reference.array(), pos, data.length);
+				buffer.putBytes(pos, data);
+				break;
+
+			case 4:
+				byte[] read = new byte[random.nextInt(size-pos)];
+				buffer.getBytes(pos, read);
+				AssertJUnit.assertTrue(buffer.equalsBytes(pos, reference.array(), pos, read.length));
+				AssertJUnit.assertEquals(ByteBuffer.wrap(reference.array(), pos, read.length), ByteBuffer.wrap(read));
+				break;
+			}
+		}
+		try (FlatBuffer copy = new OffHeapFlatBuffer(size)) {
+			buffer.copyTo(0, copy, 0, size);
+			AssertJUnit.assertEquals(-1, buffer.mismatch(0, copy, 0, size));
+			copy.putByte(177, (byte) (copy.getByte(177)+1));
+			AssertJUnit.assertEquals(177, buffer.mismatch(0, copy, 0, size));
+		}
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2017 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+
+public class FlatBytesHashMapTest
+{
+	@Test
+	public void testOperations()
+	{
+		FlatLongHashMapTest.DeferredAllocator allocator = new FlatLongHashMapTest.DeferredAllocator();
+		Map<String, Long> expected = new HashMap<>();
+		Random random = new Random(0);
+		try (
+				FlatBuffer data = new OffHeapFlatBuffer(16*1024*1024);
+				FlatBytesHashMap map = FlatBytesHashMap.create(new OffHeapFlatBuffer(FlatBytesHashMap.bufferSize(8)), data, allocator)
+		) {
+			long end = 0;
+			for (int i = 0; i < 100000; ++i) {
+				String key = keyOf(random.nextInt(5000));
+				byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+				switch (random.nextInt(3)) {
+				case 0:
+					AssertJUnit.assertEquals(expected.remove(key) != null, map.remove(bytes, 0, bytes.length));
+					break;
+
+				default:
+					long record = end;
+					end += FlatBytesHashMap.putKey(data, record, bytes, 0, bytes.length);
+					AssertJUnit.assertEquals(expected.put(key, record) == null, map.put(record));
+					break;
+				}
+				AssertJUnit.assertEquals(expected.getOrDefault(key, -1L).longValue(), map.get(bytes, -1));
+				AssertJUnit.assertEquals(expected.size(), map.size());
+			}
+			for (int i = 0; i < 5000; ++i) {
+				byte[] bytes = keyOf(i).getBytes(StandardCharsets.UTF_8);
+				AssertJUnit.assertEquals(expected.getOrDefault(keyOf(i), -1L).longValue(), map.get(bytes, -1));
+				AssertJUnit.assertEquals(expected.containsKey(keyOf(i)), map.containsKey(bytes, 0, bytes.length));
+			}
+			byte[] padded = ("x"+keyOf(17)+"y").getBytes(StandardCharsets.UTF_8);
+			AssertJUnit.assertEquals(expected.getOrDefault(keyOf(17), -1L).longValue(), map.get(padded, 1, padded.length-2, -1));
+		}
+		finally {
+			allocator.releaseAll();
+		}
+	}
+
+	@Test
+	public void testReopenAfterResize() throws Exception
+	{
+		FlatLongHashMapTest.MappedAllocator allocator = new FlatLongHashMapTest.MappedAllocator();
+		try (FlatBuffer data = new OffHeapFlatBuffer(1024*1024)) {
+			long[] records = new long[1000];
+			long end = 0;
+			FileChannel table;
+			try (FlatBytesHashMap map = FlatBytesHashMap.create(allocator.allocate(FlatBytesHashMap.bufferSize(8)), data, allocator)) {
+				for (int i = 0; i < records.length; ++i) {
+					byte[] bytes = keyOf(i).getBytes(StandardCharsets.UTF_8);
+					records[i] = end;
+					end += FlatBytesHashMap.putKey(data, end, bytes, 0, bytes.length);
+					AssertJUnit.assertTrue(map.put(records[i]));
+				}
+				AssertJUnit.assertTrue(map.capacity() >= 1024);
+				map.flush();
+				table = allocator.channels.get(map.getBuffer());
+			}
+			try (FlatBytesHashMap map = FlatBytesHashMap.open(new MappedFlatBuffer(table, FileChannel.MapMode.READ_WRITE, -1), data, allocator)) {
+				AssertJUnit.assertEquals(records.length, map.size());
+				for (int i = 0; i < records.length; ++i) {
+					AssertJUnit.assertEquals(records[i], map.get(keyOf(i).getBytes(StandardCharsets.UTF_8), -1));
+				}
+				AssertJUnit.assertEquals(-1, map.get(keyOf(records.length).getBytes(StandardCharsets.UTF_8), -1));
+			}
+			try (FlatBuffer buffer = new MappedFlatBuffer(table, FileChannel.MapMode.READ_WRITE, -1)) {
+				FlatLongHashMap.open(buffer, null);
+				AssertJUnit.fail("Expected IllegalArgumentException");
+			}
+			catch (IllegalArgumentException ex) {
+				// expected
+			}
+		}
+		finally {
+			allocator.closeAll();
+		}
+	}
+
+	private static String keyOf(int i)
+	{
+		return "key-"+i+(i%3 == 0 ? "-with-longer-suffix-exceeding-single-stripe-of-hash" : "");
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2017 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+public class FlatChannelsTest
+{
+	@Test
+	public void testLockingAndOffloading() throws Exception
+	{
+		byte[] content = new byte[4096];
+		for (int i = 0; i < content.length; ++i)
+			content[i] = (byte) (i*7);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try (FileChannel file = MappedFlatBufferTest.openTemporary(content.length)) {
+			file.write(ByteBuffer.wrap(content), 0);
+			FlatChannel channel = FlatChannels.offloading(FlatChannels.fromLocking((SeekableByteChannel) file), executor);
+			List<CompletableFuture<Void>> futures = new ArrayList<>();
+			for (int t = 0; t < 4; ++t) {
+				futures.add(CompletableFuture.runAsync(() -> {
+					try {
+						ByteBuffer buffer = ByteBuffer.allocate(16);
+						for (int i = 0; i < 1000; ++i) {
+							int pos = (i*131)%(content.length-16);
+							buffer.clear();
+							AssertJUnit.assertEquals(16, channel.read(buffer, pos));
+							AssertJUnit.assertEquals(content[pos+3], buffer.get(3));
+						}
+					}
+					catch (Exception ex) {
+						throw new RuntimeException(ex);
+					}
+				}));
+			}
+			CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+			AssertJUnit.assertEquals(1, channel.write(ByteBuffer.wrap(new byte[]{ 5 }), content.length));
+			AssertJUnit.assertEquals(content.length+1, file.size());
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testOffloadingInterrupted() throws Exception
+	{
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		FlatChannel blocking = new FlatChannel()
+		{
+			@Override
+			public int read(ByteBuffer buffer, long position) throws IOException
+			{
+				started.countDown();
+				try {
+					release.await();
+				}
+				catch (InterruptedException e) {
+					throw new InterruptedIOException();
+				}
+				buffer.put((byte) 1);
+				return 1;
+			}
+
+			@Override
+			public int write(ByteBuffer buffer, long position)
+			{
+				throw new UnsupportedOperationException();
+			}
+		};
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			FlatChannel channel = FlatChannels.offloading(blocking, executor);
+			ByteBuffer buffer = ByteBuffer.allocate(16);
+			AtomicReference<Throwable> failure = new AtomicReference<>();
+			AtomicBoolean interrupted = new AtomicBoolean();
+			Thread caller = new Thread(() -> {
+				try {
+					channel.read(buffer, 0);
+				}
+				catch (Throwable ex) {
+					failure.set(ex);
+				}
+				interrupted.set(Thread.currentThread().isInterrupted());
+			});
+			caller.start();
+			started.await();
+			caller.interrupt();
+			caller.join(100);
+			AssertJUnit.assertTrue(caller.isAlive());
+			release.countDown();
+			caller.join();
+			AssertJUnit.assertTrue(failure.get() instanceof InterruptedIOException);
+			AssertJUnit.assertEquals(1, ((InterruptedIOException) failure.get()).bytesTransferred);
+			AssertJUnit.assertEquals(1, buffer.position());
+			AssertJUnit.assertTrue(interrupted.get());
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import java.nio.ByteOrder;
+import java.util.Random;
+
+
+public class FlatCursorTest
+{
+	@Test
+	public void testVarLong()
+	{
+		long[] values = { 0, 1, 127, 128, 300, 16383, 16384, 1L<<35, (1L<<56)-1, 1L<<56, Long.MAX_VALUE, -1, Long.MIN_VALUE };
+		try (FlatBuffer buffer = new OffHeapFlatBuffer(1024)) {
+			for (FlatBuffer tested: new FlatBuffer[]{ buffer, new MappedFlatBufferTest.GenericFlatBuffer(buffer) }) {
+				FlatCursor writer = new FlatCursor(tested);
+				for (long value: values) {
+					long start = writer.position();
+					writer.putVarLong(value).putZigZagLong(-value);
+					AssertJUnit.assertEquals(FlatBuffer.varLongSize(value), tested.getVarLongLength(start));
+				}
+				FlatCursor absolute = new FlatCursor();
+				long pos = 0;
+				for (long value: values) {
+					AssertJUnit.assertEquals(value, tested.getVarLong(pos, absolute));
+					AssertJUnit.assertEquals(pos+FlatBuffer.varLongSize(value), absolute.position());
+					pos = absolute.position()+FlatBuffer.varLongSize(FlatBuffer.encodeZigZag(-value));
+				}
+				// make trailing varint shorter than word
+				long end = writer.position();
+				FlatCursor reader = new FlatCursor().reset(tested.subBuffer(0, end), 0);
+				for (long value: values) {
+					AssertJUnit.assertEquals(value, reader.getVarLong());
+					AssertJUnit.assertEquals(-value, reader.getZigZagLong());
+				}
+				AssertJUnit.assertFalse(reader.hasRemaining());
+			}
+		}
+	}
+
+	@Test
+	public void testRandomVarLong()
+	{
+		Random random = new Random(0);
+		try (FlatBuffer buffer = new OffHeapFlatBuffer(20000)) {
+			FlatCursor cursor = new FlatCursor(buffer);
+			long[] values = new long[1000];
+			for (int i = 0; i < values.length; ++i) {
+				values[i] = random.nextLong()>>>random.nextInt(64);
+				cursor.putVarLong(values[i]);
+			}
+			cursor.position(0);
+			for (long value: values) {
+				AssertJUnit.assertEquals(value, cursor.getVarLong());
+			}
+		}
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testMalformedVarLong()
+	{
+		try (FlatBuffer buffer = new OffHeapFlatBuffer(16)) {
+			buffer.putBytes(0, new byte[]{ -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 0 });
+			buffer.getVarLong(0);
+		}
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testMalformedCursorVarLong()
+	{
+		try (FlatBuffer buffer = new OffHeapFlatBuffer(16)) {
+			buffer.putBytes(0, new byte[]{ -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 0 });
+			new FlatCursor(buffer).getVarLong();
+		}
+	}
+
+	@Test
+	public void testPrimitives()
+	{
+		try (FlatBuffer buffer = new OffHeapFlatBuffer(64)) {
+			FlatBuffer swapped = buffer.withByteOrder(buffer.getByteOrder() == ByteOrder.BIG_ENDIAN ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+			new FlatCursor(swapped).putByte((byte) -2).putShort((short) -3).putInt(-4).putFloat(1.5f).putDouble(-2.25);
+			FlatCursor cursor = new FlatCursor(swapped);
+			AssertJUnit.assertEquals(254, cursor.getUnsignedByte());
+			AssertJUnit.assertEquals(65533, cursor.getUnsignedShort());
+			AssertJUnit.assertEquals(0xfffffffcL, cursor.getUnsignedInt());
+			AssertJUnit.assertEquals(1.5f, cursor.getFloat());
+			AssertJUnit.assertEquals(-2.25, cursor.getDouble());
+			AssertJUnit.assertEquals(19, cursor.position());
+		}
+	}
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2017 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+public class FlatLongHashMapTest
+{
+	@Test
+	public void testOperations()
+	{
+		DeferredAllocator allocator = new DeferredAllocator();
+		Map<Long, Long> expected = new HashMap<>();
+		Random random = new Random(0);
+		try (FlatLongHashMap map = FlatLongHashMap.create(new OffHeapFlatBuffer(FlatLongHashMap.bufferSize(8)), allocator)) {
+			for (int i = 0; i < 100000; ++i) {
+				long key = random.nextInt(5000)-10;
+				switch (random.nextInt(3)) {
+				case 0:
+					AssertJUnit.assertEquals(expected.remove(key) != null, map.remove(key));
+					break;
+
+				default:
+					AssertJUnit.assertEquals(expected.put(key, (long) i) == null, map.put(key, i));
+					break;
+				}
+				AssertJUnit.assertEquals(expected.getOrDefault(key, -1L).longValue(), map.get(key, -1));
+				AssertJUnit.assertEquals(expected.size(), map.size());
+			}
+			for (long key = -10; key < 5000; ++key) {
+				AssertJUnit.assertEquals(expected.getOrDefault(key, -1L).longValue(), map.get(key, -1));
+			}
+			AssertJUnit.assertTrue(map.capacity() >= map.size()*4/3);
+		}
+		finally {
+			allocator.releaseAll();
+		}
+	}
+
+	@Test
+	public void testReopen() throws Exception
+	{
+		try (FileChannel channel = MappedFlatBufferTest.openTemporary(FlatLongHashMap.bufferSize(1024))) {
+			try (FlatLongHashMap map = FlatLongHashMap.create(new MappedFlatBuffer(channel, FileChannel.MapMode.READ_WRITE, -1), null)) {
+				for (long i = 0; i < 500; ++i)
+					map.put(i*7, i);
+				map.flush();
+			}
+			try (FlatLongHashMap map = FlatLongHashMap.open(new MappedFlatBuffer(channel, FileChannel.MapMode.READ_WRITE, -1), null)) {
+				AssertJUnit.assertEquals(500, map.size());
+				for (long i = 0; i < 500; ++i)
+					AssertJUnit.assertEquals(i, map.get(i*7, -1));
+				AssertJUnit.assertFalse(map.containsKey(1));
+			}
+		}
+	}
+
+	@Test
+	public void testReopenAfterResize() throws Exception
+	{
+		MappedAllocator allocator = new MappedAllocator();
+		try {
+			FileChannel table;
+			try (FlatLongHashMap map = FlatLongHashMap.create(allocator.allocate(FlatLongHashMap.bufferSize(8)), allocator)) {
+				for (long i = 0; i < 1000; ++i)
+					map.put(i*7, i);
+				AssertJUnit.assertTrue(map.capacity() >= 1024);
+				map.flush();
+				table = allocator.channels.get(map.getBuffer());
+			}
+			try (FlatLongHashMap map = FlatLongHashMap.open(new MappedFlatBuffer(table, FileChannel.MapMode.READ_WRITE, -1), allocator)) {
+				AssertJUnit.assertEquals(1000, map.size());
+				for (long i = 0; i < 1000; ++i)
+					AssertJUnit.assertEquals(i, map.get(i*7, -1));
+				map.put(-1, -1);
+				AssertJUnit.assertEquals(-1, map.get(-1, 0));
+			}
+		}
+		finally {
+			allocator.closeAll();
+		}
+	}
+
+	@Test(timeOut = 60000L)
+	public void testConcurrentReader() throws Exception
+	{
+		DeferredAllocator allocator = new DeferredAllocator();
+		try (FlatLongHashMap map = FlatLongHashMap.create(new OffHeapFlatBuffer(FlatLongHashMap.bufferSize(8)), allocator)) {
+			for (long i = 0; i < 1000; ++i)
+				map.put(i, -i);
+			AtomicBoolean stop = new AtomicBoolean();
+			CompletableFuture<Void> reader = CompletableFuture.runAsync(() -> {
+				Random random = new Random(1);
+				while (!stop.get()) {
+					long key = random.nextInt(1000);
+					AssertJUnit.assertEquals(-key, map.get(key, 1));
+				}
+			});
+			for (long i = 1000; i < 200000; ++i) {
+				map.put(i, i);
+				if (i%3 == 0 && i >= 1500)
+					map.remove(i-500);
+			}
+			stop.set(true);
+			reader.get();
+		}
+		finally {
+			allocator.releaseAll();
+		}
+	}
+
+	/**
+	 * Allocator mapping temporary files, keeping the files open so the tables can be reopened.
+	 */
+	static class MappedAllocator implements FlatLongHashMap.TableAllocator
+	{
+		@Override
+		public FlatBuffer allocate(long size) throws IOException
+		{
+			FileChannel channel = MappedFlatBufferTest.openTemporary(size);
+			FlatBuffer buffer = new MappedFlatBuffer(channel, FileChannel.MapMode.READ_WRITE, -1);
+			channels.put(buffer, channel);
+			return buffer;
+		}
+
+		@Override
+		public void release(FlatBuffer buffer)
+		{
+			buffer.close();
+		}
+
+		void closeAll() throws IOException
+		{
+			for (FileChannel channel: channels.values())
+				channel.close();
+			channels.clear();
+		}
+
+		final Map<FlatBuffer, FileChannel> channels = new IdentityHashMap<>();
+	}
+
+	/**
+	 * Allocator deferring the release until readers are finished.
+	 */
+	static class DeferredAllocator implements FlatLongHashMap.TableAllocator
+	{
+		@Override
+		public FlatBuffer allocate(long size)
+		{
+			return new OffHeapFlatBuffer(size);
+		}
+
+		@Override
+		public void release(FlatBuffer buffer)
+		{
+			released.add(buffer);
+		}
+
+		void releaseAll()
+		{
+			released.forEach(FlatBuffer::close);
+			released.clear();
+		}
+
+		private final List<FlatBuffer> released = new ArrayList<>();
+	}
+}
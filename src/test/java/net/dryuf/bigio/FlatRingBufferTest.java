@@ -0,0 +1,98 @@
+/*
+ * Copyright 2017 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+public class FlatRingBufferTest
+{
+	@Test
+	public void testSingleProducer() throws Exception
+	{
+		try (
+				FileChannel channel = MappedFlatBufferTest.openTemporary(FlatRingBuffer.HEADER_SIZE+1024);
+				FlatBuffer buffer = new MappedFlatBuffer(channel, FileChannel.MapMode.READ_WRITE, -1)
+		) {
+			FlatRingBuffer ring = FlatRingBuffer.singleProducer(buffer, WaitStrategy.BUSY_SPIN);
+			AssertJUnit.assertTrue(ring.offer(new byte[]{ 1, 2, 3 }, 0, 3));
+			long[] positions = new long[2];
+			AssertJUnit.assertTrue(ring.tryClaimBatch(new int[]{ 8, 0 }, positions));
+			ring.buffer().putLong(positions[0], 42);
+			ring.commitBatch(positions, 2);
+			ring.commit(ring.tryClaim(ring.maxMessageLength()));
+			AssertJUnit.assertEquals(-1, ring.tryClaim(ring.maxMessageLength()));
+
+			AtomicLong sum = new AtomicLong();
+			AssertJUnit.assertEquals(4, ring.read((FlatBuffer b, long position, int length) -> {
+				sum.addAndGet(length == 8 ? b.getLong(position) : length);
+			}, 10));
+			AssertJUnit.assertEquals(3+42+0+ring.maxMessageLength(), sum.get());
+			AssertJUnit.assertEquals(0, ring.read((b, position, length) -> {}, 10));
+			// reopened consumer continues at the same position
+			AssertJUnit.assertTrue(ring.offer(new byte[5], 0, 5));
+			AssertJUnit.assertEquals(1, FlatRingBuffer.singleProducer(buffer, WaitStrategy.BUSY_SPIN).read((b, position, length) -> {}, 10));
+		}
+	}
+
+	@Test(timeOut = 60000)
+	public void testMultiProducer() throws Exception
+	{
+		int producers = 4, messages = 100000;
+		try (
+				FileChannel channel = MappedFlatBufferTest.openTemporary(FlatRingBuffer.HEADER_SIZE+4096);
+				FlatBuffer buffer = new MappedFlatBuffer(channel, FileChannel.MapMode.READ_WRITE, -1)
+		) {
+			FlatRingBuffer ring = FlatRingBuffer.multiProducer(buffer, WaitStrategy.YIELDING);
+			Thread[] threads = new Thread[producers];
+			for (int t = 0; t < producers; ++t) {
+				int id = t;
+				threads[t] = new Thread(() -> {
+					byte[] data = new byte[12];
+					for (int i = 0; i < messages; ++i) {
+						// variable length to exercise padding at the end of data area
+						int length = 4+i%9;
+						data[0] = (byte) id;
+						data[1] = (byte) (i>>16);
+						data[2] = (byte) (i>>8);
+						data[3] = (byte) i;
+						ring.put(data, 0, length);
+					}
+				});
+				threads[t].start();
+			}
+			int[] next = new int[producers];
+			long total = 0;
+			while (total < (long) producers*messages) {
+				total += ring.take((FlatBuffer b, long position, int length) -> {
+					int id = b.getByte(position);
+					int i = (b.getUnsignedByte(position+1)<<16)|(b.getUnsignedByte(position+2)<<8)|b.getUnsignedByte(position+3);
+					AssertJUnit.assertEquals(next[id]++, i);
+					AssertJUnit.assertEquals(4+i%9, length);
+				}, 100);
+			}
+			for (Thread thread: threads) {
+				thread.join();
+			}
+			AssertJUnit.assertEquals(0, ring.read((b, position, length) -> {}, 100));
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+
+public class FlatSearchTest
+{
+	@Test
+	public void testNumericSearch()
+	{
+		long[] keys = sortedKeys(1000);
+		try (FlatBuffer buffer = new OffHeapFlatBuffer(keys.length*16); FlatBuffer eytzinger = new OffHeapFlatBuffer(keys.length*16)) {
+			for (int i = 0; i < keys.length; ++i) {
+				buffer.putLong(i*16, i);
+				buffer.putLong(i*16+8, keys[i]);
+			}
+			FlatSearch.buildEytzinger(buffer, 0, keys.length, 16, eytzinger, 0);
+			for (long key = -5; key < keys[keys.length-1]+5; key += 3) {
+				long expected = lowerBound(keys, key);
+				AssertJUnit.assertEquals(expected, FlatSearch.binarySearch(buffer, 0, keys.length, 16, 8, key));
+				AssertJUnit.assertEquals(expected, FlatSearch.interpolationSearch(buffer, 0, keys.length, 16, 8, key));
+				long found = FlatSearch.eytzingerSearch(eytzinger, 0, keys.length, 16, 8, key);
+				long index = found >= 0 ? found : -found-1;
+				long sortedIndex = index == keys.length ? keys.length : eytzinger.getLong(index*16);
+				AssertJUnit.assertEquals(expected >= 0 ? expected : -expected-1, sortedIndex);
+				AssertJUnit.assertEquals(expected >= 0, found >= 0);
+			}
+		}
+	}
+
+	@Test
+	public void testByteStringSearch()
+	{
+		long[] keys = sortedKeys(777);
+		try (FlatBuffer buffer = new OffHeapFlatBuffer(keys.length*12).withByteOrder(ByteOrder.BIG_ENDIAN); FlatBuffer eytzinger = new OffHeapFlatBuffer(keys.length*12)) {
+			for (int i = 0; i < keys.length; ++i) {
+				buffer.putInt(i*12, 0x7f000000|i);
+				buffer.putLong(i*12+4, keys[i]);
+			}
+			FlatSearch.buildEytzinger(buffer, 0, keys.length, 12, eytzinger, 0);
+			FlatBuffer eytzingerBe = eytzinger.withByteOrder(ByteOrder.BIG_ENDIAN);
+			for (int i = 0; i < keys.length; i += 7) {
+				byte[] key = new byte[12];
+				buffer.getBytes(i*12, key);
+				AssertJUnit.assertEquals(i, FlatSearch.binarySearch(buffer, 0, keys.length, 12, 0, key));
+				long found = FlatSearch.eytzingerSearch(eytzinger, 0, keys.length, 12, 0, key);
+				AssertJUnit.assertTrue(found >= 0);
+				AssertJUnit.assertEquals(0x7f000000|i, eytzingerBe.getInt(found*12));
+				key[11] ^= 1;
+				long missing = FlatSearch.binarySearch(buffer, 0, keys.length, 12, 0, key);
+				AssertJUnit.assertEquals(keys[i]%2 == 0 ? -i-2 : -i-1, missing);
+				AssertJUnit.assertTrue(FlatSearch.eytzingerSearch(eytzinger, 0, keys.length, 12, 0, key) < 0);
+			}
+		}
+	}
+
+	private static long[] sortedKeys(int count)
+	{
+		Random random = new Random(0);
+		long[] keys = new long[count];
+		for (int i = 0; i < count; ++i)
+			keys[i] = random.nextInt(count*10);
+		Arrays.sort(keys);
+		return keys;
+	}
+
+	private static long lowerBound(long[] keys, long key)
+	{
+		int lo = 0, hi = keys.length;
+		while (lo < hi) {
+			int mid = (lo+hi)>>>1;
+			if (keys[mid] < key)
+				lo = mid+1;
+			else
+				hi = mid;
+		}
+		return lo < keys.length && keys[lo] == key ? lo : -lo-1;
+	}
+}
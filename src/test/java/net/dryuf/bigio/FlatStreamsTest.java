@@ -0,0 +1,173 @@
+/*
+ * Copyright 2017 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+
+public class FlatStreamsTest
+{
+	@Test
+	public void testBufferStreams() throws IOException
+	{
+		byte[] content = content(100000);
+		try (FlatBuffer buffer = new OffHeapFlatBuffer(content.length)) {
+			try (OutputStream output = FlatStreams.outputStream(buffer, 0, content.length)) {
+				output.write(content[0]);
+				output.write(content, 1, content.length-1);
+				try {
+					output.write(1);
+					AssertJUnit.fail("Expected IOException");
+				}
+				catch (IOException expected) {
+				}
+			}
+			verifyInputStream(content, FlatStreams.inputStream(buffer, 0, content.length));
+			verifyInputStream(content, FlatStreams.inputStream(new MappedFlatBufferTest.GenericFlatBuffer(buffer), 0, content.length));
+
+			InputStream input = FlatStreams.inputStream(buffer, 1000, 100);
+			input.mark(0);
+			AssertJUnit.assertEquals(content[1000]&0xff, input.read());
+			input.reset();
+			AssertJUnit.assertEquals(100, input.skip(Long.MAX_VALUE));
+			AssertJUnit.assertEquals(-1, input.read());
+
+			for (FlatBuffer tested: new FlatBuffer[]{ buffer, new MappedFlatBufferTest.GenericFlatBuffer(buffer) }) {
+				ByteArrayOutputStream transferred = new ByteArrayOutputStream();
+				AssertJUnit.assertEquals(content.length-10, FlatStreams.transferTo(tested, 10, content.length-10, Channels.newChannel(transferred)));
+				AssertJUnit.assertTrue(Arrays.equals(Arrays.copyOfRange(content, 10, content.length), transferred.toByteArray()));
+			}
+		}
+	}
+
+	@Test
+	public void testBufferChannel() throws IOException
+	{
+		byte[] content = content(5000);
+		try (FlatBuffer buffer = new OffHeapFlatBuffer(content.length+200)) {
+			for (FlatBuffer tested: new FlatBuffer[]{ buffer, new MappedFlatBufferTest.GenericFlatBuffer(buffer) }) {
+				SeekableByteChannel channel = FlatStreams.channel(tested, 100, content.length);
+				ByteBuffer direct = ByteBuffer.allocateDirect(content.length);
+				direct.put(content).flip();
+				AssertJUnit.assertEquals(content.length, channel.write(direct));
+				channel.position(10);
+				ByteBuffer heap = ByteBuffer.allocate(100);
+				AssertJUnit.assertEquals(100, channel.read(heap));
+				AssertJUnit.assertEquals(content[10], heap.get(0));
+				channel.position(content.length-5);
+				direct.clear();
+				AssertJUnit.assertEquals(5, channel.read(direct));
+				AssertJUnit.assertEquals(content[content.length-1], direct.get(4));
+				AssertJUnit.assertEquals(-1, channel.read(direct));
+				AssertJUnit.assertEquals(content[0], buffer.getByte(100));
+			}
+		}
+	}
+
+	/**
+	 * Native memory accessed through heap chunks, as on Java 9+ without add-opens.
+	 */
+	@Test
+	public void testBufferWithoutDirectViews() throws IOException
+	{
+		byte[] content = content(200000);
+		try (FlatBuffer buffer = new OffHeapFlatBuffer(content.length)) {
+			SeekableByteChannel channel = FlatStreams.channel(buffer, 0, content.length, false);
+			ByteBuffer direct = ByteBuffer.allocateDirect(content.length);
+			direct.put(content).flip();
+			AssertJUnit.assertEquals(content.length, channel.write(direct));
+			channel.position(0);
+			direct.clear();
+			AssertJUnit.assertEquals(content.length, channel.read(direct));
+			AssertJUnit.assertEquals(content[content.length-1], direct.get(content.length-1));
+
+			ByteArrayOutputStream transferred = new ByteArrayOutputStream();
+			AssertJUnit.assertEquals(content.length, FlatStreams.transferTo(buffer, 0, content.length, Channels.newChannel(transferred), false));
+			AssertJUnit.assertTrue(Arrays.equals(content, transferred.toByteArray()));
+		}
+	}
+
+	@Test
+	public void testChannelStreams() throws IOException
+	{
+		byte[] content = content(300000);
+		try (FileChannel file = MappedFlatBufferTest.openTemporary(1)) {
+			FlatChannel channel = FlatChannels.from(file);
+			try (OutputStream output = FlatStreams.outputStream(channel, 0)) {
+				output.write(content, 0, 10);
+				output.write(content[10]);
+				output.write(content, 11, 200000);
+				output.write(content, 200011, content.length-200011);
+			}
+			AssertJUnit.assertEquals(content.length, file.size());
+			verifyInputStream(content, FlatStreams.inputStream(channel, 0, content.length));
+			verifyInputStream(Arrays.copyOfRange(content, 3, content.length), FlatStreams.inputStream(channel, 3, Long.MAX_VALUE));
+
+			InputStream input = FlatStreams.inputStream(channel, 5, 1000);
+			AssertJUnit.assertEquals(content[5]&0xff, input.read());
+			AssertJUnit.assertEquals(10, input.skip(10));
+			AssertJUnit.assertEquals(content[16]&0xff, input.read());
+			AssertJUnit.assertEquals(988, input.skip(10000));
+			AssertJUnit.assertEquals(-1, input.read());
+
+			for (FlatChannel tested: new FlatChannel[]{ channel, FlatChannels.fromLocking(file) }) {
+				ByteArrayOutputStream transferred = new ByteArrayOutputStream();
+				AssertJUnit.assertEquals(content.length-7, FlatStreams.transferTo(tested, 7, Long.MAX_VALUE, Channels.newChannel(transferred)));
+				AssertJUnit.assertTrue(Arrays.equals(Arrays.copyOfRange(content, 7, content.length), transferred.toByteArray()));
+			}
+
+			SeekableByteChannel seekable = FlatStreams.channel(channel, 100, 50);
+			ByteBuffer data = ByteBuffer.allocate(100);
+			AssertJUnit.assertEquals(50, seekable.read(data));
+			AssertJUnit.assertEquals(content[149], data.get(49));
+			AssertJUnit.assertEquals(-1, seekable.read(data));
+		}
+	}
+
+	private static void verifyInputStream(byte[] content, InputStream input) throws IOException
+	{
+		byte[] read = new byte[content.length];
+		read[0] = (byte) input.read();
+		int done = 1;
+		for (int step = 7; done < content.length; step = step*3) {
+			int current = input.read(read, done, Math.min(step, content.length-done));
+			AssertJUnit.assertTrue(current > 0);
+			done += current;
+		}
+		AssertJUnit.assertEquals(-1, input.read());
+		AssertJUnit.assertTrue(Arrays.equals(content, read));
+	}
+
+	private static byte[] content(int length)
+	{
+		byte[] content = new byte[length];
+		new Random(0).nextBytes(content);
+		return content;
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2017 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+public class GrowableMappedFlatBufferTest
+{
+	@Test
+	public void testGrow() throws IOException
+	{
+		try (
+				FileChannel channel = MappedFlatBufferTest.openTemporary(1);
+				GrowableMappedFlatBuffer buffer = new GrowableMappedFlatBuffer(channel, CHUNK_SIZE, 0)
+		) {
+			AssertJUnit.assertEquals(0, buffer.size());
+			buffer.putLong(CHUNK_SIZE-4, 0x0102030405060708L);
+			AssertJUnit.assertEquals(CHUNK_SIZE+4, buffer.size());
+			AssertJUnit.assertEquals(2*CHUNK_SIZE, buffer.capacity());
+			AssertJUnit.assertEquals(0x0102030405060708L, buffer.getLong(CHUNK_SIZE-4));
+
+			byte[] data = new byte[3*CHUNK_SIZE];
+			for (int i = 0; i < data.length; ++i) {
+				data[i] = (byte)(i*7);
+			}
+			long pos = buffer.append(data);
+			AssertJUnit.assertEquals(CHUNK_SIZE+4, pos);
+			AssertJUnit.assertEquals(4*CHUNK_SIZE+4, buffer.size());
+			AssertJUnit.assertTrue(buffer.equalsBytes(pos, data, 0, data.length));
+			byte[] read = new byte[data.length];
+			buffer.getBytes(pos, read);
+			AssertJUnit.assertEquals(data[CHUNK_SIZE+5], read[CHUNK_SIZE+5]);
+			AssertJUnit.assertTrue(buffer.subBuffer(pos, data.length).equalsBytes(0, read, 0, read.length));
+		}
+	}
+
+	@Test
+	public void testReopen() throws IOException
+	{
+		try (FileChannel channel = MappedFlatBufferTest.openTemporary(1)) {
+			try (GrowableMappedFlatBuffer buffer = new GrowableMappedFlatBuffer(channel, CHUNK_SIZE, 0)) {
+				buffer.append(new byte[]{ 1, 2, 3 });
+			}
+			AssertJUnit.assertEquals(3, channel.size());
+			try (GrowableMappedFlatBuffer buffer = new GrowableMappedFlatBuffer(channel, CHUNK_SIZE)) {
+				AssertJUnit.assertEquals(3, buffer.size());
+				AssertJUnit.assertEquals(3, buffer.append(new byte[]{ 4 }));
+				AssertJUnit.assertEquals(3, buffer.getByte(2));
+				AssertJUnit.assertEquals(4, buffer.getByte(3));
+			}
+			AssertJUnit.assertEquals(4, channel.size());
+		}
+	}
+
+	@Test
+	public void testClosed() throws IOException
+	{
+		try (FileChannel channel = MappedFlatBufferTest.openTemporary(1)) {
+			GrowableMappedFlatBuffer buffer = new GrowableMappedFlatBuffer(channel, CHUNK_SIZE, 0);
+			buffer.append(new byte[]{ 1, 2, 3 });
+			buffer.close();
+			try {
+				buffer.getByte(2);
+				AssertJUnit.fail("Expected IllegalStateException");
+			}
+			catch (IllegalStateException ex) {
+				// expected
+			}
+			try {
+				buffer.getBytes(0, new byte[3]);
+				AssertJUnit.fail("Expected IllegalStateException");
+			}
+			catch (IllegalStateException ex) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testConcurrentAppend() throws Exception
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try (
+				FileChannel channel = MappedFlatBufferTest.openTemporary(1);
+				GrowableMappedFlatBuffer buffer = new GrowableMappedFlatBuffer(channel, CHUNK_SIZE, 0)
+		) {
+			List<Future<long[]>> futures = new ArrayList<>();
+			for (int t = 0; t < 4; ++t) {
+				final byte value = (byte)t;
+				futures.add(executor.submit(() -> {
+					long[] positions = new long[10000];
+					byte[] record = new byte[61];
+					Arrays.fill(record, value);
+					for (int i = 0; i < positions.length; ++i) {
+						positions[i] = buffer.append(record);
+					}
+					return positions;
+				}));
+			}
+			for (int t = 0; t < 4; ++t) {
+				for (long pos: futures.get(t).get()) {
+					AssertJUnit.assertEquals(t, buffer.getByte(pos));
+					AssertJUnit.assertEquals(t, buffer.getByte(pos+60));
+				}
+			}
+			AssertJUnit.assertEquals(4*10000*61, buffer.size());
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	private static final int CHUNK_SIZE = 64*1024;
+}
@@ -20,8 +20,15 @@ import org.testng.AssertJUnit;
 import org.testng.annotations.Test;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 public class MappedFlatBufferTest
@@ -36,4 +43,418 @@ public class MappedFlatBufferTest
 			AssertJUnit.assertEquals((byte)'<', buffer.getByte(0));
 		}
 	}
+
+	@Test
+	public void testMismatch() throws IOException
+	{
+		try (
+				FileChannel channel = openTemporary(4096);
+				FlatBuffer buffer = new MappedFlatBuffer(channel, FileChannel.MapMode.READ_WRITE, -1)
+		) {
+			for (int i = 0; i < 100; ++i) {
+				buffer.putByte(i, (byte)i);
+				buffer.putByte(1000+i, (byte)i);
+			}
+			AssertJUnit.assertEquals(-1, buffer.mismatch(0, buffer, 1000, 100));
+			AssertJUnit.assertEquals(-1, buffer.subBuffer(1, 99).mismatch(0, buffer.subBuffer(1001, 99), 0, 99));
+			AssertJUnit.assertEquals(-1, buffer.withByteOrder(ByteOrder.BIG_ENDIAN).mismatch(0, buffer.withByteOrder(ByteOrder.LITTLE_ENDIAN), 1000, 100));
+			AssertJUnit.assertEquals(-1, new AbstractDelegatingFlatBuffer(buffer).mismatch(0, buffer, 1000, 100));
+			for (int diff: new int[]{ 0, 5, 7, 8, 17, 63, 64, 98, 99 }) {
+				buffer.putByte(1000+diff, (byte)0xff);
+				AssertJUnit.assertEquals(diff, buffer.mismatch(0, buffer, 1000, 100));
+				AssertJUnit.assertEquals(diff-1, buffer.mismatch(1, buffer, 1001, 99));
+				AssertJUnit.assertEquals(diff, buffer.withByteOrder(ByteOrder.BIG_ENDIAN).mismatch(0, buffer, 1000, 100));
+				AssertJUnit.assertEquals(diff, new GenericFlatBuffer(buffer).mismatch(0, buffer.withByteOrder(ByteOrder.BIG_ENDIAN), 1000, 100));
+				AssertJUnit.assertTrue(buffer.subBuffer(0, 100).compareTo(buffer.subBuffer(1000, 100)) < 0);
+				AssertJUnit.assertTrue(new GenericFlatBuffer(buffer.subBuffer(1000, 100)).compareTo(buffer.subBuffer(0, 100)) > 0);
+				buffer.putByte(1000+diff, (byte)diff);
+			}
+			AssertJUnit.assertEquals(0, buffer.subBuffer(0, 100).compareTo(buffer.subBuffer(1000, 100)));
+			AssertJUnit.assertTrue(buffer.subBuffer(0, 99).compareTo(buffer.subBuffer(1000, 100)) < 0);
+			AssertJUnit.assertTrue(buffer.subBuffer(0, 100).compareTo(buffer.subBuffer(1000, 99)) > 0);
+		}
+	}
+
+	@Test
+	public void testEquals() throws IOException
+	{
+		try (
+				FileChannel channel = openTemporary(4096);
+				FlatBuffer buffer = new MappedFlatBuffer(channel, FileChannel.MapMode.READ_WRITE, -1)
+		) {
+			byte[] bytes = new byte[101];
+			for (int i = 0; i < 100; ++i) {
+				buffer.putByte(10+i, (byte)i);
+				bytes[i+1] = (byte)i;
+			}
+			ByteBuffer direct = ByteBuffer.allocateDirect(101);
+			direct.put(bytes).position(1);
+			for (FlatBuffer tested: new FlatBuffer[]{ buffer, new GenericFlatBuffer(buffer), buffer.subBuffer(0, 200), buffer.withByteOrder(ByteOrder.BIG_ENDIAN) }) {
+				AssertJUnit.assertTrue(tested.equalsBytes(10, bytes, 1, 100));
+				AssertJUnit.assertFalse(tested.equalsBytes(9, bytes, 1, 100));
+				AssertJUnit.assertTrue(tested.equalsByteBuffer(10, ByteBuffer.wrap(bytes, 1, 100)));
+				AssertJUnit.assertTrue(tested.equalsByteBuffer(10, direct));
+				AssertJUnit.assertFalse(tested.equalsByteBuffer(11, direct));
+				AssertJUnit.assertTrue(tested.equalsBuffer(10, buffer, 10, 100));
+				AssertJUnit.assertFalse(tested.equalsBuffer(10, buffer, 11, 100));
+			}
+		}
+	}
+
+	@Test
+	public void testCopyTo() throws IOException
+	{
+		try (
+				FileChannel channel = openTemporary(4096);
+				FlatBuffer buffer = new MappedFlatBuffer(channel, FileChannel.MapMode.READ_WRITE, -1);
+				FileChannel targetChannel = openTemporary(4096);
+				FlatBuffer target = new MappedFlatBuffer(targetChannel, FileChannel.MapMode.READ_WRITE, -1)
+		) {
+			for (int i = 0; i < 100; ++i) {
+				buffer.putByte(i, (byte)i);
+			}
+			buffer.copyTo(0, target, 10, 100);
+			AssertJUnit.assertTrue(target.equalsBuffer(10, buffer, 0, 100));
+			new GenericFlatBuffer(buffer).copyTo(0, target, 200, 100);
+			AssertJUnit.assertTrue(target.equalsBuffer(200, buffer, 0, 100));
+			buffer.subBuffer(10, 90).copyTo(0, new GenericFlatBuffer(target), 300, 90);
+			AssertJUnit.assertTrue(target.equalsBuffer(300, buffer, 10, 90));
+
+			buffer.copyTo(0, buffer, 1000, 100);
+			buffer.copyTo(1000, buffer, 1010, 100);
+			AssertJUnit.assertTrue(buffer.equalsBuffer(1010, buffer, 0, 100));
+			FlatBuffer generic = new GenericFlatBuffer(buffer);
+			generic.copyTo(2000, generic, 2000, 0);
+			buffer.copyTo(0, buffer, 2000, 100);
+			generic.copyTo(2000, generic, 2010, 100);
+			AssertJUnit.assertTrue(buffer.equalsBuffer(2010, buffer, 0, 100));
+			generic.copyTo(2010, generic, 2000, 100);
+			AssertJUnit.assertTrue(buffer.equalsBuffer(2000, buffer, 0, 100));
+		}
+	}
+
+	@Test
+	public void testCopyToOverlappingView()
+	{
+		int length = 150000;
+		byte[] content = new byte[length];
+		new Random(0).nextBytes(content);
+		try (FlatBuffer buffer = new OffHeapFlatBuffer(length+2000)) {
+			FlatBuffer generic = new GenericFlatBuffer(buffer);
+			buffer.putBytes(0, content);
+			generic.copyTo(0, generic.subBuffer(500, length+1000), 500, length);
+			AssertJUnit.assertTrue(buffer.equalsBytes(1000, content, 0, length));
+			FlatBuffer swapped = generic.withByteOrder(generic.getByteOrder() == ByteOrder.BIG_ENDIAN ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+			generic.subBuffer(1000, length).copyTo(0, swapped, 2000, length);
+			AssertJUnit.assertTrue(buffer.equalsBytes(2000, content, 0, length));
+		}
+	}
+
+	@Test
+	public void testTransferTo() throws IOException
+	{
+		try (
+				FileChannel channel = openTemporary(4096);
+				FlatBuffer buffer = new MappedFlatBuffer(channel, FileChannel.MapMode.READ_WRITE, -1);
+				FileChannel targetChannel = openTemporary(4096)
+		) {
+			for (int i = 0; i < 100; ++i) {
+				buffer.putByte(i, (byte)i);
+			}
+			AssertJUnit.assertEquals(100, buffer.transferTo(0, 100, FlatChannels.from(targetChannel), 10));
+			AssertJUnit.assertEquals(99, new GenericFlatBuffer(buffer).transferTo(1, 99, FlatChannels.from(targetChannel), 1000));
+			ByteBuffer read = ByteBuffer.allocate(100);
+			targetChannel.read(read, 10);
+			read.flip();
+			AssertJUnit.assertTrue(buffer.equalsByteBuffer(0, read));
+			read.clear().limit(99);
+			targetChannel.read(read, 1000);
+			read.flip();
+			AssertJUnit.assertTrue(buffer.equalsByteBuffer(1, read));
+		}
+	}
+
+	@Test
+	public void testGetByteBuffer() throws IOException
+	{
+		try (
+				FileChannel channel = openTemporary(4096);
+				FlatBuffer buffer = new MappedFlatBuffer(channel, FileChannel.MapMode.READ_WRITE, -1)
+		) {
+			buffer.putLong(16, 0x0102030405060708L);
+			ByteBuffer view = buffer.getByteBuffer(16, 8);
+			AssertJUnit.assertTrue(view.isDirect());
+			AssertJUnit.assertEquals(8, view.remaining());
+			AssertJUnit.assertEquals(buffer.getByteOrder(), view.order());
+			AssertJUnit.assertEquals(0x0102030405060708L, view.getLong(0));
+
+			FlatBuffer swapped = buffer.subBuffer(8, 16).withByteOrder(ByteOrder.BIG_ENDIAN == buffer.getByteOrder() ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+			ByteBuffer swappedView = swapped.getByteBuffer(8, 8);
+			AssertJUnit.assertEquals(swapped.getByteOrder(), swappedView.order());
+			AssertJUnit.assertEquals(swapped.getLong(8), swappedView.getLong(0));
+			swappedView.putInt(0, 0x11223344);
+			AssertJUnit.assertEquals(0x11223344, swapped.getInt(8));
+		}
+	}
+
+	@Test(expectedExceptions = UnsupportedOperationException.class)
+	public void testGetByteBufferUnsupported() throws IOException
+	{
+		try (
+				FileChannel channel = openTemporary(4096);
+				FlatBuffer buffer = new MappedFlatBuffer(channel, FileChannel.MapMode.READ_WRITE, -1)
+		) {
+			new GenericFlatBuffer(buffer).getByteBuffer(0, 16);
+		}
+	}
+
+	@Test
+	public void testGetByteBuffers() throws IOException
+	{
+		try (
+				FileChannel channel = openTemporary(4096);
+				FlatBuffer buffer = new MappedFlatBuffer(channel, FileChannel.MapMode.READ_WRITE, -1)
+		) {
+			for (int i = 0; i < 100; ++i) {
+				buffer.putByte(i, (byte)i);
+			}
+			long pos = 10;
+			int count = 0;
+			for (ByteBuffer view: buffer.getByteBuffers(10, 90, 32)) {
+				AssertJUnit.assertTrue(buffer.equalsByteBuffer(pos, view));
+				pos += view.remaining();
+				++count;
+			}
+			AssertJUnit.assertEquals(100, pos);
+			AssertJUnit.assertEquals(3, count);
+		}
+	}
+
+	@Test
+	public void testForce() throws IOException
+	{
+		try (
+				FileChannel channel = openTemporary(3*4096);
+				FlatBuffer buffer = new MappedFlatBuffer(channel, FileChannel.MapMode.READ_WRITE, -1)
+		) {
+			buffer.putLong(4100, 1);
+			buffer.force(4100, 8000);
+			buffer.subBuffer(4096, 4096).force(1, 10);
+			buffer.force();
+			ByteBuffer read = ByteBuffer.allocate(8).order(buffer.getByteOrder());
+			channel.read(read, 4100);
+			AssertJUnit.assertEquals(1, read.getLong(0));
+		}
+	}
+
+	@Test
+	public void testAdvise() throws Exception
+	{
+		try (
+				FileChannel channel = openTemporary(1024*1024);
+				FlatBuffer buffer = new MappedFlatBuffer(channel, FileChannel.MapMode.READ_WRITE, -1);
+				Prefetcher prefetcher = new Prefetcher(buffer, 256*1024)
+		) {
+			AssertJUnit.assertTrue(buffer.subBuffer(100, 10000).advise(0, 10000, AccessHint.WILLNEED));
+			AssertJUnit.assertFalse(buffer.advise(0, 10000, AccessHint.HUGEPAGE));
+			AssertJUnit.assertFalse(new GenericFlatBuffer(buffer).advise(0, 10000, AccessHint.WILLNEED));
+			prefetcher.prefetch(1000, 100000).get();
+			for (long cursor = 0; cursor < buffer.size(); cursor += 4096) {
+				prefetcher.advance(cursor);
+			}
+
+			AtomicLong touched = new AtomicLong();
+			FlatBuffer generic = new GenericFlatBuffer(buffer)
+			{
+				@Override
+				public byte getByte(long pos)
+				{
+					touched.incrementAndGet();
+					return super.getByte(pos);
+				}
+			};
+			try (Prefetcher genericPrefetcher = new Prefetcher(generic, 0)) {
+				genericPrefetcher.prefetch(0, 10*UnsafeMemory.PAGE_SIZE).get();
+			}
+			AssertJUnit.assertEquals(10, touched.get());
+		}
+	}
+
+	@Test
+	public void testFlatViews() throws Exception
+	{
+		try (
+				FileChannel channel = openTemporary(4096);
+				FlatBuffer buffer = new MappedFlatBuffer(channel, FileChannel.MapMode.READ_WRITE, -1)
+		) {
+			ByteOrder swappedOrder = buffer.getByteOrder() == ByteOrder.BIG_ENDIAN ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+			buffer.putLong(1000, 0x0102030405060708L);
+			FlatBuffer sub = buffer.subBuffer(500, 3000).subBuffer(400, 200);
+			AssertJUnit.assertTrue(sub instanceof NativeViewFlatBuffer);
+			AssertJUnit.assertEquals(0x0102030405060708L, sub.getLong(100));
+			FlatBuffer swapped = sub.withByteOrder(swappedOrder).subBuffer(100, 8);
+			AssertJUnit.assertTrue(swapped instanceof NativeViewFlatBuffer);
+			AssertJUnit.assertEquals(swappedOrder, swapped.getByteOrder());
+			AssertJUnit.assertEquals(0x0807060504030201L, swapped.getLong(0));
+			swapped.putInt(4, 0x11223344);
+			AssertJUnit.assertEquals(0x11223344, Integer.reverseBytes(buffer.getInt(1004)));
+			AssertJUnit.assertSame(sub, sub.withByteOrder(buffer.getByteOrder()));
+			AssertJUnit.assertEquals(buffer.getByteOrder(), swapped.withByteOrder(buffer.getByteOrder()).getByteOrder());
+			try {
+				sub.getLong(193);
+				AssertJUnit.fail("Expected IndexOutOfBoundsException");
+			}
+			catch (IndexOutOfBoundsException ex) {
+				// expected
+			}
+
+			FlatBuffer generic = new GenericFlatBuffer(buffer);
+			FlatBuffer genericSub = generic.subBuffer(500, 3000).withByteOrder(swappedOrder).subBuffer(400, 200);
+			AssertJUnit.assertTrue(genericSub instanceof SwappedBytesFlatBuffer);
+			AssertJUnit.assertEquals(swapped.getLong(0), genericSub.getLong(100));
+		}
+	}
+
+	@Test
+	public void testAtomics() throws Exception
+	{
+		try (
+				FileChannel channel = openTemporary(4096);
+				FlatBuffer buffer = new MappedFlatBuffer(channel, FileChannel.MapMode.READ_WRITE, -1)
+		) {
+			Thread[] threads = new Thread[4];
+			for (int t = 0; t < threads.length; ++t) {
+				threads[t] = new Thread(() -> {
+					for (int i = 0; i < 10000; ++i) {
+						buffer.getAndAddLong(64, 1);
+						for (int current; !buffer.compareAndSetInt(128, current = buffer.getIntVolatile(128), current+2); ) {
+						}
+					}
+				});
+				threads[t].start();
+			}
+			for (Thread thread: threads) {
+				thread.join();
+			}
+			AssertJUnit.assertEquals(40000, buffer.getLongAcquire(64));
+			AssertJUnit.assertEquals(80000, buffer.getIntAcquire(128));
+
+			FlatBuffer swapped = buffer.withByteOrder(buffer.getByteOrder() == ByteOrder.BIG_ENDIAN ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+			swapped.putLongRelease(256, 5);
+			AssertJUnit.assertEquals(5, swapped.getAndAddLong(256, 3));
+			AssertJUnit.assertEquals(8, swapped.getLong(256));
+			AssertJUnit.assertTrue(swapped.compareAndSetLong(256, 8, 1));
+			AssertJUnit.assertEquals(1, swapped.getLongVolatile(256));
+
+			AssertJUnit.assertTrue(buffer.isAligned(64, 8));
+			AssertJUnit.assertFalse(buffer.isAligned(65, 8));
+			try {
+				buffer.getAndAddInt(66, 1);
+				AssertJUnit.fail("Expected IllegalArgumentException");
+			}
+			catch (IllegalArgumentException ex) {
+				// expected
+			}
+			try {
+				new GenericFlatBuffer(buffer).getLongVolatile(64);
+				AssertJUnit.fail("Expected UnsupportedOperationException");
+			}
+			catch (UnsupportedOperationException ex) {
+				// expected
+			}
+		}
+	}
+
+	static FileChannel openTemporary(long size) throws IOException
+	{
+		Path path = Files.createTempFile(Paths.get("target"), "MappedFlatBufferTest-", ".dat");
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+		channel.write(ByteBuffer.wrap(new byte[]{ 0 }), size-1);
+		return channel;
+	}
+
+	/**
+	 * Buffer hiding the memory address of underlying buffer, so the generic implementation is tested.
+	 */
+	static class GenericFlatBuffer extends AbstractFlatBuffer
+	{
+		public GenericFlatBuffer(FlatBuffer underlying)
+		{
+			this.underlying = underlying;
+		}
+
+		@Override
+		public ByteOrder getByteOrder()
+		{
+			return underlying.getByteOrder();
+		}
+
+		@Override
+		public long size()
+		{
+			return underlying.size();
+		}
+
+		@Override
+		public byte getByte(long pos)
+		{
+			return underlying.getByte(pos);
+		}
+
+		@Override
+		public short getShort(long pos)
+		{
+			return underlying.getShort(pos);
+		}
+
+		@Override
+		public int getInt(long pos)
+		{
+			return underlying.getInt(pos);
+		}
+
+		@Override
+		public long getLong(long pos)
+		{
+			return underlying.getLong(pos);
+		}
+
+		@Override
+		public void getBytes(long pos, byte[] data, int offset, int length)
+		{
+			underlying.getBytes(pos, data, offset, length);
+		}
+
+		@Override
+		public void putByte(long pos, byte val)
+		{
+			underlying.putByte(pos, val);
+		}
+
+		@Override
+		public void putShort(long pos, short val)
+		{
+			underlying.putShort(pos, val);
+		}
+
+		@Override
+		public void putInt(long pos, int val)
+		{
+			underlying.putInt(pos, val);
+		}
+
+		@Override
+		public void putLong(long pos, long val)
+		{
+			underlying.putLong(pos, val);
+		}
+
+		@Override
+		public void putBytes(long pos, byte[] data, int offset, int length)
+		{
+			underlying.putBytes(pos, data, offset, length);
+		}
+
+		private final FlatBuffer underlying;
+	}
 }
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+
+public class NioMappedFlatBufferTest
+{
+	@Test
+	public void testEmptyAreaAtEnd() throws IOException
+	{
+		try (
+				FileChannel channel = MappedFlatBufferTest.openTemporary(2*CHUNK_SIZE);
+				FlatBuffer buffer = new NioMappedFlatBuffer(channel, FileChannel.MapMode.READ_WRITE, -1, ByteOrder.BIG_ENDIAN, CHUNK_SHIFT)
+		) {
+			AssertJUnit.assertEquals(0, buffer.getByteBuffer(2*CHUNK_SIZE, 0).remaining());
+			AssertJUnit.assertTrue(buffer.isAligned(2*CHUNK_SIZE, 8));
+			buffer.copyTo(2*CHUNK_SIZE, buffer, 0, 0);
+			try (FlatBuffer empty = new NioMappedFlatBuffer(channel, FileChannel.MapMode.READ_WRITE, 0, ByteOrder.BIG_ENDIAN, CHUNK_SHIFT)) {
+				AssertJUnit.assertEquals(0, empty.getByteBuffer(0, 0).remaining());
+				AssertJUnit.assertTrue(empty.equalsBytes(0, new byte[0], 0, 0));
+			}
+		}
+	}
+
+	@Test
+	public void testAccess() throws IOException
+	{
+		try (
+				FileChannel channel = MappedFlatBufferTest.openTemporary(3*CHUNK_SIZE+100);
+				FlatBuffer buffer = new NioMappedFlatBuffer(channel, FileChannel.MapMode.READ_WRITE, -1, ByteOrder.BIG_ENDIAN, CHUNK_SHIFT)
+		) {
+			AssertJUnit.assertEquals(3*CHUNK_SIZE+100, buffer.size());
+			buffer.putLong(CHUNK_SIZE-4, 0x0102030405060708L);
+			AssertJUnit.assertEquals(0x0102030405060708L, buffer.getLong(CHUNK_SIZE-4));
+			AssertJUnit.assertEquals(0x05060708, buffer.getInt(CHUNK_SIZE));
+			AssertJUnit.assertEquals(4, buffer.getByte(CHUNK_SIZE-1));
+
+			FlatBuffer little = buffer.withByteOrder(ByteOrder.LITTLE_ENDIAN);
+			AssertJUnit.assertTrue(little instanceof NioMappedFlatBuffer);
+			AssertJUnit.assertEquals(0x0807060504030201L, little.getLong(CHUNK_SIZE-4));
+			little.putShort(2*CHUNK_SIZE-1, (short)0x0102);
+			AssertJUnit.assertEquals((short)0x0201, buffer.getShort(2*CHUNK_SIZE-1));
+
+			byte[] data = new byte[2*CHUNK_SIZE];
+			for (int i = 0; i < data.length; ++i) {
+				data[i] = (byte)(i*3);
+			}
+			buffer.putBytes(CHUNK_SIZE/2, data);
+			byte[] read = new byte[data.length];
+			buffer.getBytes(CHUNK_SIZE/2, read);
+			AssertJUnit.assertEquals(data[CHUNK_SIZE+7], read[CHUNK_SIZE+7]);
+			AssertJUnit.assertTrue(buffer.equalsBytes(CHUNK_SIZE/2, data, 0, data.length));
+			AssertJUnit.assertTrue(little.equalsBytes(CHUNK_SIZE/2, data, 0, data.length));
+		}
+	}
+
+	@Test
+	public void testByteBufferAndTransfer() throws IOException
+	{
+		try (
+				FileChannel channel = MappedFlatBufferTest.openTemporary(3*CHUNK_SIZE);
+				FlatBuffer buffer = new NioMappedFlatBuffer(channel, FileChannel.MapMode.READ_WRITE, -1, ByteOrder.BIG_ENDIAN, CHUNK_SHIFT);
+				FileChannel target = MappedFlatBufferTest.openTemporary(1)
+		) {
+			for (int i = 0; i < 3*CHUNK_SIZE; i += 8) {
+				buffer.putLong(i, i);
+			}
+			ByteBuffer view = buffer.getByteBuffer(CHUNK_SIZE+8, 16);
+			AssertJUnit.assertEquals(ByteOrder.BIG_ENDIAN, view.order());
+			AssertJUnit.assertEquals(CHUNK_SIZE+8, view.getLong(0));
+
+			AssertJUnit.assertEquals(2*CHUNK_SIZE, buffer.transferTo(CHUNK_SIZE/2, 2*CHUNK_SIZE, FlatChannels.from(target), 0));
+			ByteBuffer read = ByteBuffer.allocate(8);
+			target.read(read, CHUNK_SIZE);
+			AssertJUnit.assertEquals(CHUNK_SIZE/2+CHUNK_SIZE, read.getLong(0));
+			buffer.force(0, 3*CHUNK_SIZE);
+		}
+	}
+
+	@Test
+	public void testForceView() throws IOException
+	{
+		try (
+				FileChannel channel = MappedFlatBufferTest.openTemporary(3*CHUNK_SIZE);
+				FlatBuffer buffer = new NioMappedFlatBuffer(channel, FileChannel.MapMode.READ_WRITE, -1, ByteOrder.BIG_ENDIAN, CHUNK_SHIFT)
+		) {
+			FlatBuffer little = buffer.withByteOrder(ByteOrder.LITTLE_ENDIAN);
+			little.putLong(CHUNK_SIZE-4, 0x0102030405060708L);
+			little.force(CHUNK_SIZE-100, 200);
+			little.force(0, 3*CHUNK_SIZE);
+			little.force(2*CHUNK_SIZE+1, 0);
+			ByteBuffer read = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+			channel.read(read, CHUNK_SIZE-4);
+			AssertJUnit.assertEquals(0x0102030405060708L, read.getLong(0));
+		}
+	}
+
+	private static final int CHUNK_SHIFT = 16;
+
+	private static final int CHUNK_SIZE = 1<<CHUNK_SHIFT;
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2017 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+
+public class OffHeapFlatBufferTest
+{
+	@Test
+	public void testAccess()
+	{
+		try (FlatBuffer buffer = new OffHeapFlatBuffer(1024)) {
+			AssertJUnit.assertEquals(1024, buffer.size());
+			AssertJUnit.assertEquals(0, buffer.getLong(1016));
+			buffer.putLong(100, 0x0102030405060708L);
+			AssertJUnit.assertEquals(0x0102030405060708L, buffer.getLong(100));
+			buffer.putBytes(200, new byte[]{ 1, 2, 3 });
+			AssertJUnit.assertTrue(buffer.equalsBytes(200, new byte[]{ 1, 2, 3 }, 0, 3));
+		}
+	}
+
+	@Test(expectedExceptions = IndexOutOfBoundsException.class)
+	public void testBounds()
+	{
+		try (FlatBuffer buffer = new OffHeapFlatBuffer(1024)) {
+			buffer.getLong(1020);
+		}
+	}
+
+	@Test
+	public void testPool()
+	{
+		try (OffHeapMemoryPool pool = new OffHeapMemoryPool(4096, 1024*1024, 8192)) {
+			FlatBuffer first = pool.allocate(1000);
+			AssertJUnit.assertEquals(1000, first.size());
+			AssertJUnit.assertEquals(4096, pool.getUsedBytes());
+			FlatBuffer second = pool.allocate(5000);
+			AssertJUnit.assertEquals(4096+8192, pool.getUsedBytes());
+			AssertJUnit.assertEquals(4096+8192, pool.getReservedBytes());
+			first.close();
+			second.close();
+			AssertJUnit.assertEquals(0, pool.getUsedBytes());
+			AssertJUnit.assertEquals(4096, pool.getPooledBytes());
+			AssertJUnit.assertEquals(4096, pool.getReservedBytes());
+
+			FlatBuffer third = pool.allocate(4096);
+			AssertJUnit.assertEquals(0, pool.getPooledBytes());
+			AssertJUnit.assertEquals(4096, pool.getReservedBytes());
+			third.close();
+			third.close();
+			AssertJUnit.assertEquals(4096, pool.getPooledBytes());
+
+			FlatBuffer large = pool.allocate(2*1024*1024);
+			AssertJUnit.assertEquals(4096+2*1024*1024, pool.getReservedBytes());
+			large.close();
+			AssertJUnit.assertEquals(4096, pool.getReservedBytes());
+		}
+	}
+
+	@Test
+	public void testViewClose()
+	{
+		ByteOrder swappedOrder = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+		try (OffHeapMemoryPool pool = new OffHeapMemoryPool(4096, 4096, 8192)) {
+			FlatBuffer buffer = pool.allocate(4096);
+			buffer.subBuffer(0, 100).close();
+			buffer.subBuffer(0, 100).withByteOrder(swappedOrder).close();
+			buffer.withByteOrder(swappedOrder).subBuffer(0, 100).close();
+			AssertJUnit.assertEquals(4096, pool.getUsedBytes());
+
+			try (FlatBuffer swapped = buffer.withByteOrder(swappedOrder).withByteOrder(ByteOrder.nativeOrder())) {
+				AssertJUnit.assertEquals(4096, pool.getUsedBytes());
+			}
+			AssertJUnit.assertEquals(0, pool.getUsedBytes());
+		}
+	}
+
+	@Test
+	public void testPoolLimitConcurrentRelease() throws Exception
+	{
+		try (OffHeapMemoryPool pool = new OffHeapMemoryPool(4096, 4096, 10*4096)) {
+			List<CompletableFuture<Void>> futures = new ArrayList<>();
+			for (int t = 0; t < 4; ++t) {
+				futures.add(CompletableFuture.runAsync(() -> {
+					for (int i = 0; i < 1000; ++i) {
+						List<FlatBuffer> buffers = new ArrayList<>();
+						for (int j = 0; j < 8; ++j)
+							buffers.add(pool.allocate(4096));
+						buffers.forEach(FlatBuffer::close);
+					}
+				}));
+			}
+			CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+			AssertJUnit.assertEquals(0, pool.getUsedBytes());
+			AssertJUnit.assertTrue(pool.getPooledBytes() <= 10*4096);
+			AssertJUnit.assertEquals(pool.getPooledBytes(), pool.getReservedBytes());
+		}
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2017 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+
+public class PageCachedFlatBufferTest
+{
+	@Test
+	public void testRandomAccess() throws IOException
+	{
+		int size = 10000;
+		byte[] reference = new byte[size];
+		Random random = new Random(0);
+		random.nextBytes(reference);
+		try (FileChannel channel = MappedFlatBufferTest.openTemporary(size)) {
+			channel.write(ByteBuffer.wrap(reference), 0);
+			ByteBuffer referenceBuffer = ByteBuffer.wrap(reference).order(ByteOrder.nativeOrder());
+			try (PageCachedFlatBuffer buffer = new PageCachedFlatBuffer(FlatChannels.from(channel), size, 64, 4*64)) {
+				for (int i = 0; i < 10000; ++i) {
+					int pos = random.nextInt(size-8);
+					switch (random.nextInt(4)) {
+					case 0:
+						AssertJUnit.assertEquals(referenceBuffer.getLong(pos), buffer.getLong(pos));
+						break;
+
+					case 1:
+						AssertJUnit.assertEquals(referenceBuffer.getInt(pos), buffer.getInt(pos));
+						break;
+
+					case 2:
+						long value = random.nextLong();
+						referenceBuffer.putLong(pos, value);
+						buffer.putLong(pos, value);
+						break;
+
+					case 3:
+						byte[] read = new byte[random.nextInt(200)];
+						int start = random.nextInt(size-read.length);
+						buffer.getBytes(start, read);
+						AssertJUnit.assertTrue(buffer.equalsBytes(start, reference, start, read.length));
+						break;
+					}
+				}
+				AssertJUnit.assertTrue(buffer.getMissCount() > 0);
+				AssertJUnit.assertTrue(buffer.getHitCount() > 0);
+				AssertJUnit.assertTrue(buffer.getEvictionCount() > 0);
+				AssertJUnit.assertTrue(buffer.getWriteBackCount() > 0);
+			}
+			ByteBuffer content = ByteBuffer.allocate(size);
+			channel.read(content, 0);
+			AssertJUnit.assertEquals(ByteBuffer.wrap(reference), content.flip());
+		}
+	}
+
+	@Test
+	public void testPageEnd() throws IOException
+	{
+		try (
+				FileChannel channel = MappedFlatBufferTest.openTemporary(1024);
+				PageCachedFlatBuffer buffer = new PageCachedFlatBuffer(FlatChannels.from(channel), 1024, 64, 4*64)
+		) {
+			buffer.putLong(56, 0x0102030405060708L);
+			buffer.putInt(60, 0x01020304);
+			buffer.putShort(62, (short)0x0102);
+			AssertJUnit.assertEquals((short)0x0102, buffer.getShort(62));
+			AssertJUnit.assertEquals(0x01020304, buffer.getInt(60));
+			buffer.getLong(56);
+			// single page access each, none straddles
+			AssertJUnit.assertEquals(6, buffer.getMissCount()+buffer.getHitCount());
+			buffer.putLong(60, 0x0102030405060708L);
+			AssertJUnit.assertEquals(0x0102030405060708L, buffer.getLong(60));
+		}
+	}
+
+	@Test
+	public void testClosed() throws IOException
+	{
+		try (FileChannel channel = MappedFlatBufferTest.openTemporary(1024)) {
+			PageCachedFlatBuffer buffer = new PageCachedFlatBuffer(FlatChannels.from(channel), 1024, 64, 4*64);
+			buffer.putLong(0, 0x0102030405060708L);
+			buffer.close();
+			buffer.close();
+			try {
+				buffer.getLong(0);
+				AssertJUnit.fail("Expected IllegalStateException");
+			}
+			catch (IllegalStateException ex) {
+				// expected
+			}
+			ByteBuffer content = ByteBuffer.allocate(8).order(ByteOrder.nativeOrder());
+			channel.read(content, 0);
+			AssertJUnit.assertEquals(0x0102030405060708L, content.getLong(0));
+		}
+	}
+
+	@Test
+	public void testForce() throws IOException
+	{
+		try (
+				FileChannel channel = MappedFlatBufferTest.openTemporary(1000);
+				PageCachedFlatBuffer buffer = new PageCachedFlatBuffer(FlatChannels.from(channel), 1000, 256, 1024*1024)
+		) {
+			buffer.putInt(996, 0x01020304);
+			AssertJUnit.assertEquals(0, buffer.getWriteBackCount());
+			buffer.force();
+			AssertJUnit.assertEquals(1, buffer.getWriteBackCount());
+			ByteBuffer read = ByteBuffer.allocate(4).order(buffer.getByteOrder());
+			channel.read(read, 996);
+			AssertJUnit.assertEquals(0x01020304, read.getInt(0));
+			AssertJUnit.assertEquals(1000, channel.size());
+		}
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.StreamSupport;
+
+
+public class ParallelScannerTest
+{
+	@Test
+	public void testScan()
+	{
+		int size = 1024*1024+123;
+		byte[] content = new byte[size];
+		Random random = new Random(0);
+		for (int i = 0; i < size; ++i) {
+			content[i] = (byte) ('a'+random.nextInt(26));
+			if (random.nextInt(50) == 0)
+				content[i] = '\n';
+		}
+		byte[] pattern = "needle".getBytes();
+		System.arraycopy(pattern, 0, content, 700001, pattern.length);
+		System.arraycopy(pattern, 0, content, 900000, pattern.length);
+		long expectedCount = 0;
+		for (byte b: content) {
+			if (b == '\n')
+				++expectedCount;
+		}
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try (FlatBuffer buffer = new OffHeapFlatBuffer(size)) {
+			buffer.putBytes(0, content);
+			ParallelScanner scanner = new ParallelScanner(pool, 4*UnsafeMemory.PAGE_SIZE);
+			for (FlatBuffer tested: new FlatBuffer[]{ buffer, buffer.withByteOrder(ByteOrder.BIG_ENDIAN), buffer.withByteOrder(ByteOrder.LITTLE_ENDIAN) }) {
+				AssertJUnit.assertEquals(expectedCount, scanner.count(tested, 0, size, (byte) '\n'));
+				AssertJUnit.assertEquals(700001, scanner.indexOf(tested, 3, size-3, pattern));
+				AssertJUnit.assertEquals(900000, scanner.indexOf(tested, 700002, size-700002, pattern));
+				AssertJUnit.assertEquals(-1, scanner.indexOf(tested, 700002, 900005-700002, pattern));
+				long sum = scanner.scan(tested, 5, size-5, (FlatBuffer b, long pos, long length) -> length, Long::sum);
+				AssertJUnit.assertEquals(size-5, sum);
+				AssertJUnit.assertEquals(expectedCount+(content[size-1] == '\n' ? 0 : 1),
+						StreamSupport.stream(scanner.records(tested, 0, size, (byte) '\n'), true).count());
+				AssertJUnit.assertEquals(size-expectedCount,
+						StreamSupport.stream(scanner.records(tested, 0, size, (byte) '\n'), true).mapToLong(FlatBuffer::size).sum());
+			}
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+}
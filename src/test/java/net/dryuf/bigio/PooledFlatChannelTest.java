@@ -0,0 +1,178 @@
+/*
+ * Copyright 2017 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+
+public class PooledFlatChannelTest
+{
+	@Test
+	public void testParallelReads() throws Exception
+	{
+		Path file = Files.createTempFile("PooledFlatChannelTest", ".bin");
+		try {
+			byte[] content = new byte[64*1024];
+			for (int i = 0; i < content.length; ++i)
+				content[i] = (byte) (i*31);
+			Files.write(file, content);
+			try (PooledFlatChannel channel = FlatChannels.pooled(() -> Files.newByteChannel(file, StandardOpenOption.READ), 3, 1, TimeUnit.HOURS)) {
+				List<CompletableFuture<Void>> futures = new ArrayList<>();
+				for (int t = 0; t < 8; ++t) {
+					futures.add(CompletableFuture.runAsync(() -> {
+						try {
+							ByteBuffer buffer = ByteBuffer.allocate(100);
+							for (int i = 0; i < 1000; ++i) {
+								int pos = (i*997)%(content.length-100);
+								buffer.clear();
+								channel.read(buffer, pos);
+								AssertJUnit.assertEquals(100, buffer.position());
+								AssertJUnit.assertEquals(content[pos+50], buffer.get(50));
+							}
+						}
+						catch (Exception ex) {
+							throw new RuntimeException(ex);
+						}
+					}));
+				}
+				CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+				AssertJUnit.assertEquals(8000, channel.getAcquireCount());
+				AssertJUnit.assertTrue(channel.getOpenCount() <= 3);
+				AssertJUnit.assertEquals(channel.getOpenCount(), channel.getIdleCount());
+			}
+		}
+		finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testIdleEviction() throws Exception
+	{
+		Path file = Files.createTempFile("PooledFlatChannelTest", ".bin");
+		try {
+			Files.write(file, new byte[1000]);
+			PooledFlatChannel channel = FlatChannels.pooled(() -> Files.newByteChannel(file, StandardOpenOption.READ), 3, 0, TimeUnit.NANOSECONDS);
+			channel.read(ByteBuffer.allocate(10), 0);
+			AssertJUnit.assertEquals(0, channel.getOpenCount());
+			AssertJUnit.assertEquals(1, channel.getEvictedCount());
+			channel.close();
+		}
+		finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testEvictionFailureDoesNotFailOperation() throws Exception
+	{
+		Path file = Files.createTempFile("PooledFlatChannelTest", ".bin");
+		try {
+			Files.write(file, new byte[1000]);
+			PooledFlatChannel channel = FlatChannels.pooled(() -> new FailingCloseChannel(Files.newByteChannel(file, StandardOpenOption.READ)), 3, 0, TimeUnit.NANOSECONDS);
+			AssertJUnit.assertEquals(10, channel.read(ByteBuffer.allocate(10), 0));
+			AssertJUnit.assertEquals(1, channel.getEvictedCount());
+			try {
+				channel.read(ByteBuffer.allocate(10), -1);
+				AssertJUnit.fail("Expected IllegalArgumentException");
+			}
+			catch (IllegalArgumentException ex) {
+				AssertJUnit.assertEquals(1, ex.getSuppressed().length);
+			}
+			channel.close();
+		}
+		finally {
+			Files.delete(file);
+		}
+	}
+
+	/**
+	 * Channel failing on close, the underlying channel is closed anyway.
+	 */
+	private static class FailingCloseChannel implements SeekableByteChannel
+	{
+		FailingCloseChannel(SeekableByteChannel channel)
+		{
+			this.channel = channel;
+		}
+
+		@Override
+		public int read(ByteBuffer dst) throws IOException
+		{
+			return channel.read(dst);
+		}
+
+		@Override
+		public int write(ByteBuffer src) throws IOException
+		{
+			return channel.write(src);
+		}
+
+		@Override
+		public long position() throws IOException
+		{
+			return channel.position();
+		}
+
+		@Override
+		public SeekableByteChannel position(long newPosition) throws IOException
+		{
+			channel.position(newPosition);
+			return this;
+		}
+
+		@Override
+		public long size() throws IOException
+		{
+			return channel.size();
+		}
+
+		@Override
+		public SeekableByteChannel truncate(long size) throws IOException
+		{
+			channel.truncate(size);
+			return this;
+		}
+
+		@Override
+		public boolean isOpen()
+		{
+			return channel.isOpen();
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			channel.close();
+			throw new IOException("Close failed");
+		}
+
+		private final SeekableByteChannel channel;
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017 Zbynek Vyskovsky mailto:kvr000@gmail.com http://kvr.znj.cz/ http://github.com/kvr000/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dryuf.bigio;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import java.nio.ByteOrder;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+
+public class RecordSorterTest
+{
+	@Test
+	public void testSortByteStringKey()
+	{
+		ForkJoinPool pool = new ForkJoinPool(3);
+		RecordSorter sorter = new RecordSorter(pool, RECORD_SIZE, 4, 12, ByteOrder.BIG_ENDIAN);
+		try (FlatBuffer buffer = new OffHeapFlatBuffer(COUNT*RECORD_SIZE)) {
+			long expectedSum = fill(buffer, COUNT, 0);
+			sorter.sort(buffer, 0, buffer.size());
+			verify(sorter, buffer, 0, COUNT, expectedSum);
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testSortLittleEndianKey()
+	{
+		RecordSorter sorter = new RecordSorter(RECORD_SIZE, 16, 4, ByteOrder.LITTLE_ENDIAN);
+		try (FlatBuffer buffer = new OffHeapFlatBuffer(1000*RECORD_SIZE).withByteOrder(ByteOrder.BIG_ENDIAN)) {
+			fill(buffer, 1000, 1);
+			sorter.sort(buffer, 0, buffer.size());
+			FlatBuffer le = buffer.withByteOrder(ByteOrder.LITTLE_ENDIAN);
+			for (int i = 1; i < 1000; ++i) {
+				AssertJUnit.assertTrue(Integer.compareUnsigned(le.getInt((i-1)*RECORD_SIZE+16), le.getInt(i*RECORD_SIZE+16)) <= 0);
+			}
+		}
+	}
+
+	@Test
+	public void testSortExternal() throws Exception
+	{
+		RecordSorter sorter = new RecordSorter(RECORD_SIZE, 4, 12, ByteOrder.BIG_ENDIAN);
+		try (FlatBuffer source = new OffHeapFlatBuffer(COUNT*RECORD_SIZE); FlatBuffer target = new OffHeapFlatBuffer(COUNT*RECORD_SIZE+8)) {
+			long expectedSum = fill(source, COUNT, 2);
+			sorter.sortExternal(source, 0, source.size(), target, 8, 7000*RECORD_SIZE+5, Paths.get("target"));
+			verify(sorter, target, 8, COUNT, expectedSum);
+		}
+	}
+
+	/**
+	 * Fills records with id, key (narrow range to produce duplicates) and key checksum.
+	 */
+	private static long fill(FlatBuffer buffer, int count, long seed)
+	{
+		Random random = new Random(seed);
+		long sum = 0;
+		for (int i = 0; i < count; ++i) {
+			long pos = (long) i*RECORD_SIZE;
+			buffer.putInt(pos, i);
+			buffer.putLong(pos+4, random.nextInt(100));
+			buffer.putInt(pos+12, random.nextInt());
+			buffer.putLong(pos+16, buffer.getLong(pos+4)^buffer.getInt(pos+12)^i);
+			sum += i;
+		}
+		return sum;
+	}
+
+	private static void verify(RecordSorter sorter, FlatBuffer buffer, long pos, int count, long expectedSum)
+	{
+		long sum = 0;
+		for (int i = 0; i < count; ++i) {
+			long record = pos+(long) i*RECORD_SIZE;
+			int id = buffer.getInt(record);
+			AssertJUnit.assertEquals(buffer.getLong(record+4)^buffer.getInt(record+12)^id, buffer.getLong(record+16));
+			if (i > 0)
+				AssertJUnit.assertTrue(sorter.compare(buffer, record-RECORD_SIZE, buffer, record) <= 0);
+			sum += id;
+		}
+		AssertJUnit.assertEquals(expectedSum, sum);
+	}
+
+	private static final int RECORD_SIZE = 24;
+
+	private static final int COUNT = 50000;
+}